@@ -0,0 +1,233 @@
+package cellsociety;
+
+import cellsociety.simulation.DeltaLog;
+import cellsociety.simulation.EnsembleRunner;
+import cellsociety.simulation.Simulation;
+import cellsociety.simulation.SimulationFactory;
+import cellsociety.util.SweepConfiguration;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The starting point for running simulations without a display.
+ *
+ * @author David Coffman
+ * <p>Loads a simulation file, steps it as fast as it can for a number of steps or until a time
+ * budget runs out, optionally writing a snapshot every so many steps, and prints how fast it ran.
+ * With cycle detection on, a grid that settles or starts oscillating is not stepped any further
+ * than needed to end in the same place; it is refused for rules whose cycles are not exact, as
+ * {@link cellsociety.simulation.Simulation#hasExactCycles()} tells.
+ * Given a sweep file instead, it runs the whole ensemble with an {@link EnsembleRunner}. A run can
+ * be recorded to a {@link DeltaLog}, and given such a recording in place of a simulation file it
+ * replays the recording, printing how many cells held each state at every step without running any
+ * rules. Nothing here refers to JavaFX, so no JavaFX class is ever loaded and no display is needed.
+ */
+public class HeadlessMain {
+
+  private static final String USAGE = String.join("\n",
+      "Usage: HeadlessMain <simulation.xml | recording> [options]",
+      "  --steps N           Step N times (100 unless --seconds is given)",
+      "  --seconds S         Stop once S seconds of stepping have passed",
+      "  --threads T         Step each generation on T threads",
+      "  --snapshot-every K  Write the simulation to disk every K steps",
+      "  --snapshot-dir DIR  Where to write snapshots (the current directory by default)",
+      "  --detect-cycles H   Watch the last H steps for the grid repeating, and once it does skip",
+      "                      whole periods of the remaining steps",
+      "  --record FILE       Record every step of the run to FILE",
+      "  --keyframe-every K  Record the whole grid every K steps (100 by default)",
+      "  --sweep FILE        Run the ensemble a sweep file describes instead",
+      "  --out FILE          Where to write the ensemble's or replay's CSV (standard output by",
+      "                      default)",
+      "Given a recording, prints the number of cells in each state at every recorded step, up",
+      "to --steps N if given.");
+  private static final List<String> OPTIONS = List.of("--steps", "--seconds", "--threads",
+      "--snapshot-every", "--snapshot-dir", "--detect-cycles", "--record", "--keyframe-every",
+      "--sweep", "--out");
+  private static final int DEFAULT_STEPS = 100;
+  private static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  public static void main(String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /**
+   * Runs the command line given, printing the results and any errors.
+   *
+   * @param args - The command line arguments.
+   * @param out  - Where to print results.
+   * @param err  - Where to print usage and errors.
+   * @return - The exit status: 0 on success, 1 otherwise.
+   */
+  public static int run(String[] args, PrintStream out, PrintStream err) {
+    Map<String, String> options = new HashMap<>();
+    if (args.length % 2 == 0) {
+      err.println(USAGE);
+      return 1;
+    }
+    for (int i = 1; i < args.length; i += 2) {
+      if (!OPTIONS.contains(args[i])) {
+        err.println("Unknown option " + args[i] + "\n" + USAGE);
+        return 1;
+      }
+      options.put(args[i], args[i + 1]);
+    }
+    try {
+      if (options.containsKey("--sweep")) {
+        runSweep(new File(args[0]), options, out);
+      } else if (DeltaLog.isRecording(new File(args[0]))) {
+        runReplay(new File(args[0]), options, out);
+      } else {
+        runSimulation(new File(args[0]), options, out);
+      }
+      return 0;
+    } catch (Exception e) {
+      err.println(e.getMessage());
+      return 1;
+    }
+  }
+
+  private static void runSweep(File file, Map<String, String> options, PrintStream out)
+      throws Exception {
+    EnsembleRunner runner = new EnsembleRunner(file,
+        new SweepConfiguration(new File(options.get("--sweep"))));
+    if (!options.containsKey("--out")) {
+      Writer writer = new PrintWriter(out);
+      runner.run(writer);
+      writer.flush();
+      return;
+    }
+    try (Writer writer = new FileWriter(options.get("--out"))) {
+      runner.run(writer);
+    }
+  }
+
+  private static void runReplay(File file, Map<String, String> options, PrintStream out)
+      throws Exception {
+    if (!options.containsKey("--out")) {
+      Writer writer = new PrintWriter(out);
+      replay(file, options, writer);
+      writer.flush();
+      return;
+    }
+    try (Writer writer = new FileWriter(options.get("--out"))) {
+      replay(file, options, writer);
+    }
+  }
+
+  // Counts the states of every step first, as the header needs the highest state ever held.
+  private static void replay(File file, Map<String, String> options, Writer out)
+      throws Exception {
+    try (DeltaLog.Reader reader = new DeltaLog.Reader(file)) {
+      int steps = reader.getStepCount();
+      if (options.containsKey("--steps")) {
+        steps = (int) Math.min(steps, Long.parseLong(options.get("--steps")) + 1);
+      }
+      int[][] counts = new int[steps][];
+      int stateCount = 0;
+      for (int step = 0; step < steps; step++) {
+        counts[step] = new int[stateCount];
+        for (int state : reader.seek(step)) {
+          if (state >= counts[step].length) {
+            counts[step] = Arrays.copyOf(counts[step], state + 1);
+          }
+          counts[step][state]++;
+        }
+        stateCount = counts[step].length;
+      }
+      StringBuilder header = new StringBuilder("Step,Generation");
+      for (int state = 0; state < stateCount; state++) {
+        header.append(",State").append(state);
+      }
+      out.write(header.append('\n').toString());
+      for (int step = 0; step < steps; step++) {
+        StringBuilder row = new StringBuilder().append(step).append(',')
+            .append(reader.getGeneration(step));
+        for (int state = 0; state < stateCount; state++) {
+          row.append(',').append(state < counts[step].length ? counts[step][state] : 0);
+        }
+        out.write(row.append('\n').toString());
+      }
+    }
+  }
+
+  private static void runSimulation(File file, Map<String, String> options, PrintStream out)
+      throws Exception {
+    long steps = options.containsKey("--steps") ? Long.parseLong(options.get("--steps"))
+        : options.containsKey("--seconds") ? Long.MAX_VALUE : DEFAULT_STEPS;
+    long budget = options.containsKey("--seconds")
+        ? (long) (Double.parseDouble(options.get("--seconds")) * NANOS_PER_SECOND)
+        : Long.MAX_VALUE;
+    long snapshotEvery = Long.parseLong(options.getOrDefault("--snapshot-every", "0"));
+    File snapshotDir = new File(options.getOrDefault("--snapshot-dir", "."));
+    int cycleHistory = Integer.parseInt(options.getOrDefault("--detect-cycles", "0"));
+    String stem = file.getName().replaceFirst("\\.xml$", "");
+
+    SimulationFactory factory = new SimulationFactory();
+    factory.loadSimulationFile(file);
+    Simulation simulation = factory.getSimulation();
+    if (cycleHistory > 0 && !simulation.hasExactCycles()) {
+      throw new IllegalArgumentException("Only rules without randomness or values beyond the "
+          + "states of the cells, like Conway's, can detect cycles.");
+    }
+    simulation.setParallelism(Integer.parseInt(options.getOrDefault("--threads", "1")));
+    simulation.setCycleDetection(cycleHistory);
+    if (snapshotEvery > 0) {
+      snapshotDir.mkdirs();
+    }
+    if (options.containsKey("--record")) {
+      simulation.startRecording(new File(options.get("--record")), Integer.parseInt(
+          options.getOrDefault("--keyframe-every", "" + DEFAULT_KEYFRAME_INTERVAL)));
+    }
+
+    long stepped = 0;
+    long skipped = 0;
+    long evaluated = 0;
+    long steppingNanos = 0;
+    while (stepped < steps && steppingNanos < budget) {
+      long start = System.nanoTime();
+      simulation.step();
+      steppingNanos += System.nanoTime() - start;
+      stepped++;
+      evaluated += simulation.getActiveCellCount();
+      // Snapshots are written outside the timed stretch, so they do not count against throughput
+      if (snapshotEvery > 0 && (stepped + skipped) % snapshotEvery == 0) {
+        simulation.writeToDisk(new File(snapshotDir,
+            String.format("%s_%d.xml", stem, stepped + skipped)));
+      }
+      int period = simulation.getCyclePeriod();
+      if (period > 0 && skipped == 0) {
+        // Whole periods leave the grid where it is, so only the remainder needs stepping
+        long remaining = steps == Long.MAX_VALUE ? 0 : steps - stepped;
+        skipped = remaining - remaining % period;
+        steps -= skipped;
+        if (remaining == 0) {
+          break;
+        }
+      }
+    }
+    simulation.setParallelism(1);
+    simulation.stopRecording();
+
+    double seconds = Math.max(1, steppingNanos) / NANOS_PER_SECOND;
+    double cells = simulation.getNumCells();
+    out.printf("%s: %d steps of %.0f cells in %.3f s%n", simulation.getName(), stepped, cells,
+        seconds);
+    out.printf("%.1f steps/s, %.4g cells/s, %.4g evaluated cells/s%n", stepped / seconds,
+        stepped * cells / seconds, evaluated / seconds);
+    if (simulation.getCyclePeriod() == 1) {
+      out.printf("Fixed point at step %d; skipped %d steps%n", simulation.getCycleStart(),
+          skipped);
+    } else if (simulation.getCyclePeriod() > 1) {
+      out.printf("Period %d since step %d; skipped %d steps%n", simulation.getCyclePeriod(),
+          simulation.getCycleStart(), skipped);
+    }
+  }
+}
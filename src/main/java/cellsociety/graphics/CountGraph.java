@@ -69,4 +69,20 @@ public class CountGraph extends LineChart<Number, Number> {
     stepCount++;
   }
 
+  /**
+   * Removes the counts of the given number of most recent steps, as when the simulation was stepped
+   * back and continued from an earlier step.
+   *
+   * @param steps the number of steps whose counts to remove
+   */
+  public void discardLatest(long steps) {
+    if (steps <= 0) {
+      return;
+    }
+    stepCount = (int) Math.max(0, stepCount - steps);
+    for (Series<Number, Number> series : data.values()) {
+      series.getData().removeIf(point -> point.getXValue().intValue() >= stepCount);
+    }
+  }
+
 }
@@ -1,19 +1,25 @@
 package cellsociety.graphics;
 
-import cellsociety.graphics.cells.GraphicalCell;
-import cellsociety.graphics.cells.HexGraphicalCell;
-import cellsociety.graphics.cells.RectangularGraphicalCell;
-import cellsociety.graphics.cells.TriangularGraphicalCell;
+import cellsociety.graphics.cells.CellTiling;
+import cellsociety.graphics.cells.HexTiling;
+import cellsociety.graphics.cells.RectangularTiling;
+import cellsociety.graphics.cells.TriangularTiling;
 import cellsociety.simulation.Cell;
 import cellsociety.util.SimulationConfiguration.CellShape;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import javafx.scene.Group;
 import javafx.scene.Node;
-import javafx.scene.transform.Affine;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Rectangle;
 
 /**
- * A class that configures {@link GraphicalCell}s into a grid pattern.
+ * A class that draws a grid of model {@link Cell}s into a single image.
  * <p>
  * Usage (from {@link SimulationController}):
  * <code>
@@ -24,21 +30,50 @@ import javafx.scene.transform.Affine;
  * <p>
  * To summarize, a <code>GraphicalCellGrid</code> should be instantiated by a {@link
  * SimulationController} using the appropriate geometric parameters and model cell list, then
- * updated (to ensure that each {@link GraphicalCell} has the correct starting color). Rendering
- * typically takes place in a {@link SimulationDisplayScene}, where the
- * <code>GraphicalCellGrid</code>'s rendering node can be inserted into a scene graph, though
- * this could technically be done with any scene graph using {@link GraphicalCellGrid#getNode()}.
+ * updated (to ensure that each cell is drawn in its starting color). Rendering typically takes
+ * place in a {@link SimulationDisplayScene}, where the <code>GraphicalCellGrid</code>'s rendering
+ * node can be inserted into a scene graph, though this could technically be done with any scene
+ * graph using {@link GraphicalCellGrid#getNode()}.
+ * <p>
+ * On construction, the grid's {@link CellTiling} works out once which cell covers each pixel, and
+ * which pixels outline the cells. Each update then only looks up every cell's color and copies it
+ * into the pixels the cell covers, so the cost of a frame does not depend on the shape of the
+ * cells, and the scene graph holds one image rather than one node per cell. Clicks poke the cell
+ * drawn under the pointer, looked up in the same table; on an outline, the tiling's geometry
+ * decides.
+ * <p>
+ * Colors still come from the theme's stylesheet: the grid keeps one invisible swatch per state,
+ * styled with that state's style class, and redraws itself whenever the stylesheet changes the
+ * color of a swatch.
  *
  * @author David Coffman
  */
 public class GraphicalCellGrid {
 
-  private final List<GraphicalCell> graphicalCells;
+  // Cells smaller than this many pixels across are drawn without outlines, which would hide them
+  private static final double OUTLINE_MIN_CELL_SIZE = 4.0;
+  private static final int NO_CELL = -1;
+  private static final int OUTLINE = -2;
+  private static final int OUTLINE_COLOR = 0xFF000000;
+  private static final int NO_CELL_COLOR = 0x00000000;
+
+  private final List<Cell> cells;
+  private final CellTiling tiling;
+  private final int pixelWidth;
+  private final int pixelHeight;
+  // For each pixel, the index of the cell covering it, NO_CELL or OUTLINE
+  private final int[] pixelOwners;
+  private final int[] pixels;
+  private final int[] cellColors;
+  private final WritableImage image;
+  private final Group swatches;
+  // The ARGB color of each state seen so far, as the theme's stylesheet sets it
+  private int[] palette;
   private final Group root;
 
   /**
    * Sole constructor of <code>GraphicalCellGrid</code>s. Takes geometric parameters in order to lay
-   * out any of the {@link GraphicalCell} subclasses into a grid structure.
+   * out cells of any {@link CellShape} into a grid structure.
    *
    * @param cellShape the {@link CellShape} to use when constructing the grid
    * @param cells     the model {@link Cell}s to render
@@ -49,67 +84,126 @@ public class GraphicalCellGrid {
    */
   public GraphicalCellGrid(CellShape cellShape, List<Cell> cells, double width, double height,
       int numRows, int numCols) {
-    this.root = new Group();
-    this.graphicalCells = new ArrayList<>();
-
     assert cells.size() == numRows * numCols;
 
-    double cellWidth = width / numCols;
-    double cellHeight = height / numRows;
-
-    for (int i = 0; i < numRows; i++) {
-      for (int j = 0; j < numCols; j++) {
-        Cell c = cells.get(i * numCols + j);
-        GraphicalCell gc = null;
+    this.cells = cells;
+    this.tiling = switch (cellShape) {
+      case HEXAGON -> new HexTiling(width, height, numRows, numCols);
+      case TRIANGLE -> new TriangularTiling(width, height, numRows, numCols);
+      default -> new RectangularTiling(width, height, numRows, numCols);
+    };
+    this.pixelWidth = (int) Math.ceil(width);
+    this.pixelHeight = (int) Math.ceil(height);
+    this.pixelOwners = new int[pixelWidth * pixelHeight];
+    this.pixels = new int[pixelWidth * pixelHeight];
+    this.cellColors = new int[cells.size()];
+    tiling.rasterize(pixelOwners, pixelWidth, pixelHeight);
+    if (tiling.getCellSize() >= OUTLINE_MIN_CELL_SIZE) {
+      outlineCells();
+    }
 
-        switch (cellShape) {
-          case HEXAGON -> gc = new HexGraphicalCell(c, j * cellWidth, i * cellHeight, cellWidth,
-              cellHeight);
-          case TRIANGLE -> gc = new TriangularGraphicalCell(c, j * cellWidth, i * cellHeight,
-              cellWidth, cellHeight);
-          default -> gc = new RectangularGraphicalCell(c, j * cellWidth,
-              i * cellHeight, cellWidth, cellHeight);
-        }
+    this.image = new WritableImage(pixelWidth, pixelHeight);
+    ImageView view = new ImageView(image);
+    view.setSmooth(false);
+    view.setOnMouseClicked(this::poke);
+    this.swatches = new Group();
+    this.swatches.setMouseTransparent(true);
+    this.palette = new int[0];
+    this.root = new Group(view, swatches);
+  }
 
-        gc.applyTesselationTransform(j, i);
-        this.graphicalCells.add(gc);
-        renderNode(gc.getNode());
+  // Marks the pixels along the edges of each cell as outline, one pixel deep inside each cell,
+  // as the strokes of the grid's former shapes were
+  private void outlineCells() {
+    boolean[] edges = new boolean[pixelOwners.length];
+    for (int py = 0; py < pixelHeight; py++) {
+      for (int px = 0; px < pixelWidth; px++) {
+        int owner = pixelOwners[py * pixelWidth + px];
+        edges[py * pixelWidth + px] = owner != NO_CELL
+            && (ownerAt(px - 1, py) != owner || ownerAt(px + 1, py) != owner
+            || ownerAt(px, py - 1) != owner || ownerAt(px, py + 1) != owner);
+      }
+    }
+    for (int p = 0; p < pixelOwners.length; p++) {
+      if (edges[p]) {
+        pixelOwners[p] = OUTLINE;
       }
     }
-    centerAndScaleGrid(width, height);
   }
 
-  // Centers the grid and re-scales it so it fits within the width and height dimensions. Would
-  // be critical for an infinite grid implementation, but also useful for GraphicalCell
-  // subclasses where dimensions are difficult to calculate and auto-scaling is much simpler.
-  private void centerAndScaleGrid(double width, double height) {
-    double widthRatio = width / root.getBoundsInParent().getWidth();
-    double heightRatio = height / root.getBoundsInParent().getHeight();
-    double scaleRatio = Math.min(widthRatio, heightRatio);
-
-    Affine scale = new Affine();
-    scale.appendScale(scaleRatio, scaleRatio, 0, 0);
-    this.root.getTransforms().addAll(scale);
+  // Returns the owner of a pixel, treating pixels beyond the image as covered by no cell
+  private int ownerAt(int px, int py) {
+    if (px < 0 || py < 0 || px >= pixelWidth || py >= pixelHeight) {
+      return NO_CELL;
+    }
+    return pixelOwners[py * pixelWidth + px];
+  }
 
-    double adjWidth = root.getBoundsInParent().getWidth();
-    double adjHeight = root.getBoundsInParent().getHeight();
-    Affine translate = new Affine();
-    translate.appendTranslation((width - adjWidth) / 2.0, (height - adjHeight) / 2.0);
-    this.root.getTransforms().addAll(translate);
+  // Rotate the state of the cell under the pointer, if there is one. The pixel's owner is the cell
+  // drawn there; only outline pixels, which belong to no cell, ask the tiling's geometry.
+  private void poke(MouseEvent event) {
+    int px = (int) Math.floor(event.getX());
+    int py = (int) Math.floor(event.getY());
+    int index = ownerAt(px, py);
+    if (index == OUTLINE) {
+      index = tiling.cellAt(event.getX(), event.getY());
+    }
+    if (index >= 0) {
+      cells.get(index).poke();
+      update();
+    }
   }
 
   /**
-   * Updates each {@link GraphicalCell} in the <code>GraphicalCellGrid</code>.
+   * Redraws every cell in the <code>GraphicalCellGrid</code> in the color of its current state.
    */
   public void update() {
-    for (GraphicalCell c : graphicalCells) {
-      c.update();
+    for (int i = 0; i < cellColors.length; i++) {
+      cellColors[i] = colorOf(cells.get(i).getEncoding());
+    }
+    for (int p = 0; p < pixels.length; p++) {
+      int owner = pixelOwners[p];
+      if (owner >= 0) {
+        pixels[p] = cellColors[owner];
+      } else {
+        pixels[p] = owner == OUTLINE ? OUTLINE_COLOR : NO_CELL_COLOR;
+      }
     }
+    image.getPixelWriter().setPixels(0, 0, pixelWidth, pixelHeight,
+        PixelFormat.getIntArgbInstance(), pixels, 0, pixelWidth);
+  }
+
+  // Returns the theme's color for a state as an ARGB value, adding swatches for states not yet
+  // seen
+  private int colorOf(int state) {
+    while (palette.length <= state) {
+      addSwatch(palette.length);
+    }
+    return palette[state];
+  }
+
+  // Adds an empty shape styled as the cells of the given state would be. The stylesheet sets its
+  // fill once the grid is shown, and again whenever the theme changes it, and each change is
+  // copied into the palette and redrawn.
+  private void addSwatch(int state) {
+    Rectangle swatch = new Rectangle();
+    swatch.getStyleClass().add(String.format("state%d", state));
+    palette = Arrays.copyOf(palette, state + 1);
+    palette[state] = toArgb(swatch.getFill());
+    swatch.fillProperty().addListener((observable, previous, fill) -> {
+      palette[state] = toArgb(fill);
+      update();
+    });
+    swatches.getChildren().add(swatch);
   }
 
-  // Utility method to make the syntax for adding a Node to the scene graph cleaner
-  private void renderNode(Node n) {
-    root.getChildren().add(n);
+  // Converts a color to an ARGB value; fills other than plain colors are drawn black
+  private int toArgb(Paint fill) {
+    Color color = fill instanceof Color ? (Color) fill : Color.BLACK;
+    return (int) Math.round(color.getOpacity() * 255) << 24
+        | (int) Math.round(color.getRed() * 255) << 16
+        | (int) Math.round(color.getGreen() * 255) << 8
+        | (int) Math.round(color.getBlue() * 255);
   }
 
   /**
@@ -3,6 +3,7 @@ package cellsociety.graphics;
 import cellsociety.graphics.cells.ExtraSettingsPopup;
 import cellsociety.simulation.Simulation;
 import cellsociety.simulation.SimulationFactory;
+import cellsociety.simulation.StepHistory;
 import java.io.File;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -15,12 +16,17 @@ import javafx.stage.Stage;
  * <p>This class contains instantiates an {@link cellsociety.util.XMLParser} and can create
  * {@link Simulation} objects via its {@link SimulationFactory}.
  *
+ * <p>Simulations on bounded grids keep a {@link StepHistory} of their recent steps, so the user
+ * can step back or scrub to an earlier step; stepping on from there drops the steps after it.
+ *
  * @author David Coffman
  * @author Marc Chmielewski
  */
 public class SimulationController {
 
   private static final double GRAPH_DIM = 600;
+  private static final long HISTORY_MEMORY_BUDGET = 64L << 20;
+  private static final int HISTORY_KEYFRAME_INTERVAL = 50;
   private final UIController uiController;
   private final SimulationFactory simFactory;
   private final ResourceBundle resources;
@@ -29,6 +35,8 @@ public class SimulationController {
   private GraphicalCellGrid graphicalCellGrid;
   private CountGraph graph;
   private ExtraSettingsPopup parametersPopup;
+  private StepHistory history;
+  private Runnable historyListener;
   private double timer;
   private boolean stepEnabled;
 
@@ -47,6 +55,9 @@ public class SimulationController {
     try {
       simFactory.loadSimulationFile(simulationConfigurationFile);
       this.simulation = simFactory.getSimulation();
+      if (!simulation.isInfinite()) {
+        this.history = simulation.startHistory(HISTORY_MEMORY_BUDGET, HISTORY_KEYFRAME_INTERVAL);
+      }
       this.graphicalCellGrid = new GraphicalCellGrid(simulation.getCellShape(),
           simulation.getCells(), displayWidth, displayHeight,
           simulation.getNumRows(), simulation.getNumCols());
@@ -67,11 +78,74 @@ public class SimulationController {
   }
 
   public void step() {
+    long discardedSteps = history == null ? 0 : history.getLastStep() - history.getStep();
     simulation.step();
     graphicalCellGrid.update();
     if (graph != null) {
+      graph.discardLatest(discardedSteps);
       graph.update();
     }
+    notifyHistoryListener();
+  }
+
+  /**
+   * Pauses the simulation and shows the step before the one shown, if the history still holds it.
+   */
+  public void stepBack() {
+    pauseSimulation();
+    if (history != null && history.stepBack()) {
+      graphicalCellGrid.update();
+      notifyHistoryListener();
+    }
+  }
+
+  /**
+   * Pauses the simulation and shows the given step of its history, clamped to the steps the
+   * history still holds.
+   *
+   * @param step the step to show
+   */
+  public void scrubTo(long step) {
+    if (history == null) {
+      return;
+    }
+    pauseSimulation();
+    history.seek(Math.max(history.getFirstStep(), Math.min(history.getLastStep(), step)));
+    graphicalCellGrid.update();
+    notifyHistoryListener();
+  }
+
+  /**
+   * Returns the history of the current simulation, for views to show where in it the simulation
+   * is.
+   *
+   * @return the {@link StepHistory} of the current simulation, or null if it keeps none
+   */
+  public StepHistory getHistory() {
+    return history;
+  }
+
+  /**
+   * Sets an action to run whenever the simulation steps or moves through its history.
+   *
+   * @param listener the action to run
+   */
+  public void setHistoryListener(Runnable listener) {
+    this.historyListener = listener;
+  }
+
+  private void notifyHistoryListener() {
+    if (historyListener != null) {
+      historyListener.run();
+    }
+  }
+
+  public void moveViewport(int rows, int columns) {
+    if (simulation == null || !simulation.isInfinite()) {
+      return;
+    }
+    simulation.moveViewport(rows, columns);
+    graphicalCellGrid.update();
   }
 
   public void exitSimulation() {
@@ -128,6 +202,8 @@ public class SimulationController {
 
   private void clearState() {
     this.simulation = null;
+    this.history = null;
+    this.historyListener = null;
     this.secondsPerStep = 1.0;
     this.graphicalCellGrid = null;
     this.stepEnabled = false;
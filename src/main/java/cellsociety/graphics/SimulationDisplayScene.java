@@ -1,6 +1,7 @@
 package cellsociety.graphics;
 
 import cellsociety.graphics.UIController.Theme;
+import cellsociety.simulation.StepHistory;
 import java.util.ResourceBundle;
 import javafx.collections.ObservableList;
 import javafx.geometry.Pos;
@@ -8,6 +9,8 @@ import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.Slider;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 
@@ -20,12 +23,17 @@ import javafx.scene.layout.VBox;
  */
 public class SimulationDisplayScene extends Scene {
 
+  private static final int VIEWPORT_PAN_CELLS = 5;
+
   private final SimulationController simulationController;
   private final Group root;
   private final double WIDTH;
   private final double HEIGHT;
   private final GraphicalCellGrid graphicalCellGrid;
   private final ResourceBundle resources;
+  private final Slider historySlider;
+  // Set while the slider is moved to follow the history, so that it does not scrub in turn
+  private boolean followingHistory;
 
   public SimulationDisplayScene(
       SimulationController simulationController, double width, double height,
@@ -37,8 +45,24 @@ public class SimulationDisplayScene extends Scene {
     this.resources = resources;
     this.WIDTH = width;
     this.HEIGHT = height;
+    this.historySlider = new Slider(0, 0, 0);
     this.getStylesheets().add(getClass().getResource("styles/" + theme + ".css").toExternalForm());
     buildScene();
+    this.addEventFilter(KeyEvent.KEY_PRESSED, this::panViewport);
+  }
+
+  // Pans the viewport of an infinite world with the arrow keys
+  private void panViewport(KeyEvent event) {
+    switch (event.getCode()) {
+      case UP -> simulationController.moveViewport(-VIEWPORT_PAN_CELLS, 0);
+      case DOWN -> simulationController.moveViewport(VIEWPORT_PAN_CELLS, 0);
+      case LEFT -> simulationController.moveViewport(0, -VIEWPORT_PAN_CELLS);
+      case RIGHT -> simulationController.moveViewport(0, VIEWPORT_PAN_CELLS);
+      default -> {
+        return;
+      }
+    }
+    event.consume();
   }
 
   private HBox firstButtonRow() {
@@ -49,6 +73,7 @@ public class SimulationDisplayScene extends Scene {
     Button slowDownButton = new Button(resources.getString("SlowDown"));
     Button pauseButton = new Button(resources.getString("Pause"));
     Button stepButton = new Button(resources.getString("Step"));
+    Button stepBackButton = new Button(resources.getString("StepBack"));
     Button extraSettingsButton = new Button(resources.getString("ExtraSettings"));
 
     playButton.setOnAction(e -> simulationController.startSimulation());
@@ -56,10 +81,11 @@ public class SimulationDisplayScene extends Scene {
     slowDownButton.setOnAction(e -> simulationController.slowDownSimulation());
     pauseButton.setOnAction(e -> simulationController.pauseSimulation());
     stepButton.setOnAction(e -> simulationController.step());
+    stepBackButton.setOnAction(e -> simulationController.stepBack());
     extraSettingsButton.setOnAction(e -> simulationController.showParametersPopout());
 
     row.getChildren().addAll(playButton, speedUpButton, slowDownButton, pauseButton,
-        stepButton, extraSettingsButton);
+        stepBackButton, stepButton, extraSettingsButton);
     row.setAlignment(Pos.CENTER);
     return row;
   }
@@ -82,6 +108,38 @@ public class SimulationDisplayScene extends Scene {
     return row;
   }
 
+  // Lets the user scrub through the steps the simulation's history holds
+  private HBox historyRow() {
+    HBox row = new HBox(10);
+
+    historySlider.setPrefWidth(this.WIDTH - 40);
+    historySlider.valueProperty().addListener((observable, previous, value) -> {
+      if (!followingHistory) {
+        simulationController.scrubTo(Math.round(value.doubleValue()));
+      }
+    });
+    simulationController.setHistoryListener(this::followHistory);
+    followHistory();
+
+    row.getChildren().add(historySlider);
+    row.setAlignment(Pos.CENTER);
+    return row;
+  }
+
+  // Moves the slider to the step shown, within the steps the history holds
+  private void followHistory() {
+    StepHistory history = simulationController.getHistory();
+    historySlider.setDisable(history == null);
+    if (history == null) {
+      return;
+    }
+    followingHistory = true;
+    historySlider.setMin(history.getFirstStep());
+    historySlider.setMax(history.getLastStep());
+    historySlider.setValue(history.getStep());
+    followingHistory = false;
+  }
+
   private void buildScene() {
     ObservableList<Node> rootChildren = this.root.getChildren();
     rootChildren.add(this.graphicalCellGrid.getNode());
@@ -89,11 +147,12 @@ public class SimulationDisplayScene extends Scene {
     VBox rows = new VBox(10);
     HBox rowOne = firstButtonRow();
     HBox rowTwo = secondButtonRow();
+    HBox rowThree = historyRow();
 
-    rows.getChildren().addAll(rowTwo, rowOne);
+    rows.getChildren().addAll(rowThree, rowTwo, rowOne);
     rows.setAlignment(Pos.CENTER);
     rows.setPrefWidth(this.WIDTH);
-    rows.setTranslateY(this.HEIGHT - 80.0);
+    rows.setTranslateY(this.HEIGHT - 110.0);
 
     rootChildren.add(rows);
   }
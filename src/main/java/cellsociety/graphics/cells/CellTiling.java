@@ -0,0 +1,209 @@
+package cellsociety.graphics.cells;
+
+import java.util.Arrays;
+
+/**
+ * The geometry of a grid of cells of one shape, laid out to fit a region of pixels. Abstract and
+ * implemented by subclasses which provide the tiling of one specific shape.
+ * <p>
+ * Every cell is described by a table of vertices on a lattice of the tiling's own units (half a
+ * hexagon wide and a quarter of one tall, for example), placed at the lattice position of its row
+ * and column. Because neighbouring cells share lattice points exactly, cells rasterized from these
+ * tables cover every pixel of the grid exactly once. Going the other way, {@link #cellAt(double,
+ * double)} maps a pixel back to the cell covering it arithmetically, without searching.
+ * <p>
+ * Cells are indexed in row-major order, matching the model's cell list.
+ *
+ * @author David Coffman
+ */
+public abstract class CellTiling {
+
+  private final int numRows;
+  private final int numCols;
+  private final double unitWidth;
+  private final double unitHeight;
+  private final double originX;
+  private final double originY;
+  private final double cellSize;
+
+  /**
+   * Sole constructor for <code>CellTiling</code>. Scales the tiling uniformly to fit within the
+   * given region and centers it there, as the grid of shapes it replaces was scaled and centered.
+   *
+   * @param width        the pixel width of the region to fit the grid into
+   * @param height       the pixel height of the region to fit the grid into
+   * @param numRows      the cell height of the grid
+   * @param numCols      the cell width of the grid
+   * @param unitsPerCell the number of lattice units spanned by the width and height of one cell
+   */
+  protected CellTiling(double width, double height, int numRows, int numCols,
+      int[] unitsPerCell) {
+    this.numRows = numRows;
+    this.numCols = numCols;
+    double unitWidth = width / numCols / unitsPerCell[0];
+    double unitHeight = height / numRows / unitsPerCell[1];
+    double scale = Math.min(width / (latticeWidth() * unitWidth),
+        height / (latticeHeight() * unitHeight));
+    this.unitWidth = unitWidth * scale;
+    this.unitHeight = unitHeight * scale;
+    this.originX = (width - latticeWidth() * this.unitWidth) / 2.0;
+    this.originY = (height - latticeHeight() * this.unitHeight) / 2.0;
+    this.cellSize = Math.min(unitsPerCell[0] * this.unitWidth, unitsPerCell[1] * this.unitHeight);
+  }
+
+  /**
+   * Writes the index of the cell covering each pixel into <code>owners</code>, a row-major array
+   * of pixels, and -1 into pixels outside the grid. A pixel is covered by a cell if its center lies
+   * within the cell.
+   *
+   * @param owners      the array of pixels to write cell indices into
+   * @param pixelWidth  the width of the array of pixels
+   * @param pixelHeight the height of the array of pixels
+   */
+  public void rasterize(int[] owners, int pixelWidth, int pixelHeight) {
+    Arrays.fill(owners, 0, pixelWidth * pixelHeight, -1);
+    double[] xs = new double[maxVertexCount()];
+    double[] ys = new double[maxVertexCount()];
+    for (int row = 0; row < numRows; row++) {
+      for (int col = 0; col < numCols; col++) {
+        int[] table = vertexTable(row, col);
+        int count = table.length / 2;
+        for (int v = 0; v < count; v++) {
+          xs[v] = toPixelX(latticeX(row, col) + table[2 * v]);
+          ys[v] = toPixelY(latticeY(row, col) + table[2 * v + 1]);
+        }
+        fillPolygon(owners, pixelWidth, pixelHeight, xs, ys, count, row * numCols + col);
+      }
+    }
+    fillGaps(owners, pixelWidth, pixelHeight);
+  }
+
+  // A pixel whose center falls exactly on a vertex shared by several cells can be left out of
+  // every cell's spans by rounding; it is given to the cell that cellAt finds there instead.
+  private void fillGaps(int[] owners, int pixelWidth, int pixelHeight) {
+    for (int py = 0; py < pixelHeight; py++) {
+      for (int px = 0; px < pixelWidth; px++) {
+        if (owners[py * pixelWidth + px] < 0) {
+          owners[py * pixelWidth + px] = cellAt(px + 0.5, py + 0.5);
+        }
+      }
+    }
+  }
+
+  // Fills the pixels whose centers lie within a convex polygon. Each edge includes its top end
+  // and excludes its bottom end, and each span its left end but not its right, so that polygons
+  // sharing an edge never share a pixel.
+  private void fillPolygon(int[] owners, int pixelWidth, int pixelHeight, double[] xs,
+      double[] ys, int count, int index) {
+    double top = Double.MAX_VALUE;
+    double bottom = -Double.MAX_VALUE;
+    for (int v = 0; v < count; v++) {
+      top = Math.min(top, ys[v]);
+      bottom = Math.max(bottom, ys[v]);
+    }
+    int firstRow = Math.max(0, (int) Math.ceil(top - 0.5));
+    int lastRow = Math.min(pixelHeight - 1, (int) Math.ceil(bottom - 0.5) - 1);
+    for (int py = firstRow; py <= lastRow; py++) {
+      double y = py + 0.5;
+      double left = Double.MAX_VALUE;
+      double right = -Double.MAX_VALUE;
+      for (int v = 0; v < count; v++) {
+        double x0 = xs[v];
+        double y0 = ys[v];
+        double x1 = xs[(v + 1) % count];
+        double y1 = ys[(v + 1) % count];
+        if ((y0 <= y && y < y1) || (y1 <= y && y < y0)) {
+          double x = x0 + (y - y0) * (x1 - x0) / (y1 - y0);
+          left = Math.min(left, x);
+          right = Math.max(right, x);
+        }
+      }
+      int firstColumn = Math.max(0, (int) Math.ceil(left - 0.5));
+      int lastColumn = Math.min(pixelWidth - 1, (int) Math.ceil(right - 0.5) - 1);
+      for (int px = firstColumn; px <= lastColumn; px++) {
+        owners[py * pixelWidth + px] = index;
+      }
+    }
+  }
+
+  /**
+   * Returns the index of the cell covering a point, or -1 if no cell covers it.
+   *
+   * @param x the x-position of the point, in pixels
+   * @param y the y-position of the point, in pixels
+   * @return the row-major index of the cell covering the point, or -1 if there is none
+   */
+  public int cellAt(double x, double y) {
+    double latticeX = toLatticeX(x);
+    double latticeY = toLatticeY(y);
+    if (latticeX < 0 || latticeY < 0) {
+      return -1;
+    }
+    int[] cell = cellAtLattice(latticeX, latticeY);
+    if (cell[0] < 0 || cell[0] >= numRows || cell[1] < 0 || cell[1] >= numCols) {
+      return -1;
+    }
+    return cell[0] * numCols + cell[1];
+  }
+
+  /**
+   * Returns the smaller of the pixel width and pixel height of one cell, so callers can decide
+   * whether cells are large enough to be outlined.
+   *
+   * @return the smaller dimension of one cell, in pixels
+   */
+  public double getCellSize() {
+    return cellSize;
+  }
+
+  // Returns the row and column of the cell covering a point given in lattice units. Either may be
+  // out of the grid's bounds.
+  protected abstract int[] cellAtLattice(double x, double y);
+
+  // Returns the vertices of the cell at the given row and column as pairs of lattice offsets from
+  // the cell's lattice position. Implementations return shared, precomputed tables.
+  protected abstract int[] vertexTable(int row, int col);
+
+  // Returns the largest number of vertices of any of the tiling's vertex tables
+  protected abstract int maxVertexCount();
+
+  // Returns the lattice x-position of the cell at the given row and column
+  protected abstract int latticeX(int row, int col);
+
+  // Returns the lattice y-position of the cell at the given row and column
+  protected abstract int latticeY(int row, int col);
+
+  // Returns the width of the whole grid, in lattice units
+  protected abstract int latticeWidth();
+
+  // Returns the height of the whole grid, in lattice units
+  protected abstract int latticeHeight();
+
+  // Converts a lattice x-position to a pixel x-position
+  protected double toPixelX(int latticeX) {
+    return originX + latticeX * unitWidth;
+  }
+
+  // Converts a lattice y-position to a pixel y-position
+  protected double toPixelY(int latticeY) {
+    return originY + latticeY * unitHeight;
+  }
+
+  // Converts a pixel x-position to a lattice x-position
+  protected double toLatticeX(double pixelX) {
+    return (pixelX - originX) / unitWidth;
+  }
+
+  // Converts a pixel y-position to a lattice y-position
+  protected double toLatticeY(double pixelY) {
+    return (pixelY - originY) / unitHeight;
+  }
+
+  protected int getNumRows() {
+    return numRows;
+  }
+
+  protected int getNumCols() {
+    return numCols;
+  }
+}
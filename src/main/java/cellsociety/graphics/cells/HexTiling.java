@@ -0,0 +1,72 @@
+package cellsociety.graphics.cells;
+
+/**
+ * A {@link CellTiling} of pointy-topped hexagons. The lattice unit is half a hexagon wide and a
+ * quarter of one tall; rows are three units apart, so that the tips of one row fit between those
+ * of the next, and odd rows are shifted right by half a hexagon.
+ *
+ * @author David Coffman
+ */
+public class HexTiling extends CellTiling {
+
+  private static final int[] UNITS_PER_CELL = {2, 4};
+  private static final int ROW_PITCH = 3;
+  private static final int[] HEXAGON = {0, 1, 0, 3, 1, 4, 2, 3, 2, 1, 1, 0};
+
+  /**
+   * Sole constructor for <code>HexTiling</code>.
+   *
+   * @param width   the pixel width of the region to fit the grid into
+   * @param height  the pixel height of the region to fit the grid into
+   * @param numRows the cell height of the grid
+   * @param numCols the cell width of the grid
+   */
+  public HexTiling(double width, double height, int numRows, int numCols) {
+    super(width, height, numRows, numCols, UNITS_PER_CELL);
+  }
+
+  // Each band of the lattice is one row pitch tall. Below its first unit, a band holds only the
+  // sides of its own row of hexagons; within it, the top tips of the row meet the bottom tips of
+  // the row above along a zig-zag.
+  @Override
+  protected int[] cellAtLattice(double x, double y) {
+    int band = (int) Math.floor(y / ROW_PITCH);
+    double down = y - band * ROW_PITCH;
+    double across = (x - (band & 1)) / 2.0;
+    int col = (int) Math.floor(across);
+    if (down >= 1 || down >= Math.abs(2 * (across - col) - 1)) {
+      return new int[]{band, col};
+    }
+    return new int[]{band - 1, (int) Math.floor((x - ((band - 1) & 1)) / 2.0)};
+  }
+
+  @Override
+  protected int[] vertexTable(int row, int col) {
+    return HEXAGON;
+  }
+
+  @Override
+  protected int maxVertexCount() {
+    return HEXAGON.length / 2;
+  }
+
+  @Override
+  protected int latticeX(int row, int col) {
+    return 2 * col + (row & 1);
+  }
+
+  @Override
+  protected int latticeY(int row, int col) {
+    return ROW_PITCH * row;
+  }
+
+  @Override
+  protected int latticeWidth() {
+    return 2 * getNumCols() + (getNumRows() > 1 ? 1 : 0);
+  }
+
+  @Override
+  protected int latticeHeight() {
+    return ROW_PITCH * getNumRows() + 1;
+  }
+}
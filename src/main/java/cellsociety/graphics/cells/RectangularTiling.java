@@ -0,0 +1,78 @@
+package cellsociety.graphics.cells;
+
+/**
+ * A {@link CellTiling} of rectangles. Each cell is one lattice unit wide and one tall, so cells
+ * are rasterized as blocks of pixels rather than as polygons.
+ *
+ * @author David Coffman
+ */
+public class RectangularTiling extends CellTiling {
+
+  private static final int[] UNITS_PER_CELL = {1, 1};
+  private static final int[] RECTANGLE = {0, 0, 1, 0, 1, 1, 0, 1};
+
+  /**
+   * Sole constructor for <code>RectangularTiling</code>.
+   *
+   * @param width   the pixel width of the region to fit the grid into
+   * @param height  the pixel height of the region to fit the grid into
+   * @param numRows the cell height of the grid
+   * @param numCols the cell width of the grid
+   */
+  public RectangularTiling(double width, double height, int numRows, int numCols) {
+    super(width, height, numRows, numCols, UNITS_PER_CELL);
+  }
+
+  // Every pixel in a column of pixels belongs to the same column of cells, and likewise for rows,
+  // so the cell covering each pixel follows from one lookup per pixel row and column.
+  @Override
+  public void rasterize(int[] owners, int pixelWidth, int pixelHeight) {
+    int[] columns = new int[pixelWidth];
+    for (int px = 0; px < pixelWidth; px++) {
+      columns[px] = (int) Math.floor(toLatticeX(px + 0.5));
+    }
+    for (int py = 0; py < pixelHeight; py++) {
+      int row = (int) Math.floor(toLatticeY(py + 0.5));
+      boolean inRow = row >= 0 && row < getNumRows();
+      for (int px = 0; px < pixelWidth; px++) {
+        boolean inGrid = inRow && columns[px] >= 0 && columns[px] < getNumCols();
+        owners[py * pixelWidth + px] = inGrid ? row * getNumCols() + columns[px] : -1;
+      }
+    }
+  }
+
+  @Override
+  protected int[] cellAtLattice(double x, double y) {
+    return new int[]{(int) Math.floor(y), (int) Math.floor(x)};
+  }
+
+  @Override
+  protected int[] vertexTable(int row, int col) {
+    return RECTANGLE;
+  }
+
+  @Override
+  protected int maxVertexCount() {
+    return RECTANGLE.length / 2;
+  }
+
+  @Override
+  protected int latticeX(int row, int col) {
+    return col;
+  }
+
+  @Override
+  protected int latticeY(int row, int col) {
+    return row;
+  }
+
+  @Override
+  protected int latticeWidth() {
+    return getNumCols();
+  }
+
+  @Override
+  protected int latticeHeight() {
+    return getNumRows();
+  }
+}
@@ -0,0 +1,71 @@
+package cellsociety.graphics.cells;
+
+/**
+ * A {@link CellTiling} of triangles. The lattice unit is half a triangle wide and a whole one
+ * tall; each cell starts one unit to the right of the last, and points down where its row and
+ * column sum to an even number and up elsewhere, so that neighbours interlock.
+ *
+ * @author David Coffman
+ */
+public class TriangularTiling extends CellTiling {
+
+  private static final int[] UNITS_PER_CELL = {2, 1};
+  private static final int[] POINTING_DOWN = {0, 0, 2, 0, 1, 1};
+  private static final int[] POINTING_UP = {0, 1, 2, 1, 1, 0};
+
+  /**
+   * Sole constructor for <code>TriangularTiling</code>.
+   *
+   * @param width   the pixel width of the region to fit the grid into
+   * @param height  the pixel height of the region to fit the grid into
+   * @param numRows the cell height of the grid
+   * @param numCols the cell width of the grid
+   */
+  public TriangularTiling(double width, double height, int numRows, int numCols) {
+    super(width, height, numRows, numCols, UNITS_PER_CELL);
+  }
+
+  // A point lies in the unit-wide strip between the apexes of two neighbouring triangles. It
+  // belongs to the right-hand one if it is on that triangle's side of the slanted edge between
+  // them.
+  @Override
+  protected int[] cellAtLattice(double x, double y) {
+    int row = (int) Math.floor(y);
+    int strip = (int) Math.floor(x);
+    double across = x - strip;
+    double down = y - row;
+    boolean pointsDown = ((row + strip) & 1) == 0;
+    boolean inStrip = pointsDown ? across >= down : across + down >= 1;
+    return new int[]{row, inStrip ? strip : strip - 1};
+  }
+
+  @Override
+  protected int[] vertexTable(int row, int col) {
+    return ((row + col) & 1) == 0 ? POINTING_DOWN : POINTING_UP;
+  }
+
+  @Override
+  protected int maxVertexCount() {
+    return POINTING_DOWN.length / 2;
+  }
+
+  @Override
+  protected int latticeX(int row, int col) {
+    return col;
+  }
+
+  @Override
+  protected int latticeY(int row, int col) {
+    return row;
+  }
+
+  @Override
+  protected int latticeWidth() {
+    return getNumCols() + 1;
+  }
+
+  @Override
+  protected int latticeHeight() {
+    return getNumRows();
+  }
+}
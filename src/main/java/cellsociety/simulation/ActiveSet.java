@@ -0,0 +1,130 @@
+package cellsociety.simulation;
+
+import java.util.Arrays;
+
+/**
+ * The cells of a local-rule simulation that need to be evaluated on the next step.
+ *
+ * @author Joshua Petitma
+ * <p>A cell whose rule depends only on its own state and its neighbors' states cannot change
+ * unless one of those states changed on the previous step. When a generation is committed, every
+ * cell that changed is scheduled together with every cell that counts it as a neighbor, and only
+ * those cells are evaluated next. The cost of a step then follows the amount of activity on the
+ * grid rather than its area.
+ */
+class ActiveSet {
+
+  private final int numCells;
+  private final int[] reverseOffsets;
+  private final int[] reverseIndices;
+  // The generation each cell was last scheduled in, so a cell is never scheduled twice
+  private final int[] scheduled;
+  private int[] cells;
+  private int[] nextCells;
+  private int count;
+  private int epoch;
+
+  /**
+   * Creates a set over the cells of a grid with every cell active.
+   *
+   * @param grid     - The grid whose neighborhoods decide which cells a change wakes up.
+   * @param numCells - The number of cells in the grid.
+   */
+  ActiveSet(CellGrid grid, int numCells) {
+    this.numCells = numCells;
+    this.reverseOffsets = grid.getReverseNeighborOffsets();
+    this.reverseIndices = grid.getReverseNeighborIndices();
+    this.scheduled = new int[numCells];
+    this.cells = new int[numCells];
+    this.nextCells = new int[numCells];
+    activateAll();
+  }
+
+  /**
+   * Schedules every cell, e.g. after cells were poked or a parameter changed.
+   */
+  void activateAll() {
+    for (int i = 0; i < numCells; i++) {
+      cells[i] = i;
+    }
+    count = numCells;
+  }
+
+  /**
+   * Schedules exactly the given cells, e.g. those that were active when a checkpoint was saved.
+   *
+   * @param active - The row-major indices of the cells to schedule, each listed once.
+   */
+  void restore(int[] active) {
+    System.arraycopy(active, 0, cells, 0, active.length);
+    count = active.length;
+  }
+
+  /**
+   * Returns the cells to evaluate this step.
+   *
+   * @return - The row-major indices of the active cells, in no particular order.
+   */
+  int[] toArray() {
+    return Arrays.copyOf(cells, count);
+  }
+
+  /**
+   * Returns the number of cells to evaluate this step.
+   *
+   * @return - The number of active cells.
+   */
+  int size() {
+    return count;
+  }
+
+  /**
+   * Returns the index of an active cell.
+   *
+   * @param position - The position within the set, below {@link #size()}.
+   * @return - The row-major index of that cell.
+   */
+  int get(int position) {
+    return cells[position];
+  }
+
+  /**
+   * Commits the next state of every active cell and schedules the cells for the next step.
+   *
+   * <p>Cells outside of the set already hold the same current and next state, so this leaves the
+   * buffer exactly as {@link StateBuffer#swap()} would.
+   *
+   * @param states - The buffer holding the computed generation.
+   */
+  void commit(StateBuffer states) {
+    if (++epoch == 0) {
+      Arrays.fill(scheduled, -1);
+    }
+    int nextCount = 0;
+    for (int k = 0; k < count; k++) {
+      int index = cells[k];
+      int state = states.getNext(index);
+      if (state == states.get(index)) {
+        continue;
+      }
+      states.commit(index, state);
+      nextCount = schedule(index, nextCount);
+      for (int r = reverseOffsets[index]; r < reverseOffsets[index + 1]; r++) {
+        nextCount = schedule(reverseIndices[r], nextCount);
+      }
+    }
+    int[] previous = cells;
+    cells = nextCells;
+    nextCells = previous;
+    count = nextCount;
+  }
+
+  private int schedule(int index, int nextCount) {
+    if (scheduled[index] == epoch) {
+      return nextCount;
+    }
+    scheduled[index] = epoch;
+    nextCells[nextCount] = index;
+    return nextCount + 1;
+  }
+}
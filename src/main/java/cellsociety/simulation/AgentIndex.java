@@ -0,0 +1,356 @@
+package cellsociety.simulation;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * The cells of a moving-agent simulation that currently hold an agent.
+ *
+ * @author Marc Chmielewski
+ * <p>Agents are kept in a dense array with each cell's position in it, so an agent is added or
+ * removed in constant time. An agent only ever moves, spawns or eats within its own neighborhood,
+ * so when a generation is committed the index is brought up to date by looking at the cells the
+ * agents were in and their neighbors, never at the rest of the grid, so the cost of a step follows
+ * the population rather than the area of the grid.
+ *
+ * <p>While agents are sparse they are visited in a fresh random order each step, shuffled by small
+ * tiles of the grid to keep neighboring cells together in memory. Once there is an agent for every
+ * 64 cells, as in any crowded Wa-Tor ocean, they are instead visited in grid order, from a random
+ * cell of each band. That keeps a crowded step as fast as a sweep over the grid, but it is not a
+ * random order: within a band, agents earlier in the sweep still move first, and so win contested
+ * cells, as they did in the row sweep before this index.
+ */
+class AgentIndex {
+
+  // The stream of the simulation's random source that visit orders are drawn from
+  private static final long ORDER_STREAM = -1;
+  // The number of columns in each tile of a band whose order is shuffled
+  private static final int TILE_COLUMNS = 32;
+  // Agents are swept in grid order once there is one for every this many cells
+  private static final int SWEEP_CELLS_PER_AGENT = 64;
+  // The number of states whose agents are looked up in a table; later ones are asked of the rule
+  private static final int AGENT_STATE_TABLE_SIZE = 16;
+
+  private final int width;
+  private final int rows;
+  private final int[] neighborOffsets;
+  private final int[] neighborIndices;
+  private final IntPredicate isAgent;
+  // Whether each of the first few states holds an agent
+  private final boolean[] agentStates;
+  private final CellRandom orderRandom;
+  private final int[] agents;
+  // The position of each cell within agents, or -1 if it holds no agent
+  private final int[] positions;
+  // This step's visit order, grouped by colored band, and where each band starts within it
+  private final int[] order;
+  private final int[] bandStarts;
+  // The first row of each colored band, followed by the number of rows
+  private final int[] bandRows;
+  // The agents sorted by tile, where each tile starts within them, and the order of a band's tiles
+  private final int[] tiled;
+  private final int[] tileStarts;
+  private final int[] tileOrder;
+  private final int tilesPerBand;
+  // The number of agents whose cells and neighbors add up to as many cells as the grid holds
+  private final long crowdedCount;
+  private final long sweepCount;
+  private int count;
+  // Whether agents and positions are out of date, as a crowded grid is committed by a swap alone
+  private boolean stale;
+
+  /**
+   * Creates an empty index over the cells of a grid.
+   *
+   * @param grid    - The grid whose neighborhoods the agents move within.
+   * @param width   - The number of columns in the grid.
+   * @param rows    - The number of rows in the grid.
+   * @param isAgent - Whether a cell in a given state holds an agent.
+   */
+  AgentIndex(CellGrid grid, int width, int rows, IntPredicate isAgent) {
+    this.width = width;
+    this.rows = rows;
+    this.neighborOffsets = grid.getNeighborOffsets();
+    this.neighborIndices = grid.getNeighborIndices();
+    this.isAgent = isAgent;
+    this.agentStates = new boolean[AGENT_STATE_TABLE_SIZE];
+    for (int state = 0; state < agentStates.length; state++) {
+      agentStates[state] = isAgent.test(state);
+    }
+    this.orderRandom = new CellRandom(0);
+    this.agents = new int[width * rows];
+    this.positions = new int[width * rows];
+    this.order = new int[width * rows];
+    this.bandStarts = new int[ParallelStepper.coloredBandOf(rows, rows - 1) + 2];
+    this.bandRows = new int[bandStarts.length];
+    for (int row = 1; row < rows; row++) {
+      int band = ParallelStepper.coloredBandOf(rows, row);
+      if (band != ParallelStepper.coloredBandOf(rows, row - 1)) {
+        bandRows[band] = row;
+      }
+    }
+    bandRows[bandRows.length - 1] = rows;
+    this.tilesPerBand = (width + TILE_COLUMNS - 1) / TILE_COLUMNS;
+    this.tiled = new int[width * rows];
+    this.tileStarts = new int[(bandStarts.length - 1) * tilesPerBand + 1];
+    this.tileOrder = new int[tilesPerBand];
+    Arrays.fill(positions, -1);
+    long cells = (long) width * rows;
+    this.crowdedCount = cells * cells / Math.max(1, cells + neighborIndices.length);
+    this.sweepCount = Math.max(1, cells / SWEEP_CELLS_PER_AGENT);
+  }
+
+  /**
+   * Finds every agent on the grid, e.g. after cells were placed or poked.
+   *
+   * <p>Cells without an agent are never computed, so each one is also given its current state as
+   * its next state, leaving the buffer as it would be after a {@link StateBuffer#swap()}.
+   *
+   * @param states - The buffer holding the current state of every cell.
+   */
+  void rebuild(StateBuffer states) {
+    count = 0;
+    for (int i = 0; i < states.size(); i++) {
+      int state = states.get(i);
+      if (states.getNext(i) != state) {
+        states.commit(i, state);
+      }
+      if (holdsAgent(state)) {
+        add(i);
+      } else {
+        positions[i] = -1;
+      }
+    }
+    stale = false;
+  }
+
+  /**
+   * Finds every agent on the grid, keeping them in the given order rather than in the order of
+   * the grid, e.g. the order they were kept in when a checkpoint was saved.
+   *
+   * <p>The order the index keeps its agents in is the order
+   * {@link #shuffle(CellRandom, StateBuffer)} starts from, so restoring it makes every later visit
+   * order the same as the saved run's.
+   *
+   * @param states - The buffer holding the current state of every cell.
+   * @param order  - The row-major indices of every agent on the grid, as returned by
+   *               {@link #toArray(StateBuffer)}.
+   * @throws IllegalArgumentException if the cells given are not the agents on the grid.
+   */
+  void restore(StateBuffer states, int[] order) {
+    rebuild(states);
+    if (order.length != count) {
+      throw new IllegalArgumentException("Expected " + count + " agents, not " + order.length);
+    }
+    for (int k = 0; k < count; k++) {
+      if (positions[order[k]] < 0) {
+        throw new IllegalArgumentException("No agent at cell " + order[k]);
+      }
+      agents[k] = order[k];
+      positions[order[k]] = k;
+    }
+  }
+
+  /**
+   * Returns the agents in the order the index keeps them in.
+   *
+   * @param states - The buffer holding the current state of every cell.
+   * @return - The row-major indices of every agent on the grid.
+   */
+  int[] toArray(StateBuffer states) {
+    if (stale) {
+      rebuild(states);
+    }
+    return Arrays.copyOf(agents, count);
+  }
+
+  /**
+   * Returns the number of agents on the grid.
+   *
+   * @return - The number of agents.
+   */
+  int size() {
+    return count;
+  }
+
+  /**
+   * Draws this step's visit order: the agents grouped by the bands of
+   * {@link ParallelStepper#forEachColoredBand(int, ParallelStepper.RowBand)}, and within each band
+   * by tiles of 32 columns, with the tiles of a band and the agents of a tile each in a uniformly
+   * random order.
+   *
+   * <p>The order depends only on the agents, the seed and the generation, so a band visits its
+   * agents in the same order on one thread as on many. Keeping the agents of a tile together means
+   * the cells visited in a row are a few hundred cells apart at most, rather than anywhere in the
+   * band. Once there is an agent for every 64 cells, even that costs more than visiting every cell
+   * would, so each band is instead swept in grid order, starting from a random cell of the band and
+   * wrapping around to its first. Only the starting cell is random then, which trades the
+   * randomness of the order for the speed of a sweep.
+   *
+   * @param random - The simulation's random source, at the generation being computed.
+   * @param states - The buffer holding the current state of every cell.
+   */
+  void shuffle(CellRandom random, StateBuffer states) {
+    orderRandom.follow(random, ORDER_STREAM);
+    if (stale || count >= sweepCount) {
+      sweep(states);
+      if (stale && count < crowdedCount) {
+        // The next commit will look at each agent's neighborhood, so it needs the index again
+        rebuild(states);
+      }
+      return;
+    }
+    int bands = bandStarts.length - 1;
+    int tiles = tileStarts.length - 1;
+    Arrays.fill(tileStarts, 0);
+    for (int k = 0; k < count; k++) {
+      tileStarts[tileOf(agents[k])]++;
+    }
+    for (int tile = 1; tile < tiles; tile++) {
+      tileStarts[tile] += tileStarts[tile - 1];
+    }
+    // Each tile is filled backwards from its end, which leaves its start behind once done
+    for (int k = count - 1; k >= 0; k--) {
+      tiled[--tileStarts[tileOf(agents[k])]] = agents[k];
+    }
+    tileStarts[tiles] = count;
+    int next = 0;
+    for (int band = 0; band < bands; band++) {
+      bandStarts[band] = next;
+      int firstTile = band * tilesPerBand;
+      for (int t = 0; t < tilesPerBand; t++) {
+        int j = (int) (((orderRandom.nextLong(firstTile + t, 1) >>> 32) * (t + 1)) >>> 32);
+        tileOrder[t] = tileOrder[j];
+        tileOrder[j] = firstTile + t;
+      }
+      for (int t = 0; t < tilesPerBand; t++) {
+        int tile = tileOrder[t];
+        int start = next;
+        for (int k = tileStarts[tile]; k < tileStarts[tile + 1]; k++) {
+          int j = start + (int) (((orderRandom.nextLong(next, 0) >>> 32) * (next - start + 1))
+              >>> 32);
+          order[next++] = order[j];
+          order[j] = tiled[k];
+        }
+      }
+    }
+    bandStarts[bands] = count;
+  }
+
+  // Lists the agents of each band in grid order, from a random cell of the band to its end and
+  // then from its first cell to that one
+  private void sweep(StateBuffer states) {
+    int bands = bandStarts.length - 1;
+    int next = 0;
+    for (int band = 0; band < bands; band++) {
+      bandStarts[band] = next;
+      int first = bandRows[band] * width;
+      int end = bandRows[band + 1] * width;
+      int start = first + (int) (((orderRandom.nextLong(band, 2) >>> 32) * (end - first)) >>> 32);
+      for (int i = start; i < end; i++) {
+        if (isListed(states, i)) {
+          order[next++] = i;
+        }
+      }
+      for (int i = first; i < start; i++) {
+        if (isListed(states, i)) {
+          order[next++] = i;
+        }
+      }
+    }
+    count = next;
+    bandStarts[bands] = count;
+  }
+
+  // Returns whether a cell holds an agent, from its state while the index is out of date
+  private boolean isListed(StateBuffer states, int index) {
+    return stale ? holdsAgent(states.get(index)) : positions[index] >= 0;
+  }
+
+  /**
+   * Returns where the agents of a band of rows start within this step's visit order.
+   *
+   * @param fromRow - The first row of a band handed out by {@link ParallelStepper}.
+   * @return - The position of the band's first agent.
+   */
+  int bandStart(int fromRow) {
+    return bandStarts[ParallelStepper.coloredBandOf(rows, fromRow)];
+  }
+
+  /**
+   * Returns where the agents of a band of rows end within this step's visit order.
+   *
+   * @param toRow - One past the last row of a band handed out by {@link ParallelStepper}.
+   * @return - One past the position of the band's last agent.
+   */
+  int bandEnd(int toRow) {
+    return bandStarts[ParallelStepper.coloredBandOf(rows, toRow - 1) + 1];
+  }
+
+  /**
+   * Returns the index of the cell an agent is visited at.
+   *
+   * @param position - The position within this step's visit order.
+   * @return - The row-major index of that agent's cell.
+   */
+  int get(int position) {
+    return order[position];
+  }
+
+  /**
+   * Commits the computed generation and finds the agents it holds.
+   *
+   * <p>Agents only write to their own neighborhoods, so only the cells that held an agent and
+   * their neighbors are committed and looked at; every other cell already holds the same current
+   * and next state. Once those neighborhoods would cover the grid, the whole buffer is swapped
+   * instead, which streams through memory rather than jumping around it, and the agents are left
+   * for the next shuffle to find as it sweeps the grid.
+   *
+   * @param states - The buffer holding the computed generation.
+   */
+  void commit(StateBuffer states) {
+    if (count >= crowdedCount) {
+      states.swap();
+      stale = true;
+      return;
+    }
+    // The visit order still lists every cell that held an agent, while agents changes below
+    int previousCount = count;
+    for (int k = 0; k < previousCount; k++) {
+      int index = order[k];
+      states.commit(index);
+      if (!holdsAgent(states.get(index))) {
+        remove(index);
+      }
+      for (int n = neighborOffsets[index]; n < neighborOffsets[index + 1]; n++) {
+        int neighbor = neighborIndices[n];
+        states.commit(neighbor);
+        if (positions[neighbor] < 0 && holdsAgent(states.get(neighbor))) {
+          add(neighbor);
+        }
+      }
+    }
+  }
+
+  private boolean holdsAgent(int state) {
+    return state >= 0 && state < agentStates.length ? agentStates[state] : isAgent.test(state);
+  }
+
+  private int tileOf(int index) {
+    int band = ParallelStepper.coloredBandOf(rows, index / width);
+    return band * tilesPerBand + index % width / TILE_COLUMNS;
+  }
+
+  private void add(int index) {
+    positions[index] = count;
+    agents[count++] = index;
+  }
+
+  private void remove(int index) {
+    int position = positions[index];
+    int last = agents[--count];
+    agents[position] = last;
+    positions[last] = position;
+    positions[index] = -1;
+  }
+}
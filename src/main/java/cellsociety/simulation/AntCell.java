@@ -1,11 +1,6 @@
 package cellsociety.simulation;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Random;
-import java.util.Set;
 
 /**
  * This class handles the behavior of Cells in the Foraging Ants simulation, and thus the state
@@ -23,15 +18,17 @@ public class AntCell extends Cell {
 
   private static final String TARGET_PHEROMONE_CONCENTRATION = "TargetPheromoneConcentration";
   private static final String PHEROMONE_EVAPORATION_RATE = "PheromoneEvaporationRate";
+  private static final String PHEROMONE_DIFFUSION_RATE = "PheromoneDiffusionRate";
+  private static final String TABU_MEMORY_SIZE = "TabuMemorySize";
   private static final String HAS_FOOD = "HasFood";
+  static final int HOME_PHEROMONE = 0;
+  static final int FOOD_PHEROMONE = 1;
+  private static final int LAYERS = 2;
 
-  private final Random rng;
-  private final double pheromoneEvaporationRate;
-  private final double targetPheromoneConcentration;
-  private double homePheromoneConcentration;
-  private double foodPheromoneConcentration;
+  private Parameters parameters;
   private double hasFood;
-  private List<Cell> previouslyVisitedCells;
+  // The cells the ant here recently visited; created for the first ant and moved along with it
+  private TabuMemory previouslyVisitedCells;
 
   /**
    * Construct this cell with its default state.
@@ -40,19 +37,148 @@ public class AntCell extends Cell {
    */
   public AntCell(Map<String, Double> params) {
     super(EMPTY, params);
-    homePheromoneConcentration = 0;
-    foodPheromoneConcentration = 0;
-    pheromoneEvaporationRate = getParam(PHEROMONE_EVAPORATION_RATE);
-    targetPheromoneConcentration = getParam(TARGET_PHEROMONE_CONCENTRATION);
     hasFood = 0;
-    rng = new Random();
-    previouslyVisitedCells = new ArrayList<>();
+  }
+
+  @Override
+  protected void setParameters(ParameterSnapshot snapshot) {
+    super.setParameters(snapshot);
+    parameters = compileParameters(Parameters.class, Parameters::new);
+  }
+
+  @Override
+  protected boolean drawsRandomNumbers() {
+    return true;
+  }
+
+  @Override
+  protected boolean hasAgents() {
+    return true;
+  }
+
+  @Override
+  protected boolean isAgentState(int state) {
+    return state == ANT;
+  }
+
+  @Override
+  protected int getLayerCount() {
+    return LAYERS;
+  }
+
+  /**
+   * Evaporates the pheromones left on empty cells and, if the PheromoneDiffusionRate parameter is
+   * positive, lets every cell trade that share of its pheromones for the average of its
+   * neighbors'. Obstacles neither hold nor pass on pheromones.
+   */
+  @Override
+  protected void updateLayers(StateBuffer states, int fromRow, int toRow) {
+    int from = fromRow * states.getWidth();
+    int to = toRow * states.getWidth();
+    if (diffusesLayers()) {
+      diffusePheromones(states, from, to);
+      return;
+    }
+    for (int layer = 0; layer < LAYERS; layer++) {
+      evaporate(states, states.getLayer(layer), from, to);
+    }
+  }
+
+  // Evaporates one layer in place. Cells without pheromone are skipped, so they are never written.
+  private void evaporate(StateBuffer states, double[] pheromone, int from, int to) {
+    double evaporationRate = parameters.pheromoneEvaporationRate;
+    for (int i = from; i < to; i++) {
+      double concentration = pheromone[i];
+      if (concentration > 0 && states.get(i) == EMPTY) {
+        pheromone[i] = Math.max(0, concentration - evaporationRate);
+      }
+    }
+  }
+
+  @Override
+  protected boolean diffusesLayers() {
+    return parameters.pheromoneDiffusionRate > 0;
+  }
+
+  @Override
+  protected int getHiddenValueCount() {
+    return 1;
+  }
+
+  @Override
+  protected double getHiddenValue(int value) {
+    return hasFood;
+  }
+
+  @Override
+  protected void setHiddenValue(int value, double number) {
+    hasFood = number;
+  }
+
+  /**
+   * Returns the memory of the ant here as its capacity followed by the cells it remembers, oldest
+   * first.
+   */
+  @Override
+  protected int[] getHiddenSequence() {
+    if (previouslyVisitedCells == null) {
+      return null;
+    }
+    int[] visits = previouslyVisitedCells.toArray();
+    int[] sequence = new int[visits.length + 1];
+    sequence[0] = previouslyVisitedCells.getCapacity();
+    System.arraycopy(visits, 0, sequence, 1, visits.length);
+    return sequence;
+  }
+
+  @Override
+  protected void setHiddenSequence(int[] sequence) {
+    if (sequence == null) {
+      previouslyVisitedCells = null;
+      return;
+    }
+    previouslyVisitedCells = new TabuMemory(sequence[0]);
+    for (int k = 1; k < sequence.length; k++) {
+      previouslyVisitedCells.add(sequence[k]);
+    }
+  }
+
+  private void diffusePheromones(StateBuffer states, int from, int to) {
+    int[] offsets = getCellGrid().getNeighborOffsets();
+    int[] neighbors = getCellGrid().getNeighborIndices();
+    double diffusionRate = parameters.pheromoneDiffusionRate;
+    double evaporationRate = parameters.pheromoneEvaporationRate;
+    for (int layer = 0; layer < LAYERS; layer++) {
+      double[] pheromone = states.getLayer(layer);
+      double[] updated = states.getSpareLayer(layer);
+      for (int i = from; i < to; i++) {
+        int state = states.get(i);
+        if (state == OBSTACLE) {
+          updated[i] = pheromone[i];
+          continue;
+        }
+        double sum = 0;
+        int count = 0;
+        for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+          if (states.get(neighbors[j]) != OBSTACLE) {
+            sum += pheromone[neighbors[j]];
+            count++;
+          }
+        }
+        double concentration = pheromone[i];
+        if (count > 0) {
+          concentration += diffusionRate * (sum / count - concentration);
+        }
+        updated[i] = state == EMPTY ? Math.max(0, concentration - evaporationRate) : concentration;
+      }
+    }
   }
 
   @Override
   protected void setCellState(int state) {
     super.setCellState(state);
     hasFood = 0;
+    previouslyVisitedCells = null;
   }
 
   @Override
@@ -70,22 +196,27 @@ public class AntCell extends Cell {
     }
   }
 
+  @Override
+  protected int getStateCount() {
+    return OBSTACLE + 1;
+  }
+
   /**
    * Computes the next state of this Cell by inspecting its neighbors and then determining the
    * transition accordingly.
    *
    * <p>Foraging Ants Rules are as follows:
+   *
+   * <p>Pheromones on empty cells evaporate in a bulk pass over the whole grid before any ant
+   * moves; see {@link #updateLayers(StateBuffer, int, int)}.
    */
   public void computeNextCellState() {
-    Set<AntCell> availableNeighbors = findAvailableNeighbors();
-
     switch (getCellState()) {
-      case EMPTY -> evaporatePheromones();
       case ANT -> {
         if (this.hasFood == 0) { // Ant does not have food
-          antDoesNotHaveFood(availableNeighbors);
+          antDoesNotHaveFood();
         } else if (this.hasFood == 1) { // Ant has food
-          antHasFood(availableNeighbors);
+          antHasFood();
         }
       }
       case FOOD -> setNextCellState(FOOD);
@@ -94,13 +225,13 @@ public class AntCell extends Cell {
     }
   }
 
-  private void antHasFood(Set<AntCell> availableNeighbors) {
-    AntCell cellToMoveTo = checkHomeMove(availableNeighbors);
+  private void antHasFood() {
+    AntCell cellToMoveTo = checkHomeMove();
     if (cellToMoveTo != null) {
       if (cellToMoveTo.getCellState() == HOME) {
         this.hasFood = 0.0;
         this.setNextCellState(ANT);
-        this.previouslyVisitedCells.clear();
+        visitedCells().clear();
       } else if (cellToMoveTo.getCellState() == FOOD || cellToMoveTo.getCellState() == ANT) {
         this.setNextCellState(ANT);
       } else {
@@ -111,31 +242,35 @@ public class AntCell extends Cell {
 
   private void move(AntCell newCell) {
     if (this.hasFood == 1.0) {
-      this.homePheromoneConcentration = targetPheromoneConcentration;
+      setLayer(HOME_PHEROMONE, parameters.targetPheromoneConcentration);
     } else if (this.hasFood == 0.0) {
-      this.foodPheromoneConcentration = targetPheromoneConcentration;
+      setLayer(FOOD_PHEROMONE, parameters.targetPheromoneConcentration);
     }
-    this.previouslyVisitedCells.add(this);
+    visitedCells().add(getIndex());
     newCell.setNextCellState(ANT);
     newCell.hasFood = this.hasFood;
-    newCell.previouslyVisitedCells = new ArrayList<>(this.previouslyVisitedCells);
-    this.previouslyVisitedCells.clear();
+    newCell.previouslyVisitedCells = this.previouslyVisitedCells;
+    this.previouslyVisitedCells = null;
     this.setNextCellState(EMPTY);
     this.hasFood = 0.0;
   }
 
-  private AntCell checkHomeMove(Set<AntCell> availableNeighbors) {
+  private AntCell checkHomeMove() {
     double maxPheromoneConcentration = 0.0;
     AntCell moveCell = null;
 
-    for (AntCell cell : availableNeighbors) {
+    for (int i = 0; i < getNeighborCount(); i++) {
+      if (!isAvailableNeighbor(i)) {
+        continue;
+      }
+      AntCell cell = (AntCell) getNeighbor(i);
       if (cell.getCellState() == HOME) { // If HOME is in range?
         return cell;
-      } else if (cell.homePheromoneConcentration > maxPheromoneConcentration
-          && !this.previouslyVisitedCells
-          .contains(cell)) { // Most pheromones? (but not just visited)
+      } else if (getNeighborLayer(HOME_PHEROMONE, i) > maxPheromoneConcentration
+          && !visitedCells().contains(getNeighborIndex(i))) {
+        // Most pheromones? (but not just visited)
         moveCell = cell;
-        maxPheromoneConcentration = cell.homePheromoneConcentration;
+        maxPheromoneConcentration = getNeighborLayer(HOME_PHEROMONE, i);
       }
     }
 
@@ -143,37 +278,28 @@ public class AntCell extends Cell {
       return moveCell;
     }
 
-    return getRandomCell(availableNeighbors);
-  }
-
-  private AntCell getRandomCell(Set<AntCell> availableNeighbors) {
-    AntCell moveCell;// If none of the above, settle for random...
-    if (availableNeighbors.size() > 0) {
-      int index = rng.nextInt(availableNeighbors.size());
-      moveCell = getRandomNeighbor(availableNeighbors, index);
-      return moveCell;
-    }
-    return null;
+    return getRandomCell();
   }
 
-  private AntCell getRandomNeighbor(Set<AntCell> neighbors, int index) {
-    int i = 0;
-    for (AntCell cell : neighbors) {
-      if (i == index) {
-        return cell;
+  // Picks uniformly among the available neighbors by reservoir sampling.
+  private AntCell getRandomCell() {
+    int moveCell = -1;// If none of the above, settle for random...
+    int candidates = 0;
+    for (int i = 0; i < getNeighborCount(); i++) {
+      if (isAvailableNeighbor(i) && randomDraw(candidates) * ++candidates < 1) {
+        moveCell = i;
       }
-      i++;
     }
-    return null;
+    return moveCell < 0 ? null : (AntCell) getNeighbor(moveCell);
   }
 
-  private void antDoesNotHaveFood(Set<AntCell> availableNeighbors) {
-    AntCell move = checkFoodMove(availableNeighbors);
+  private void antDoesNotHaveFood() {
+    AntCell move = checkFoodMove();
     if (move != null) {
       if (move.getCellState() == FOOD) {
         this.hasFood = 1.0;
         this.setNextCellState(ANT);
-        this.previouslyVisitedCells.clear();
+        visitedCells().clear();
       } else if (move.getCellState() == HOME || move.getCellState() == ANT) {
         this.setNextCellState(ANT);
       } else {
@@ -182,18 +308,22 @@ public class AntCell extends Cell {
     }
   }
 
-  private AntCell checkFoodMove(Set<AntCell> availableNeighbors) {
+  private AntCell checkFoodMove() {
     double maxPheromoneConcentration = 0.0;
     AntCell moveCell = null;
 
-    for (AntCell cell : availableNeighbors) {
+    for (int i = 0; i < getNeighborCount(); i++) {
+      if (!isAvailableNeighbor(i)) {
+        continue;
+      }
+      AntCell cell = (AntCell) getNeighbor(i);
       if (cell.getCellState() == FOOD) { // If FOOD is in range?
         return cell;
-      } else if (cell.foodPheromoneConcentration > maxPheromoneConcentration
-          && !this.previouslyVisitedCells
-          .contains(cell)) { // Most pheromones? (and not recently visited)
+      } else if (getNeighborLayer(FOOD_PHEROMONE, i) > maxPheromoneConcentration
+          && !visitedCells().contains(getNeighborIndex(i))) {
+        // Most pheromones? (and not recently visited)
         moveCell = cell;
-        maxPheromoneConcentration = cell.foodPheromoneConcentration;
+        maxPheromoneConcentration = getNeighborLayer(FOOD_PHEROMONE, i);
       }
     }
 
@@ -202,28 +332,36 @@ public class AntCell extends Cell {
     }
 
     // If none of the above, settle for random...
-    return getRandomCell(availableNeighbors);
+    return getRandomCell();
   }
 
-  private Set<AntCell> findAvailableNeighbors() {
-    Set<AntCell> availableNeighbors = new HashSet<>();
-    for (Cell cell : getNeighbors()) {
-      if ((cell.getCellState() != OBSTACLE && cell.getNextCellState() != OBSTACLE &&
-          cell.getCellState() != ANT && cell.getNextCellState() != ANT)) {
-        availableNeighbors.add((AntCell) cell);
-      }
+  // Returns the memory of the ant in this cell, giving it one if this is its first move.
+  private TabuMemory visitedCells() {
+    if (previouslyVisitedCells == null) {
+      previouslyVisitedCells = new TabuMemory((int) parameters.tabuMemorySize);
     }
-    return availableNeighbors;
+    return previouslyVisitedCells;
   }
 
-  private void evaporatePheromones() {
-    if (this.homePheromoneConcentration > 0) {
-      this.homePheromoneConcentration =
-          Math.max(0, this.homePheromoneConcentration - this.pheromoneEvaporationRate);
-    }
-    if (this.foodPheromoneConcentration > 0) {
-      this.foodPheromoneConcentration =
-          Math.max(0, this.foodPheromoneConcentration - this.pheromoneEvaporationRate);
+  private boolean isAvailableNeighbor(int neighbor) {
+    int state = getNeighborState(neighbor);
+    int nextState = getNeighborNextState(neighbor);
+    return state != OBSTACLE && nextState != OBSTACLE && state != ANT && nextState != ANT;
+  }
+
+  // The pheromone parameters, compiled once per parameter snapshot
+  private static final class Parameters {
+
+    private final double targetPheromoneConcentration;
+    private final double pheromoneEvaporationRate;
+    private final double pheromoneDiffusionRate;
+    private final double tabuMemorySize;
+
+    private Parameters(ParameterSnapshot snapshot) {
+      targetPheromoneConcentration = snapshot.get(TARGET_PHEROMONE_CONCENTRATION);
+      pheromoneEvaporationRate = snapshot.get(PHEROMONE_EVAPORATION_RATE);
+      pheromoneDiffusionRate = snapshot.get(PHEROMONE_DIFFUSION_RATE);
+      tabuMemorySize = snapshot.get(TABU_MEMORY_SIZE);
     }
   }
 }
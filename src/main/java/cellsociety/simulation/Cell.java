@@ -1,36 +1,39 @@
 package cellsociety.simulation;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * A general cell type.
  *
  * @author Joshua Petitma
  * <p>Cells hold state and examine their neighboring states to determine whether or not they
- * must change state.
+ * must change state. The state itself lives in a shared {@link StateBuffer}; a cell is a view onto
+ * its slot in that buffer.
  */
 public abstract class Cell {
 
-  private List<Cell> neighbors;
-  private int cellState;
-  private int nextCellState;
-  private int posX;
-  private int posY;
+  // Null until the cell is attached to its simulation's buffer
+  private StateBuffer states;
+  // Until attached, a cell holds only its initial state and the layer values its constructor sets
+  private int initialState;
+  private double[] initialLayers;
+  private CellGrid grid;
+  private CellRandom random;
+  private int index;
   private Map<String, Double> params;
+  private ParameterSnapshot parameters;
 
   /**
    * Constructs a cell with the specified state.
    *
-   * <p>Cells must contain state and have neighbors, the list of neighbors for this cell is
-   * instantiated within this constructor
+   * <p>Cells must contain state and have neighbors; the neighbors of this cell are provided by the
+   * {@link CellGrid} it is placed in.
    *
    * @param cellState - The initial state of the cell.
    */
   protected Cell(int cellState) {
-    this.cellState = cellState;
-    neighbors = new ArrayList<>();
+    this.initialState = cellState;
   }
 
   /**
@@ -44,6 +47,227 @@ public abstract class Cell {
     this.params = params;
   }
 
+  /**
+   * Binds this cell to a slot within a simulation's shared {@link StateBuffer}.
+   *
+   * <p>Until attached a cell keeps only its initial state and layer values, in plain fields;
+   * attaching carries them over so that the shared buffer becomes the only place the state lives.
+   * Its next state and attributes start at 0.
+   *
+   * @param buffer - The buffer holding every cell's state.
+   * @param index  - The row-major index of this cell within the buffer.
+   */
+  protected void attach(StateBuffer buffer, int index) {
+    buffer.set(index, getCellState());
+    buffer.setNext(index, 0);
+    for (int i = 0; i < getAttributeCount(); i++) {
+      buffer.setAttribute(i, index, 0);
+      buffer.setNextAttribute(i, index, 0);
+    }
+    for (int i = 0; i < getLayerCount(); i++) {
+      buffer.setLayerValue(i, index, getLayer(i));
+    }
+    this.states = buffer;
+    this.index = index;
+    this.initialLayers = null;
+  }
+
+  /**
+   * Returns the number of numeric attributes each cell of this type keeps in its
+   * {@link StateBuffer}.
+   *
+   * <p>Cell types whose agents carry values from cell to cell override this, and read and write
+   * those values with {@link #getAttribute(int)} and its siblings.
+   *
+   * @return - The number of attributes per cell; 0 unless overridden.
+   */
+  protected int getAttributeCount() {
+    return 0;
+  }
+
+  /**
+   * Returns the current value of one of this cell's attributes.
+   *
+   * @param attribute - Which attribute to read.
+   * @return - The current value of that attribute.
+   */
+  protected double getAttribute(int attribute) {
+    return states.getAttribute(attribute, index);
+  }
+
+  /**
+   * Sets both the current and next value of one of this cell's attributes.
+   *
+   * @param attribute - Which attribute to write.
+   * @param value     - The value the attribute now holds.
+   */
+  protected void setAttribute(int attribute, double value) {
+    states.setAttribute(attribute, index, value);
+  }
+
+  /**
+   * Sets the value one of this cell's attributes will hold next generation.
+   *
+   * @param attribute - Which attribute to write.
+   * @param value     - The value the attribute will hold on the next generation.
+   */
+  protected void setNextAttribute(int attribute, double value) {
+    states.setNextAttribute(attribute, index, value);
+  }
+
+  /**
+   * Returns the number of field layers each cell of this type has in its {@link StateBuffer}.
+   *
+   * <p>Cell types that leave passive values behind in the grid override this, read and write
+   * those values with {@link #getLayer(int)} and its siblings, and update them for the whole grid
+   * in {@link #updateLayers(StateBuffer, int, int)}.
+   *
+   * @return - The number of layers per cell; 0 unless overridden.
+   */
+  protected int getLayerCount() {
+    return 0;
+  }
+
+  /**
+   * Returns the value of one layer at this cell.
+   *
+   * @param layer - Which layer to read.
+   * @return - The value of that layer here.
+   */
+  protected double getLayer(int layer) {
+    if (states == null) {
+      return initialLayers == null ? 0 : initialLayers[layer];
+    }
+    return states.getLayerValue(layer, index);
+  }
+
+  /**
+   * Sets the value of one layer at this cell. The change is seen at once.
+   *
+   * @param layer - Which layer to write.
+   * @param value - The value the layer now holds here.
+   */
+  protected void setLayer(int layer, double value) {
+    if (states == null) {
+      if (initialLayers == null) {
+        initialLayers = new double[getLayerCount()];
+      }
+      initialLayers[layer] = value;
+      return;
+    }
+    states.setLayerValue(layer, index, value);
+  }
+
+  /**
+   * Returns the value of one layer at a neighbor of this cell.
+   *
+   * @param layer    - Which layer to read.
+   * @param neighbor - The position of the neighbor in this cell's neighbor list.
+   * @return - The value of that layer at that neighbor.
+   */
+  protected double getNeighborLayer(int layer, int neighbor) {
+    return states.getLayerValue(layer, getNeighborIndex(neighbor));
+  }
+
+  /**
+   * Updates the layers of every cell in a band of rows in one bulk pass, before any cell computes
+   * its next state.
+   *
+   * <p>Called on one cell of the simulation for each band of rows, possibly on several threads at
+   * once. A pass in which each cell only reads its own layers updates them in place. A pass that
+   * reads its neighbors' layers, such as diffusion, must instead fill the spare layers
+   * ({@link StateBuffer#getSpareLayer(int)}) of every cell in its rows and return true from
+   * {@link #diffusesLayers()}; the simulation swaps them in once every band is done. Does nothing
+   * unless overridden.
+   *
+   * @param states  - The buffer holding every cell's state and layers.
+   * @param fromRow - The first row of the band.
+   * @param toRow   - One past the last row of the band.
+   */
+  protected void updateLayers(StateBuffer states, int fromRow, int toRow) {
+  }
+
+  /**
+   * Returns whether this step's pass over the layers fills the spare layers rather than updating
+   * the layers in place.
+   *
+   * @return - true if the layers must be swapped after {@link #updateLayers(StateBuffer, int,
+   *     int)}; false unless overridden.
+   */
+  protected boolean diffusesLayers() {
+    return false;
+  }
+
+  /**
+   * Returns the number of numeric values each cell of this type keeps in its own fields rather
+   * than in its {@link StateBuffer}, such as the sugar a SugarScape agent carries.
+   *
+   * <p>Checkpoints save and restore these along with the buffer, through
+   * {@link #getHiddenValue(int)} and {@link #setHiddenValue(int, double)}.
+   *
+   * @return - The number of hidden values per cell; 0 unless overridden.
+   */
+  protected int getHiddenValueCount() {
+    return 0;
+  }
+
+  /**
+   * Returns one of the values this cell keeps in its own fields.
+   *
+   * @param value - Which value to read, below {@link #getHiddenValueCount()}.
+   * @return - The value.
+   */
+  protected double getHiddenValue(int value) {
+    throw new IndexOutOfBoundsException("No hidden value " + value);
+  }
+
+  /**
+   * Restores one of the values this cell keeps in its own fields, as saved by a checkpoint.
+   *
+   * @param value  - Which value to write, below {@link #getHiddenValueCount()}.
+   * @param number - The value it held when the checkpoint was saved.
+   */
+  protected void setHiddenValue(int value, double number) {
+    throw new IndexOutOfBoundsException("No hidden value " + value);
+  }
+
+  /**
+   * Returns the variable-length data this cell keeps in its own fields, such as the cells a
+   * Foraging Ant remembers visiting, for checkpoints to save.
+   *
+   * @return - The data as non-negative ints, or null if the cell holds none; null unless
+   *     overridden.
+   */
+  protected int[] getHiddenSequence() {
+    return null;
+  }
+
+  /**
+   * Restores the data returned by {@link #getHiddenSequence()} when a checkpoint was saved.
+   *
+   * @param sequence - The data the cell held, or null if it held none.
+   */
+  protected void setHiddenSequence(int[] sequence) {
+  }
+
+  /**
+   * Returns the grid this cell belongs to.
+   *
+   * @return - The grid that determines this cell's neighbors.
+   */
+  protected CellGrid getCellGrid() {
+    return grid;
+  }
+
+  /**
+   * Returns the row-major index of this cell within its simulation.
+   *
+   * @return - The index this cell's state is stored under.
+   */
+  protected int getIndex() {
+    return index;
+  }
+
   /**
    * The integer encoding for this cell.
    *
@@ -61,7 +285,7 @@ public abstract class Cell {
    * @return The current state of the cell.
    */
   protected int getNextCellState() {
-    return nextCellState;
+    return states.getNext(index);
   }
 
   /**
@@ -70,7 +294,7 @@ public abstract class Cell {
    * @param state - The state which the cell will become on the next generation
    */
   protected void setNextCellState(int state) {
-    nextCellState = state;
+    states.setNext(index, state);
   }
 
   /**
@@ -82,16 +306,6 @@ public abstract class Cell {
    */
   public abstract void computeNextCellState();
 
-  /**
-   * Moves a cell to its currently cached state.
-   *
-   * <p>If the cell has no {@link #nextCellState} then this cell does not advance. Must call {@link
-   * #computeNextCellState} before calling.
-   */
-  protected void updateCellState() {
-    cellState = nextCellState;
-  }
-
   /**
    * Sets the next state of the cell while also passing a list of values it may use to initialize
    * itself.
@@ -103,92 +317,219 @@ public abstract class Cell {
   }
 
   /**
-   * Adds a neighbor to the list of neighboring cells.
+   * The internal Y position of this cell.
    *
-   * @param neighbor - The cell to be added to the list.
+   * <p>Returns the Y placement this cell has within the simulation grid.
    */
-  protected void addNeighbor(Cell neighbor) {
-    neighbors.add(neighbor);
+  public int getY() {
+    return index / states.getWidth();
   }
 
   /**
-   * Removes a neighbor from the list of neighboring cells.
+   * The internal X position of this cell.
    *
-   * @param neighbor - The cell to be removed from the list.
+   * <p>Returns the X placement this cell has within the simulation grid.
    */
-  protected void removeNeighbor(Cell neighbor) {
-    neighbors.remove(neighbor);
+  public int getX() {
+    return index % states.getWidth();
   }
 
   /**
-   * The internal Y position of this cell.
+   * Asks the cell to modify its state.
    *
-   * <p>Returns the Y placement this cell has within the simulation grid.
+   * <p>When poked a cell will change its current state.
    */
-  public int getY() {
-    return posY;
+  public void poke() {
   }
 
   /**
-   * Sets the internal Y position of this cell.
+   * Places this cell within the grid that determines its neighbors.
    *
-   * @param posY - The placement Y this cell has within a grid.
+   * @param grid - The grid this cell belongs to.
    */
-  protected void setY(int posY) {
-    this.posY = posY;
+  protected void setCellGrid(CellGrid grid) {
+    this.grid = grid;
   }
 
   /**
-   * The internal X position of this cell.
+   * Provides the seeded source this cell draws random numbers from.
    *
-   * <p>Returns the X placement this cell has within the simulation grid.
+   * @param random - The random source shared by every cell in the simulation.
    */
-  public int getX() {
-    return posX;
+  protected void setRandom(CellRandom random) {
+    this.random = random;
   }
 
   /**
-   * Sets the internal X position of this cell.
+   * Returns a random double in [0, 1) for this cell and generation.
    *
-   * @param posX - The placement X this cell has within a grid.
+   * <p>The same draw number always yields the same value within a generation, so a rule needing
+   * several independent numbers must ask for draws 0, 1, 2 and so on.
+   *
+   * @param draw - Which of this cell's draws this generation is being requested.
+   * @return - A pseudo-random double in [0, 1).
    */
-  public void setX(int posX) {
-    this.posX = posX;
+  protected double randomDraw(int draw) {
+    return random.nextDouble(index, draw);
   }
 
   /**
-   * Asks the cell to modify its state.
+   * Whether this cell's rule draws random numbers through {@link #randomDraw(int)}.
    *
-   * <p>When poked a cell will change its current state.
+   * @return - true if the rule draws random numbers; false unless overridden.
    */
-  public void poke() {
+  protected boolean drawsRandomNumbers() {
+    return false;
+  }
+
+  /**
+   * Returns the number of states a cell of this type can be in.
+   *
+   * <p>States are numbered from 0 up, so every state of the type is below this number.
+   *
+   * @return - The number of states.
+   */
+  protected abstract int getStateCount();
+
+  /**
+   * Whether this cell's rule only reads its neighbors and only writes its own next state.
+   *
+   * <p>Cells with local rules can be computed in any order, and therefore in parallel.
+   *
+   * @return - true if the rule never writes to another cell.
+   */
+  protected boolean hasLocalRule() {
+    return false;
   }
 
   /**
-   * Retrieves the list of current neighbors the cell uses to set its state.
+   * Whether cells of this type are inert unless they hold an agent.
    *
-   * @return - A list of cells that this cell uses to calculate its next state
+   * <p>The simulation only computes the cells holding an agent, as told by
+   * {@link #isAgentState(int)}, and keeps every other cell as it is. Such agents may only move,
+   * spawn into or clear the cells of their own neighborhood, and anything left behind in the
+   * empty cells must be updated in {@link #updateLayers(StateBuffer, int, int)} instead.
+   *
+   * @return - true if only cells holding an agent need computing; false unless overridden.
+   */
+  protected boolean hasAgents() {
+    return false;
+  }
+
+  /**
+   * Whether a cell of this type in the given state holds an agent.
+   *
+   * @param state - The state to check.
+   * @return - true if a cell in that state holds an agent; false unless overridden.
+   */
+  protected boolean isAgentState(int state) {
+    return false;
+  }
+
+  /**
+   * Returns the number of neighbors this cell uses to set its state.
+   *
+   * @return - The number of neighboring cells.
    */
-  protected List<Cell> getNeighbors() {
-    return this.neighbors;
+  protected int getNeighborCount() {
+    int[] offsets = grid.getNeighborOffsets();
+    return offsets[index + 1] - offsets[index];
   }
 
   /**
-   * Set the neighbors of this Cell
+   * Returns the row-major index of one of this cell's neighbors.
    *
-   * @param neighbors the new neighbors of this Cell
+   * @param neighbor - Which neighbor to look up, from 0 to {@link #getNeighborCount()} - 1.
+   * @return - The index of that neighbor within the simulation.
    */
-  public void setNeighbors(List<Cell> neighbors) {
-    this.neighbors = neighbors;
+  protected int getNeighborIndex(int neighbor) {
+    return grid.getNeighborIndices()[grid.getNeighborOffsets()[index] + neighbor];
+  }
+
+  /**
+   * Returns the current state of one of this cell's neighbors.
+   *
+   * @param neighbor - Which neighbor to look up, from 0 to {@link #getNeighborCount()} - 1.
+   * @return - The current state of that neighbor.
+   */
+  protected int getNeighborState(int neighbor) {
+    return states.get(getNeighborIndex(neighbor));
+  }
+
+  /**
+   * Returns the state one of this cell's neighbors will hold next generation.
+   *
+   * @param neighbor - Which neighbor to look up, from 0 to {@link #getNeighborCount()} - 1.
+   * @return - The next state of that neighbor.
+   */
+  protected int getNeighborNextState(int neighbor) {
+    return states.getNext(getNeighborIndex(neighbor));
+  }
+
+  /**
+   * Returns one of this cell's neighbors.
+   *
+   * <p>Only rules that need to reach into another cell's fields should use this; rules that only
+   * read states should prefer {@link #getNeighborState(int)}.
+   *
+   * @param neighbor - Which neighbor to look up, from 0 to {@link #getNeighborCount()} - 1.
+   * @return - The neighboring cell.
+   */
+  protected Cell getNeighbor(int neighbor) {
+    return grid.getCell(getNeighborIndex(neighbor));
+  }
+
+  /**
+   * Counts the neighbors of this cell that are currently in the given state.
+   *
+   * @param state - The state to look for.
+   * @return - The number of neighbors in that state.
+   */
+  protected int countNeighborsInState(int state) {
+    int[] offsets = grid.getNeighborOffsets();
+    int[] neighbors = grid.getNeighborIndices();
+    int count = 0;
+    for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+      if (states.get(neighbors[i]) == state) {
+        count++;
+      }
+    }
+    return count;
   }
 
   /**
    * Returns a specific rule from within this cell.
    *
-   * <p>Calling this will retrieve a rule from this cell's corresponding simulation.
+   * <p>Calling this will retrieve a rule from this cell's corresponding simulation. This is a map
+   * lookup, so rules read their parameters from {@link #compileParameters(Class, Function)}
+   * inside their hot loops instead.
    */
   protected double getParam(String key) {
-    return params.getOrDefault(key, -1.0);
+    return parameters == null ? params.getOrDefault(key, -1.0) : parameters.get(key);
+  }
+
+  /**
+   * Provides the parameters this cell's rule runs with.
+   *
+   * <p>Called once the cell joins a simulation, and again at the start of any step after its
+   * parameters were changed. Cell types override this to compile the values they need.
+   *
+   * @param parameters - The parameters shared by every cell in the simulation.
+   */
+  protected void setParameters(ParameterSnapshot parameters) {
+    this.parameters = parameters;
+  }
+
+  /**
+   * Returns this cell type's compiled view of the current parameters.
+   *
+   * @param type     - The class of the compiled parameters.
+   * @param compiler - Builds the compiled parameters from a snapshot.
+   * @param <T>      - The type of the compiled parameters.
+   * @return - The compiled parameters, shared by every cell of this type.
+   */
+  protected <T> T compileParameters(Class<T> type, Function<ParameterSnapshot, T> compiler) {
+    return parameters.compile(type, compiler);
   }
 
   /**
@@ -197,7 +538,7 @@ public abstract class Cell {
    * @return the current cellState of this Cell
    */
   public int getCellState() {
-    return cellState;
+    return states == null ? initialState : states.get(index);
   }
 
   /**
@@ -206,6 +547,10 @@ public abstract class Cell {
    * @param state - The cell state to turn this cell into.
    */
   protected void setCellState(int state) {
-    this.cellState = state;
+    if (states == null) {
+      initialState = state;
+      return;
+    }
+    states.set(index, state);
   }
 }
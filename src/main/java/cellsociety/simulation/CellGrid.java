@@ -3,22 +3,35 @@ package cellsociety.simulation;
 import cellsociety.util.SimulationConfiguration.CellNeighborhoodSize;
 import cellsociety.util.SimulationConfiguration.CellShape;
 import cellsociety.util.SimulationConfiguration.SimulationEdgeType;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * A Grid that configures cells in a certain patten and sets the neighbors for for it's held cells.
  *
  * @author Joshua Petitma
- * <p>CellGrids use an algorithm to create the neighbors of the the passed in cells.
+ * <p>CellGrids use an algorithm to create the neighbors of the the passed in cells. Neighbors are
+ * stored in compressed sparse-row form: the neighbors of the cell at row-major index {@code i} are
+ * {@code neighborIndices[neighborOffsets[i]]} up to (but not including) {@code
+ * neighborIndices[neighborOffsets[i + 1]]}. The reverse relation, the cells that count cell {@code
+ * i} as one of their neighbors, is stored the same way.
  */
 public class CellGrid {
 
-  private final List<List<Cell>> grid;
-  private final double platformWidth;
-  private final double platformHeight;
+  private static final int MAX_RECTANGLE_NEIGHBORS = 8;
+  private static final int MAX_TRIANGLE_NEIGHBORS = 12;
+  private static final int MAX_HEXAGON_NEIGHBORS = 6;
+
+  private final List<Cell> cells;
+  private final int width;
+  private final int height;
   private final SimulationEdgeType type;
   private final int neighborhood;
+  private final int[] neighborOffsets;
+  private int[] neighborIndices;
+  private int neighborCount;
+  private final int[] reverseNeighborOffsets;
+  private final int[] reverseNeighborIndices;
 
   /**
    * Constructs a rectangular grid with the specified configuration.
@@ -37,17 +50,12 @@ public class CellGrid {
       CellShape shape,
       SimulationEdgeType type,
       CellNeighborhoodSize nSize) {
-    this.grid = new ArrayList<>();
-    this.platformWidth = gridWidth;
-    this.platformHeight = gridHeight;
+    this.cells = cells;
+    this.width = gridWidth;
+    this.height = gridHeight;
     this.type = type;
-    for (int i = 0, count = 0; i < platformHeight && count < cells.size(); i++) {
-      grid.add(new ArrayList<>());
-      for (int j = 0; j < platformWidth && count < cells.size(); j++, count++) {
-        cells.get(count).setY(i);
-        cells.get(count).setX(j);
-        grid.get(i).add(cells.get(count));
-      }
+    for (Cell cell : cells) {
+      cell.setCellGrid(this);
     }
 
     switch (nSize) {
@@ -56,34 +64,59 @@ public class CellGrid {
       case LARGE -> this.neighborhood = 3;
       default -> this.neighborhood = 3;
     }
+    this.neighborOffsets = new int[width * height + 1];
     switch (shape) {
-      case TRIANGLE -> createTriNeighbors();
-      case HEXAGON -> createHexNeighbors();
-      default -> createNeighbors();
+      case TRIANGLE -> {
+        neighborIndices = new int[width * height * MAX_TRIANGLE_NEIGHBORS];
+        createTriNeighbors();
+      }
+      case HEXAGON -> {
+        neighborIndices = new int[width * height * MAX_HEXAGON_NEIGHBORS];
+        createHexNeighbors();
+      }
+      default -> {
+        neighborIndices = new int[width * height * MAX_RECTANGLE_NEIGHBORS];
+        createNeighbors();
+      }
+    }
+    neighborOffsets[width * height] = neighborCount;
+    neighborIndices = Arrays.copyOf(neighborIndices, neighborCount);
+
+    // Neighborhoods are not always symmetric (e.g. odd toroidal hexagon grids), so invert them
+    this.reverseNeighborOffsets = new int[width * height + 1];
+    this.reverseNeighborIndices = new int[neighborCount];
+    for (int neighbor : neighborIndices) {
+      reverseNeighborOffsets[neighbor + 1]++;
+    }
+    for (int i = 0; i < width * height; i++) {
+      reverseNeighborOffsets[i + 1] += reverseNeighborOffsets[i];
+    }
+    int[] cursor = Arrays.copyOf(reverseNeighborOffsets, width * height);
+    for (int i = 0; i < width * height; i++) {
+      for (int k = neighborOffsets[i]; k < neighborOffsets[i + 1]; k++) {
+        reverseNeighborIndices[cursor[neighborIndices[k]]++] = i;
+      }
     }
   }
 
   private void createNeighbors() {
-    List<Cell> row;
-    Cell cell;
-    for (int i = 0; i < grid.size(); i++) {
-      row = grid.get(i);
-      for (int j = 0; j < row.size(); j++) {
-        cell = row.get(j);
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        neighborOffsets[i * width + j] = neighborCount;
         if (neighborhood > 1) {
           // Periphery neighbors
-          addCellNeighbor(cell, i - 1, j - 1);
-          addCellNeighbor(cell, i - 1, j + 1);
+          addCellNeighbor(i - 1, j - 1);
+          addCellNeighbor(i - 1, j + 1);
 
-          addCellNeighbor(cell, i + 1, j - 1);
-          addCellNeighbor(cell, i + 1, j + 1);
+          addCellNeighbor(i + 1, j - 1);
+          addCellNeighbor(i + 1, j + 1);
         }
 
-        addCellNeighbor(cell, i - 1, j);
-        addCellNeighbor(cell, i + 1, j);
+        addCellNeighbor(i - 1, j);
+        addCellNeighbor(i + 1, j);
 
-        addCellNeighbor(cell, i, j - 1);
-        addCellNeighbor(cell, i, j + 1);
+        addCellNeighbor(i, j - 1);
+        addCellNeighbor(i, j + 1);
       }
     }
   }
@@ -92,40 +125,37 @@ public class CellGrid {
    * Creates triangular neighbors
    */
   private void createTriNeighbors() {
-    List<Cell> row;
-    Cell cell;
     boolean other = true;
-    for (int i = 0; i < grid.size(); i++) {
-      row = grid.get(i);
-      for (int j = 0; j < row.size(); j++) {
-        cell = row.get(j);
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        neighborOffsets[i * width + j] = neighborCount;
 
-        addCellNeighbor(cell, i + 1, j);
-        addCellNeighbor(cell, i - 1, j);
+        addCellNeighbor(i + 1, j);
+        addCellNeighbor(i - 1, j);
         if (neighborhood > 1) {
-          addCellNeighbor(cell, i - 1, j - 1);
-          addCellNeighbor(cell, i - 1, j + 1);
-          addCellNeighbor(cell, i + 1, j + 1);
-          addCellNeighbor(cell, i + 1, j - 1);
+          addCellNeighbor(i - 1, j - 1);
+          addCellNeighbor(i - 1, j + 1);
+          addCellNeighbor(i + 1, j + 1);
+          addCellNeighbor(i + 1, j - 1);
         }
 
         if (neighborhood > 1) {
           if (other) {
-            addCellNeighbor(cell, i - 1, j - 2);
-            addCellNeighbor(cell, i - 1, j + 2);
+            addCellNeighbor(i - 1, j - 2);
+            addCellNeighbor(i - 1, j + 2);
           } else {
-            addCellNeighbor(cell, i + 1, j - 2);
-            addCellNeighbor(cell, i + 1, j + 2);
+            addCellNeighbor(i + 1, j - 2);
+            addCellNeighbor(i + 1, j + 2);
           }
         }
 
         if (neighborhood > 2) {
-          addCellNeighbor(cell, i, j - 2);
-          addCellNeighbor(cell, i, j + 2);
+          addCellNeighbor(i, j - 2);
+          addCellNeighbor(i, j + 2);
         }
 
-        addCellNeighbor(cell, i, j - 1);
-        addCellNeighbor(cell, i, j + 1);
+        addCellNeighbor(i, j - 1);
+        addCellNeighbor(i, j + 1);
         other = !other;
       }
       other = !other;
@@ -133,28 +163,25 @@ public class CellGrid {
   }
 
   private void createHexNeighbors() {
-    List<Cell> row;
-    Cell cell;
     boolean other = true;
-    for (int i = 0; i < grid.size(); i++) {
-      row = grid.get(i);
-      for (int j = 0; j < row.size(); j++) {
-        cell = row.get(j);
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        neighborOffsets[i * width + j] = neighborCount;
 
-        addCellNeighbor(cell, i - 1, j);
-        addCellNeighbor(cell, i + 1, j);
+        addCellNeighbor(i - 1, j);
+        addCellNeighbor(i + 1, j);
         if (neighborhood > 2) {
           if (other) {
-            addCellNeighbor(cell, i + 1, j - 1);
-            addCellNeighbor(cell, i - 1, j - 1);
+            addCellNeighbor(i + 1, j - 1);
+            addCellNeighbor(i - 1, j - 1);
           } else {
-            addCellNeighbor(cell, i + 1, j + 1);
-            addCellNeighbor(cell, i - 1, j + 1);
+            addCellNeighbor(i + 1, j + 1);
+            addCellNeighbor(i - 1, j + 1);
           }
 
           if (neighborhood > 2) {
-            addCellNeighbor(cell, i, j - 1);
-            addCellNeighbor(cell, i, j + 1);
+            addCellNeighbor(i, j - 1);
+            addCellNeighbor(i, j + 1);
           }
         }
       }
@@ -163,30 +190,65 @@ public class CellGrid {
   }
 
   /**
-   * Safely add a cell neighbor to a specified cell.
+   * Safely append a neighbor to the cell whose neighbors are currently being built.
    *
-   * @param cell   - The cell that will have a new neighbor
-   * @param row    - The row in the grid in which this cell is found
-   * @param column - The column within the grid this cell is found
+   * <p>On a toroidal grid the position wraps around by any distance, so offsets such as the two
+   * column reach of triangular neighborhoods land on the correct cell.
+   *
+   * @param row    - The row in the grid in which the neighbor is found
+   * @param column - The column within the grid the neighbor is found
    */
-  private void addCellNeighbor(Cell cell, int row, int column) {
+  private void addCellNeighbor(int row, int column) {
     if (this.type == SimulationEdgeType.TOROIDAL) {
-      if (row < 0) {
-        row = grid.size() + row;
-      } else if (row >= grid.size()) {
-        row = 0;
-      }
-      if (column < 0) {
-        column = grid.get(0).size() + column;
-      } else if (column >= grid.get(0).size()) {
-        column = 0;
-      }
+      row = Math.floorMod(row, height);
+      column = Math.floorMod(column, width);
     }
     if (inBounds(row, column)) {
-      cell.addNeighbor(grid.get(row).get(column));
+      neighborIndices[neighborCount++] = row * width + column;
     }
   }
 
+  /**
+   * Returns the offsets into {@link #getNeighborIndices()} at which each cell's neighbors begin.
+   *
+   * <p>The array has one more entry than there are cells, so the neighbors of cell {@code i} always
+   * end at {@code offsets[i + 1]}.
+   *
+   * @return - The neighbor offset of every cell, in row-major order.
+   */
+  public int[] getNeighborOffsets() {
+    return neighborOffsets;
+  }
+
+  /**
+   * Returns the row-major indices of every cell's neighbors, packed back to back.
+   *
+   * @return - The neighbor indices of every cell.
+   */
+  public int[] getNeighborIndices() {
+    return neighborIndices;
+  }
+
+  /**
+   * Returns the offsets into {@link #getReverseNeighborIndices()} at which the cells that count
+   * each cell as a neighbor begin.
+   *
+   * @return - The reverse neighbor offset of every cell, in row-major order.
+   */
+  public int[] getReverseNeighborOffsets() {
+    return reverseNeighborOffsets;
+  }
+
+  /**
+   * Returns the row-major indices of the cells that count each cell as a neighbor, packed back to
+   * back.
+   *
+   * @return - The reverse neighbor indices of every cell.
+   */
+  public int[] getReverseNeighborIndices() {
+    return reverseNeighborIndices;
+  }
+
   /**
    * Returns a cell in a specific grid position. Returns null if that position is not found within
    * the grid.
@@ -195,7 +257,16 @@ public class CellGrid {
    * @param col - The column the cell is found within
    */
   protected Cell getCell(int row, int col) {
-    return grid.get(row).get(col);
+    return cells.get(row * width + col);
+  }
+
+  /**
+   * Returns the cell stored at a row-major index.
+   *
+   * @param index - The row-major index of the cell.
+   */
+  protected Cell getCell(int index) {
+    return cells.get(index);
   }
 
   /**
@@ -205,7 +276,7 @@ public class CellGrid {
    * @param column - The column of the row in which to check.
    */
   private boolean inBounds(int row, int column) {
-    return row >= 0 && column >= 0 && grid.size() > row && grid.get(row).size() > column;
+    return row >= 0 && column >= 0 && height > row && width > column;
   }
 
   /**
@@ -215,6 +286,6 @@ public class CellGrid {
    * @param column - The column in which the cell is located.
    */
   protected void pokeCell(int row, int column) {
-    grid.get(column).get(row).poke();
+    getCell(column, row).poke();
   }
 }
@@ -0,0 +1,118 @@
+package cellsociety.simulation;
+
+/**
+ * A seeded source of random numbers for stochastic cell rules.
+ *
+ * @author Joshua Petitma
+ * <p>Every draw is a pure function of the seed, the current generation, the cell's index and a
+ * per-cell draw number, mixed with the SplitMix64 finalizer. Nothing is shared between threads
+ * and nothing depends on the order in which cells are computed, so a seeded simulation produces
+ * the same result whether it is stepped on one thread or many.
+ */
+class CellRandom {
+
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+  private long seed;
+  private long generation;
+
+  /**
+   * Creates a source with the given seed, starting at generation 0.
+   *
+   * @param seed - The seed every draw is derived from.
+   */
+  CellRandom(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Reseeds this source and restarts it at generation 0.
+   *
+   * @param seed - The seed every draw is derived from.
+   */
+  void setSeed(long seed) {
+    this.seed = seed;
+    this.generation = 0;
+  }
+
+  /**
+   * Returns the seed every draw is derived from.
+   *
+   * @return - The seed of this source.
+   */
+  long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Returns the generation this source is drawing for.
+   *
+   * @return - The number of generations advanced since the source was last seeded.
+   */
+  long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Makes this source draw from an independent stream of another source, at its generation.
+   *
+   * <p>Used when the same cells are reused to evaluate different parts of a larger world: each part
+   * is given its own stream so that no two parts draw the same numbers.
+   *
+   * @param source - The source whose seed and generation to follow.
+   * @param stream - The stream to draw from.
+   */
+  void follow(CellRandom source, long stream) {
+    this.seed = mix64(source.seed + (stream + 1) * GOLDEN_GAMMA);
+    this.generation = source.generation;
+  }
+
+  /**
+   * Moves on to the next generation so that cells draw fresh numbers.
+   */
+  void advance() {
+    generation++;
+  }
+
+  /**
+   * Moves on by the given number of generations at once, as if {@link #advance()} were called
+   * that many times.
+   *
+   * @param generations - The number of generations to move on by.
+   */
+  void advance(long generations) {
+    generation += generations;
+  }
+
+  /**
+   * Returns a uniformly distributed double in [0, 1).
+   *
+   * @param index - The row-major index of the cell drawing the number.
+   * @param draw  - Which of that cell's draws this generation is being requested.
+   * @return - A pseudo-random double in [0, 1).
+   */
+  double nextDouble(int index, int draw) {
+    return (nextLong(index, draw) >>> 11) * DOUBLE_UNIT;
+  }
+
+  /**
+   * Returns a uniformly distributed long.
+   *
+   * @param index - The row-major index of the cell drawing the number.
+   * @param draw  - Which of that cell's draws this generation is being requested.
+   * @return - A pseudo-random long.
+   */
+  long nextLong(int index, int draw) {
+    long z = mix64(seed + generation * GOLDEN_GAMMA);
+    z = mix64(z + (index + 1L) * GOLDEN_GAMMA);
+    return mix64(z + (draw + 1L) * GOLDEN_GAMMA);
+  }
+
+  // Scrambles 64 bits; a bijection, so distinct inputs always give distinct outputs.
+  static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -0,0 +1,454 @@
+package cellsociety.simulation;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The binary format simulations are checkpointed in.
+ *
+ * @author Joshua Petitma
+ * <p>A checkpoint starts with a magic number, the format version and a byte of flags, followed by
+ * the body, which is deflated when the compression flag is set. The body is a sequence of
+ * unsigned LEB128 varints, 8-byte big-endian longs and the planes below; {@link Simulation}
+ * decides what goes in it. Every value is written through a buffer of its own rather than a
+ * {@code DataOutputStream}, so a plane of ten million cells costs ten million array stores and
+ * a few hundred writes to the file.
+ *
+ * <p>A state plane holds one small integer per cell, either as one varint per cell or, when the
+ * grid is made of long runs of one state, as runs of a varint length and a varint state, whichever
+ * is shorter. A value plane holds one double per cell as runs of identical values, each a varint
+ * of the run length and whether the value is a whole number, followed by the value as a zigzag
+ * varint if it is and as its raw bits if not; values are restored bit for bit.
+ */
+class Checkpoint {
+
+  static final int MAGIC = 0x43534b50;
+  static final int VERSION = 1;
+  static final int COMPRESSED = 1;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final int RAW_STATES = 0;
+  private static final int STATE_RUNS = 1;
+
+  // Not instantiable; checkpoints are read and written through Reader and Writer.
+  private Checkpoint() {
+  }
+
+  /**
+   * Writes values to a checkpoint.
+   */
+  static final class Writer implements Closeable {
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position;
+
+    /**
+     * Starts a checkpoint on a stream, writing its magic number, version and flags.
+     *
+     * @param out      - The stream to write the checkpoint to, which the writer closes.
+     * @param compress - Whether to deflate the body.
+     * @throws IOException if the stream cannot be written to.
+     */
+    Writer(OutputStream out, boolean compress) throws IOException {
+      this.buffer = new byte[BUFFER_SIZE];
+      writeLong(((long) MAGIC << 32) | (VERSION << 8) | (compress ? COMPRESSED : 0));
+      out.write(buffer, 0, position);
+      position = 0;
+      this.out = compress
+          ? new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED), BUFFER_SIZE) : out;
+    }
+
+    /**
+     * Writes a non-negative int in as few bytes as it needs.
+     *
+     * @param value - The value to write.
+     */
+    void writeVarint(int value) throws IOException {
+      writeVarlong(value & 0xffffffffL);
+    }
+
+    /**
+     * Writes a long as an unsigned number in as few bytes as it needs.
+     *
+     * @param value - The value to write.
+     */
+    void writeVarlong(long value) throws IOException {
+      ensure(10);
+      // Most states, run lengths and attribute values fit in one byte
+      if ((value & ~0x7fL) == 0) {
+        buffer[position++] = (byte) value;
+        return;
+      }
+      while ((value & ~0x7fL) != 0) {
+        buffer[position++] = (byte) (value | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes a long that may be negative in as few bytes as its magnitude needs.
+     *
+     * @param value - The value to write.
+     */
+    void writeZigzag(long value) throws IOException {
+      writeVarlong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a long in 8 bytes.
+     *
+     * @param value - The value to write.
+     */
+    void writeLong(long value) throws IOException {
+      ensure(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buffer[position++] = (byte) (value >>> shift);
+      }
+    }
+
+    /**
+     * Writes a varint length followed by that many bytes.
+     *
+     * @param bytes - The bytes to write.
+     */
+    void writeBytes(byte[] bytes) throws IOException {
+      writeVarint(bytes.length);
+      flush();
+      out.write(bytes);
+    }
+
+    /**
+     * Writes a list of cell indices in order.
+     *
+     * @param indices - The row-major indices of the cells.
+     */
+    void writeIndices(int[] indices) throws IOException {
+      writeVarint(indices.length);
+      for (int index : indices) {
+        writeVarint(index);
+      }
+    }
+
+    /**
+     * Writes a set of cell indices in no particular order, as the alternating lengths of the runs
+     * of cells outside and inside the set.
+     *
+     * @param indices  - The row-major indices of the cells, each listed once.
+     * @param numCells - The number of cells in the grid.
+     */
+    void writeIndexSet(int[] indices, int numCells) throws IOException {
+      boolean[] members = new boolean[numCells];
+      for (int index : indices) {
+        members[index] = true;
+      }
+      int start = 0;
+      boolean inside = false;
+      for (int i = 0; i <= numCells; i++) {
+        if (i == numCells || members[i] != inside) {
+          writeVarint(i - start);
+          start = i;
+          inside = !inside;
+        }
+      }
+    }
+
+    /**
+     * Writes a state plane.
+     *
+     * @param states - The buffer whose current states to write.
+     */
+    void writeStates(StateBuffer states) throws IOException {
+      int runs = 1;
+      for (int i = 1; i < states.size(); i++) {
+        if (states.get(i) != states.get(i - 1)) {
+          runs++;
+        }
+      }
+      // A run takes at least two bytes where a single state usually takes one
+      if (2L * runs >= states.size()) {
+        writeVarint(RAW_STATES);
+        for (int i = 0; i < states.size(); i++) {
+          writeVarint(states.get(i));
+        }
+        return;
+      }
+      writeVarint(STATE_RUNS);
+      int start = 0;
+      for (int i = 1; i <= states.size(); i++) {
+        if (i == states.size() || states.get(i) != states.get(start)) {
+          writeVarint(i - start);
+          writeVarint(states.get(start));
+          start = i;
+        }
+      }
+    }
+
+    /**
+     * Writes a value plane.
+     *
+     * @param values - One value per cell.
+     */
+    void writeValues(double[] values) throws IOException {
+      int start = 0;
+      long bits = values.length == 0 ? 0 : Double.doubleToRawLongBits(values[0]);
+      for (int i = 1; i <= values.length; i++) {
+        // Past the end, anything but the bits of the last run ends it
+        long next = i < values.length ? Double.doubleToRawLongBits(values[i]) : ~bits;
+        if (next == bits) {
+          continue;
+        }
+        long whole = (long) values[start];
+        boolean isWhole = Double.doubleToRawLongBits(whole) == bits;
+        writeVarlong(((long) (i - start) << 1) | (isWhole ? 1 : 0));
+        if (isWhole) {
+          writeZigzag(whole);
+        } else {
+          writeLong(bits);
+        }
+        start = i;
+        bits = next;
+      }
+    }
+
+    /**
+     * Writes out everything buffered so far.
+     */
+    void flush() throws IOException {
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+
+    /**
+     * Finishes the checkpoint and closes the stream.
+     */
+    @Override
+    public void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        out.close();
+      }
+    }
+
+    private void ensure(int bytes) throws IOException {
+      if (position + bytes > buffer.length) {
+        flush();
+      }
+    }
+  }
+
+  /**
+   * Reads values from a checkpoint.
+   */
+  static final class Reader implements Closeable {
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+
+    /**
+     * Opens a checkpoint on a stream, checking its magic number and version.
+     *
+     * @param in - The stream to read the checkpoint from, which the reader closes.
+     * @throws IOException if the stream cannot be read or does not hold a checkpoint this version
+     *                     can read.
+     */
+    Reader(InputStream in) throws IOException {
+      this.buffer = new byte[BUFFER_SIZE];
+      byte[] start = in.readNBytes(8);
+      long prefix = 0;
+      for (byte b : start) {
+        prefix = (prefix << 8) | (b & 0xff);
+      }
+      if (start.length < 8 || (int) (prefix >>> 32) != MAGIC) {
+        in.close();
+        throw new IOException("Not a simulation checkpoint.");
+      }
+      if ((int) (prefix >>> 8 & 0xffffff) != VERSION) {
+        in.close();
+        throw new IOException("Unsupported checkpoint version " + (prefix >>> 8 & 0xffffff) + ".");
+      }
+      this.in = (prefix & COMPRESSED) != 0
+          ? new InflaterInputStream(in, new Inflater(), BUFFER_SIZE) : in;
+    }
+
+    /**
+     * Reads an int written by {@link Writer#writeVarint(int)}.
+     *
+     * @return - The value read.
+     */
+    int readVarint() throws IOException {
+      long value = readVarlong();
+      if (value >>> 32 != 0) {
+        throw new IOException("Malformed checkpoint.");
+      }
+      return (int) value;
+    }
+
+    /**
+     * Reads a long written by {@link Writer#writeVarlong(long)}.
+     *
+     * @return - The value read.
+     */
+    long readVarlong() throws IOException {
+      if (position < limit && buffer[position] >= 0) {
+        return buffer[position++];
+      }
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        byte b = readByte();
+        value |= (long) (b & 0x7f) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed checkpoint.");
+    }
+
+    /**
+     * Reads a long written by {@link Writer#writeZigzag(long)}.
+     *
+     * @return - The value read.
+     */
+    long readZigzag() throws IOException {
+      long value = readVarlong();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a long written by {@link Writer#writeLong(long)}.
+     *
+     * @return - The value read.
+     */
+    long readLong() throws IOException {
+      long value = 0;
+      for (int k = 0; k < 8; k++) {
+        value = (value << 8) | (readByte() & 0xff);
+      }
+      return value;
+    }
+
+    /**
+     * Reads bytes written by {@link Writer#writeBytes(byte[])}.
+     *
+     * @return - The bytes read.
+     */
+    byte[] readBytes() throws IOException {
+      byte[] bytes = new byte[readVarint()];
+      for (int k = 0; k < bytes.length; k++) {
+        bytes[k] = readByte();
+      }
+      return bytes;
+    }
+
+    /**
+     * Reads a list of cell indices written by {@link Writer#writeIndices(int[])}.
+     *
+     * @param numCells - The number of cells in the grid, which every index must be below.
+     * @return - The row-major indices of the cells, in the order written.
+     */
+    int[] readIndices(int numCells) throws IOException {
+      int[] indices = new int[readVarint()];
+      for (int k = 0; k < indices.length; k++) {
+        indices[k] = readVarint();
+        if (indices[k] >= numCells) {
+          throw new IOException("Malformed checkpoint.");
+        }
+      }
+      return indices;
+    }
+
+    /**
+     * Reads a set of cell indices written by {@link Writer#writeIndexSet(int[], int)}.
+     *
+     * @param numCells - The number of cells in the grid.
+     * @return - The row-major indices of the cells in the set, in ascending order.
+     */
+    int[] readIndexSet(int numCells) throws IOException {
+      int[] indices = new int[numCells];
+      int count = 0;
+      boolean inside = false;
+      for (int i = 0; i < numCells; inside = !inside) {
+        int run = readVarint();
+        if (run > numCells - i) {
+          throw new IOException("Malformed checkpoint.");
+        }
+        for (int end = i + run; i < end; i++) {
+          if (inside) {
+            indices[count++] = i;
+          }
+        }
+      }
+      return Arrays.copyOf(indices, count);
+    }
+
+    /**
+     * Reads a state plane into the current and next states of a buffer.
+     *
+     * @param states     - The buffer to read the states into.
+     * @param stateCount - The number of states a cell can hold, which every state must be below.
+     */
+    void readStates(StateBuffer states, int stateCount) throws IOException {
+      int encoding = readVarint();
+      int i = 0;
+      while (i < states.size()) {
+        int run = encoding == STATE_RUNS ? readVarint() : 1;
+        int state = readVarint();
+        if (run > states.size() - i || state >= stateCount) {
+          throw new IOException("Malformed checkpoint.");
+        }
+        for (int end = i + run; i < end; i++) {
+          states.commit(i, state);
+        }
+      }
+    }
+
+    /**
+     * Reads a value plane.
+     *
+     * @param values - The array to read one value per cell into.
+     */
+    void readValues(double[] values) throws IOException {
+      int i = 0;
+      while (i < values.length) {
+        long header = readVarlong();
+        long run = header >>> 1;
+        double value = (header & 1) != 0 ? readZigzag() : Double.longBitsToDouble(readLong());
+        if (run > values.length - i) {
+          throw new IOException("Malformed checkpoint.");
+        }
+        for (long end = i + run; i < end; i++) {
+          values[i] = value;
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    private byte readByte() throws IOException {
+      if (position == limit) {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+          limit = 0;
+          throw new EOFException("Checkpoint ends early.");
+        }
+      }
+      return buffer[position++];
+    }
+  }
+}
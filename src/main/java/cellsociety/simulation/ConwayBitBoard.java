@@ -0,0 +1,248 @@
+package cellsociety.simulation;
+
+import cellsociety.util.SimulationConfiguration;
+import cellsociety.util.SimulationConfiguration.CellNeighborhoodSize;
+import cellsociety.util.SimulationConfiguration.CellShape;
+import cellsociety.util.SimulationConfiguration.SimulationEdgeType;
+import cellsociety.util.SimulationConfiguration.SimulationType;
+import java.util.Arrays;
+
+/**
+ * A bit-sliced engine for Conway's Game of Life on rectangular grids.
+ *
+ * @author Marc Chmielewski
+ * <p>Each row is stored as 64 cells per long, bit {@code c % 64} of word {@code c / 64} holding
+ * column {@code c}. A generation is computed a word at a time: the neighbors of 64 cells are
+ * shifted into place, summed into four bit planes with bitwise adders, and the Alive/Spawn
+ * min/max parameters are applied as masks over those planes. Only the cells that flipped are
+ * written back to the {@link StateBuffer}.
+ */
+class ConwayBitBoard {
+
+  private static final int MAX_NEIGHBORS = 8;
+
+  private final int width;
+  private final int height;
+  private final int wordsPerRow;
+  private final long lastWordMask;
+  private final boolean toroidal;
+  private final boolean vonNeumann;
+  private final boolean[] survive;
+  private final boolean[] spawn;
+  private long[] current;
+  private long[] next;
+
+  /**
+   * Creates an empty board.
+   *
+   * @param width      - The number of cells in each row.
+   * @param height     - The number of rows.
+   * @param toroidal   - Whether the edges wrap around to the opposite side.
+   * @param vonNeumann - Whether only the four orthogonal neighbors count.
+   */
+  ConwayBitBoard(int width, int height, boolean toroidal, boolean vonNeumann) {
+    this.width = width;
+    this.height = height;
+    this.wordsPerRow = (width + Long.SIZE - 1) / Long.SIZE;
+    int lastWordBits = width - (wordsPerRow - 1) * Long.SIZE;
+    this.lastWordMask = lastWordBits == Long.SIZE ? -1L : (1L << lastWordBits) - 1;
+    this.toroidal = toroidal;
+    this.vonNeumann = vonNeumann;
+    this.survive = new boolean[MAX_NEIGHBORS + 1];
+    this.spawn = new boolean[MAX_NEIGHBORS + 1];
+    this.current = new long[wordsPerRow * height];
+    this.next = new long[wordsPerRow * height];
+  }
+
+  /**
+   * Returns whether a configuration can be run on a bit board.
+   *
+   * @param config - The configuration of the simulation.
+   * @return - true for Conway simulations on rectangular grids with normal or toroidal edges.
+   */
+  static boolean supports(SimulationConfiguration config) {
+    return config.getSimulationType() == SimulationType.CONWAY
+        && config.getCellShape() == CellShape.RECTANGLE
+        && config.getEdgeType() != SimulationEdgeType.INFINITE;
+  }
+
+  /**
+   * Creates a board matching a configuration that {@link #supports(SimulationConfiguration)}.
+   *
+   * @param config - The configuration of the simulation.
+   * @return - An empty board with the configuration's geometry.
+   */
+  static ConwayBitBoard forConfiguration(SimulationConfiguration config) {
+    return new ConwayBitBoard(config.getWidth(), config.getHeight(),
+        config.getEdgeType() == SimulationEdgeType.TOROIDAL,
+        config.getNeighborhodSize() == CellNeighborhoodSize.SMALL);
+  }
+
+  /**
+   * Sets the neighbor counts under which live cells survive and dead cells come alive.
+   *
+   * @param aliveMin - The fewest live neighbors a live cell survives with.
+   * @param aliveMax - The most live neighbors a live cell survives with.
+   * @param spawnMin - The fewest live neighbors a dead cell comes alive with.
+   * @param spawnMax - The most live neighbors a dead cell comes alive with.
+   */
+  void setRule(double aliveMin, double aliveMax, double spawnMin, double spawnMax) {
+    for (int count = 0; count <= MAX_NEIGHBORS; count++) {
+      survive[count] = count >= aliveMin && count <= aliveMax;
+      spawn[count] = count >= spawnMin && count <= spawnMax;
+    }
+  }
+
+  /**
+   * Packs the current states of a buffer into the board.
+   *
+   * @param states - The buffer to read live cells from.
+   */
+  void load(StateBuffer states) {
+    Arrays.fill(current, 0);
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        if (states.get(row * width + col) == ConwayCell.ALIVE) {
+          current[row * wordsPerRow + col / Long.SIZE] |= 1L << col;
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the next generation of the given rows.
+   *
+   * <p>Only the next board is written, so separate ranges of rows may be computed in parallel.
+   *
+   * @param fromRow - The first row to compute.
+   * @param toRow   - One past the last row to compute.
+   */
+  void computeRows(int fromRow, int toRow) {
+    for (int row = fromRow; row < toRow; row++) {
+      int above = neighborRow(row - 1);
+      int below = neighborRow(row + 1);
+      for (int word = 0; word < wordsPerRow; word++) {
+        next[row * wordsPerRow + word] = computeWord(above, row, below, word);
+      }
+    }
+  }
+
+  /**
+   * Writes the cells of the given rows that flipped this generation into a buffer.
+   *
+   * @param states  - The buffer to update.
+   * @param fromRow - The first row to write.
+   * @param toRow   - One past the last row to write.
+   */
+  void commitRows(StateBuffer states, int fromRow, int toRow) {
+    for (int i = fromRow * wordsPerRow; i < toRow * wordsPerRow; i++) {
+      long flipped = current[i] ^ next[i];
+      int base = (i / wordsPerRow) * width + (i % wordsPerRow) * Long.SIZE;
+      while (flipped != 0) {
+        int bit = Long.numberOfTrailingZeros(flipped);
+        int state = (next[i] >>> bit & 1L) == 0 ? ConwayCell.DEAD : ConwayCell.ALIVE;
+        states.commit(base + bit, state);
+        flipped &= flipped - 1;
+      }
+    }
+  }
+
+  /**
+   * Makes the computed generation current. Call once every row has been committed.
+   */
+  void swap() {
+    long[] previous = current;
+    current = next;
+    next = previous;
+  }
+
+  // Returns the row to read neighbors from, or -1 for the empty row beyond a normal edge.
+  private int neighborRow(int row) {
+    if (row >= 0 && row < height) {
+      return row;
+    }
+    return toroidal ? Math.floorMod(row, height) : -1;
+  }
+
+  // Computes the next generation of 64 cells at once.
+  private long computeWord(int above, int row, int below, int word) {
+    long self = current[row * wordsPerRow + word];
+    long up = wordAt(above, word);
+    long down = wordAt(below, word);
+
+    long sum0 = 0;
+    long sum1 = 0;
+    long sum2 = 0;
+    long sum3 = 0;
+    int neighborCount = vonNeumann ? 4 : MAX_NEIGHBORS;
+    for (int i = 0; i < neighborCount; i++) {
+      long neighbor = switch (i) {
+        case 0 -> up;
+        case 1 -> down;
+        case 2 -> west(row, word);
+        case 3 -> east(row, word);
+        case 4 -> west(above, word);
+        case 5 -> east(above, word);
+        case 6 -> west(below, word);
+        default -> east(below, word);
+      };
+      // Ripple-carry add of one bit into the four-bit count of every cell
+      long carry0 = sum0 & neighbor;
+      sum0 ^= neighbor;
+      long carry1 = sum1 & carry0;
+      sum1 ^= carry0;
+      long carry2 = sum2 & carry1;
+      sum2 ^= carry1;
+      sum3 |= carry2;
+    }
+
+    long result = 0;
+    for (int count = 0; count <= MAX_NEIGHBORS; count++) {
+      if (!survive[count] && !spawn[count]) {
+        continue;
+      }
+      long hasCount = ((count & 1) != 0 ? sum0 : ~sum0)
+          & ((count & 2) != 0 ? sum1 : ~sum1)
+          & ((count & 4) != 0 ? sum2 : ~sum2)
+          & ((count & 8) != 0 ? sum3 : ~sum3);
+      result |= hasCount & ((survive[count] ? self : 0) | (spawn[count] ? ~self : 0));
+    }
+    return word == wordsPerRow - 1 ? result & lastWordMask : result;
+  }
+
+  private long wordAt(int row, int word) {
+    return row < 0 ? 0 : current[row * wordsPerRow + word];
+  }
+
+  // The west neighbors of each cell in a word, shifted into that cell's position.
+  private long west(int row, int word) {
+    if (row < 0) {
+      return 0;
+    }
+    long shifted = current[row * wordsPerRow + word] << 1;
+    if (word > 0) {
+      shifted |= current[row * wordsPerRow + word - 1] >>> (Long.SIZE - 1);
+    } else if (toroidal) {
+      shifted |= cellAt(row, width - 1);
+    }
+    return shifted;
+  }
+
+  // The east neighbors of each cell in a word, shifted into that cell's position.
+  private long east(int row, int word) {
+    if (row < 0) {
+      return 0;
+    }
+    long shifted = current[row * wordsPerRow + word] >>> 1;
+    if (word < wordsPerRow - 1) {
+      shifted |= current[row * wordsPerRow + word + 1] << (Long.SIZE - 1);
+    } else if (toroidal) {
+      shifted |= cellAt(row, 0) << ((width - 1) % Long.SIZE);
+    }
+    return shifted;
+  }
+
+  private long cellAt(int row, int col) {
+    return current[row * wordsPerRow + col / Long.SIZE] >>> col & 1L;
+  }
+}
@@ -12,6 +12,7 @@ public class ConwayCell extends Cell {
 
   public static final int DEAD = 0;
   public static final int ALIVE = 1;
+  private Parameters parameters;
 
   /**
    * Construct this cell with its default state.
@@ -31,6 +32,17 @@ public class ConwayCell extends Cell {
     super(state);
   }
 
+  @Override
+  protected void setParameters(ParameterSnapshot snapshot) {
+    super.setParameters(snapshot);
+    parameters = compileParameters(Parameters.class, Parameters::new);
+  }
+
+  @Override
+  protected boolean hasLocalRule() {
+    return true;
+  }
+
   @Override
   public void poke() {
     if (getCellState() == DEAD) {
@@ -42,6 +54,11 @@ public class ConwayCell extends Cell {
     }
   }
 
+  @Override
+  protected int getStateCount() {
+    return ALIVE + 1;
+  }
+
   /**
    * Computes the next state of this Cell by inspecting its neighbors and then determining the
    * transition accordingly.
@@ -53,19 +70,14 @@ public class ConwayCell extends Cell {
    * other dead cells stay dead.
    */
   public void computeNextCellState() {
-    int numLiveNeighbors = 0;
-    for (Cell cell : getNeighbors()) {
-      if (cell.getCellState() == ALIVE) {
-        numLiveNeighbors++;
-      }
-    }
+    int numLiveNeighbors = countNeighborsInState(ALIVE);
     if (getCellState() == ALIVE
-        && numLiveNeighbors >= getParam("AliveNumberMin")
-        && numLiveNeighbors <= getParam("AliveNumberMax")) {
+        && numLiveNeighbors >= parameters.aliveMin
+        && numLiveNeighbors <= parameters.aliveMax) {
       setNextCellState(ALIVE);
     } else if (getCellState() == DEAD
-        && numLiveNeighbors >= getParam("SpawnNumberMin")
-        && numLiveNeighbors <= getParam("SpawnNumberMax")) {
+        && numLiveNeighbors >= parameters.spawnMin
+        && numLiveNeighbors <= parameters.spawnMax) {
       setNextCellState(ALIVE);
     } else {
       if (getCellState() != DEAD) {
@@ -73,4 +85,20 @@ public class ConwayCell extends Cell {
       }
     }
   }
+
+  // The survival and birth bounds, compiled once per parameter snapshot
+  private static final class Parameters {
+
+    private final double aliveMin;
+    private final double aliveMax;
+    private final double spawnMin;
+    private final double spawnMax;
+
+    private Parameters(ParameterSnapshot snapshot) {
+      aliveMin = snapshot.get("AliveNumberMin");
+      aliveMax = snapshot.get("AliveNumberMax");
+      spawnMin = snapshot.get("SpawnNumberMin");
+      spawnMax = snapshot.get("SpawnNumberMax");
+    }
+  }
 }
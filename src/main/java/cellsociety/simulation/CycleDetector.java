@@ -0,0 +1,117 @@
+package cellsociety.simulation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Notices when a simulation's grid returns to a state it held in a recent generation.
+ *
+ * @author Joshua Petitma
+ * <p>The detector is handed the Zobrist hash of the grid after every generation and remembers the
+ * hashes of the most recent ones, both in a ring indexed by generation and in a table from hash to
+ * generation. A hash seen before marks the start of a cycle whose period is the distance between
+ * the two generations; a period of 1 is a fixed point. The cycle is then checked against the ring
+ * every generation and dropped if the grid ever leaves it, which rules with randomness may do.
+ * Hashes are only compared, never the grids behind them, so two grids colliding on all 64 bits
+ * would be mistaken for one another.
+ */
+class CycleDetector {
+
+  private final long[] ringHashes;
+  private final long[] ringGenerations;
+  private final Map<Long, Long> generations;
+  private long lastGeneration;
+  private long cycleStart;
+  private int period;
+
+  /**
+   * Creates a detector remembering a bounded number of generations.
+   *
+   * @param historySize - The number of most recent generations to remember, which is also the
+   *                    longest period that can be detected.
+   */
+  CycleDetector(int historySize) {
+    this.ringHashes = new long[historySize];
+    this.ringGenerations = new long[historySize];
+    this.generations = new HashMap<>();
+    reset();
+  }
+
+  /**
+   * Forgets every generation seen so far, e.g. after cells were poked or a parameter changed.
+   */
+  void reset() {
+    Arrays.fill(ringGenerations, -1);
+    generations.clear();
+    lastGeneration = -1;
+    cycleStart = -1;
+    period = 0;
+  }
+
+  /**
+   * Forgets every generation seen so far if the grid no longer matches the latest one recorded,
+   * as after cells were poked.
+   *
+   * @param hash - The Zobrist hash of the grid now.
+   */
+  void resetUnlessLatest(long hash) {
+    if (lastGeneration >= 0 && !isRecorded(hash, lastGeneration)) {
+      reset();
+    }
+  }
+
+  /**
+   * Records the hash of the grid in a generation. A generation that does not directly follow the
+   * previously recorded one starts a fresh history.
+   *
+   * @param hash       - The Zobrist hash of the grid.
+   * @param generation - The generation the grid is in.
+   */
+  void record(long hash, long generation) {
+    if (lastGeneration >= 0 && generation != lastGeneration + 1) {
+      reset();
+    }
+    lastGeneration = generation;
+    if (period > 0 && !isRecorded(hash, generation - period)) {
+      cycleStart = -1;
+      period = 0;
+    }
+    Long seen = generations.get(hash);
+    if (period == 0 && seen != null) {
+      cycleStart = seen;
+      period = (int) (generation - seen);
+    }
+    int slot = (int) (generation % ringHashes.length);
+    if (ringGenerations[slot] >= 0) {
+      generations.remove(ringHashes[slot], ringGenerations[slot]);
+    }
+    ringHashes[slot] = hash;
+    ringGenerations[slot] = generation;
+    generations.put(hash, generation);
+  }
+
+  /**
+   * Returns the period of the cycle the grid is in.
+   *
+   * @return - 1 for a fixed point, the period of a longer cycle, or 0 if no cycle was found.
+   */
+  int getPeriod() {
+    return period;
+  }
+
+  /**
+   * Returns the generation the grid entered its cycle in.
+   *
+   * @return - The first generation of the cycle, or -1 if no cycle was found.
+   */
+  long getCycleStart() {
+    return cycleStart;
+  }
+
+  // Whether the ring still holds a generation, with the given hash.
+  private boolean isRecorded(long hash, long generation) {
+    int slot = (int) (generation % ringHashes.length);
+    return ringGenerations[slot] == generation && ringHashes[slot] == hash;
+  }
+}
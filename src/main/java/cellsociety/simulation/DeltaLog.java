@@ -0,0 +1,481 @@
+package cellsociety.simulation;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The binary format the trajectories of simulations are recorded in.
+ *
+ * @author Joshua Petitma
+ * <p>A recording starts with a header of 4-byte big-endian ints: a magic number, the format
+ * version, the width and height of the grid and the keyframe interval. It is followed by one record
+ * per recorded step, appended to the file as the step is committed and never rewritten. Each record
+ * is a 4-byte length, a byte telling keyframes from deltas and the generation as a varint. A
+ * keyframe then holds the state of every cell, as one varint per cell or as runs of a varint length
+ * and a varint state, whichever is shorter; a delta holds the number of cells that changed since
+ * the previous record and, for each in row-major order, the varint gap from the previous changed
+ * cell and the varint new state. Only the states of the cells are recorded; agent attributes,
+ * layers and hidden values are left to checkpoints.
+ *
+ * <p>Every step is a delta but every keyframe-interval-th, counting from the first, so reaching any
+ * step means reading at most one keyframe and fewer deltas than the interval.
+ */
+public final class DeltaLog {
+
+  static final int MAGIC = 0x4353444c;
+  static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 20;
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final byte KEYFRAME = 0;
+  private static final byte DELTA = 1;
+  private static final int RAW_STATES = 0;
+  private static final int STATE_RUNS = 1;
+  // The length, kind and longest generation at the start of a record
+  private static final int RECORD_PREFIX = 15;
+
+  // Not instantiable; recordings are read and written through Reader and Writer.
+  private DeltaLog() {
+  }
+
+  /**
+   * Returns whether a file starts like a recording.
+   *
+   * @param file - The file to check.
+   * @return - true if the file starts with the magic number of a recording.
+   */
+  public static boolean isRecording(File file) {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer magic = ByteBuffer.allocate(4);
+      while (magic.hasRemaining() && channel.read(magic) >= 0) {
+        // Keep reading until the magic number is in or the file ends
+      }
+      return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Appends the steps of a simulation to a recording.
+   */
+  static final class Writer implements Closeable {
+
+    private final FileChannel channel;
+    private final int keyframeInterval;
+    // Holds one whole record, so that it goes to the file in one write after its length
+    private byte[] buffer;
+    private int position;
+    private int recorded;
+
+    /**
+     * Starts a recording in a file, replacing anything in it, and writes its header.
+     *
+     * @param file             - The file to record to.
+     * @param width            - The number of cells in each row of the grid.
+     * @param height           - The number of rows of the grid.
+     * @param keyframeInterval - How many steps apart keyframes are recorded; at least 1.
+     * @throws IOException if the file cannot be written to.
+     */
+    Writer(File file, int width, int height, int keyframeInterval) throws IOException {
+      if (keyframeInterval < 1) {
+        throw new IllegalArgumentException("The keyframe interval must be at least 1.");
+      }
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      this.keyframeInterval = keyframeInterval;
+      this.buffer = new byte[BUFFER_SIZE];
+      for (int value : new int[]{MAGIC, VERSION, width, height, keyframeInterval}) {
+        writeInt(value);
+      }
+      flush();
+    }
+
+    /**
+     * Appends a step: every state if a keyframe is due, and otherwise the cells the buffer noted
+     * as changed since the last step. Clears the noted changes either way.
+     *
+     * @param states     - The buffer holding the states after the step.
+     * @param changes    - The bitset the buffer notes changed cells in for this recording; see
+     *                   {@link StateBuffer#startTracking()}.
+     * @param generation - The generation the states belong to.
+     * @throws IOException if the file cannot be written to.
+     */
+    void record(StateBuffer states, long[] changes, long generation) throws IOException {
+      position = 4;
+      if (recorded % keyframeInterval == 0) {
+        Arrays.fill(changes, 0);
+        buffer[position++] = KEYFRAME;
+        writeVarlong(generation);
+        writeStates(states);
+      } else {
+        buffer[position++] = DELTA;
+        writeVarlong(generation);
+        writeChanges(states, changes);
+      }
+      int length = position - 4;
+      position = 0;
+      writeInt(length);
+      position = length + 4;
+      flush();
+      recorded++;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+
+    private void writeStates(StateBuffer states) {
+      int runs = 1;
+      for (int i = 1; i < states.size(); i++) {
+        if (states.get(i) != states.get(i - 1)) {
+          runs++;
+        }
+      }
+      // A run takes at least two bytes where a single state usually takes one
+      if (2L * runs >= states.size()) {
+        writeVarlong(RAW_STATES);
+        for (int i = 0; i < states.size(); i++) {
+          writeVarlong(states.get(i));
+        }
+        return;
+      }
+      writeVarlong(STATE_RUNS);
+      int start = 0;
+      for (int i = 1; i <= states.size(); i++) {
+        if (i == states.size() || states.get(i) != states.get(start)) {
+          writeVarlong(i - start);
+          writeVarlong(states.get(start));
+          start = i;
+        }
+      }
+    }
+
+    // Writes the changed cells in row-major order, clearing their bits as it goes.
+    private void writeChanges(StateBuffer states, long[] changes) {
+      int count = 0;
+      for (long word : changes) {
+        count += Long.bitCount(word);
+      }
+      writeVarlong(count);
+      int last = -1;
+      for (int word = 0; word < changes.length; word++) {
+        long bits = changes[word];
+        changes[word] = 0;
+        while (bits != 0) {
+          int index = word << 6 | Long.numberOfTrailingZeros(bits);
+          bits &= bits - 1;
+          writeVarlong(index - last - 1);
+          writeVarlong(states.get(index));
+          last = index;
+        }
+      }
+    }
+
+    private void writeVarlong(long value) {
+      ensure(10);
+      while ((value & ~0x7fL) != 0) {
+        buffer[position++] = (byte) (value | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+      ensure(4);
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        buffer[position++] = (byte) (value >>> shift);
+      }
+    }
+
+    private void flush() throws IOException {
+      ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, position);
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+      position = 0;
+    }
+
+    // Grows the buffer rather than flushing it, as a record is written whole.
+    private void ensure(int bytes) {
+      if (position + bytes > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, position + bytes));
+      }
+    }
+  }
+
+  /**
+   * Reads the grid at any step of a recording.
+   *
+   * <p>Opening a recording reads the start of every record to find where each step lies. A record
+   * cut short, as when the recording simulation was stopped mid-write, ends the recording. Seeking
+   * forward from the last step read, with no keyframe in between, only reads the deltas since that
+   * step, so replaying a recording in order reads every record once.
+   */
+  public static final class Reader implements Closeable {
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int keyframeInterval;
+    private final int[] grid;
+    private long[] offsets;
+    private long[] generations;
+    private int[] keyframes;
+    private int keyframeCount;
+    private int stepCount;
+    // Where the last complete record ends
+    private long end;
+    private int cursor;
+    private byte[] record;
+    private int position;
+    private int limit;
+
+    /**
+     * Opens a recording, checking its magic number and version and finding every step in it.
+     *
+     * @param file - The recording to read.
+     * @throws IOException if the file cannot be read or does not hold a recording this version
+     *                     can read.
+     */
+    public Reader(File file) throws IOException {
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      try {
+        this.record = new byte[BUFFER_SIZE];
+        if (read(0, HEADER_SIZE) < HEADER_SIZE || readInt() != MAGIC) {
+          throw new IOException("Not a simulation recording.");
+        }
+        int version = readInt();
+        if (version != VERSION) {
+          throw new IOException("Unsupported recording version " + version + ".");
+        }
+        this.width = readInt();
+        this.height = readInt();
+        this.keyframeInterval = readInt();
+        if (width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE) {
+          throw new IOException("Malformed recording.");
+        }
+        this.grid = new int[width * height];
+        this.cursor = -1;
+        findSteps();
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Returns the number of cells in each row of the recorded grid.
+     *
+     * @return - The width of the grid.
+     */
+    public int getWidth() {
+      return width;
+    }
+
+    /**
+     * Returns the number of rows of the recorded grid.
+     *
+     * @return - The height of the grid.
+     */
+    public int getHeight() {
+      return height;
+    }
+
+    /**
+     * Returns how many steps apart keyframes were recorded.
+     *
+     * @return - The keyframe interval the recording was made with.
+     */
+    public int getKeyframeInterval() {
+      return keyframeInterval;
+    }
+
+    /**
+     * Returns the number of steps in the recording, counting the grid it started from as step 0.
+     *
+     * @return - The number of complete records.
+     */
+    public int getStepCount() {
+      return stepCount;
+    }
+
+    /**
+     * Returns the generation of the simulation at a step. Generations run ahead of steps when the
+     * simulation was advanced by more than one generation at a time.
+     *
+     * @param step - The step, from 0 to one less than {@link #getStepCount()}.
+     * @return - The generation the grid at that step belongs to.
+     */
+    public long getGeneration(int step) {
+      checkStep(step);
+      return generations[step];
+    }
+
+    /**
+     * Rebuilds the grid at a step from the keyframe at or before it and the deltas after that.
+     *
+     * @param step - The step, from 0 to one less than {@link #getStepCount()}.
+     * @return - The state of every cell in row-major order. The array belongs to the reader and is
+     *     overwritten by the next seek.
+     * @throws IOException if the recording cannot be read or is malformed.
+     */
+    public int[] seek(int step) throws IOException {
+      checkStep(step);
+      int found = Arrays.binarySearch(keyframes, 0, keyframeCount, step);
+      int keyframe = keyframes[found >= 0 ? found : -found - 2];
+      if (cursor < keyframe || cursor > step) {
+        readRecord(keyframe);
+        readKeyframe();
+        cursor = keyframe;
+      }
+      while (cursor < step) {
+        readRecord(++cursor);
+        readDelta();
+      }
+      return grid;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+
+    // Reads the start of every record, stopping at the end of the file or at a record cut short.
+    private void findSteps() throws IOException {
+      offsets = new long[16];
+      generations = new long[16];
+      keyframes = new int[16];
+      long offset = HEADER_SIZE;
+      long size = channel.size();
+      while (offset + 4 <= size) {
+        read(offset, (int) Math.min(RECORD_PREFIX, size - offset));
+        long recordEnd = offset + 4 + (readInt() & 0xffffffffL);
+        if (recordEnd > size) {
+          break;
+        }
+        byte kind = readByte();
+        if (stepCount == offsets.length) {
+          offsets = Arrays.copyOf(offsets, 2 * stepCount);
+          generations = Arrays.copyOf(generations, 2 * stepCount);
+        }
+        if (kind == KEYFRAME) {
+          if (keyframeCount == keyframes.length) {
+            keyframes = Arrays.copyOf(keyframes, 2 * keyframeCount);
+          }
+          keyframes[keyframeCount++] = stepCount;
+        } else if (kind != DELTA || stepCount == 0) {
+          throw new IOException("Malformed recording.");
+        }
+        offsets[stepCount] = offset;
+        generations[stepCount] = readVarlong();
+        stepCount++;
+        offset = recordEnd;
+      }
+      end = offset;
+    }
+
+    // Reads a whole record, leaving the position on its kind.
+    private void readRecord(int step) throws IOException {
+      long length = (step + 1 < stepCount ? offsets[step + 1] : end) - offsets[step] - 4;
+      if (length > Integer.MAX_VALUE - 8) {
+        throw new IOException("Malformed recording.");
+      }
+      if (length > record.length) {
+        record = new byte[(int) length];
+      }
+      if (read(offsets[step] + 4, (int) length) < length) {
+        throw new IOException("Recording ends early.");
+      }
+      // Step past the kind and generation, which were read when the steps were found
+      readByte();
+      readVarlong();
+    }
+
+    private void readKeyframe() throws IOException {
+      int encoding = readVarint();
+      int i = 0;
+      while (i < grid.length) {
+        int run = encoding == STATE_RUNS ? readVarint() : 1;
+        int state = readVarint();
+        if (run > grid.length - i) {
+          throw new IOException("Malformed recording.");
+        }
+        Arrays.fill(grid, i, i + run, state);
+        i += run;
+      }
+    }
+
+    private void readDelta() throws IOException {
+      int count = readVarint();
+      long index = -1;
+      for (int k = 0; k < count; k++) {
+        index += 1 + readVarint();
+        if (index >= grid.length) {
+          throw new IOException("Malformed recording.");
+        }
+        grid[(int) index] = readVarint();
+      }
+    }
+
+    // Reads the given number of bytes from an offset of the file into the record buffer, or as
+    // many as are left, returning how many were read.
+    private int read(long offset, int length) throws IOException {
+      ByteBuffer bytes = ByteBuffer.wrap(record, 0, length);
+      while (bytes.hasRemaining() && channel.read(bytes, offset + bytes.position()) >= 0) {
+        // Keep reading until the bytes are in or the file ends
+      }
+      position = 0;
+      limit = bytes.position();
+      return limit;
+    }
+
+    private int readVarint() throws IOException {
+      long value = readVarlong();
+      if (value >>> 31 != 0) {
+        throw new IOException("Malformed recording.");
+      }
+      return (int) value;
+    }
+
+    private long readVarlong() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        byte b = readByte();
+        value |= (long) (b & 0x7f) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed recording.");
+    }
+
+    private int readInt() throws IOException {
+      int value = 0;
+      for (int k = 0; k < 4; k++) {
+        value = (value << 8) | (readByte() & 0xff);
+      }
+      return value;
+    }
+
+    private byte readByte() throws IOException {
+      if (position == limit) {
+        throw new IOException("Malformed recording.");
+      }
+      return record[position++];
+    }
+
+    private void checkStep(int step) {
+      if (step < 0 || step >= stepCount) {
+        throw new IndexOutOfBoundsException("No step " + step + " in a recording of " + stepCount
+            + " steps.");
+      }
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package cellsociety.simulation;
+
+import cellsociety.util.SimulationConfiguration;
+import cellsociety.util.SweepConfiguration;
+import cellsociety.util.SweepConfiguration.StopCondition;
+import cellsociety.util.XMLParser;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs an ensemble of simulations without a display and summarizes every run as a row of CSV.
+ *
+ * @author Joshua Petitma
+ * <p>The runs are every combination of the parameter values of a {@link SweepConfiguration}, once
+ * per seed, each loaded from the same base file. Up to the sweep's number of threads step at the
+ * same time, one run per thread, and every row is written and flushed as soon as its run finishes,
+ * so the rows come out in the order the runs finish; the Run column gives their place in the sweep.
+ * {@code cellsociety.HeadlessMain} runs sweeps from the command line. Each row holds the run's seed
+ * and parameter values, the number of steps taken, the step from which the grid no longer changed,
+ * the step from which it repeated with the given period (see
+ * {@link Simulation#setCycleDetection(int)}), the first step after which no cell held the
+ * extinction state (-1 for any of those that never happened, and a period of 0), and the final
+ * number of cells in each state. Cycles are only looked for in rules where a repeated grid is
+ * certain to keep repeating (see {@link Simulation#hasExactCycles()}); for any other rule the
+ * steady and cycle columns always read -1, -1 and 0, and sweeps stopping when steady or cycling
+ * are refused.
+ */
+public class EnsembleRunner {
+
+  // The longest period of oscillation a run notices
+  private static final int CYCLE_HISTORY = 1024;
+
+  private final File baseFile;
+  private final SweepConfiguration sweep;
+  private final List<String> parameterNames;
+
+  /**
+   * Creates a runner for a sweep over a base simulation file.
+   *
+   * @param baseFile - The simulation file every run is loaded from.
+   * @param sweep    - The runs to make and when to stop each of them.
+   */
+  public EnsembleRunner(File baseFile, SweepConfiguration sweep) {
+    this.baseFile = baseFile;
+    this.sweep = sweep;
+    this.parameterNames = new ArrayList<>(sweep.getParameterValues().keySet());
+  }
+
+  /**
+   * Makes every run of the sweep, writing a header and then one row per run as runs finish.
+   *
+   * @param out - Where to write the CSV.
+   * @throws Exception if the base file cannot be loaded, a swept parameter is not one of the
+   *                   simulation's, or a run fails.
+   */
+  public void run(Writer out) throws Exception {
+    // Loading the base once up front checks it and the swept parameters before any run starts
+    Simulation base = load(null);
+    for (String parameter : parameterNames) {
+      if (!base.getSimulationParameters().containsKey(parameter)) {
+        throw new IllegalArgumentException(parameter + " is not a parameter of this simulation.");
+      }
+    }
+    StopCondition stopCondition = sweep.getStopCondition();
+    if ((stopCondition == StopCondition.STEADY || stopCondition == StopCondition.CYCLE)
+        && !base.hasExactCycles()) {
+      throw new IllegalArgumentException("Only rules without randomness or values beyond the "
+          + "states of the cells, like Conway's, can stop when steady or cycling.");
+    }
+    writeHeader(out, base.getStateCounts().length);
+    List<Map<String, Double>> combinations = sweep.getParameterCombinations();
+    List<Long> seeds = sweep.getSeeds().isEmpty() ? null : sweep.getSeeds();
+    ExecutorService pool = Executors.newFixedThreadPool(sweep.getThreads());
+    CompletionService<String> rows = new ExecutorCompletionService<>(pool);
+    try {
+      int runs = 0;
+      for (Map<String, Double> parameters : combinations) {
+        for (int k = 0; k < (seeds == null ? 1 : seeds.size()); k++) {
+          int run = runs++;
+          Long seed = seeds == null ? null : seeds.get(k);
+          rows.submit(() -> runOnce(run, seed, parameters));
+        }
+      }
+      for (int k = 0; k < runs; k++) {
+        out.write(rows.take().get());
+        out.flush();
+      }
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private void writeHeader(Writer out, int stateCount) throws IOException {
+    StringBuilder header = new StringBuilder("Run,Seed");
+    for (String parameter : parameterNames) {
+      header.append(',').append(parameter);
+    }
+    header.append(",Steps,SteadyStep,CycleStart,Period,ExtinctionStep");
+    for (int state = 0; state < stateCount; state++) {
+      header.append(",State").append(state);
+    }
+    out.write(header.append('\n').toString());
+    out.flush();
+  }
+
+  // Loads a fresh copy of the base simulation, reseeded if a seed is given.
+  private Simulation load(Long seed) throws Exception {
+    SimulationConfiguration config = new XMLParser(baseFile).getSimulationConfiguration();
+    if (seed != null) {
+      config.updateSeed(seed);
+    }
+    SimulationFactory factory = new SimulationFactory();
+    factory.loadSimulationConfiguration(config);
+    return factory.getSimulation();
+  }
+
+  // Steps one run until it stops and returns its row.
+  private String runOnce(int run, Long seed, Map<String, Double> parameters) throws Exception {
+    Simulation simulation = load(seed);
+    parameters.forEach(simulation::setParameter);
+    if (simulation.hasExactCycles()) {
+      simulation.setCycleDetection(CYCLE_HISTORY);
+    }
+    int extinctionState = sweep.getExtinctionState();
+    int extinctionStep = isExtinct(simulation, extinctionState) ? 0 : -1;
+    int steps = 0;
+    while (steps < sweep.getSteps() && !hasStopped(simulation, extinctionStep)) {
+      simulation.step();
+      steps++;
+      if (extinctionStep < 0 && isExtinct(simulation, extinctionState)) {
+        extinctionStep = steps;
+      }
+    }
+    int period = simulation.getCyclePeriod();
+    long cycleStart = simulation.getCycleStart();
+    StringBuilder row = new StringBuilder();
+    row.append(run).append(',').append(seed == null ? "" : seed);
+    for (String parameter : parameterNames) {
+      row.append(',').append(parameters.get(parameter));
+    }
+    row.append(',').append(steps).append(',').append(period == 1 ? cycleStart : -1).append(',')
+        .append(cycleStart).append(',').append(period).append(',').append(extinctionStep);
+    for (int count : simulation.getStateCounts()) {
+      row.append(',').append(count);
+    }
+    return row.append('\n').toString();
+  }
+
+  private boolean hasStopped(Simulation simulation, int extinctionStep) {
+    return switch (sweep.getStopCondition()) {
+      case STEPS -> false;
+      case STEADY -> simulation.getCyclePeriod() == 1;
+      case CYCLE -> simulation.getCyclePeriod() > 0;
+      case EXTINCTION -> extinctionStep >= 0;
+    };
+  }
+
+  private boolean isExtinct(Simulation simulation, int state) {
+    if (state < 0) {
+      return false;
+    }
+    int[] counts = simulation.getStateCounts();
+    return state >= counts.length || counts[state] == 0;
+  }
+}
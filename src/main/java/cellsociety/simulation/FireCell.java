@@ -14,6 +14,7 @@ public class FireCell extends Cell {
   public static final int UNBURNT = 0;
   public static final int BURNING = 1;
   public static final int BURNT = 2;
+  private Parameters parameters;
 
   /**
    * Construct this cell with its default state.
@@ -34,6 +35,22 @@ public class FireCell extends Cell {
     super(state);
   }
 
+  @Override
+  protected void setParameters(ParameterSnapshot snapshot) {
+    super.setParameters(snapshot);
+    parameters = compileParameters(Parameters.class, Parameters::new);
+  }
+
+  @Override
+  protected boolean drawsRandomNumbers() {
+    return true;
+  }
+
+  @Override
+  protected boolean hasLocalRule() {
+    return true;
+  }
+
   @Override
   public void poke() {
     setCellState(getCellState() + 1);
@@ -43,6 +60,11 @@ public class FireCell extends Cell {
     }
   }
 
+  @Override
+  protected int getStateCount() {
+    return BURNT + 1;
+  }
+
   /**
    * Computes the next state of this Cell by inspecting its neighbors and then determining the
    * transition accordingly.
@@ -53,19 +75,30 @@ public class FireCell extends Cell {
    */
   public void computeNextCellState() {
     if (getCellState() == UNBURNT) {
-      for (Cell cell : getNeighbors()) {
-        if (cell.getCellState() == BURNING) {
-          catchFire();
-        }
+      int burningNeighbors = countNeighborsInState(BURNING);
+      if (burningNeighbors > 0) {
+        catchFire(burningNeighbors);
       }
     } else if (getCellState() == BURNING) {
       setNextCellState(BURNT);
     }
   }
 
-  private void catchFire() {
-    if (Math.random() > getParam("Flammability")) {
+  // Each burning neighbor gives an independent chance of catching fire, which is the same as a
+  // single draw against Flammability raised to the number of burning neighbors.
+  private void catchFire(int burningNeighbors) {
+    if (randomDraw(0) >= Math.pow(parameters.flammability, burningNeighbors)) {
       setNextCellState(BURNING);
     }
   }
+
+  // The chance of catching fire, compiled once per parameter snapshot
+  private static final class Parameters {
+
+    private final double flammability;
+
+    private Parameters(ParameterSnapshot snapshot) {
+      flammability = snapshot.get("Flammability");
+    }
+  }
 }
@@ -0,0 +1,566 @@
+package cellsociety.simulation;
+
+import cellsociety.util.SimulationConfiguration;
+import cellsociety.util.SimulationConfiguration.CellNeighborhoodSize;
+import cellsociety.util.SimulationConfiguration.CellShape;
+import cellsociety.util.SimulationConfiguration.SimulationEdgeType;
+import cellsociety.util.SimulationConfiguration.SimulationType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A HashLife engine for fast-forwarding Conway's Game of Life on an unbounded plane.
+ *
+ * @author Marc Chmielewski
+ * <p>The plane is stored as a quadtree whose nodes are canonicalised in a hash table, so every
+ * distinct square of cells exists exactly once. Each node memoises its own future: the center
+ * half of a node of level {@code k} (a square {@code 2^k} cells wide) is advanced by up to {@code
+ * 2^(k-2)} generations and cached on the node, so repeated structure in space and time is only
+ * ever computed once. A jump of {@code n} generations is made as one jump per set bit of {@code
+ * n}.
+ *
+ * <p>The node table is bounded. It is checked after every jump, and once it holds more than its
+ * capacity every node that is not part of the current plane is evicted along with every memoised
+ * result, leaving the garbage collector to reclaim them.
+ *
+ * <p>Cell (row, column) of the plane lives at x = column, y = row; the root is always centered on
+ * the origin. A simulation's grid is a window onto the plane.
+ */
+class HashLife {
+
+  static final int DEFAULT_CAPACITY = 1 << 20;
+
+  private static final int MAX_NEIGHBORS = 8;
+  // Levels needed above the jump size so that a pattern in the central quarter of the root can
+  // never outrun the half that comes back from a jump.
+  private static final int PADDING_LEVELS = 3;
+
+  private final boolean vonNeumann;
+  private final int capacity;
+  private final boolean[] survive;
+  private final boolean[] spawn;
+  private final Node off;
+  private final Node on;
+  private Node[] empty;
+  private Node[] table;
+  private int size;
+  // Memoised results are only valid while the stamp they were stored under is current. It moves
+  // on whenever the jump size or the rule changes, and whenever the table is evicted.
+  private int stamp;
+  private int resultLevel;
+  private Node root;
+
+  /**
+   * Creates an empty plane.
+   *
+   * @param vonNeumann - Whether only the four orthogonal neighbors count.
+   * @param capacity   - The number of nodes the table may hold before it is evicted.
+   */
+  HashLife(boolean vonNeumann, int capacity) {
+    this.vonNeumann = vonNeumann;
+    this.capacity = capacity;
+    this.survive = new boolean[MAX_NEIGHBORS + 1];
+    this.spawn = new boolean[MAX_NEIGHBORS + 1];
+    this.table = new Node[1 << 10];
+    this.off = new Node(0);
+    this.on = new Node(1);
+    this.empty = new Node[]{off};
+    this.resultLevel = -1;
+    this.root = emptyNode(3);
+  }
+
+  /**
+   * Returns whether a configuration can be run on a HashLife plane.
+   *
+   * @param config - The configuration of the simulation.
+   * @return - true for Conway simulations on rectangular grids with infinite edges.
+   */
+  static boolean supports(SimulationConfiguration config) {
+    return config.getSimulationType() == SimulationType.CONWAY
+        && config.getCellShape() == CellShape.RECTANGLE
+        && config.getEdgeType() == SimulationEdgeType.INFINITE;
+  }
+
+  /**
+   * Creates a plane matching a configuration that {@link #supports(SimulationConfiguration)}.
+   *
+   * @param config - The configuration of the simulation.
+   * @return - An empty plane with the configuration's neighborhood.
+   */
+  static HashLife forConfiguration(SimulationConfiguration config) {
+    return new HashLife(config.getNeighborhodSize() == CellNeighborhoodSize.SMALL,
+        DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Sets the neighbor counts under which live cells survive and dead cells come alive.
+   *
+   * @param aliveMin - The fewest live neighbors a live cell survives with.
+   * @param aliveMax - The most live neighbors a live cell survives with.
+   * @param spawnMin - The fewest live neighbors a dead cell comes alive with.
+   * @param spawnMax - The most live neighbors a dead cell comes alive with.
+   */
+  void setRule(double aliveMin, double aliveMax, double spawnMin, double spawnMax) {
+    boolean changed = false;
+    for (int count = 0; count <= MAX_NEIGHBORS; count++) {
+      boolean survives = count >= aliveMin && count <= aliveMax;
+      boolean spawns = count >= spawnMin && count <= spawnMax;
+      changed |= survive[count] != survives || spawn[count] != spawns;
+      survive[count] = survives;
+      spawn[count] = spawns;
+    }
+    if (changed) {
+      stamp++;
+    }
+  }
+
+  /**
+   * Advances the plane by the given number of generations.
+   *
+   * @param generations - The number of generations to advance by.
+   */
+  void advance(long generations) {
+    if (generations < 0) {
+      throw new IllegalArgumentException("Cannot advance by " + generations + " generations.");
+    }
+    for (int bit = Long.SIZE - 1; bit >= 0; bit--) {
+      if ((generations >>> bit & 1L) != 0) {
+        jump(bit);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of live cells on the plane.
+   *
+   * @return - The number of live cells.
+   */
+  long getPopulation() {
+    return root.population;
+  }
+
+  /**
+   * Returns the number of nodes currently held in the table.
+   *
+   * @return - The number of canonical nodes.
+   */
+  int getCacheSize() {
+    return size;
+  }
+
+  /**
+   * Returns whether the cell at the given position is alive.
+   *
+   * @param x - The column of the cell.
+   * @param y - The row of the cell.
+   * @return - true if the cell is alive.
+   */
+  boolean getCell(long x, long y) {
+    Node node = root;
+    long half = 1L << (node.level - 1);
+    if (x < -half || x >= half || y < -half || y >= half) {
+      return false;
+    }
+    // Shift to coordinates measured from the node's top-left corner
+    x += half;
+    y += half;
+    while (node.level > 0 && node.population > 0) {
+      half = 1L << (node.level - 1);
+      boolean east = x >= half;
+      boolean south = y >= half;
+      node = south ? (east ? node.se : node.sw) : (east ? node.ne : node.nw);
+      x -= east ? half : 0;
+      y -= south ? half : 0;
+    }
+    return node == on;
+  }
+
+  /**
+   * Sets the cell at the given position, growing the plane to hold it if needed.
+   *
+   * @param x     - The column of the cell.
+   * @param y     - The row of the cell.
+   * @param alive - Whether the cell is alive.
+   */
+  void setCell(long x, long y, boolean alive) {
+    while (!contains(root, x, y)) {
+      root = expand(root);
+    }
+    long half = 1L << (root.level - 1);
+    root = setCell(root, x + half, y + half, alive);
+  }
+
+  /**
+   * Copies every cell of a window of the plane into a buffer, writing only the cells whose state
+   * differs.
+   *
+   * @param states    - The buffer to update; its width and height give the size of the window.
+   * @param originRow - The row of the plane at the top of the window.
+   * @param originCol - The column of the plane at the left of the window.
+   */
+  void store(StateBuffer states, long originRow, long originCol) {
+    long half = 1L << (root.level - 1);
+    store(root, -half - originCol, -half - originRow, states);
+  }
+
+  /**
+   * Replaces a window of the plane with the current states of a buffer. Cells outside of the
+   * window are untouched.
+   *
+   * @param states    - The buffer to read live cells from.
+   * @param originRow - The row of the plane at the top of the window.
+   * @param originCol - The column of the plane at the left of the window.
+   */
+  void load(StateBuffer states, long originRow, long originCol) {
+    int width = states.getWidth();
+    for (int i = 0; i < states.size(); i++) {
+      boolean alive = states.get(i) == ConwayCell.ALIVE;
+      long x = originCol + i % width;
+      long y = originRow + i / width;
+      if (getCell(x, y) != alive) {
+        setCell(x, y, alive);
+      }
+    }
+  }
+
+  /**
+   * Returns every live cell on the plane.
+   *
+   * @return - Each live cell as a {@code {row, column, state}} array.
+   */
+  List<int[]> getLiveCells() {
+    List<int[]> liveCells = new ArrayList<>();
+    long half = 1L << (root.level - 1);
+    collectLiveCells(root, -half, -half, liveCells);
+    return liveCells;
+  }
+
+  // Advances the whole plane by 2^level generations.
+  private void jump(int level) {
+    if (level != resultLevel) {
+      resultLevel = level;
+      stamp++;
+    }
+    while (root.level < level + PADDING_LEVELS || !isPadded(root)) {
+      root = expand(root);
+    }
+    root = successor(expand(root), level);
+    if (size > capacity) {
+      evict();
+    }
+  }
+
+  // Returns whether every live cell of a node lies within its central quarter.
+  private boolean isPadded(Node node) {
+    return node.nw.population == node.nw.se.se.population
+        && node.ne.population == node.ne.sw.sw.population
+        && node.sw.population == node.sw.ne.ne.population
+        && node.se.population == node.se.nw.nw.population;
+  }
+
+  // Returns the center half of a node advanced by 2^min(level, node.level - 2) generations.
+  private Node successor(Node node, int level) {
+    if (node.population == 0) {
+      return emptyNode(node.level - 1);
+    }
+    if (node.resultStamp == stamp && node.result != null) {
+      return node.result;
+    }
+    Node result;
+    if (node.level == 2) {
+      result = computeBase(node);
+    } else {
+      Node n00 = node.nw;
+      Node n01 = join(node.nw.ne, node.ne.nw, node.nw.se, node.ne.sw);
+      Node n02 = node.ne;
+      Node n10 = join(node.nw.sw, node.nw.se, node.sw.nw, node.sw.ne);
+      Node n11 = join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+      Node n12 = join(node.ne.sw, node.ne.se, node.se.nw, node.se.ne);
+      Node n20 = node.sw;
+      Node n21 = join(node.sw.ne, node.se.nw, node.sw.se, node.se.sw);
+      Node n22 = node.se;
+
+      Node c00 = successor(n00, level);
+      Node c01 = successor(n01, level);
+      Node c02 = successor(n02, level);
+      Node c10 = successor(n10, level);
+      Node c11 = successor(n11, level);
+      Node c12 = successor(n12, level);
+      Node c20 = successor(n20, level);
+      Node c21 = successor(n21, level);
+      Node c22 = successor(n22, level);
+
+      if (level < node.level - 2) {
+        // The nine pieces are already far enough along, so only recenter them
+        result = join(
+            join(c00.se, c01.sw, c10.ne, c11.nw),
+            join(c01.se, c02.sw, c11.ne, c12.nw),
+            join(c10.se, c11.sw, c20.ne, c21.nw),
+            join(c11.se, c12.sw, c21.ne, c22.nw));
+      } else {
+        result = join(
+            successor(join(c00, c01, c10, c11), level),
+            successor(join(c01, c02, c11, c12), level),
+            successor(join(c10, c11, c20, c21), level),
+            successor(join(c11, c12, c21, c22), level));
+      }
+    }
+    node.result = result;
+    node.resultStamp = stamp;
+    return result;
+  }
+
+  // Advances the center 2x2 cells of a 4x4 node by one generation.
+  private Node computeBase(Node node) {
+    int bits = 0;
+    for (int y = 0; y < 4; y++) {
+      for (int x = 0; x < 4; x++) {
+        Node quadrant = y < 2 ? (x < 2 ? node.nw : node.ne) : (x < 2 ? node.sw : node.se);
+        Node leaf = (y & 1) == 0 ? ((x & 1) == 0 ? quadrant.nw : quadrant.ne)
+            : ((x & 1) == 0 ? quadrant.sw : quadrant.se);
+        if (leaf == on) {
+          bits |= 1 << (y * 4 + x);
+        }
+      }
+    }
+    return join(nextCell(bits, 1, 1), nextCell(bits, 2, 1), nextCell(bits, 1, 2),
+        nextCell(bits, 2, 2));
+  }
+
+  private Node nextCell(int bits, int x, int y) {
+    int count = 0;
+    for (int dy = -1; dy <= 1; dy++) {
+      for (int dx = -1; dx <= 1; dx++) {
+        boolean diagonal = dx != 0 && dy != 0;
+        if ((dx != 0 || dy != 0) && !(vonNeumann && diagonal)) {
+          count += bits >>> ((y + dy) * 4 + x + dx) & 1;
+        }
+      }
+    }
+    boolean alive = (bits >>> (y * 4 + x) & 1) != 0;
+    return (alive ? survive[count] : spawn[count]) ? on : off;
+  }
+
+  // Surrounds a node with empty space, doubling its width while keeping it centered.
+  private Node expand(Node node) {
+    Node border = emptyNode(node.level - 1);
+    return join(
+        join(border, border, border, node.nw),
+        join(border, border, node.ne, border),
+        join(border, node.sw, border, border),
+        join(node.se, border, border, border));
+  }
+
+  private boolean contains(Node node, long x, long y) {
+    long half = 1L << (node.level - 1);
+    return x >= -half && x < half && y >= -half && y < half;
+  }
+
+  // Sets a cell measured from the top-left corner of a node, returning the updated node.
+  private Node setCell(Node node, long x, long y, boolean alive) {
+    if (node.level == 0) {
+      return alive ? on : off;
+    }
+    long half = 1L << (node.level - 1);
+    boolean east = x >= half;
+    boolean south = y >= half;
+    long innerX = east ? x - half : x;
+    long innerY = south ? y - half : y;
+    Node nw = node.nw;
+    Node ne = node.ne;
+    Node sw = node.sw;
+    Node se = node.se;
+    if (south) {
+      if (east) {
+        se = setCell(se, innerX, innerY, alive);
+      } else {
+        sw = setCell(sw, innerX, innerY, alive);
+      }
+    } else if (east) {
+      ne = setCell(ne, innerX, innerY, alive);
+    } else {
+      nw = setCell(nw, innerX, innerY, alive);
+    }
+    return join(nw, ne, sw, se);
+  }
+
+  // Writes the part of the window a node covers, the node's top-left corner being at (x, y).
+  private void store(Node node, long x, long y, StateBuffer states) {
+    long width = 1L << node.level;
+    if (x >= states.getWidth() || y >= states.getHeight() || x + width <= 0 || y + width <= 0) {
+      return;
+    }
+    if (node.population == 0) {
+      int fromX = (int) Math.max(x, 0);
+      int toX = (int) Math.min(x + width, states.getWidth());
+      int fromY = (int) Math.max(y, 0);
+      int toY = (int) Math.min(y + width, states.getHeight());
+      for (int row = fromY; row < toY; row++) {
+        for (int col = fromX; col < toX; col++) {
+          int index = row * states.getWidth() + col;
+          if (states.get(index) != ConwayCell.DEAD) {
+            states.commit(index, ConwayCell.DEAD);
+          }
+        }
+      }
+      return;
+    }
+    if (node.level == 0) {
+      int index = (int) (y * states.getWidth() + x);
+      if (states.get(index) != ConwayCell.ALIVE) {
+        states.commit(index, ConwayCell.ALIVE);
+      }
+      return;
+    }
+    long half = width / 2;
+    store(node.nw, x, y, states);
+    store(node.ne, x + half, y, states);
+    store(node.sw, x, y + half, states);
+    store(node.se, x + half, y + half, states);
+  }
+
+  private void collectLiveCells(Node node, long x, long y, List<int[]> liveCells) {
+    if (node.population == 0) {
+      return;
+    }
+    if (node.level == 0) {
+      liveCells.add(new int[]{(int) y, (int) x, ConwayCell.ALIVE});
+      return;
+    }
+    long half = 1L << (node.level - 1);
+    collectLiveCells(node.nw, x, y, liveCells);
+    collectLiveCells(node.ne, x + half, y, liveCells);
+    collectLiveCells(node.sw, x, y + half, liveCells);
+    collectLiveCells(node.se, x + half, y + half, liveCells);
+  }
+
+  private Node emptyNode(int level) {
+    if (level >= empty.length) {
+      int known = empty.length;
+      empty = Arrays.copyOf(empty, level + 1);
+      for (int i = known; i <= level; i++) {
+        Node below = empty[i - 1];
+        empty[i] = join(below, below, below, below);
+      }
+    }
+    return empty[level];
+  }
+
+  // Returns the canonical node with the given quadrants.
+  private Node join(Node nw, Node ne, Node sw, Node se) {
+    int hash = hash(nw, ne, sw, se);
+    int bucket = hash & (table.length - 1);
+    for (Node node = table[bucket]; node != null; node = node.next) {
+      if (node.nw == nw && node.ne == ne && node.sw == sw && node.se == se) {
+        return node;
+      }
+    }
+    Node node = new Node(nw, ne, sw, se, hash);
+    insert(node);
+    return node;
+  }
+
+  private void insert(Node node) {
+    if (size >= table.length * 3 / 4) {
+      rehash(table.length * 2);
+    }
+    int bucket = node.hash & (table.length - 1);
+    node.next = table[bucket];
+    table[bucket] = node;
+    size++;
+  }
+
+  private void rehash(int length) {
+    Node[] previous = table;
+    table = new Node[length];
+    for (Node chain : previous) {
+      while (chain != null) {
+        Node following = chain.next;
+        int bucket = chain.hash & (length - 1);
+        chain.next = table[bucket];
+        table[bucket] = chain;
+        chain = following;
+      }
+    }
+  }
+
+  // Drops every node that is not part of the current plane, and every memoised result.
+  private void evict() {
+    table = new Node[table.length];
+    size = 0;
+    stamp++;
+    Node[] emptyNodes = empty;
+    for (int level = 1; level < emptyNodes.length; level++) {
+      reintern(emptyNodes[level]);
+    }
+    reintern(root);
+  }
+
+  private void reintern(Node node) {
+    if (node.level == 0 || isInterned(node)) {
+      return;
+    }
+    node.result = null;
+    reintern(node.nw);
+    reintern(node.ne);
+    reintern(node.sw);
+    reintern(node.se);
+    insert(node);
+  }
+
+  private boolean isInterned(Node node) {
+    for (Node other = table[node.hash & (table.length - 1)]; other != null; other = other.next) {
+      if (other == node) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int hash(Node nw, Node ne, Node sw, Node se) {
+    int hash = nw.hash;
+    hash = hash * 31 + ne.hash;
+    hash = hash * 31 + sw.hash;
+    hash = hash * 31 + se.hash;
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * A square of {@code 2^level} by {@code 2^level} cells.
+   */
+  private static class Node {
+
+    private final Node nw;
+    private final Node ne;
+    private final Node sw;
+    private final Node se;
+    private final int level;
+    private final long population;
+    private final int hash;
+    private Node next;
+    private Node result;
+    private int resultStamp;
+
+    // A single dead (0) or live (1) cell.
+    private Node(int alive) {
+      this.nw = null;
+      this.ne = null;
+      this.sw = null;
+      this.se = null;
+      this.level = 0;
+      this.population = alive;
+      this.hash = alive + 1;
+    }
+
+    private Node(Node nw, Node ne, Node sw, Node se, int hash) {
+      this.nw = nw;
+      this.ne = ne;
+      this.sw = sw;
+      this.se = se;
+      this.level = nw.level + 1;
+      this.population = nw.population + ne.population + sw.population + se.population;
+      this.hash = hash;
+    }
+  }
+}
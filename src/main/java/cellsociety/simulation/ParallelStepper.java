@@ -0,0 +1,201 @@
+package cellsociety.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs work over a grid in row bands on a {@link ForkJoinPool}.
+ *
+ * @author Joshua Petitma
+ * <p>For local rules the rows of the grid are split in half recursively until each band is small
+ * enough, and the bands are handed to the pool's workers. Rules whose agents write to their
+ * neighbors instead use {@link #forEachColoredBand(int, RowBand)}, which colors the bands
+ * alternately so that no two bands running at the same time can touch the same cell.
+ */
+class ParallelStepper {
+
+  private static final int BANDS_PER_THREAD = 4;
+  // Every neighborhood reaches at most one row up or down, so two cells whose rows are at least
+  // three apart never share a neighbor. Bands of two rows or more keep same-colored bands apart.
+  private static final int MIN_COLORED_BAND_ROWS = 2;
+  private static final int MAX_COLORED_BANDS = 64;
+
+  private final ForkJoinPool pool;
+  private final int parallelism;
+
+  /**
+   * Creates a stepper backed by its own pool of worker threads.
+   *
+   * @param parallelism - The number of worker threads to use.
+   */
+  ParallelStepper(int parallelism) {
+    this.parallelism = parallelism;
+    this.pool = new ForkJoinPool(parallelism);
+  }
+
+  /**
+   * Returns the number of worker threads this stepper uses.
+   *
+   * @return - The number of worker threads.
+   */
+  int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Runs the given work over every row of a grid, in parallel bands, and waits for it to finish.
+   *
+   * <p>Any range of independent work can be split the same way, such as the positions of an
+   * {@link ActiveSet}.
+   *
+   * @param rows - The number of rows in the grid.
+   * @param band - The work to run over each band of rows.
+   */
+  void forEachBand(int rows, RowBand band) {
+    int rowsPerBand = Math.max(1, rows / (parallelism * BANDS_PER_THREAD));
+    pool.invoke(new BandTask(band, 0, rows, rowsPerBand));
+  }
+
+  /**
+   * Runs the given work over every row of a grid in two phases and waits for it to finish.
+   *
+   * <p>The rows are cut into an even number of bands. The even bands run in parallel first, then
+   * the odd bands. Bands of the same color are separated by a whole band of the other color (also
+   * across the wrap of a toroidal grid), so agents moving into or claiming neighboring cells can
+   * never collide. The band layout depends only on the number of rows, never on the number of
+   * threads, so the order cells are visited in is the same for any parallelism.
+   *
+   * @param rows - The number of rows in the grid.
+   * @param band - The work to run over each band of rows.
+   */
+  void forEachColoredBand(int rows, RowBand band) {
+    int rowsPerBand = coloredBandRows(rows);
+    int bands = coloredBandCount(rows);
+    if (bands < 2) {
+      band.compute(0, rows);
+      return;
+    }
+    for (int color = 0; color < 2; color++) {
+      List<BandTask> tasks = new ArrayList<>();
+      for (int i = color; i < bands; i += 2) {
+        int fromRow = i * rowsPerBand;
+        int toRow = i == bands - 1 ? rows : fromRow + rowsPerBand;
+        tasks.add(new BandTask(band, fromRow, toRow, toRow - fromRow));
+      }
+      pool.invoke(new ColorTask(tasks));
+    }
+  }
+
+  /**
+   * Runs the given work over every row of a grid on the calling thread, visiting the bands in the
+   * same order as {@link #forEachColoredBand(int, RowBand)}.
+   *
+   * <p>Stepping moving agents this way gives the same result as stepping them on any number of
+   * threads.
+   *
+   * @param rows - The number of rows in the grid.
+   * @param band - The work to run over each band of rows.
+   */
+  static void forEachColoredBandInOrder(int rows, RowBand band) {
+    int rowsPerBand = coloredBandRows(rows);
+    int bands = coloredBandCount(rows);
+    if (bands < 2) {
+      band.compute(0, rows);
+      return;
+    }
+    for (int color = 0; color < 2; color++) {
+      for (int i = color; i < bands; i += 2) {
+        int fromRow = i * rowsPerBand;
+        band.compute(fromRow, i == bands - 1 ? rows : fromRow + rowsPerBand);
+      }
+    }
+  }
+
+  /**
+   * Returns the band a row falls in under the layout of
+   * {@link #forEachColoredBand(int, RowBand)}.
+   *
+   * @param rows - The number of rows in the grid.
+   * @param row  - The row to look up.
+   * @return - The position of the row's band from the top, or 0 if the grid is a single band.
+   */
+  static int coloredBandOf(int rows, int row) {
+    int bands = coloredBandCount(rows);
+    return bands < 2 ? 0 : Math.min(row / coloredBandRows(rows), bands - 1);
+  }
+
+  private static int coloredBandRows(int rows) {
+    return Math.max(MIN_COLORED_BAND_ROWS, rows / MAX_COLORED_BANDS);
+  }
+
+  private static int coloredBandCount(int rows) {
+    return (rows / coloredBandRows(rows)) & ~1;
+  }
+
+  /**
+   * Stops the worker threads. The stepper cannot be used afterwards.
+   */
+  void shutdown() {
+    pool.shutdown();
+  }
+
+  /**
+   * Work to be run over a band of rows.
+   */
+  interface RowBand {
+
+    /**
+     * Runs over the rows from {@code fromRow} (inclusive) to {@code toRow} (exclusive).
+     *
+     * @param fromRow - The first row of the band.
+     * @param toRow   - One past the last row of the band.
+     */
+    void compute(int fromRow, int toRow);
+  }
+
+  // Runs every band of one color at once. Tasks are never serialized.
+  @SuppressWarnings("serial")
+  private static class ColorTask extends RecursiveAction {
+
+    private final List<BandTask> bands;
+
+    ColorTask(List<BandTask> bands) {
+      this.bands = bands;
+    }
+
+    @Override
+    protected void compute() {
+      invokeAll(bands);
+    }
+  }
+
+  // Splits a range of rows in half until it is no larger than a band. Tasks are never serialized.
+  @SuppressWarnings("serial")
+  private static class BandTask extends RecursiveAction {
+
+    private final RowBand band;
+    private final int fromRow;
+    private final int toRow;
+    private final int rowsPerBand;
+
+    BandTask(RowBand band, int fromRow, int toRow, int rowsPerBand) {
+      this.band = band;
+      this.fromRow = fromRow;
+      this.toRow = toRow;
+      this.rowsPerBand = rowsPerBand;
+    }
+
+    @Override
+    protected void compute() {
+      if (toRow - fromRow <= rowsPerBand) {
+        band.compute(fromRow, toRow);
+        return;
+      }
+      int middle = (fromRow + toRow) >>> 1;
+      invokeAll(new BandTask(band, fromRow, middle, rowsPerBand),
+          new BandTask(band, middle, toRow, rowsPerBand));
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package cellsociety.simulation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * An immutable copy of a simulation's parameters, published to every cell between steps.
+ *
+ * @author Joshua Petitma
+ * <p>Rules read their parameters inside their hot loops, so each cell type compiles the values it
+ * needs into an object of final fields, once per snapshot. The compiled object is cached on the
+ * snapshot and shared by every cell of that type, which turns each parameter read into a field
+ * read. A snapshot never changes once published, so cells stepped on other threads always see one
+ * consistent set of values.
+ */
+class ParameterSnapshot {
+
+  private final Map<String, Double> values;
+  private final Map<Class<?>, Object> compiled;
+
+  /**
+   * Copies the given parameters.
+   *
+   * @param values - The parameters of the simulation, keyed by name.
+   */
+  ParameterSnapshot(Map<String, Double> values) {
+    this.values = Map.copyOf(values);
+    this.compiled = new HashMap<>();
+  }
+
+  /**
+   * Returns the value of a parameter.
+   *
+   * @param key - The name of the parameter.
+   * @return - The value of that parameter, or -1 if the simulation does not define it.
+   */
+  double get(String key) {
+    return values.getOrDefault(key, -1.0);
+  }
+
+  /**
+   * Returns the parameters of one cell type, compiling them the first time they are asked for.
+   *
+   * <p>Snapshots are published to cells on the stepping thread before a step begins, so compiling
+   * needs no synchronization.
+   *
+   * @param type     - The class of the compiled parameters.
+   * @param compiler - Builds the compiled parameters from this snapshot.
+   * @param <T>      - The type of the compiled parameters.
+   * @return - The compiled parameters, shared by every caller passing the same type.
+   */
+  <T> T compile(Class<T> type, Function<ParameterSnapshot, T> compiler) {
+    Object parameters = compiled.get(type);
+    if (parameters == null) {
+      parameters = compiler.apply(this);
+      compiled.put(type, parameters);
+    }
+    return type.cast(parameters);
+  }
+}
@@ -13,6 +13,7 @@ public class PercolationCell extends Cell {
   public static final int EMPTY = 0;
   public static final int FULL = 1;
   public static final int BLOCKED = 2;
+  private Parameters parameters;
 
   /**
    * Construct this cell with its default state.
@@ -32,6 +33,17 @@ public class PercolationCell extends Cell {
     super(state);
   }
 
+  @Override
+  protected boolean hasLocalRule() {
+    return true;
+  }
+
+  @Override
+  protected void setParameters(ParameterSnapshot snapshot) {
+    super.setParameters(snapshot);
+    parameters = compileParameters(Parameters.class, Parameters::new);
+  }
+
   @Override
   public void poke() {
     setCellState(getCellState() + 1);
@@ -40,6 +52,11 @@ public class PercolationCell extends Cell {
     }
   }
 
+  @Override
+  protected int getStateCount() {
+    return BLOCKED + 1;
+  }
+
   /**
    * Computes the next state of this Cell by inspecting its neighbors and then determining the
    * transition accordingly.
@@ -51,15 +68,8 @@ public class PercolationCell extends Cell {
    */
   public void computeNextCellState() {
     if (getCellState() == EMPTY) {
-      int countFillNeighbors = 0;
-      for (Cell cell : getNeighbors()) {
-        if (cell.getCellState() == FULL) {
-          countFillNeighbors++;
-        }
-        if (countFillNeighbors >= getParam("FillNumber")) {
-          setNextCellState(FULL);
-          break;
-        }
+      if (getNeighborCount() > 0 && countNeighborsInState(FULL) >= parameters.fillNumber) {
+        setNextCellState(FULL);
       }
     } else if (getCellState() == FULL) {
       setNextCellState(FULL);
@@ -67,4 +77,14 @@ public class PercolationCell extends Cell {
       setNextCellState(BLOCKED);
     }
   }
+
+  // The number of full neighbors that fill a cell, compiled once per parameter snapshot
+  private static final class Parameters {
+
+    private final double fillNumber;
+
+    private Parameters(ParameterSnapshot snapshot) {
+      fillNumber = snapshot.get("FillNumber");
+    }
+  }
 }
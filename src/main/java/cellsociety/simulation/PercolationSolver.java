@@ -0,0 +1,187 @@
+package cellsociety.simulation;
+
+import static cellsociety.simulation.PercolationCell.EMPTY;
+import static cellsociety.simulation.PercolationCell.FULL;
+
+import java.util.Arrays;
+
+/**
+ * Computes where and when the fluid of a Percolation simulation will flow, without stepping it.
+ *
+ * @author Marc Chmielewski
+ * <p>An empty cell fills once at least FillNumber of its neighbors are full, and a full cell stays
+ * full, so every cell fills at a definite generation or never. Those generations are found level
+ * by level from the cells that are full now: each cell filled at generation {@code t} adds one to
+ * the count of full neighbors of every cell that counts it as a neighbor, and the cells whose count
+ * reaches FillNumber fill at {@code t + 1}. Filled cells are joined with their full neighbors in a
+ * union-find forest together with a virtual top and bottom node, so the first generation at which
+ * the fluid connects the top row to the bottom row falls out of the same pass. The whole solution
+ * costs a single visit to each cell and its neighbors.
+ */
+class PercolationSolver {
+
+  private static final int UNFILLED = -1;
+
+  private final int width;
+  private final int rows;
+  private final int top;
+  private final int bottom;
+  private final int[] neighborOffsets;
+  private final int[] neighborIndices;
+  private final int[] reverseOffsets;
+  private final int[] reverseIndices;
+  // The generation each cell is full from, or UNFILLED if it never fills
+  private final int[] fillTimes;
+  private final int[] fullNeighbors;
+  // The cells in the order they fill, which is also the order of their fill times
+  private final int[] filled;
+  private final int[] parents;
+  private int settlingTime;
+  private int spanningTime;
+
+  /**
+   * Creates a solver for the cells of a grid.
+   *
+   * @param grid  - The grid whose neighborhoods the fluid flows through.
+   * @param width - The number of columns in the grid.
+   * @param rows  - The number of rows in the grid.
+   */
+  PercolationSolver(CellGrid grid, int width, int rows) {
+    this.width = width;
+    this.rows = rows;
+    this.top = width * rows;
+    this.bottom = top + 1;
+    this.neighborOffsets = grid.getNeighborOffsets();
+    this.neighborIndices = grid.getNeighborIndices();
+    this.reverseOffsets = grid.getReverseNeighborOffsets();
+    this.reverseIndices = grid.getReverseNeighborIndices();
+    this.fillTimes = new int[width * rows];
+    this.fullNeighbors = new int[width * rows];
+    this.filled = new int[width * rows];
+    this.parents = new int[width * rows + 2];
+  }
+
+  /**
+   * Solves the simulation from its current states.
+   *
+   * @param states     - The buffer holding the current state of every cell.
+   * @param fillNumber - The FillNumber parameter of the simulation.
+   */
+  void solve(StateBuffer states, double fillNumber) {
+    Arrays.fill(fillTimes, UNFILLED);
+    Arrays.fill(fullNeighbors, 0);
+    for (int i = 0; i < parents.length; i++) {
+      parents[i] = i;
+    }
+    int count = 0;
+    for (int i = 0; i < fillTimes.length; i++) {
+      if (states.get(i) == FULL) {
+        fillTimes[i] = 0;
+        filled[count++] = i;
+      }
+    }
+    if (fillNumber <= 0) {
+      // Every empty cell with a neighbor fills on the first step, full neighbors or not
+      for (int i = 0; i < fillTimes.length; i++) {
+        if (fillTimes[i] == UNFILLED && states.get(i) == EMPTY
+            && neighborOffsets[i + 1] > neighborOffsets[i]) {
+          fillTimes[i] = 1;
+          filled[count++] = i;
+        }
+      }
+    }
+    settlingTime = 0;
+    spanningTime = -1;
+    int levelStart = 0;
+    for (int time = 0; levelStart < count; time++) {
+      int levelEnd = levelStart;
+      while (levelEnd < count && fillTimes[filled[levelEnd]] == time) {
+        levelEnd++;
+      }
+      for (int k = levelStart; k < levelEnd; k++) {
+        join(filled[k]);
+      }
+      if (spanningTime < 0 && find(top) == find(bottom)) {
+        spanningTime = time;
+      }
+      for (int k = levelStart; k < levelEnd; k++) {
+        int cell = filled[k];
+        for (int r = reverseOffsets[cell]; r < reverseOffsets[cell + 1]; r++) {
+          int neighbor = reverseIndices[r];
+          if (fillTimes[neighbor] == UNFILLED && states.get(neighbor) == EMPTY
+              && ++fullNeighbors[neighbor] >= fillNumber) {
+            fillTimes[neighbor] = time + 1;
+            filled[count++] = neighbor;
+          }
+        }
+      }
+      if (count > levelEnd) {
+        settlingTime = time + 1;
+      }
+      levelStart = levelEnd;
+    }
+  }
+
+  /**
+   * Returns the generation a cell is full from.
+   *
+   * @param index - The row-major index of the cell.
+   * @return - The number of steps until the cell is full, 0 if it already is, or -1 if it never
+   *     fills.
+   */
+  int getFillTime(int index) {
+    return fillTimes[index];
+  }
+
+  /**
+   * Returns the number of steps after which no cell changes any more.
+   *
+   * @return - The fill time of the last cell to fill, or 0 if none will.
+   */
+  int getSettlingTime() {
+    return settlingTime;
+  }
+
+  /**
+   * Returns the number of steps after which full cells first connect the top row to the bottom
+   * row.
+   *
+   * @return - The spanning time, 0 if they already do, or -1 if they never will.
+   */
+  int getSpanningTime() {
+    return spanningTime;
+  }
+
+  // Joins a newly filled cell with its full neighbors, and with the top or bottom of the grid.
+  private void join(int cell) {
+    for (int n = neighborOffsets[cell]; n < neighborOffsets[cell + 1]; n++) {
+      if (fillTimes[neighborIndices[n]] != UNFILLED) {
+        union(cell, neighborIndices[n]);
+      }
+    }
+    int row = cell / width;
+    if (row == 0) {
+      union(cell, top);
+    }
+    if (row == rows - 1) {
+      union(cell, bottom);
+    }
+  }
+
+  private void union(int a, int b) {
+    int rootA = find(a);
+    int rootB = find(b);
+    if (rootA != rootB) {
+      parents[rootA] = rootB;
+    }
+  }
+
+  // Finds the root of a node, halving the path to it along the way.
+  private int find(int node) {
+    while (parents[node] != node) {
+      parents[node] = parents[parents[node]];
+      node = parents[node];
+    }
+    return node;
+  }
+}
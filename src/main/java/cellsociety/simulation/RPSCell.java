@@ -13,6 +13,7 @@ public class RPSCell extends Cell {
   public static final int ROCK = 0;
   public static final int PAPER = 1;
   public static final int SCISSORS = 2;
+  private Parameters parameters;
 
 
   /**
@@ -33,6 +34,17 @@ public class RPSCell extends Cell {
     super(state);
   }
 
+  @Override
+  protected boolean hasLocalRule() {
+    return true;
+  }
+
+  @Override
+  protected void setParameters(ParameterSnapshot snapshot) {
+    super.setParameters(snapshot);
+    parameters = compileParameters(Parameters.class, Parameters::new);
+  }
+
   @Override
   public void poke() {
     setCellState(getCellState() + 1);
@@ -41,6 +53,11 @@ public class RPSCell extends Cell {
     }
   }
 
+  @Override
+  protected int getStateCount() {
+    return SCISSORS + 1;
+  }
+
   /**
    * Computes the next state of this Cell by inspecting its neighbors and then determining the
    * transition accordingly.
@@ -55,10 +72,11 @@ public class RPSCell extends Cell {
     int numRock = 0;
     int numPaper = 0;
     int numScissors = 0;
-    for (Cell cell : getNeighbors()) {
-      if (cell.getCellState() == ROCK) {
+    for (int i = 0; i < getNeighborCount(); i++) {
+      int neighborState = getNeighborState(i);
+      if (neighborState == ROCK) {
         numRock++;
-      } else if (cell.getCellState() == PAPER) {
+      } else if (neighborState == PAPER) {
         numPaper++;
       } else {
         numScissors++;
@@ -66,21 +84,21 @@ public class RPSCell extends Cell {
     }
     switch (this.getCellState()) {
       case ROCK -> {
-        if (numPaper >= getParam("LossCount")) {
+        if (numPaper >= parameters.lossCount) {
           this.setNextCellState(PAPER);
         } else {
           this.setNextCellState(ROCK);
         }
       }
       case PAPER -> {
-        if (numScissors >= getParam("LossCount")) {
+        if (numScissors >= parameters.lossCount) {
           this.setNextCellState(SCISSORS);
         } else {
           this.setNextCellState(PAPER);
         }
       }
       case SCISSORS -> {
-        if (numRock >= getParam("LossCount")) {
+        if (numRock >= parameters.lossCount) {
           this.setNextCellState(ROCK);
         } else {
           this.setNextCellState(SCISSORS);
@@ -88,4 +106,14 @@ public class RPSCell extends Cell {
       }
     }
   }
+
+  // The number of winning neighbors that convert a cell, compiled once per parameter snapshot
+  private static final class Parameters {
+
+    private final double lossCount;
+
+    private Parameters(ParameterSnapshot snapshot) {
+      lossCount = snapshot.get("LossCount");
+    }
+  }
 }
@@ -0,0 +1,305 @@
+package cellsociety.simulation;
+
+import static cellsociety.simulation.SegregationCell.EMPTY;
+import static cellsociety.simulation.SegregationCell.TYPE_B;
+
+import java.util.Arrays;
+
+/**
+ * An engine for Schelling's model of segregation in which unhappy agents may move anywhere.
+ *
+ * @author Marc Chmielewski
+ * <p>Every cell keeps a count of its neighbors of each type, and the board keeps the unhappy
+ * agents and the empty cells in two dense sets. Each step the agents that are unhappy when the
+ * step begins take turns in a random order, and every one still unhappy on its turn moves to an
+ * empty cell drawn uniformly from the whole grid. A move only adjusts the counts of the cells
+ * around the two cells involved, so a step costs time in proportion to the number of unhappy
+ * agents rather than to the area of the grid, and a settled grid costs nothing to step.
+ */
+class SegregationBoard {
+
+  // The stream of the simulation's random source that turns and destinations are drawn from
+  private static final long MOVE_STREAM = -2;
+
+  private final int[] neighborOffsets;
+  private final int[] reverseOffsets;
+  private final int[] reverseIndices;
+  private final CellRandom moveRandom;
+  private final int[] types;
+  // neighborCounts[type][i] is the number of the neighbors of cell i holding that type
+  private final int[][] neighborCounts;
+  private final DenseSet unhappy;
+  private final DenseSet empty;
+  // This step's turn order, and the step in which each cell was last moved into
+  private final int[] turns;
+  private final int[] movedIn;
+  // The cells whose type changed this step, possibly listed twice
+  private final int[] changed;
+  private int changedCount;
+  private int turnCount;
+  private int epoch;
+  private double cutoffPercentage;
+
+  /**
+   * Creates an empty board over the cells of a grid.
+   *
+   * @param grid     - The grid whose neighborhoods decide how happy each agent is.
+   * @param numCells - The number of cells in the grid.
+   */
+  SegregationBoard(CellGrid grid, int numCells) {
+    this.neighborOffsets = grid.getNeighborOffsets();
+    this.reverseOffsets = grid.getReverseNeighborOffsets();
+    this.reverseIndices = grid.getReverseNeighborIndices();
+    this.moveRandom = new CellRandom(0);
+    this.types = new int[numCells];
+    this.neighborCounts = new int[TYPE_B + 1][numCells];
+    this.unhappy = new DenseSet(numCells);
+    this.empty = new DenseSet(numCells);
+    this.turns = new int[numCells];
+    this.movedIn = new int[numCells];
+    this.changed = new int[2 * numCells];
+  }
+
+  /**
+   * Sets the share of like neighbors an agent needs to stay put, re-judging every agent if it
+   * changed.
+   *
+   * @param cutoffPercentage - The CutoffPercentage parameter of the simulation.
+   */
+  void setCutoff(double cutoffPercentage) {
+    if (cutoffPercentage == this.cutoffPercentage) {
+      return;
+    }
+    this.cutoffPercentage = cutoffPercentage;
+    for (int i = 0; i < types.length; i++) {
+      judge(i);
+    }
+  }
+
+  /**
+   * Reads the current states of a buffer into the board and counts every cell's neighbors.
+   *
+   * @param states - The buffer to read the agents from.
+   */
+  void load(StateBuffer states) {
+    for (int[] counts : neighborCounts) {
+      Arrays.fill(counts, 0);
+    }
+    empty.clear();
+    unhappy.clear();
+    for (int i = 0; i < types.length; i++) {
+      types[i] = states.get(i);
+      if (types[i] == EMPTY) {
+        empty.add(i);
+      }
+      for (int r = reverseOffsets[i]; r < reverseOffsets[i + 1]; r++) {
+        neighborCounts[types[i]][reverseIndices[r]]++;
+      }
+    }
+    for (int i = 0; i < types.length; i++) {
+      judge(i);
+    }
+  }
+
+  /**
+   * Returns the share of like neighbors an agent currently needs to stay put.
+   *
+   * @return - The CutoffPercentage the board last judged every agent by.
+   */
+  double getCutoff() {
+    return cutoffPercentage;
+  }
+
+  /**
+   * Returns the unhappy agents in the order the board keeps them, which decides the order of the
+   * next step's turns.
+   *
+   * @return - The row-major indices of the unhappy agents.
+   */
+  int[] getUnhappy() {
+    return unhappy.toArray();
+  }
+
+  /**
+   * Returns the empty cells in the order the board keeps them, which decides where agents move.
+   *
+   * @return - The row-major indices of the empty cells.
+   */
+  int[] getEmpty() {
+    return empty.toArray();
+  }
+
+  /**
+   * Reads the current states of a buffer into the board, keeping the unhappy agents and empty
+   * cells in the given orders, e.g. those they were kept in when a checkpoint was saved.
+   *
+   * @param states  - The buffer to read the agents from.
+   * @param cutoff  - The share of like neighbors the saved board judged every agent by.
+   * @param unhappy - The unhappy agents, as returned by {@link #getUnhappy()}.
+   * @param empty   - The empty cells, as returned by {@link #getEmpty()}.
+   * @throws IllegalArgumentException if the cells given are not the unhappy agents and the empty
+   *                                  cells of the buffer.
+   */
+  void restore(StateBuffer states, double cutoff, int[] unhappy, int[] empty) {
+    load(states);
+    setCutoff(cutoff);
+    this.unhappy.reorder(unhappy);
+    this.empty.reorder(empty);
+  }
+
+  /**
+   * Returns the number of agents that took a turn in the most recent step.
+   *
+   * @return - The number of agents that were unhappy when the step began.
+   */
+  int getTurnCount() {
+    return turnCount;
+  }
+
+  /**
+   * Moves every unhappy agent to a random empty cell, one agent at a time.
+   *
+   * <p>An agent that became happy by the time its turn comes, because its neighborhood changed,
+   * stays put, and an agent moves at most once per step. The turn order and destinations depend
+   * only on the agents, the seed and the generation.
+   *
+   * @param random - The simulation's random source, at the generation being computed.
+   */
+  void step(CellRandom random) {
+    moveRandom.follow(random, MOVE_STREAM);
+    epoch++;
+    changedCount = 0;
+    turnCount = unhappy.size();
+    for (int k = 0; k < turnCount; k++) {
+      int j = bounded(moveRandom.nextLong(k, 0), k + 1);
+      turns[k] = turns[j];
+      turns[j] = unhappy.get(k);
+    }
+    for (int k = 0; k < turnCount && empty.size() > 0; k++) {
+      int from = turns[k];
+      if (movedIn[from] == epoch || !unhappy.contains(from)) {
+        continue;
+      }
+      move(from, empty.get(bounded(moveRandom.nextLong(k, 1), empty.size())));
+    }
+  }
+
+  /**
+   * Writes every cell that changed in the most recent step back to a buffer.
+   *
+   * @param states - The buffer to write the moved agents to.
+   */
+  void commit(StateBuffer states) {
+    for (int k = 0; k < changedCount; k++) {
+      states.commit(changed[k], types[changed[k]]);
+    }
+  }
+
+  private void move(int from, int to) {
+    int type = types[from];
+    types[from] = EMPTY;
+    types[to] = type;
+    empty.remove(to);
+    empty.add(from);
+    movedIn[to] = epoch;
+    changed[changedCount++] = from;
+    changed[changedCount++] = to;
+    recount(from, type, EMPTY);
+    recount(to, EMPTY, type);
+    judge(from);
+    judge(to);
+  }
+
+  // Moves a changed cell from one count to another in every cell that counts it as a neighbor.
+  private void recount(int index, int previous, int type) {
+    for (int r = reverseOffsets[index]; r < reverseOffsets[index + 1]; r++) {
+      int neighbor = reverseIndices[r];
+      neighborCounts[previous][neighbor]--;
+      neighborCounts[type][neighbor]++;
+      judge(neighbor);
+    }
+  }
+
+  // Adds a cell to the unhappy agents or takes it out, following the same rule as SegregationCell.
+  private void judge(int index) {
+    int type = types[index];
+    int neighbors = neighborOffsets[index + 1] - neighborOffsets[index];
+    boolean isUnhappy = type != EMPTY
+        && !((double) neighborCounts[type][index] / neighbors >= cutoffPercentage);
+    if (isUnhappy && !unhappy.contains(index)) {
+      unhappy.add(index);
+    } else if (!isUnhappy && unhappy.contains(index)) {
+      unhappy.remove(index);
+    }
+  }
+
+  // Maps 64 random bits onto [0, bound) without a division.
+  private static int bounded(long bits, int bound) {
+    return (int) (((bits >>> 32) * bound) >>> 32);
+  }
+
+  // A set of cell indices supporting constant time insertion, removal and random access.
+  private static final class DenseSet {
+
+    private final int[] members;
+    // The position of each cell within members, or -1 if it is not in the set
+    private final int[] positions;
+    private int size;
+
+    DenseSet(int numCells) {
+      this.members = new int[numCells];
+      this.positions = new int[numCells];
+      Arrays.fill(positions, -1);
+    }
+
+    int size() {
+      return size;
+    }
+
+    int get(int position) {
+      return members[position];
+    }
+
+    boolean contains(int index) {
+      return positions[index] >= 0;
+    }
+
+    void add(int index) {
+      positions[index] = size;
+      members[size++] = index;
+    }
+
+    void remove(int index) {
+      int position = positions[index];
+      int last = members[--size];
+      members[position] = last;
+      positions[last] = position;
+      positions[index] = -1;
+    }
+
+    // Lists the same members in the given order.
+    void reorder(int[] order) {
+      if (order.length != size) {
+        throw new IllegalArgumentException("Expected " + size + " cells, not " + order.length);
+      }
+      for (int k = 0; k < size; k++) {
+        if (positions[order[k]] < 0) {
+          throw new IllegalArgumentException("Cell " + order[k] + " does not belong");
+        }
+        members[k] = order[k];
+        positions[order[k]] = k;
+      }
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(members, size);
+    }
+
+    void clear() {
+      for (int k = 0; k < size; k++) {
+        positions[members[k]] = -1;
+      }
+      size = 0;
+    }
+  }
+}
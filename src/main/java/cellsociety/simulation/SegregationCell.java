@@ -1,6 +1,5 @@
 package cellsociety.simulation;
 
-import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -14,6 +13,7 @@ public class SegregationCell extends Cell {
   public static final int EMPTY = 0;
   public static final int TYPE_A = 1;
   public static final int TYPE_B = 2;
+  private Parameters parameters;
 
   /**
    * Construct this cell with its default state.
@@ -33,6 +33,12 @@ public class SegregationCell extends Cell {
     super(state);
   }
 
+  @Override
+  protected void setParameters(ParameterSnapshot snapshot) {
+    super.setParameters(snapshot);
+    parameters = compileParameters(Parameters.class, Parameters::new);
+  }
+
   @Override
   public void poke() {
     setCellState(getCellState() + 1);
@@ -41,6 +47,16 @@ public class SegregationCell extends Cell {
     }
   }
 
+  @Override
+  protected boolean drawsRandomNumbers() {
+    return true;
+  }
+
+  @Override
+  protected int getStateCount() {
+    return TYPE_B + 1;
+  }
+
   /**
    * Computes the next state of this Cell by inspecting its neighbors and then determining the
    * transition accordingly.
@@ -50,28 +66,24 @@ public class SegregationCell extends Cell {
    * <p>If this Cell is surrounded by more than cutoffPercentage other cells of its own type it
    * remains in place. Otherwise, if there is an available, adjacent empty cell it will attempt to
    * swap to that Cell.
+   *
+   * <p>With a positive GlobalRelocation parameter the simulation moves unhappy agents itself, to
+   * empty cells anywhere on the grid, and this method is not called; see
+   * {@link SegregationBoard}.
    */
   public void computeNextCellState() {
-    double numTypeA = 0;
-    double numTypeB = 0;
-    Collections.shuffle(getNeighbors());
-    for (Cell cell : getNeighbors()) {
-      if (cell.getCellState() == TYPE_A) {
-        numTypeA++;
-      } else if (cell.getCellState() == TYPE_B) {
-        numTypeB++;
-      }
-    }
+    double numTypeA = countNeighborsInState(TYPE_A);
+    double numTypeB = countNeighborsInState(TYPE_B);
     switch (this.getCellState()) {
       case TYPE_A -> {
-        if ((numTypeA / getNeighbors().size()) >= getParam("CutoffPercentage")) {
+        if ((numTypeA / getNeighborCount()) >= parameters.cutoffPercentage) {
           this.setNextCellState(TYPE_A); // remains the same
         } else {
           swapWithEmpty();
         }
       }
       case TYPE_B -> {
-        if ((numTypeB / getNeighbors().size()) >= getParam("CutoffPercentage")) {
+        if ((numTypeB / getNeighborCount()) >= parameters.cutoffPercentage) {
           this.setNextCellState(TYPE_B); // remains the same
         } else {
           swapWithEmpty();
@@ -80,18 +92,33 @@ public class SegregationCell extends Cell {
     }
   }
 
+  // Swaps with an empty neighbor chosen uniformly at random (reservoir sampling over the
+  // neighbors, so the shared neighbor topology never has to be shuffled).
   private void swapWithEmpty() {
-    boolean swapSuccess = false;
-    for (Cell cell : getNeighbors()) {
-      if (cell.getCellState() == EMPTY && cell.getNextCellState() == EMPTY) {
-        setNextCellState(cell.getCellState());
-        cell.setNextCellState(this.getCellState());
-        swapSuccess = true;
-        break;
+    int target = -1;
+    int candidates = 0;
+    for (int i = 0; i < getNeighborCount(); i++) {
+      if (getNeighborState(i) == EMPTY && getNeighborNextState(i) == EMPTY) {
+        if (randomDraw(candidates) * ++candidates < 1) {
+          target = i;
+        }
       }
     }
-    if (!swapSuccess) {
+    if (target >= 0) {
+      setNextCellState(EMPTY);
+      getNeighbor(target).setNextCellState(this.getCellState());
+    } else {
       this.setNextCellState(getCellState());
     }
   }
+
+  // The share of like neighbors an agent needs to stay, compiled once per parameter snapshot
+  private static final class Parameters {
+
+    private final double cutoffPercentage;
+
+    private Parameters(ParameterSnapshot snapshot) {
+      cutoffPercentage = snapshot.get("CutoffPercentage");
+    }
+  }
 }
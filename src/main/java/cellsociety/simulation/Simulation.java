@@ -1,12 +1,25 @@
 package cellsociety.simulation;
 
+import cellsociety.util.CheckpointHeader;
 import cellsociety.util.SimulationConfiguration;
 import cellsociety.util.SimulationConfiguration.CellShape;
 import cellsociety.util.SimulationConfiguration.RandomGridGenerationType;
+import cellsociety.util.SimulationConfiguration.SimulationEdgeType;
+import cellsociety.util.SimulationConfiguration.SimulationType;
 import cellsociety.util.SimulationWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
 
 /**
  * This class holds all simulation data and fields.
@@ -18,9 +31,36 @@ import java.util.Map;
 public class Simulation {
 
   private final SimulationConfiguration configuration;
+  private final StateBuffer states;
+  private final CellRandom random;
+  private final Map<String, Double> pendingParameters;
+  // Created once so that stepping allocates nothing
+  private final ParallelStepper.RowBand rowComputer = this::computeRows;
+  private final ParallelStepper.RowBand layerComputer = this::computeLayers;
+  private final ParallelStepper.RowBand agentComputer = this::computeAgents;
+  private ParameterSnapshot parameters;
   private CellGrid cellGrid;
   private List<Cell> cells;
   private final int numCells;
+  private boolean localRules;
+  private ParallelStepper stepper;
+  private ConwayBitBoard bitBoard;
+  private HashLife hashLife;
+  private ActiveSet activeSet;
+  private AgentIndex agents;
+  private SegregationBoard segregationBoard;
+  private PercolationSolver percolationSolver;
+  private CycleDetector cycles;
+  private DeltaLog.Writer recorder;
+  private long[] recordedChanges;
+  private StepHistory history;
+  private boolean relocating;
+  private int activeCellCount;
+  private TiledWorld world;
+  private Supplier<Cell> cellSupplier;
+  private List<Cell> scratchCells;
+  private int viewportRow;
+  private int viewportColumn;
 
   /**
    * Initialize a simulation with the given configuration.
@@ -30,6 +70,22 @@ public class Simulation {
   public Simulation(SimulationConfiguration config) {
     this.numCells = config.getHeight() * config.getWidth();
     this.configuration = config;
+    this.states = new StateBuffer(config.getWidth(), config.getHeight());
+    this.random = new CellRandom(config.hasSeed() ? config.getSeed() : System.nanoTime());
+    this.pendingParameters = new HashMap<>();
+    this.scratchCells = List.of();
+  }
+
+  /**
+   * Gives the simulation a way to create extra cells of its type.
+   *
+   * <p>Simulations on an {@link SimulationEdgeType#INFINITE} grid evaluate their rules on a
+   * scratch grid of extra cells. Must be called before {@link #initialize(List)}.
+   *
+   * @param cellSupplier - Creates a fresh cell of this simulation's type.
+   */
+  protected void setCellSupplier(Supplier<Cell> cellSupplier) {
+    this.cellSupplier = cellSupplier;
   }
 
   /**
@@ -39,6 +95,34 @@ public class Simulation {
    */
   protected void initialize(List<Cell> cells) {
     this.cells = cells;
+    this.parameters = new ParameterSnapshot(configuration.getSimulationParameters());
+    if (!cells.isEmpty()) {
+      states.addAttributes(cells.get(0).getAttributeCount());
+      states.addLayers(cells.get(0).getLayerCount());
+    }
+    for (int i = 0; i < cells.size(); i++) {
+      cells.get(i).attach(states, i);
+      cells.get(i).setRandom(random);
+      cells.get(i).setParameters(parameters);
+    }
+    this.localRules = !cells.isEmpty() && cells.get(0).hasLocalRule();
+    if (ConwayBitBoard.supports(configuration)) {
+      this.bitBoard = ConwayBitBoard.forConfiguration(configuration);
+    } else if (HashLife.supports(configuration)) {
+      this.hashLife = HashLife.forConfiguration(configuration);
+    } else if (localRules && cellSupplier != null
+        && configuration.getEdgeType() == SimulationEdgeType.INFINITE
+        && configuration.getCellShape() == CellShape.RECTANGLE) {
+      this.scratchCells = new ArrayList<>();
+      for (int i = 0; i < TiledWorld.SCRATCH_SIZE * TiledWorld.SCRATCH_SIZE; i++) {
+        Cell cell = cellSupplier.get();
+        cell.setParameters(parameters);
+        scratchCells.add(cell);
+      }
+      this.world = new TiledWorld(scratchCells, configuration, random);
+    }
+    this.viewportRow = configuration.getViewportRow();
+    this.viewportColumn = configuration.getViewportColumn();
     this.cellGrid =
         new CellGrid(
             cells,
@@ -47,33 +131,55 @@ public class Simulation {
             configuration.getCellShape(),
             configuration.getEdgeType(),
             configuration.getNeighborhodSize());
+    if (localRules && bitBoard == null && !isInfinite()) {
+      this.activeSet = new ActiveSet(cellGrid, numCells);
+    } else if (!localRules && !cells.isEmpty() && cells.get(0).hasAgents()) {
+      this.agents = new AgentIndex(cellGrid, getNumCols(), getNumRows(),
+          cells.get(0)::isAgentState);
+    }
     RandomGridGenerationType type = configuration.getRandomGridGenerationType();
     if (type == RandomGridGenerationType.COUNT || type == RandomGridGenerationType.FRACTION) {
       createRandomStates(configuration.getRandomInitialStates(), type);
     } else {
-      List<int[]> nonDefaultStates = configuration.getInitialNonDefaultCellStates();
-      for (int[] arr : nonDefaultStates) {
-        int row = arr[0];
-        int col = arr[1];
-        Cell cell = cellGrid.getCell(row, col);
-        cell.setCellState(arr[2]);
+      configuration.getInitialStateGrid().forEach((row, col, state) -> {
+        if (isInfinite()) {
+          setWorldCell(row, col, state);
+          return;
+        }
+        if (row < 0 || col < 0 || row >= getNumRows() || col >= getNumCols()) {
+          throw new IndexOutOfBoundsException("No cell at row " + row + ", column " + col);
+        }
+        cellGrid.getCell(row, col).setCellState(state);
+      });
+      if (isInfinite()) {
+        storeWindow();
+        states.clearModified();
       }
     }
   }
 
+  // Sets a cell of the infinite world, which may lie outside of the visible grid.
+  private void setWorldCell(int row, int col, int state) {
+    if (hashLife != null) {
+      hashLife.setCell(col, row, state == ConwayCell.ALIVE);
+    } else {
+      world.set(row, col, state);
+    }
+  }
+
+  // Places randomly generated states; the placement is drawn from the simulation's seed, so a
+  // seeded configuration always starts from the same grid.
   private void createRandomStates(Map<Integer, Double> freqMap, RandomGridGenerationType type) {
-    int rows = configuration.getWidth();
-    int cols = configuration.getHeight();
+    SplittableRandom placement = new SplittableRandom(random.getSeed());
+    int rows = getNumRows();
+    int cols = getNumCols();
     freqMap.forEach(
         (Integer state, Double freq) -> {
-          double target = type == RandomGridGenerationType.COUNT ? freq : numCells / freq;
+          double target = type == RandomGridGenerationType.COUNT ? freq : numCells * freq;
           for (int i = 0; i < target; i++) {
-            int cellValue = 1;
             // keeps going till identifies empty cell
-            while (cellValue != 0) {
-              int row = (int) (Math.random() * rows);
-              int col = (int) (Math.random() * cols);
-              Cell cell = cellGrid.getCell(row, col);
+            while (true) {
+              Cell cell = cellGrid.getCell(placement.nextInt(rows), placement.nextInt(cols));
               if (cell.getCellState() == 0) {
                 cell.setCellState(state);
                 break;
@@ -86,12 +192,225 @@ public class Simulation {
   /**
    * Set cells in a state to be prepared to advanced to their next state.
    *
-   * <p>This method calls cells to compute their next state.
+   * <p>This method calls cells to compute their next state. When {@link #setParallelism(int)} has
+   * enabled more than one thread, cells with local rules are computed in parallel row bands, and
+   * moving agents are computed in alternately colored bands so that no two agents running at the
+   * same time can claim the same cell. Cells with local rules are only evaluated while they or one
+   * of their neighbors changed on the previous step, and in Wa-Tor, SugarScape and Foraging Ants
+   * only the cells holding an agent are evaluated: in a fresh random order each step while they
+   * are sparse, and in grid order from a random cell of each band once they are crowded. Field
+   * layers, such as the pheromones of Foraging Ants or the sugar of SugarScape, are first updated
+   * for the whole grid in one bulk pass, in parallel row bands when enabled. Segregation
+   * simulations with a positive GlobalRelocation parameter instead move their unhappy agents to
+   * empty cells anywhere on the grid, one agent at a time; see {@link SegregationBoard}.
    */
   protected void computeState() {
-    for (Cell cell : cells) {
-      cell.computeNextCellState();
+    publishParameters();
+    if (states.getLayerCount() > 0) {
+      if (stepper == null) {
+        computeLayers(0, getNumRows());
+      } else {
+        stepper.forEachBand(getNumRows(), layerComputer);
+      }
+      if (cells.get(0).diffusesLayers()) {
+        states.swapLayers();
+      }
+    }
+    activeCellCount = activeSet == null ? numCells : activeSet.size();
+    if (stepper != null) {
+      // Bands running at once would otherwise race on the hash and on the changed cells' bits
+      states.deferWrites();
+    }
+    boolean wasRelocating = relocating;
+    relocating = configuration.getSimulationType() == SimulationType.SEGREGATION
+        && parameters.get("GlobalRelocation") > 0;
+    if (relocating) {
+      computeRelocation(wasRelocating);
+    } else if (bitBoard != null) {
+      computeBitBoard();
+    } else if (hashLife != null) {
+      syncHashLife();
+      hashLife.advance(1);
+    } else if (world != null) {
+      syncWorld();
+      world.step();
+    } else if (activeSet != null) {
+      computeActiveSet();
+    } else if (agents != null) {
+      computeAgentIndex();
+    } else if (stepper == null && localRules) {
+      computeRows(0, getNumRows());
+    } else if (stepper == null) {
+      ParallelStepper.forEachColoredBandInOrder(getNumRows(), rowComputer);
+    } else if (localRules) {
+      stepper.forEachBand(getNumRows(), rowComputer);
+    } else {
+      stepper.forEachColoredBand(getNumRows(), rowComputer);
+    }
+    states.mergeDeferredWrites();
+  }
+
+  // Computes the next Conway generation on the bit board, reloading it first if any cell was
+  // poked since the last step.
+  private void computeBitBoard() {
+    if (states.clearModified()) {
+      bitBoard.load(states);
+    }
+    bitBoard.setRule(parameters.get("AliveNumberMin"), parameters.get("AliveNumberMax"),
+        parameters.get("SpawnNumberMin"), parameters.get("SpawnNumberMax"));
+    if (stepper == null) {
+      bitBoard.computeRows(0, getNumRows());
+    } else {
+      stepper.forEachBand(getNumRows(), bitBoard::computeRows);
+    }
+  }
+
+  // Brings the HashLife plane up to date with any cells poked since the last step and with the
+  // current rule.
+  private void syncHashLife() {
+    syncWorld();
+    hashLife.setRule(parameters.get("AliveNumberMin"), parameters.get("AliveNumberMax"),
+        parameters.get("SpawnNumberMin"), parameters.get("SpawnNumberMax"));
+  }
+
+  // Pushes any cells poked since the last step from the visible grid into the infinite world.
+  private void syncWorld() {
+    if (!states.clearModified()) {
+      return;
+    }
+    if (hashLife != null) {
+      hashLife.load(states, viewportRow, viewportColumn);
+    } else {
+      world.load(states, viewportRow, viewportColumn);
+    }
+  }
+
+  // Copies the part of the infinite world under the viewport into the visible grid.
+  private void storeWindow() {
+    if (hashLife != null) {
+      hashLife.store(states, viewportRow, viewportColumn);
+    } else {
+      world.store(states, viewportRow, viewportColumn);
+    }
+  }
+
+  // Moves the unhappy agents of a Segregation simulation anywhere on the grid, first reloading the
+  // board if any cell was poked or the last step moved agents to neighbors only.
+  private void computeRelocation(boolean wasRelocating) {
+    if (segregationBoard == null) {
+      segregationBoard = new SegregationBoard(cellGrid, numCells);
+    }
+    if (states.clearModified() || !wasRelocating) {
+      segregationBoard.load(states);
     }
+    segregationBoard.setCutoff(parameters.get("CutoffPercentage"));
+    segregationBoard.step(random);
+    activeCellCount = segregationBoard.getTurnCount();
+  }
+
+  // Computes the next state of every active cell, waking every cell first if any was poked since
+  // the last step.
+  private void computeActiveSet() {
+    if (states.clearModified()) {
+      activeSet.activateAll();
+    }
+    activeCellCount = activeSet.size();
+    if (stepper == null) {
+      computeActiveCells(0, activeCellCount);
+    } else {
+      stepper.forEachBand(activeCellCount, this::computeActiveCells);
+    }
+  }
+
+  // Computes the next state of the active cells at the given positions of the active set.
+  private void computeActiveCells(int from, int to) {
+    for (int k = from; k < to; k++) {
+      cells.get(activeSet.get(k)).computeNextCellState();
+    }
+  }
+
+  // Computes the next state of every agent, finding them all again first if any cell was poked
+  // since the last step.
+  private void computeAgentIndex() {
+    if (states.clearModified()) {
+      agents.rebuild(states);
+    }
+    agents.shuffle(random, states);
+    activeCellCount = agents.size();
+    if (stepper == null) {
+      ParallelStepper.forEachColoredBandInOrder(getNumRows(), agentComputer);
+    } else {
+      stepper.forEachColoredBand(getNumRows(), agentComputer);
+    }
+    // Agents overwrite current states as they move; the index already accounts for those
+    states.clearModified();
+  }
+
+  // Computes the next state of the agents in the given range of rows, in this step's order.
+  private void computeAgents(int fromRow, int toRow) {
+    int end = agents.bandEnd(toRow);
+    for (int k = agents.bandStart(fromRow); k < end; k++) {
+      cells.get(agents.get(k)).computeNextCellState();
+    }
+  }
+
+  // Computes the next state of every cell in the given range of rows.
+  private void computeRows(int fromRow, int toRow) {
+    int width = getNumCols();
+    for (int i = fromRow * width; i < toRow * width; i++) {
+      cells.get(i).computeNextCellState();
+    }
+  }
+
+  // Runs the bulk pass over the field layers of the given rows.
+  private void computeLayers(int fromRow, int toRow) {
+    cells.get(0).updateLayers(states, fromRow, toRow);
+  }
+
+  /**
+   * Sets the number of threads used to compute each step.
+   *
+   * <p>Simulations whose cells never write to their neighbors (Conway, Fire, Percolation and Rock
+   * Paper Scissors) give results identical to stepping on a single thread, including for seeded
+   * stochastic rules. Moving-agent simulations (Wa-Tor, Segregation, SugarScape and Ants) visit
+   * cells band by band instead of strictly row by row, on one thread as on many, and the agents
+   * within a band in an order drawn from the seed: shuffled while agents are sparse, and a sweep
+   * from a random cell once they are crowded. A seeded run of those is reproducible for any number
+   * of threads too.
+   *
+   * @param threads - The number of threads to use; 1 or less steps on the calling thread.
+   */
+  public void setParallelism(int threads) {
+    if (stepper != null) {
+      stepper.shutdown();
+      stepper = null;
+    }
+    if (threads > 1) {
+      stepper = new ParallelStepper(threads);
+    }
+  }
+
+  /**
+   * Returns the number of threads used to compute each step.
+   *
+   * @return - The number of threads used to compute each step.
+   */
+  public int getParallelism() {
+    return stepper == null ? 1 : stepper.getParallelism();
+  }
+
+  /**
+   * Seeds the random numbers drawn by stochastic rules, making the run reproducible.
+   *
+   * <p>The seed is recorded in the configuration, so the simulation is written to disk with it.
+   * Random initial states are placed when the simulation is initialized, from the seed given in
+   * its configuration.
+   *
+   * @param seed - The seed to draw random numbers from.
+   */
+  public void setSeed(long seed) {
+    random.setSeed(seed);
+    configuration.updateSeed(seed);
   }
 
   /**
@@ -103,16 +422,82 @@ public class Simulation {
     return numCells;
   }
 
+  /**
+   * Returns the number of cells evaluated by the most recent step.
+   *
+   * <p>Simulations with local rules (Fire, Percolation, Rock Paper Scissors and Conway on
+   * triangular or hexagonal grids) skip cells whose own state and neighbors did not change on the
+   * previous step, so this tracks how much of the grid is still active. Wa-Tor, SugarScape and
+   * Foraging Ants only evaluate the cells holding an agent, and Segregation with global relocation
+   * only its unhappy agents. Every other simulation evaluates all of its cells.
+   *
+   * @return - The number of cells evaluated by the most recent step.
+   */
+  public int getActiveCellCount() {
+    return activeCellCount;
+  }
+
+  /**
+   * Counts the cells of the grid in each state.
+   *
+   * @return - The number of cells holding each state, indexed by state.
+   */
+  public int[] getStateCounts() {
+    int[] counts = new int[cells.isEmpty() ? 0 : cells.get(0).getStateCount()];
+    for (int i = 0; i < states.size(); i++) {
+      counts[states.get(i)]++;
+    }
+    return counts;
+  }
+
   /**
    * Sets the specific simulation parameter.
    *
-   * <p>Modifies the current simulation to set its parameter mid-simulation.
+   * <p>Modifies the current simulation to set its parameter mid-simulation. The change is queued
+   * and takes effect at the start of the next step, together with every other change made before
+   * it, so a step never runs with a mix of old and new values. May be called from any thread.
+   * {@link #getSimulationParameters()} shows the change once it has taken effect.
    *
    * @param param - The parameter to set.
    * @param value - The value to replace within the parameter
    */
   public void setParameter(String param, double value) {
-    this.configuration.updateSimulationParameter(param, value);
+    if (!getSimulationParameters().containsKey(param)) {
+      throw new IllegalArgumentException("Simulation parameters must be defined in order to be "
+          + "updated.");
+    }
+    synchronized (pendingParameters) {
+      pendingParameters.put(param, value);
+    }
+  }
+
+  // Applies the parameter changes queued since the last step and hands every cell a new snapshot.
+  private void publishParameters() {
+    synchronized (pendingParameters) {
+      if (pendingParameters.isEmpty()) {
+        return;
+      }
+      pendingParameters.forEach(configuration::updateSimulationParameter);
+      pendingParameters.clear();
+    }
+    refreshParameters();
+  }
+
+  // Hands every cell a snapshot of the configuration's parameters.
+  private void refreshParameters() {
+    parameters = new ParameterSnapshot(configuration.getSimulationParameters());
+    for (Cell cell : cells) {
+      cell.setParameters(parameters);
+    }
+    for (Cell cell : scratchCells) {
+      cell.setParameters(parameters);
+    }
+    if (activeSet != null) {
+      activeSet.activateAll();
+    }
+    if (cycles != null) {
+      cycles.reset();
+    }
   }
 
   /**
@@ -127,12 +512,27 @@ public class Simulation {
   /**
    * Advances cells to their next state.
    *
-   * <p>This method is usually called after calling {@link #computeState}
+   * <p>This method is usually called after calling {@link #computeState}. Every cell's state lives
+   * in the same {@link StateBuffer}, so committing is a single buffer swap. Conway simulations
+   * running on a bit board or a HashLife plane instead write back only the cells that flipped.
    */
   protected void commitState() {
-    for (Cell cell : cells) {
-      cell.updateCellState();
+    if (relocating) {
+      segregationBoard.commit(states);
+    } else if (bitBoard != null) {
+      bitBoard.commitRows(states, 0, getNumRows());
+      bitBoard.swap();
+    } else if (isInfinite()) {
+      storeWindow();
+    } else if (activeSet != null) {
+      activeSet.commit(states);
+    } else if (agents != null) {
+      agents.commit(states);
+    } else {
+      states.swap();
     }
+    random.advance();
+    recordStep();
   }
 
   /**
@@ -144,6 +544,15 @@ public class Simulation {
     return this.cells;
   }
 
+  /**
+   * Returns the buffer holding the state of every cell in row-major order.
+   *
+   * @return - The state buffer backing this simulation's cells.
+   */
+  public StateBuffer getStateBuffer() {
+    return this.states;
+  }
+
   /**
    * Returns the number of rows within the simulation.
    *
@@ -177,8 +586,400 @@ public class Simulation {
    * <p>This method computes and commits the next state of all the cells in the simulation.
    */
   public void step() {
+    if (history != null) {
+      history.beforeStep();
+    }
+    if (cycles != null) {
+      cycles.resetUnlessLatest(states.getHash());
+    }
     computeState();
     commitState();
+    if (cycles != null) {
+      cycles.record(states.getHash(), random.getGeneration());
+    }
+    if (history != null) {
+      history.afterStep();
+    }
+  }
+
+  /**
+   * Advances the simulation by the given number of generations.
+   *
+   * <p>Conway simulations on rectangular grids with infinite edges are fast-forwarded with
+   * HashLife, so millions of generations take about as long as a handful of steps; the grid shows
+   * the window of the unbounded plane starting at row 0, column 0. Percolation simulations on
+   * bounded grids fill every cell that the given number of steps would fill in one pass; see
+   * {@link PercolationSolver}. Every other simulation falls back to calling {@link #step()} once
+   * per generation, and stops early once {@link #isSettled()}, as further steps would change
+   * nothing. While a {@link StepHistory} is kept, every generation is stepped, shortcuts aside, so
+   * that the history holds one step for each.
+   *
+   * @param generations - The number of generations to advance by.
+   */
+  public void advance(long generations) {
+    if (hashLife != null) {
+      publishParameters();
+      syncHashLife();
+      hashLife.advance(generations);
+      storeWindow();
+      recordStep();
+      return;
+    }
+    if (history == null && canSolvePercolation()) {
+      fillPercolation(generations);
+      recordStep();
+      return;
+    }
+    for (long i = 0; i < generations; i++) {
+      if (history == null && isSettled()) {
+        random.advance(generations - i);
+        recordStep();
+        return;
+      }
+      step();
+    }
+  }
+
+  /**
+   * Turns on noticing when the grid returns to a state it held in a recent generation, or turns it
+   * off.
+   *
+   * <p>The simulation keeps a Zobrist hash of its grid that each step updates for the cells that
+   * changed, and remembers the hashes of the most recent generations; see {@link CycleDetector}.
+   * Only the states of the cells are hashed, so a repeat is certain to continue only for rules
+   * that draw no random numbers and keep no values beyond the states, like Conway; see
+   * {@link #hasExactCycles()}. Poking a cell or setting a parameter starts a fresh history. Has no
+   * effect on infinite worlds.
+   *
+   * @param historySize - The number of most recent generations to remember, which is also the
+   *                    longest period that can be detected; 0 turns detection off.
+   */
+  public void setCycleDetection(int historySize) {
+    if (historySize <= 0 || isInfinite()) {
+      cycles = null;
+      states.setHashing(false);
+      return;
+    }
+    states.setHashing(true);
+    cycles = new CycleDetector(historySize);
+    cycles.record(states.getHash(), random.getGeneration());
+  }
+
+  /**
+   * Whether a grid of this simulation that returns to an earlier state is certain to keep
+   * repeating from there, so that the cycles {@link #setCycleDetection(int)} finds are real.
+   *
+   * <p>That holds only when the next grid follows from the states of the cells alone: the rules
+   * draw no random numbers, move no agents in a shuffled order, and keep no attributes, layers or
+   * hidden values, as for Conway, Percolation and Rock-Paper-Scissors.
+   *
+   * @return - true if a repeated grid means the run has settled or started cycling.
+   */
+  public boolean hasExactCycles() {
+    if (cells.isEmpty()) {
+      return true;
+    }
+    Cell cell = cells.get(0);
+    return !cell.drawsRandomNumbers() && !cell.hasAgents() && states.getAttributeCount() == 0
+        && states.getLayerCount() == 0 && cell.getHiddenValueCount() == 0;
+  }
+
+  /**
+   * Returns the period of the cycle the grid has entered, if cycle detection is on.
+   *
+   * @return - 1 if the grid has reached a fixed point, the period of a longer cycle, or 0 if no
+   *     cycle was found.
+   */
+  public int getCyclePeriod() {
+    return cycles == null ? 0 : cycles.getPeriod();
+  }
+
+  /**
+   * Returns the step at which the grid entered its cycle, if cycle detection is on.
+   *
+   * @return - The number of steps since the simulation was created or last seeded after which the
+   *     grid first held a state of its cycle, or -1 if no cycle was found.
+   */
+  public long getCycleStart() {
+    return cycles == null ? -1 : cycles.getCycleStart();
+  }
+
+  /**
+   * Starts recording the trajectory of the grid to a file, replacing anything in it.
+   *
+   * <p>The grid as it is now is recorded as step 0, and every later commit appends a step holding
+   * only the cells that changed since the one before, including cells poked in between, with the
+   * whole grid every so often; see {@link DeltaLog}. The buffer notes the cells that change as
+   * they are written, so recording costs little more than the changes themselves. A {@link
+   * DeltaLog.Reader} rebuilds the grid at any step without running the rules again.
+   *
+   * @param file             - The file to record to.
+   * @param keyframeInterval - How many steps apart the whole grid is recorded; at least 1.
+   * @throws IOException if the file cannot be written to.
+   */
+  public void startRecording(File file, int keyframeInterval) throws IOException {
+    stopRecording();
+    recorder = new DeltaLog.Writer(file, getNumCols(), getNumRows(), keyframeInterval);
+    recordedChanges = states.startTracking();
+    recordStep();
+  }
+
+  /**
+   * Stops recording and closes the recording, if one was started.
+   *
+   * @throws IOException if the recording cannot be closed.
+   */
+  public void stopRecording() throws IOException {
+    if (recorder == null) {
+      return;
+    }
+    states.stopTracking(recordedChanges);
+    recordedChanges = null;
+    DeltaLog.Writer finished = recorder;
+    recorder = null;
+    finished.close();
+  }
+
+  // Appends the committed grid to the recording, if one was started.
+  private void recordStep() {
+    if (recorder == null) {
+      return;
+    }
+    try {
+      recorder.record(states, recordedChanges, random.getGeneration());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Starts keeping a history of the steps of this simulation in memory, replacing any history
+   * already kept, so that it can be stepped back and scrubbed through.
+   *
+   * <p>Each step is kept as the cells it changed with the states they held before, including cells
+   * poked in between, so a step costs memory in proportion to how much it changed; every so often
+   * the complete state of the simulation is kept as well, as a checkpoint. Once the history takes
+   * more memory than its budget, its oldest steps are dropped. Stepping the simulation while it is
+   * rewound continues from the step shown and drops the steps after it; see {@link StepHistory}.
+   *
+   * @param memoryBudget     - The number of bytes the history may take, beyond one copy of the
+   *                         grid's states.
+   * @param keyframeInterval - How many steps apart the complete state is kept; at least 1.
+   * @return - The history, through which the simulation is stepped back.
+   * @throws IllegalStateException if this simulation runs on an infinite world.
+   */
+  public StepHistory startHistory(long memoryBudget, int keyframeInterval) {
+    if (isInfinite()) {
+      throw new IllegalStateException("Only simulations on bounded grids can keep a history.");
+    }
+    stopHistory();
+    history = new StepHistory(this, memoryBudget, keyframeInterval);
+    return history;
+  }
+
+  /**
+   * Stops keeping a history and frees it, if one was started. A rewound simulation continues from
+   * the step shown.
+   */
+  public void stopHistory() {
+    if (history == null) {
+      return;
+    }
+    StepHistory finished = history;
+    history = null;
+    finished.close();
+  }
+
+  // The seed and generation of the random numbers, for a history to notice when they jump.
+  long getSeed() {
+    return random.getSeed();
+  }
+
+  long getGeneration() {
+    return random.getGeneration();
+  }
+
+  // Whether a parameter was set since the last step.
+  boolean hasPendingParameters() {
+    synchronized (pendingParameters) {
+      return !pendingParameters.isEmpty();
+    }
+  }
+
+  /**
+   * Returns the complete state of this simulation as an in-memory checkpoint.
+   *
+   * @return - The checkpoint, as {@link #writeCheckpoint(File, boolean)} would write it, followed
+   *     by the cells whose next state already differs from their current one.
+   */
+  byte[] saveSnapshot() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      writeCheckpoint(out, true, true);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Puts this simulation back in the state of a snapshot, parameters included, then steps it the
+   * given number of times. Parameters set since the last step are held back until the next one,
+   * and nothing is recorded or kept in the history meanwhile.
+   *
+   * @param snapshot - A checkpoint returned by {@link #saveSnapshot()}.
+   * @param steps    - The number of steps to take once restored.
+   * @throws IOException if the snapshot is malformed.
+   */
+  void rebuild(byte[] snapshot, long steps) throws IOException {
+    Map<String, Double> held;
+    synchronized (pendingParameters) {
+      held = new HashMap<>(pendingParameters);
+      pendingParameters.clear();
+    }
+    StepHistory keptHistory = history;
+    DeltaLog.Writer keptRecorder = recorder;
+    history = null;
+    recorder = null;
+    try (Checkpoint.Reader in = new Checkpoint.Reader(new ByteArrayInputStream(snapshot))) {
+      SimulationConfiguration saved;
+      try {
+        saved = CheckpointHeader.decode(in.readBytes());
+      } catch (Exception e) {
+        throw new IOException("Malformed checkpoint.", e);
+      }
+      saved.getSimulationParameters().forEach(configuration::updateSimulationParameter);
+      refreshParameters();
+      readCheckpoint(in);
+      readNextStates(in);
+      for (long i = 0; i < steps; i++) {
+        step();
+      }
+    } finally {
+      history = keptHistory;
+      recorder = keptRecorder;
+      synchronized (pendingParameters) {
+        held.forEach(pendingParameters::putIfAbsent);
+      }
+    }
+  }
+
+  /**
+   * Returns whether stepping the simulation would leave every cell as it is.
+   *
+   * <p>Only known for simulations whose cells have local rules on a bounded grid: they have
+   * settled once a step changed no cell and no cell was poked nor a parameter set since. Every
+   * other simulation reports false.
+   *
+   * @return - true if the simulation has reached a fixpoint.
+   */
+  public boolean isSettled() {
+    if (activeSet == null || activeSet.size() > 0 || states.isModified()) {
+      return false;
+    }
+    synchronized (pendingParameters) {
+      return pendingParameters.isEmpty();
+    }
+  }
+
+  /**
+   * Returns whether the fluid of a Percolation simulation, left to run from the current states,
+   * will connect the top row of the grid to its bottom row through full cells.
+   *
+   * @return - true if the full cells will span the grid from top to bottom.
+   * @throws IllegalStateException if this is not a Percolation simulation on a bounded grid.
+   */
+  public boolean percolates() {
+    return solvePercolation().getSpanningTime() >= 0;
+  }
+
+  /**
+   * Returns how many steps from now the full cells of a Percolation simulation first connect the
+   * top row of the grid to its bottom row.
+   *
+   * @return - The number of steps, 0 if they already do, or -1 if they never will.
+   * @throws IllegalStateException if this is not a Percolation simulation on a bounded grid.
+   */
+  public int getSpanningTime() {
+    return solvePercolation().getSpanningTime();
+  }
+
+  private boolean canSolvePercolation() {
+    return configuration.getSimulationType() == SimulationType.PERCOLATION && activeSet != null;
+  }
+
+  // Solves the current states with the parameters of the most recent step.
+  private PercolationSolver solvePercolation() {
+    if (!canSolvePercolation()) {
+      throw new IllegalStateException("Only Percolation simulations on bounded grids can be "
+          + "solved.");
+    }
+    if (percolationSolver == null) {
+      percolationSolver = new PercolationSolver(cellGrid, getNumCols(), getNumRows());
+    }
+    percolationSolver.solve(states, parameters.get("FillNumber"));
+    return percolationSolver;
+  }
+
+  // Fills every cell that stepping would fill within the given number of generations, at once.
+  private void fillPercolation(long generations) {
+    publishParameters();
+    PercolationSolver solver = solvePercolation();
+    for (int i = 0; i < numCells; i++) {
+      int fillTime = solver.getFillTime(i);
+      if (fillTime > 0 && fillTime <= generations) {
+        states.commit(i, PercolationCell.FULL);
+      }
+    }
+    activeSet.activateAll();
+    random.advance(generations);
+  }
+
+  /**
+   * Returns whether this simulation runs on an unbounded world that the grid is a viewport onto.
+   *
+   * <p>True for Conway, Fire, Percolation and Rock Paper Scissors simulations on rectangular cells
+   * with the {@link SimulationEdgeType#INFINITE} edge type.
+   *
+   * @return - true if the grid is a viewport onto an unbounded world.
+   */
+  public boolean isInfinite() {
+    return hashLife != null || world != null;
+  }
+
+  /**
+   * Pans the viewport of an infinite world. Has no effect on bounded grids.
+   *
+   * @param rows    - The number of rows to move down by; negative moves up.
+   * @param columns - The number of columns to move right by; negative moves left.
+   */
+  public void moveViewport(int rows, int columns) {
+    if (!isInfinite()) {
+      return;
+    }
+    syncWorld();
+    viewportRow += rows;
+    viewportColumn += columns;
+    configuration.updateViewportOrigin(viewportRow, viewportColumn);
+    storeWindow();
+  }
+
+  /**
+   * Returns the world row shown at the top of the grid.
+   *
+   * @return - The viewport's top row; always 0 for bounded grids.
+   */
+  public int getViewportRow() {
+    return viewportRow;
+  }
+
+  /**
+   * Returns the world column shown at the left of the grid.
+   *
+   * @return - The viewport's left column; always 0 for bounded grids.
+   */
+  public int getViewportColumn() {
+    return viewportColumn;
   }
 
   /**
@@ -194,15 +995,268 @@ public class Simulation {
   /**
    * Saves the current state of the simulation to enable further replay.
    *
-   * <p>The saved file will be written in the XML configuration format.
+   * <p>The saved file will be written in the XML configuration format. Infinite worlds are saved
+   * in full, including the cells outside of the viewport. Only the states of the cells are saved;
+   * {@link #writeCheckpoint(File, boolean)} saves everything needed to resume the run exactly.
    *
    * @param file - The file in which the XML configuration will be written to.
    */
   public void writeToDisk(File file) throws Exception {
-    SimulationWriter writer = new SimulationWriter(this.configuration, this.cells);
+    SimulationWriter writer;
+    if (isInfinite()) {
+      syncWorld();
+      writer = SimulationWriter.forStates(this.configuration,
+          hashLife != null ? hashLife.getLiveCells() : world.getNonDefaultCells());
+    } else {
+      writer = new SimulationWriter(this.configuration, this.cells);
+    }
     writer.writeToFile(file);
   }
 
+  /**
+   * Saves the complete state of the simulation as a binary checkpoint, from which
+   * {@link SimulationFactory#loadCheckpoint(File)} resumes it exactly.
+   *
+   * <p>Unlike {@link #writeToDisk(File)}, the checkpoint keeps everything later steps depend on:
+   * the configuration with the exact value of every parameter, the seed and generation of the
+   * random numbers, the state, attributes and layers of every cell, the values cells keep in
+   * their own fields, such as the sugar of a SugarScape agent or the memory of a Foraging Ant,
+   * and the order in which agents are visited; see {@link Checkpoint}. A restored simulation steps
+   * exactly as this one would have. Parameters set since the last step are applied first. Infinite
+   * worlds are saved as their non-default cells. Cycle detection and the number of threads are
+   * not saved.
+   *
+   * @param file     - The file to write the checkpoint to.
+   * @param compress - Whether to deflate the checkpoint, which makes it smaller and slower to
+   *                 write.
+   * @throws IOException if the file cannot be written.
+   */
+  public void writeCheckpoint(File file, boolean compress) throws IOException {
+    writeCheckpoint(new FileOutputStream(file), compress, false);
+  }
+
+  // Writes the checkpoint to a stream, closing it, followed by the next states that already
+  // differ from the current ones if asked to.
+  private void writeCheckpoint(OutputStream stream, boolean compress, boolean withNextStates)
+      throws IOException {
+    publishParameters();
+    try (Checkpoint.Writer out = new Checkpoint.Writer(stream, compress)) {
+      out.writeBytes(CheckpointHeader.encode(configuration));
+      out.writeLong(random.getSeed());
+      out.writeVarlong(random.getGeneration());
+      if (isInfinite()) {
+        writeWorld(out);
+      } else {
+        writeGrid(out);
+      }
+      if (withNextStates) {
+        writeNextStates(out);
+      }
+    }
+  }
+
+  /**
+   * Restores the state saved by {@link #writeCheckpoint(File, boolean)} into this simulation,
+   * freshly created from the configuration at the head of the checkpoint.
+   *
+   * @param in - The checkpoint, read up to the end of its configuration.
+   * @throws IOException if the checkpoint is malformed.
+   */
+  void readCheckpoint(Checkpoint.Reader in) throws IOException {
+    random.setSeed(in.readLong());
+    random.advance(in.readVarlong());
+    if (isInfinite()) {
+      readWorld(in);
+    } else {
+      readGrid(in);
+    }
+  }
+
+  private void writeWorld(Checkpoint.Writer out) throws IOException {
+    syncWorld();
+    List<int[]> nonDefaultStates =
+        hashLife != null ? hashLife.getLiveCells() : world.getNonDefaultCells();
+    out.writeVarint(nonDefaultStates.size());
+    for (int[] cell : nonDefaultStates) {
+      out.writeZigzag(cell[0]);
+      out.writeZigzag(cell[1]);
+      out.writeVarint(cell[2]);
+    }
+  }
+
+  // Writes the cells whose next state already differs from their current one, as after a cell was
+  // poked, by their distance from the previous one. The next step reads them, so a snapshot has
+  // to keep them to step exactly like the grid it was taken from.
+  private void writeNextStates(Checkpoint.Writer out) throws IOException {
+    int previous = -1;
+    for (int i = 0; i < states.size(); i++) {
+      if (states.getNext(i) != states.get(i)) {
+        out.writeVarint(i - previous);
+        out.writeVarint(states.getNext(i));
+        previous = i;
+      }
+    }
+    out.writeVarint(0);
+  }
+
+  private void readNextStates(Checkpoint.Reader in) throws IOException {
+    int i = -1;
+    for (int gap = in.readVarint(); gap != 0; gap = in.readVarint()) {
+      i += gap;
+      if (i >= states.size()) {
+        throw new IOException("Malformed checkpoint.");
+      }
+      states.setNext(i, in.readVarint());
+    }
+  }
+
+  private void readWorld(Checkpoint.Reader in) throws IOException {
+    int count = in.readVarint();
+    for (int k = 0; k < count; k++) {
+      int row = (int) in.readZigzag();
+      int col = (int) in.readZigzag();
+      setWorldCell(row, col, in.readVarint());
+    }
+    storeWindow();
+    states.clearModified();
+  }
+
+  // Writes the planes of every cell, then how the engines stand.
+  private void writeGrid(Checkpoint.Writer out) throws IOException {
+    out.writeStates(states);
+    double[] plane = new double[numCells];
+    out.writeVarint(states.getAttributeCount());
+    for (int attribute = 0; attribute < states.getAttributeCount(); attribute++) {
+      for (int i = 0; i < numCells; i++) {
+        plane[i] = states.getAttribute(attribute, i);
+      }
+      out.writeValues(plane);
+    }
+    out.writeVarint(states.getLayerCount());
+    for (int layer = 0; layer < states.getLayerCount(); layer++) {
+      out.writeValues(states.getLayer(layer));
+    }
+    int hiddenValues = cells.get(0).getHiddenValueCount();
+    out.writeVarint(hiddenValues);
+    for (int value = 0; value < hiddenValues; value++) {
+      for (int i = 0; i < numCells; i++) {
+        plane[i] = cells.get(i).getHiddenValue(value);
+      }
+      out.writeValues(plane);
+    }
+    // Each cell holding a hidden sequence is given by its distance from the previous one
+    int previous = -1;
+    for (int i = 0; i < numCells; i++) {
+      int[] sequence = cells.get(i).getHiddenSequence();
+      if (sequence != null) {
+        out.writeVarint(i - previous);
+        out.writeIndices(sequence);
+        previous = i;
+      }
+    }
+    out.writeVarint(0);
+    writeEngines(out);
+  }
+
+  private void readGrid(Checkpoint.Reader in) throws IOException {
+    in.readStates(states, cells.get(0).getStateCount());
+    double[] plane = new double[numCells];
+    expectCount(in.readVarint(), states.getAttributeCount());
+    for (int attribute = 0; attribute < states.getAttributeCount(); attribute++) {
+      in.readValues(plane);
+      for (int i = 0; i < numCells; i++) {
+        states.setAttribute(attribute, i, plane[i]);
+      }
+    }
+    expectCount(in.readVarint(), states.getLayerCount());
+    for (int layer = 0; layer < states.getLayerCount(); layer++) {
+      in.readValues(states.getLayer(layer));
+    }
+    int hiddenValues = cells.get(0).getHiddenValueCount();
+    expectCount(in.readVarint(), hiddenValues);
+    for (int value = 0; value < hiddenValues; value++) {
+      in.readValues(plane);
+      for (int i = 0; i < numCells; i++) {
+        cells.get(i).setHiddenValue(value, plane[i]);
+      }
+    }
+    int i = -1;
+    for (int gap = in.readVarint(); gap != 0; gap = in.readVarint()) {
+      clearHiddenSequences(i + 1, i + gap);
+      i += gap;
+      if (i >= numCells) {
+        throw new IOException("Malformed checkpoint.");
+      }
+      cells.get(i).setHiddenSequence(in.readIndices(Integer.MAX_VALUE));
+    }
+    clearHiddenSequences(i + 1, numCells);
+    readEngines(in);
+  }
+
+  // Clears the data of the cells in the given range that held none when the checkpoint was saved,
+  // as when a history rewinds this simulation.
+  private void clearHiddenSequences(int from, int to) {
+    for (int i = from; i < Math.min(to, numCells); i++) {
+      if (cells.get(i).getHiddenSequence() != null) {
+        cells.get(i).setHiddenSequence(null);
+      }
+    }
+  }
+
+  // Writes what the engines keep beyond the planes: the order they visit agents in, and which
+  // cells are active. None of it matters if a cell was poked since the last step, as the next
+  // step then reloads every engine from the grid.
+  private void writeEngines(Checkpoint.Writer out) throws IOException {
+    boolean modified = states.isModified();
+    out.writeVarint(modified ? 1 : 0);
+    if (modified) {
+      return;
+    }
+    if (activeSet != null) {
+      out.writeIndexSet(activeSet.toArray(), numCells);
+    }
+    if (agents != null) {
+      out.writeIndices(agents.toArray(states));
+    }
+    out.writeVarint(relocating ? 1 : 0);
+    if (relocating) {
+      out.writeLong(Double.doubleToRawLongBits(segregationBoard.getCutoff()));
+      out.writeIndices(segregationBoard.getUnhappy());
+      out.writeIndices(segregationBoard.getEmpty());
+    }
+  }
+
+  private void readEngines(Checkpoint.Reader in) throws IOException {
+    if (in.readVarint() != 0) {
+      states.markModified();
+      return;
+    }
+    states.clearModified();
+    if (bitBoard != null) {
+      bitBoard.load(states);
+    }
+    if (activeSet != null) {
+      activeSet.restore(in.readIndexSet(numCells));
+    }
+    if (agents != null) {
+      agents.restore(states, in.readIndices(numCells));
+    }
+    relocating = in.readVarint() != 0;
+    if (relocating) {
+      double cutoff = Double.longBitsToDouble(in.readLong());
+      int[] unhappy = in.readIndices(numCells);
+      int[] empty = in.readIndices(numCells);
+      segregationBoard = new SegregationBoard(cellGrid, numCells);
+      segregationBoard.restore(states, cutoff, unhappy, empty);
+    }
+  }
+
+  private void expectCount(int count, int expected) throws IOException {
+    if (count != expected) {
+      throw new IOException("Malformed checkpoint.");
+    }
+  }
+
   /**
    * Returns the shape of the cells used within the simulation.
    *
@@ -1,10 +1,12 @@
 package cellsociety.simulation;
 
+import cellsociety.util.CheckpointHeader;
 import cellsociety.util.SimulationConfiguration;
 import cellsociety.util.SimulationConfiguration.SimulationType;
 import cellsociety.util.XMLParser;
 import java.io.File;
-import java.net.URL;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -28,10 +30,18 @@ public class SimulationFactory {
    * @param file - An XML file that will be parsed to create a new simulation.
    */
   public void loadSimulationFile(File file) throws Exception {
-    this.sim = null;
-    XMLParser simParser = new XMLParser(file);
-    SimulationConfiguration simConfig = simParser.getSimulationConfiguration();
+    loadSimulationConfiguration(new XMLParser(file).getSimulationConfiguration());
+  }
 
+  /**
+   * Creates a {@link cellsociety.simulation.Simulation} from an already parsed configuration, e.g.
+   * one whose seed was changed after parsing. Parameters missing from the configuration are filled
+   * in with the defaults of its simulation type.
+   *
+   * @param simConfig - The configuration of the new simulation.
+   */
+  public void loadSimulationConfiguration(SimulationConfiguration simConfig) throws Exception {
+    this.sim = null;
     SimulationConfiguration defaultConfig =
         parseDefault(simConfig.getSimulationType()).getSimulationConfiguration();
     simConfig.addDefaultParameters(defaultConfig.getSimulationParameters());
@@ -39,10 +49,29 @@ public class SimulationFactory {
     initializeCells(this.sim, simConfig.getSimulationType(), simConfig.getSimulationParameters());
   }
 
+  /**
+   * Creates a {@link cellsociety.simulation.Simulation} that resumes exactly where the one that
+   * wrote a checkpoint with {@link Simulation#writeCheckpoint(File, boolean)} left off.
+   *
+   * @param file - A checkpoint, compressed or not.
+   */
+  public void loadCheckpoint(File file) throws Exception {
+    this.sim = null;
+    try (Checkpoint.Reader in = new Checkpoint.Reader(new FileInputStream(file))) {
+      loadSimulationConfiguration(CheckpointHeader.decode(in.readBytes()));
+      this.sim.readCheckpoint(in);
+    } catch (Exception e) {
+      this.sim = null;
+      throw e;
+    }
+  }
+
+  // Reads the defaults as a stream, so that they load from a packaged jar as well as from disk.
   private XMLParser parseDefault(SimulationType type) throws Exception {
-    URL url = getClass().getResource(String.format("Default%s.xml", type.name()));
-    File defaultFile = new File(url.toURI());
-    return new XMLParser(defaultFile);
+    try (InputStream in = getClass().getResourceAsStream(
+        String.format("Default%s.xml", type.name()))) {
+      return new XMLParser(in);
+    }
   }
 
   private void initializeCells(Simulation sim, SimulationType type, Map<String, Double> params) {
@@ -50,6 +79,7 @@ public class SimulationFactory {
     for (int i = 0; i < sim.getNumCells(); i++) {
       cells.add(createCell(type, params));
     }
+    sim.setCellSupplier(() -> createCell(type, params));
     try {
       sim.initialize(cells);
     } catch (IndexOutOfBoundsException e) {
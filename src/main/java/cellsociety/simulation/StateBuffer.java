@@ -0,0 +1,509 @@
+package cellsociety.simulation;
+
+import java.util.Arrays;
+
+/**
+ * A double-buffered store of cell states.
+ *
+ * @author Joshua Petitma
+ * <p>Every cell in a simulation keeps its current and next state inside one of these buffers,
+ * indexed in row-major order ({@code row * width + column}). Committing a generation is a swap of
+ * the two backing arrays rather than a walk over every cell object.
+ */
+public class StateBuffer {
+
+  private final int width;
+  private final int height;
+  private int[] current;
+  private int[] next;
+  private double[][] attributes;
+  private double[][] nextAttributes;
+  private double[][] layers;
+  private double[][] spareLayers;
+  private boolean modified;
+  // The Zobrist hash of the current states, kept up to date only while hashing is on
+  private boolean hashing;
+  private long hash;
+  // One bitset per tracker, with a bit per cell whose current state changed since the tracker
+  // last cleared it
+  private long[][] trackers;
+  // While bands of rows write at the same time, the hash changes and changed cells are kept per
+  // row instead, as no two bands write to the same row, and merged once the bands are done
+  private boolean deferring;
+  private long[] rowHashes;
+  private boolean[] pendingChanges;
+  private boolean[] pendingRows;
+
+  /**
+   * Creates a buffer for a grid of the given dimensions with every cell in state 0.
+   *
+   * @param width  - The number of cells in each row.
+   * @param height - The number of rows.
+   */
+  public StateBuffer(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.current = new int[width * height];
+    this.next = new int[width * height];
+    this.attributes = new double[0][];
+    this.nextAttributes = new double[0][];
+    this.layers = new double[0][];
+    this.spareLayers = new double[0][];
+    this.trackers = new long[0][];
+  }
+
+  /**
+   * Returns the number of cells held by this buffer.
+   *
+   * @return - The number of cells held by this buffer.
+   */
+  public int size() {
+    return current.length;
+  }
+
+  /**
+   * Returns the number of cells in each row.
+   *
+   * @return - The width of the grid this buffer represents.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return - The height of the grid this buffer represents.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the current state of the cell at the given index.
+   *
+   * @param index - The row-major index of the cell.
+   * @return - The current state of that cell.
+   */
+  public int get(int index) {
+    return current[index];
+  }
+
+  /**
+   * Overwrites the current state of the cell at the given index.
+   *
+   * @param index - The row-major index of the cell.
+   * @param state - The state the cell will hold for the rest of this generation.
+   */
+  protected void set(int index, int state) {
+    if (hashing) {
+      rehash(index, zobristKey(index, current[index]) ^ zobristKey(index, state));
+    }
+    if (trackers.length != 0 && current[index] != state) {
+      markChanged(index);
+    }
+    current[index] = state;
+    modified = true;
+  }
+
+  /**
+   * Sets both the current and next state of the cell at the given index.
+   *
+   * <p>Used by engines that compute whole generations outside of this buffer and only write back
+   * the cells that changed, leaving the buffer as it would be after a {@link #swap()}.
+   *
+   * @param index - The row-major index of the cell.
+   * @param state - The state the cell now holds.
+   */
+  protected void commit(int index, int state) {
+    if (hashing) {
+      rehash(index, zobristKey(index, current[index]) ^ zobristKey(index, state));
+    }
+    if (trackers.length != 0 && current[index] != state) {
+      markChanged(index);
+    }
+    current[index] = state;
+    next[index] = state;
+  }
+
+  /**
+   * Commits the next state and attributes of a single cell.
+   *
+   * <p>Used by engines that know every cell their rules wrote to. The rest of the buffer already
+   * holds the same current and next values, so committing only those cells leaves the buffer
+   * exactly as {@link #swap()} would.
+   *
+   * @param index - The row-major index of the cell.
+   */
+  protected void commit(int index) {
+    if (hashing) {
+      rehash(index, zobristKey(index, current[index]) ^ zobristKey(index, next[index]));
+    }
+    if (trackers.length != 0 && current[index] != next[index]) {
+      markChanged(index);
+    }
+    current[index] = next[index];
+    for (int i = 0; i < attributes.length; i++) {
+      attributes[i][index] = nextAttributes[i][index];
+    }
+  }
+
+  /**
+   * Starts or stops keeping a Zobrist hash of the current states.
+   *
+   * <p>Every cell and state has its own random 64-bit key, and the hash is the exclusive or of the
+   * keys of every cell's current state. While hashing is on, each write of a current state swaps
+   * the cell's old key for its new one, so the hash follows the grid at the cost of the cells that
+   * changed; only {@link #swap()} has to look at every cell to find them.
+   *
+   * @param enabled - Whether to keep the hash up to date.
+   */
+  protected void setHashing(boolean enabled) {
+    if (enabled && !hashing) {
+      hash = 0;
+      for (int i = 0; i < current.length; i++) {
+        hash ^= zobristKey(i, current[i]);
+      }
+    }
+    hashing = enabled;
+  }
+
+  /**
+   * Returns the Zobrist hash of the current states. Only meaningful while hashing is on.
+   *
+   * @return - The hash of the current state of every cell.
+   */
+  protected long getHash() {
+    return hash;
+  }
+
+  /**
+   * Starts noting which cells change, in a bitset of its own.
+   *
+   * <p>Like the hash, the changes are noted as current states are written, at the cost of the
+   * cells that changed, apart from {@link #swap()}, which has to look at every cell to find them.
+   * Each tracker gets its own bitset, so a recording and a rewind history can follow the same
+   * buffer; each clears the bits it has collected.
+   *
+   * @return - One bit per cell over the row-major indices, set for the cells that changed since
+   *     their bits were last cleared.
+   */
+  protected long[] startTracking() {
+    long[] changes = new long[(current.length + 63) >>> 6];
+    trackers = Arrays.copyOf(trackers, trackers.length + 1);
+    trackers[trackers.length - 1] = changes;
+    return changes;
+  }
+
+  /**
+   * Stops noting changes in a bitset returned by {@link #startTracking()}.
+   *
+   * @param changes - The bitset to stop marking.
+   */
+  protected void stopTracking(long[] changes) {
+    for (int t = 0; t < trackers.length; t++) {
+      if (trackers[t] == changes) {
+        trackers[t] = trackers[trackers.length - 1];
+        trackers = Arrays.copyOf(trackers, trackers.length - 1);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Starts keeping the hash changes and changed cells of writes to current states per row, so that
+   * bands of rows may write at the same time without losing each other's updates.
+   *
+   * <p>Bands running at the same time must never write to the same row, as the bands handed out
+   * by {@link ParallelStepper} never do. Nothing is deferred while neither hashing nor tracking.
+   */
+  protected void deferWrites() {
+    if (!hashing && trackers.length == 0) {
+      return;
+    }
+    if (rowHashes == null) {
+      rowHashes = new long[height];
+      pendingChanges = new boolean[current.length];
+      pendingRows = new boolean[height];
+    }
+    deferring = true;
+  }
+
+  /**
+   * Folds the hash changes and changed cells kept since {@link #deferWrites()} into the hash and
+   * every tracker, and goes back to updating them as each write is made.
+   */
+  protected void mergeDeferredWrites() {
+    if (!deferring) {
+      return;
+    }
+    deferring = false;
+    for (int row = 0; row < height; row++) {
+      hash ^= rowHashes[row];
+      rowHashes[row] = 0;
+      if (!pendingRows[row]) {
+        continue;
+      }
+      pendingRows[row] = false;
+      for (int i = row * width; i < (row + 1) * width; i++) {
+        if (pendingChanges[i]) {
+          pendingChanges[i] = false;
+          markChanged(i);
+        }
+      }
+    }
+  }
+
+  private void rehash(int index, long change) {
+    if (deferring) {
+      rowHashes[index / width] ^= change;
+    } else {
+      hash ^= change;
+    }
+  }
+
+  private void markChanged(int index) {
+    if (deferring) {
+      pendingChanges[index] = true;
+      pendingRows[index / width] = true;
+      return;
+    }
+    for (long[] changes : trackers) {
+      changes[index >>> 6] |= 1L << index;
+    }
+  }
+
+  // The key of a cell in a state; distinct for every pair, as mix64 never maps two inputs alike.
+  private static long zobristKey(int index, int state) {
+    return CellRandom.mix64(((long) index << 32 | state) + 1);
+  }
+
+  /**
+   * Returns whether any current state has been overwritten through {@link #set(int, int)} since
+   * the flag was last cleared, leaving the flag as it is.
+   *
+   * @return - true if a current state was overwritten since the flag was last cleared.
+   */
+  protected boolean isModified() {
+    return modified;
+  }
+
+  /**
+   * Raises the flag {@link #clearModified()} returns, as if a current state had been overwritten,
+   * so that engines keeping their own copy of the grid reload it.
+   */
+  protected void markModified() {
+    modified = true;
+  }
+
+  /**
+   * Returns whether any current state has been overwritten through {@link #set(int, int)} since
+   * the last call, and clears the flag.
+   *
+   * <p>Engines that keep their own copy of the grid use this to notice pokes from the UI.
+   *
+   * @return - true if a current state was overwritten since the last call.
+   */
+  protected boolean clearModified() {
+    boolean wasModified = modified;
+    modified = false;
+    return wasModified;
+  }
+
+  /**
+   * Returns the state the cell at the given index will hold next generation.
+   *
+   * @param index - The row-major index of the cell.
+   * @return - The next state of that cell.
+   */
+  protected int getNext(int index) {
+    return next[index];
+  }
+
+  /**
+   * Sets the state the cell at the given index will hold next generation.
+   *
+   * @param index - The row-major index of the cell.
+   * @param state - The state the cell will become once the buffer is committed.
+   */
+  protected void setNext(int index, int state) {
+    next[index] = state;
+  }
+
+  /**
+   * Gives every cell the given number of numeric attributes, all starting at 0.
+   *
+   * <p>Agents that carry values around the grid, such as the energy of a Wa-Tor shark, keep them
+   * here in primitive arrays rather than in their cell objects, so that moving an agent is a copy
+   * between two slots. Attributes are double-buffered like states and committed by {@link
+   * #swap()}.
+   *
+   * @param count - The number of attributes each cell keeps.
+   */
+  protected void addAttributes(int count) {
+    attributes = new double[count][current.length];
+    nextAttributes = new double[count][current.length];
+  }
+
+  /**
+   * Returns the number of numeric attributes each cell keeps.
+   *
+   * @return - The number of attributes per cell.
+   */
+  protected int getAttributeCount() {
+    return attributes.length;
+  }
+
+  /**
+   * Returns the current value of one attribute of a cell.
+   *
+   * @param attribute - Which of the cell's attributes to read.
+   * @param index     - The row-major index of the cell.
+   * @return - The current value of that attribute.
+   */
+  protected double getAttribute(int attribute, int index) {
+    return attributes[attribute][index];
+  }
+
+  /**
+   * Returns the value one attribute of a cell will hold next generation.
+   *
+   * @param attribute - Which of the cell's attributes to read.
+   * @param index     - The row-major index of the cell.
+   * @return - The next value of that attribute.
+   */
+  protected double getNextAttribute(int attribute, int index) {
+    return nextAttributes[attribute][index];
+  }
+
+  /**
+   * Sets both the current and next value of one attribute of a cell.
+   *
+   * @param attribute - Which of the cell's attributes to write.
+   * @param index     - The row-major index of the cell.
+   * @param value     - The value the attribute now holds.
+   */
+  protected void setAttribute(int attribute, int index, double value) {
+    attributes[attribute][index] = value;
+    nextAttributes[attribute][index] = value;
+  }
+
+  /**
+   * Sets the value one attribute of a cell will hold next generation.
+   *
+   * @param attribute - Which of the cell's attributes to write.
+   * @param index     - The row-major index of the cell.
+   * @param value     - The value the attribute will hold once the buffer is committed.
+   */
+  protected void setNextAttribute(int attribute, int index, double value) {
+    nextAttributes[attribute][index] = value;
+  }
+
+  /**
+   * Gives every cell the given number of field layers, all starting at 0.
+   *
+   * <p>Layers hold passive values that live in the cells rather than in agents, such as the
+   * pheromones ants leave behind. Unlike attributes they are not double-buffered: a write is seen
+   * at once. Each layer has a spare array of the same size that a bulk pass over the whole grid
+   * can fill before {@link #swapLayers()} makes it current.
+   *
+   * @param count - The number of layers each cell has.
+   */
+  protected void addLayers(int count) {
+    layers = new double[count][current.length];
+    spareLayers = new double[count][current.length];
+  }
+
+  /**
+   * Returns the number of field layers each cell has.
+   *
+   * @return - The number of layers per cell.
+   */
+  protected int getLayerCount() {
+    return layers.length;
+  }
+
+  /**
+   * Returns the value of one layer at a cell.
+   *
+   * @param layer - Which layer to read.
+   * @param index - The row-major index of the cell.
+   * @return - The value of that layer at that cell.
+   */
+  protected double getLayerValue(int layer, int index) {
+    return layers[layer][index];
+  }
+
+  /**
+   * Sets the value of one layer at a cell.
+   *
+   * @param layer - Which layer to write.
+   * @param index - The row-major index of the cell.
+   * @param value - The value the layer now holds at that cell.
+   */
+  protected void setLayerValue(int layer, int index, double value) {
+    layers[layer][index] = value;
+  }
+
+  /**
+   * Returns the whole of one layer, indexed in row-major order, for bulk passes.
+   *
+   * @param layer - Which layer to return.
+   * @return - The array backing that layer.
+   */
+  protected double[] getLayer(int layer) {
+    return layers[layer];
+  }
+
+  /**
+   * Returns the spare array of one layer, which becomes the layer at the next
+   * {@link #swapLayers()}.
+   *
+   * @param layer - Which layer's spare array to return.
+   * @return - The spare array of that layer.
+   */
+  protected double[] getSpareLayer(int layer) {
+    return spareLayers[layer];
+  }
+
+  /**
+   * Makes the spare array of every layer current, once a bulk pass has filled them all.
+   */
+  protected void swapLayers() {
+    double[][] previous = layers;
+    layers = spareLayers;
+    spareLayers = previous;
+  }
+
+  /**
+   * Commits the next generation by swapping the two buffers.
+   *
+   * <p>Rules only write a next state when a cell changes, so once swapped the new next buffer is
+   * re-seeded from the current one with a single bulk copy. Attributes are committed the same way.
+   */
+  protected void swap() {
+    if (hashing || trackers.length != 0) {
+      for (int i = 0; i < current.length; i++) {
+        if (current[i] == next[i]) {
+          continue;
+        }
+        if (hashing) {
+          hash ^= zobristKey(i, current[i]) ^ zobristKey(i, next[i]);
+        }
+        if (trackers.length != 0) {
+          markChanged(i);
+        }
+      }
+    }
+    int[] previous = current;
+    current = next;
+    next = previous;
+    System.arraycopy(current, 0, next, 0, current.length);
+    for (int i = 0; i < attributes.length; i++) {
+      double[] previousAttribute = attributes[i];
+      attributes[i] = nextAttributes[i];
+      nextAttributes[i] = previousAttribute;
+      System.arraycopy(attributes[i], 0, nextAttributes[i], 0, current.length);
+    }
+  }
+}
@@ -0,0 +1,424 @@
+package cellsociety.simulation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * A bounded history of the steps of a simulation, kept in memory so the simulation can be stepped
+ * back and scrubbed through.
+ *
+ * @author Joshua Petitma
+ * <p>The history holds one entry per step, numbered from 0 for the grid as it was when the history
+ * started. Each step is held as the cells that changed since the step before, with the states
+ * they held then, found through the cells the {@link StateBuffer} notes as changed; a step's
+ * changes include the cells poked after it, so each step shows the grid as it was just before the
+ * simulation stepped on from it. Moving to another step writes those states back one step at a
+ * time, swapping each for the state it replaces, so the same entry then moves the grid forward
+ * again. Moving through the history costs as much as the cells that changed, not the size of the
+ * grid.
+ *
+ * <p>States alone do not say everything the next step depends on, such as the energy of a
+ * Wa-Tor shark or the order agents move in. Every {@code keyframeInterval} steps, and whenever a
+ * cell was poked, a parameter set or the simulation reseeded, the history also keeps a complete
+ * checkpoint of the simulation. Stepping the simulation while it is rewound restores the latest
+ * checkpoint at or before the step shown and steps on from it to that step, which gives the same
+ * grid, as nothing but the rules changed the grid in between, and drops every step after it.
+ *
+ * <p>When the history takes more memory than its budget, it drops its oldest steps, up to the next
+ * step with a checkpoint, so that the oldest step kept can always be continued from. The newest
+ * checkpoint and the steps after it are always kept.
+ */
+public final class StepHistory {
+
+  // A rough count of the bytes a step takes besides its changed cells and checkpoint
+  private static final int STEP_OVERHEAD = 48;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final Simulation simulation;
+  private final StateBuffer states;
+  private final long[] changes;
+  private final long memoryBudget;
+  private final int keyframeInterval;
+  // The state of every cell at the step shown, which is the state a cell changed from
+  private final int[] shown;
+  // The steps kept, oldest first, in a ring
+  private Step[] steps;
+  private int oldest;
+  private int count;
+  private long firstStep;
+  private long cursor;
+  private long lastKeyframe;
+  private long memoryUsed;
+  // The changed cells and their earlier states gathered since the last entry was made
+  private int[] pending;
+  private int pendingSize;
+  // The seed and generation the next step should start from, unless something reseeded the
+  // simulation or skipped generations
+  private long seed;
+  private long generation;
+  // Whether the grid was moved through the history since the simulation last stepped
+  private boolean moved;
+
+  /**
+   * Starts a history of a simulation at the grid as it is now.
+   *
+   * @param simulation       - The simulation to keep the history of.
+   * @param memoryBudget     - The number of bytes the steps kept may take.
+   * @param keyframeInterval - How many steps apart complete checkpoints are kept; at least 1.
+   */
+  StepHistory(Simulation simulation, long memoryBudget, int keyframeInterval) {
+    if (keyframeInterval < 1) {
+      throw new IllegalArgumentException("The keyframe interval must be at least 1.");
+    }
+    this.simulation = simulation;
+    this.states = simulation.getStateBuffer();
+    this.memoryBudget = memoryBudget;
+    this.keyframeInterval = keyframeInterval;
+    this.shown = new int[states.size()];
+    for (int i = 0; i < shown.length; i++) {
+      shown[i] = states.get(i);
+    }
+    this.changes = states.startTracking();
+    this.steps = new Step[INITIAL_CAPACITY];
+    this.pending = new int[2 * INITIAL_CAPACITY];
+    this.lastKeyframe = -1;
+    this.seed = simulation.getSeed();
+    this.generation = simulation.getGeneration();
+    append(new Step(null));
+  }
+
+  /**
+   * Returns the number of the oldest step kept.
+   *
+   * @return - The oldest step that can be moved to.
+   */
+  public long getFirstStep() {
+    return firstStep;
+  }
+
+  /**
+   * Returns the number of the newest step kept.
+   *
+   * @return - The newest step that can be moved to.
+   */
+  public long getLastStep() {
+    return firstStep + count - 1;
+  }
+
+  /**
+   * Returns the number of the step the grid shows.
+   *
+   * @return - The step shown.
+   */
+  public long getStep() {
+    return cursor;
+  }
+
+  /**
+   * Returns whether the grid shows an earlier step than the newest one.
+   *
+   * @return - true if there are steps after the one shown.
+   */
+  public boolean isRewound() {
+    return cursor < getLastStep();
+  }
+
+  /**
+   * Returns roughly how much memory the steps kept take.
+   *
+   * @return - The number of bytes taken by the steps and their checkpoints.
+   */
+  public long getMemoryUsed() {
+    return memoryUsed;
+  }
+
+  /**
+   * Shows the step before the one shown, if there is one kept.
+   *
+   * @return - true if the grid moved back a step.
+   */
+  public boolean stepBack() {
+    if (cursor == firstStep) {
+      return false;
+    }
+    moveTo(cursor - 1);
+    return true;
+  }
+
+  /**
+   * Shows the step after the one shown, as it was first computed, if there is one.
+   *
+   * @return - true if the grid moved forward a step.
+   */
+  public boolean stepForward() {
+    if (cursor == getLastStep()) {
+      return false;
+    }
+    moveTo(cursor + 1);
+    return true;
+  }
+
+  /**
+   * Shows any step kept. Cells poked while the grid shows an earlier step are put back first,
+   * unless the simulation is stepped on from there.
+   *
+   * @param step - The step to show, from {@link #getFirstStep()} to {@link #getLastStep()}.
+   */
+  public void seek(long step) {
+    if (step < firstStep || step > getLastStep()) {
+      throw new IndexOutOfBoundsException("No step " + step + " in a history of steps "
+          + firstStep + " to " + getLastStep() + ".");
+    }
+    moveTo(step);
+  }
+
+  /**
+   * Called before the simulation steps: continues from the step shown if the grid was moved
+   * through the history, then closes the newest step.
+   */
+  void beforeStep() {
+    if (moved) {
+      resume();
+    }
+    closeNewest();
+    evict();
+  }
+
+  /**
+   * Called once the simulation has stepped: adds the cells the step changed as a new step.
+   */
+  void afterStep() {
+    gatherChanges();
+    append(new Step(Arrays.copyOf(pending, pendingSize)));
+    pendingSize = 0;
+    cursor = getLastStep();
+    seed = simulation.getSeed();
+    generation = simulation.getGeneration();
+    evict();
+  }
+
+  /**
+   * Stops following the simulation, first continuing from the step shown if the grid was moved
+   * through the history.
+   */
+  void close() {
+    if (moved) {
+      resume();
+    }
+    states.stopTracking(changes);
+  }
+
+  // Moves the grid to the given step, one step at a time.
+  private void moveTo(long step) {
+    if (step == cursor && !moved) {
+      return;
+    }
+    if (cursor == getLastStep() && !moved) {
+      closeNewest();
+    } else {
+      revertPokes();
+    }
+    while (cursor > step) {
+      int[] cells = get(cursor).cells;
+      for (int k = cells.length - 2; k >= 0; k -= 2) {
+        swapState(cells, k);
+      }
+      cursor--;
+    }
+    while (cursor < step) {
+      cursor++;
+      int[] cells = get(cursor).cells;
+      for (int k = 0; k < cells.length; k += 2) {
+        swapState(cells, k);
+      }
+    }
+    Arrays.fill(changes, 0);
+    moved = true;
+  }
+
+  // Writes the state held by an entry of a step into the grid, and the state it replaces into
+  // the entry.
+  private void swapState(int[] cells, int k) {
+    int index = cells[k];
+    int state = cells[k + 1];
+    cells[k + 1] = states.get(index);
+    states.set(index, state);
+    shown[index] = state;
+  }
+
+  // Puts back the cells poked since the grid was moved through the history.
+  private void revertPokes() {
+    for (int word = 0; word < changes.length; word++) {
+      long bits = changes[word];
+      changes[word] = 0;
+      while (bits != 0) {
+        int index = word << 6 | Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+        states.set(index, shown[index]);
+      }
+    }
+    Arrays.fill(changes, 0);
+  }
+
+  // Adds the cells poked since the newest step was made to it, and keeps a checkpoint of the
+  // simulation if one is due or something besides the rules changed it.
+  private void closeNewest() {
+    boolean disturbed = gatherChanges() || simulation.getSeed() != seed
+        || simulation.getGeneration() != generation || simulation.hasPendingParameters();
+    long last = getLastStep();
+    Step newest = get(last);
+    if (pendingSize > 0 && last > firstStep) {
+      int[] cells = Arrays.copyOf(newest.cells, newest.cells.length + pendingSize);
+      System.arraycopy(pending, 0, cells, newest.cells.length, pendingSize);
+      newest.cells = cells;
+      memoryUsed += 4L * pendingSize;
+    }
+    pendingSize = 0;
+    if (!disturbed && lastKeyframe >= 0 && last - lastKeyframe < keyframeInterval) {
+      return;
+    }
+    if (disturbed || newest.keyframe == null) {
+      memoryUsed -= newest.keyframe == null ? 0 : newest.keyframe.length;
+      newest.keyframe = simulation.saveSnapshot();
+      memoryUsed += newest.keyframe.length;
+    }
+    lastKeyframe = last;
+    seed = simulation.getSeed();
+    generation = simulation.getGeneration();
+  }
+
+  // Continues from the step shown: drops the steps after it, rebuilds the complete state of the
+  // simulation at that step from the latest checkpoint at or before it, and pokes again any cells
+  // poked since the grid was moved.
+  private void resume() {
+    int[] pokes = new int[0];
+    int pokeCount = 0;
+    for (int word = 0; word < changes.length; word++) {
+      long bits = changes[word];
+      changes[word] = 0;
+      while (bits != 0) {
+        int index = word << 6 | Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+        if (2 * pokeCount == pokes.length) {
+          pokes = Arrays.copyOf(pokes, Math.max(2 * pokes.length, 2 * INITIAL_CAPACITY));
+        }
+        pokes[2 * pokeCount] = index;
+        pokes[2 * pokeCount + 1] = states.get(index);
+        pokeCount++;
+      }
+    }
+    while (getLastStep() > cursor) {
+      memoryUsed -= get(getLastStep()).size();
+      steps[(oldest + count - 1) % steps.length] = null;
+      count--;
+    }
+    long keyframe = cursor;
+    while (get(keyframe).keyframe == null) {
+      keyframe--;
+    }
+    try {
+      simulation.rebuild(get(keyframe).keyframe, cursor - keyframe);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    Arrays.fill(changes, 0);
+    lastKeyframe = keyframe;
+    seed = simulation.getSeed();
+    generation = simulation.getGeneration();
+    moved = false;
+    for (int k = 0; k < pokeCount; k++) {
+      states.set(pokes[2 * k], pokes[2 * k + 1]);
+    }
+  }
+
+  // Moves the cells noted as changed into the pending entry, with the states they held at the
+  // step shown, and returns whether any cell was noted.
+  private boolean gatherChanges() {
+    boolean any = false;
+    for (int word = 0; word < changes.length; word++) {
+      long bits = changes[word];
+      if (bits == 0) {
+        continue;
+      }
+      changes[word] = 0;
+      any = true;
+      while (bits != 0) {
+        int index = word << 6 | Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+        int state = states.get(index);
+        // A cell may change and change back between two steps
+        if (state == shown[index]) {
+          continue;
+        }
+        if (pendingSize == pending.length) {
+          pending = Arrays.copyOf(pending, 2 * pending.length);
+        }
+        pending[pendingSize++] = index;
+        pending[pendingSize++] = shown[index];
+        shown[index] = state;
+      }
+    }
+    return any;
+  }
+
+  // Drops the oldest steps, up to the next checkpoint at a time, while over the budget. Only called
+  // as the simulation steps, so moving through the history never drops the step moved to.
+  private void evict() {
+    while (memoryUsed > memoryBudget) {
+      long next = firstStep + 1;
+      while (next <= getLastStep() && get(next).keyframe == null) {
+        next++;
+      }
+      if (next > getLastStep()) {
+        return;
+      }
+      while (firstStep < next) {
+        memoryUsed -= steps[oldest].size();
+        steps[oldest] = null;
+        oldest = (oldest + 1) % steps.length;
+        count--;
+        firstStep++;
+      }
+      // Nothing moves back from the oldest step kept
+      Step first = steps[oldest];
+      memoryUsed -= 4L * first.cells.length;
+      first.cells = new int[0];
+    }
+  }
+
+  private void append(Step step) {
+    if (count == steps.length) {
+      Step[] grown = new Step[2 * steps.length];
+      for (int k = 0; k < count; k++) {
+        grown[k] = steps[(oldest + k) % steps.length];
+      }
+      steps = grown;
+      oldest = 0;
+    }
+    steps[(oldest + count) % steps.length] = step;
+    count++;
+    memoryUsed += step.size();
+  }
+
+  private Step get(long step) {
+    return steps[(int) ((oldest + step - firstStep) % steps.length)];
+  }
+
+  // One step of the history.
+  private static final class Step {
+
+    // Pairs of the index of a changed cell and its state at the neighboring step
+    private int[] cells;
+    // The complete state of the simulation at this step, if kept
+    private byte[] keyframe;
+
+    private Step(int[] cells) {
+      this.cells = cells == null ? new int[0] : cells;
+    }
+
+    private long size() {
+      return STEP_OVERHEAD + 4L * cells.length + (keyframe == null ? 0 : keyframe.length);
+    }
+  }
+}
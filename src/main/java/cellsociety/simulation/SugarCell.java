@@ -1,14 +1,14 @@
 package cellsociety.simulation;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Random;
-import java.util.Set;
 
 /**
  * This class handles the behavior of Cells in the SugarScape simulation, and thus the state
  * transitions therein.
  *
+ * <p>The sugar on each patch is a field layer of the simulation's {@link StateBuffer}, regrown for
+ * the whole grid in one bulk pass, so only the cells holding an agent need computing.
+ *
  * @author Marc Chmielewski
  */
 public class SugarCell extends Cell {
@@ -19,12 +19,11 @@ public class SugarCell extends Cell {
   private static final String SUGAR_REGROWTH_RATE = "SugarRegrowthRate";
   private static final String SUGAR_METABOLISM_RATE = "SugarMetabolismRate";
   private static final String AGENT_SUGAR = "AgentSugar";
+  private static final int SUGAR = 0;
+  private static final int LAYERS = 1;
 
   private double agentSugar;
-  private double patchSugar;
-  private final double sugarRegrowthRate;
-  private final double sugarMetabolismRate;
-  private Random rng;
+  private Parameters parameters;
 
   /**
    * Construct this cell with its default state.
@@ -33,10 +32,64 @@ public class SugarCell extends Cell {
    */
   public SugarCell(Map<String, Double> params) {
     super(PATCH, params);
-    patchSugar = getParam(MAX_SUGAR_CAPACITY);
-    sugarRegrowthRate = getParam(SUGAR_REGROWTH_RATE);
-    sugarMetabolismRate = getParam(SUGAR_METABOLISM_RATE);
-    rng = new Random();
+    setLayer(SUGAR, getParam(MAX_SUGAR_CAPACITY));
+  }
+
+  @Override
+  protected void setParameters(ParameterSnapshot snapshot) {
+    super.setParameters(snapshot);
+    parameters = compileParameters(Parameters.class, Parameters::new);
+  }
+
+  @Override
+  protected int getLayerCount() {
+    return LAYERS;
+  }
+
+  @Override
+  protected int getHiddenValueCount() {
+    return 1;
+  }
+
+  @Override
+  protected double getHiddenValue(int value) {
+    return agentSugar;
+  }
+
+  @Override
+  protected void setHiddenValue(int value, double number) {
+    agentSugar = number;
+  }
+
+  @Override
+  protected boolean drawsRandomNumbers() {
+    return true;
+  }
+
+  @Override
+  protected boolean hasAgents() {
+    return true;
+  }
+
+  @Override
+  protected boolean isAgentState(int state) {
+    return state == AGENT;
+  }
+
+  /**
+   * Regrows the sugar of every patch not holding an agent by the SugarRegrowthRate parameter, up
+   * to the MaxSugarCapacity parameter.
+   */
+  @Override
+  protected void updateLayers(StateBuffer states, int fromRow, int toRow) {
+    double[] sugar = states.getLayer(SUGAR);
+    double regrowthRate = parameters.sugarRegrowthRate;
+    double maxSugarCapacity = parameters.maxSugarCapacity;
+    for (int i = fromRow * states.getWidth(); i < toRow * states.getWidth(); i++) {
+      if (sugar[i] < maxSugarCapacity && states.get(i) == PATCH) {
+        sugar[i] = Math.min(sugar[i] + regrowthRate, maxSugarCapacity);
+      }
+    }
   }
 
   @Override
@@ -50,7 +103,7 @@ public class SugarCell extends Cell {
     }
     else if(getCellState() == PATCH) {
       agentSugar = 0; // PATCHes don't have agentSugar
-      patchSugar = getParam(MAX_SUGAR_CAPACITY); // Re-up the patch sugar to max capacity
+      setLayer(SUGAR, parameters.maxSugarCapacity); // Re-up the patch sugar to max capacity
     }
   }
 
@@ -58,7 +111,7 @@ public class SugarCell extends Cell {
   protected void setCellState(int state) {
     super.setCellState(state);
     if (state == PATCH) {
-      patchSugar = getParam(MAX_SUGAR_CAPACITY);
+      setLayer(SUGAR, parameters.maxSugarCapacity);
     } else if (state == AGENT) {
       agentSugar = generateAgentSpawnSugar();
     }
@@ -68,17 +121,23 @@ public class SugarCell extends Cell {
    * Start the agents with random sugar, with at least enough to avoid starving round 1
    */
   private double generateAgentSpawnSugar() {
-    return rng.nextInt((int) getParam(MAX_SUGAR_CAPACITY)) + sugarMetabolismRate + 1;
+    return (int) (randomDraw(0) * (int) parameters.maxSugarCapacity)
+        + parameters.sugarMetabolismRate + 1;
   }
 
   @Override
   protected void setNextCellState(int state, Map<String, Double> values) {
     super.setNextCellState(state);
     if(state == AGENT) {
-      agentSugar = values.getOrDefault(AGENT_SUGAR, getParam(MAX_SUGAR_CAPACITY));
+      agentSugar = values.getOrDefault(AGENT_SUGAR, parameters.maxSugarCapacity);
     }
   }
 
+  @Override
+  protected int getStateCount() {
+    return AGENT + 1;
+  }
+
   /**
    * Computes the next state of this Cell by inspecting its neighbors and then determining the
    * transition accordingly.
@@ -86,7 +145,8 @@ public class SugarCell extends Cell {
    * <p>SugarScape Rules are as follows:
    *
    * PATCHes spawn with maximum sugar capacity, and regrow sugar at a rate governed by
-   * sugarRegrowthRate.
+   * sugarRegrowthRate in a bulk pass over the whole grid before any agent moves; see
+   * {@link #updateLayers(StateBuffer, int, int)}.
    *
    * AGENTs spawn with a random amount of sugar bounded from 0 to the maximum sugar capacity of a
    * PATCH.
@@ -97,63 +157,61 @@ public class SugarCell extends Cell {
    *
    */
   public void computeNextCellState() {
-    Set<SugarCell> availableNeighbors = findAvailableNeighbors();
-
-    switch(getCellState()) {
-      case PATCH -> regrowSugar();
-      case AGENT -> {
-        metabolizeSugar();
-        SugarCell cellToMoveTo = findSugar(availableNeighbors);
-        if(cellToMoveTo != null && this.getCellState() != PATCH) {
-          move(cellToMoveTo);
-        }
-        else if(this.getCellState() != PATCH){ // As long as we're not dead...
-          this.setNextCellState(AGENT); // Don't move
-        }
+    if(getCellState() == AGENT) {
+      metabolizeSugar();
+      SugarCell cellToMoveTo = findSugar();
+      if(cellToMoveTo != null && this.getCellState() != PATCH) {
+        move(cellToMoveTo);
+      }
+      else if(this.getCellState() != PATCH){ // As long as we're not dead...
+        this.setNextCellState(AGENT); // Don't move
       }
     }
   }
 
   private void move(SugarCell cellToMoveTo) {
-    this.agentSugar = this.agentSugar + this.patchSugar;
-    this.patchSugar = 0;
+    this.agentSugar = this.agentSugar + getLayer(SUGAR);
+    setLayer(SUGAR, 0);
     cellToMoveTo.agentSugar = this.agentSugar;
     this.agentSugar = 0.0;
     cellToMoveTo.setNextCellState(AGENT);
     this.setNextCellState(PATCH);
   }
 
-  private SugarCell findSugar(Set<SugarCell> availableNeighbors) {
+  private SugarCell findSugar() {
     double maxSugar = 0;
     SugarCell cellToMoveTo = null;
-    for(SugarCell cell : availableNeighbors) {
-      if(cell.patchSugar > maxSugar) {
-        cellToMoveTo = cell;
-        maxSugar = cell.patchSugar;
+    for(int i = 0; i < getNeighborCount(); i++) {
+      if(getNeighborState(i) == AGENT || getNeighborNextState(i) == AGENT) {
+        continue;
+      }
+      if(getNeighborLayer(SUGAR, i) > maxSugar) {
+        cellToMoveTo = (SugarCell) getNeighbor(i);
+        maxSugar = getNeighborLayer(SUGAR, i);
       }
     }
     return cellToMoveTo;
   }
 
-  private void regrowSugar() {
-    this.patchSugar = Math.min(this.patchSugar + sugarRegrowthRate, getParam(MAX_SUGAR_CAPACITY));
-  }
-
   private void metabolizeSugar() {
-    this.agentSugar = Math.max(0, agentSugar - sugarMetabolismRate);
+    this.agentSugar = Math.max(0, agentSugar - parameters.sugarMetabolismRate);
     if(this.agentSugar <= 0) { // If the AGENT is going to die
       this.setNextCellState(PATCH);
       super.setCellState(PATCH);
     }
   }
 
-  private Set<SugarCell> findAvailableNeighbors() {
-    Set<SugarCell> availableNeighbors = new HashSet<>();
-    for(Cell cell : getNeighbors()) {
-      if((cell.getCellState() != AGENT && cell.getNextCellState() != AGENT)) {
-        availableNeighbors.add((SugarCell)cell);
-      }
+  // The sugar capacity and rates, compiled once per parameter snapshot
+  private static final class Parameters {
+
+    private final double maxSugarCapacity;
+    private final double sugarRegrowthRate;
+    private final double sugarMetabolismRate;
+
+    private Parameters(ParameterSnapshot snapshot) {
+      maxSugarCapacity = snapshot.get(MAX_SUGAR_CAPACITY);
+      sugarRegrowthRate = snapshot.get(SUGAR_REGROWTH_RATE);
+      sugarMetabolismRate = snapshot.get(SUGAR_METABOLISM_RATE);
     }
-    return availableNeighbors;
   }
 }
@@ -0,0 +1,156 @@
+package cellsociety.simulation;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size memory of the cells an agent has most recently visited.
+ *
+ * @author Marc Chmielewski
+ * <p>Visited cell indices are kept in a ring buffer, so once the memory is full each new visit
+ * forgets the oldest one. Alongside the ring an open-addressed table counts how many times each
+ * index appears in it, so checking whether a cell was visited takes constant time. The memory
+ * belongs to the agent and travels with it from cell to cell; its size never grows past the
+ * capacity it was created with.
+ */
+class TabuMemory {
+
+  private static final int EMPTY = -1;
+
+  private final int[] ring;
+  private final int[] keys;
+  private final int[] counts;
+  private final int mask;
+  private int head;
+  private int size;
+
+  /**
+   * Creates an empty memory.
+   *
+   * @param capacity - The number of visits remembered; 0 or less remembers nothing.
+   */
+  TabuMemory(int capacity) {
+    this.ring = new int[Math.max(0, capacity)];
+    // A table at most half full keeps probe sequences short
+    int tableSize = Integer.highestOneBit(Math.max(1, ring.length) * 2) * 2;
+    this.keys = new int[tableSize];
+    this.counts = new int[tableSize];
+    this.mask = tableSize - 1;
+    Arrays.fill(keys, EMPTY);
+  }
+
+  /**
+   * Remembers a visit to a cell, forgetting the oldest visit if the memory is full.
+   *
+   * @param index - The row-major index of the visited cell.
+   */
+  void add(int index) {
+    if (ring.length == 0) {
+      return;
+    }
+    if (size == ring.length) {
+      forget(ring[head]);
+      ring[head] = index;
+      head = (head + 1) % ring.length;
+    } else {
+      ring[(head + size) % ring.length] = index;
+      size++;
+    }
+    int slot = find(index);
+    keys[slot] = index;
+    counts[slot]++;
+  }
+
+  /**
+   * Returns whether a cell is among the remembered visits.
+   *
+   * @param index - The row-major index of the cell.
+   * @return - true if the cell was visited and not yet forgotten.
+   */
+  boolean contains(int index) {
+    return keys[find(index)] == index;
+  }
+
+  /**
+   * Forgets every visit.
+   */
+  void clear() {
+    if (size > 0) {
+      Arrays.fill(keys, EMPTY);
+      Arrays.fill(counts, 0);
+      head = 0;
+      size = 0;
+    }
+  }
+
+  /**
+   * Returns the number of visits currently remembered.
+   *
+   * @return - The number of remembered visits, at most the capacity.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of visits this memory can hold.
+   *
+   * @return - The capacity the memory was created with, or 0 if it remembers nothing.
+   */
+  int getCapacity() {
+    return ring.length;
+  }
+
+  /**
+   * Returns the remembered visits, so that adding them to an empty memory of the same capacity
+   * recreates this one.
+   *
+   * @return - The row-major indices of the remembered cells, oldest first.
+   */
+  int[] toArray() {
+    int[] visits = new int[size];
+    for (int k = 0; k < size; k++) {
+      visits[k] = ring[(head + k) % ring.length];
+    }
+    return visits;
+  }
+
+  // Removes one occurrence of an index, closing the gap in its probe sequence when it is the last.
+  private void forget(int index) {
+    int slot = find(index);
+    if (--counts[slot] > 0) {
+      return;
+    }
+    keys[slot] = EMPTY;
+    int next = slot;
+    while (true) {
+      next = (next + 1) & mask;
+      if (keys[next] == EMPTY) {
+        return;
+      }
+      int home = hash(keys[next]);
+      // Entries whose home lies cyclically in (slot, next] are still reachable and stay put
+      boolean reachable = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+      if (!reachable) {
+        keys[slot] = keys[next];
+        counts[slot] = counts[next];
+        keys[next] = EMPTY;
+        counts[next] = 0;
+        slot = next;
+      }
+    }
+  }
+
+  // Returns the slot holding an index, or the empty slot where it would be inserted.
+  private int find(int index) {
+    int slot = hash(index);
+    while (keys[slot] != EMPTY && keys[slot] != index) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private int hash(int index) {
+    int h = index * 0x9e3779b9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+}
@@ -0,0 +1,254 @@
+package cellsociety.simulation;
+
+import cellsociety.util.SimulationConfiguration;
+import cellsociety.util.SimulationConfiguration.SimulationEdgeType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An unbounded world of cell states stored as fixed-size square tiles.
+ *
+ * @author Joshua Petitma
+ * <p>Every cell of the world starts in the default state 0. Tiles are kept in a hash map keyed on
+ * their tile coordinates and only exist while they hold a cell in another state, so memory follows
+ * the live area rather than the extent the simulation has reached. A step evaluates every tile
+ * that exists along with its eight neighbors, and frees every tile left entirely in state 0.
+ *
+ * <p>A tile is evaluated on a small scratch grid holding the tile and a one-cell halo copied from
+ * the tiles around it. The scratch grid is made of the simulation's own cells, so every local rule
+ * runs unchanged. Each tile draws its random numbers from its own stream.
+ */
+class TiledWorld {
+
+  static final int TILE_SIZE = 32;
+  static final int SCRATCH_SIZE = TILE_SIZE + 2;
+
+  private final Map<Long, int[]> tiles;
+  private final Deque<int[]> spareTiles;
+  private final List<Cell> scratchCells;
+  private final StateBuffer scratch;
+  private final CellRandom random;
+  private final CellRandom tileRandom;
+
+  /**
+   * Creates an empty world.
+   *
+   * @param scratchCells - {@link #SCRATCH_SIZE} squared fresh cells of the simulation's type.
+   * @param config       - The configuration of the simulation.
+   * @param random       - The simulation's source of random numbers.
+   */
+  TiledWorld(List<Cell> scratchCells, SimulationConfiguration config, CellRandom random) {
+    this.tiles = new HashMap<>();
+    this.spareTiles = new ArrayDeque<>();
+    this.scratchCells = scratchCells;
+    this.scratch = new StateBuffer(SCRATCH_SIZE, SCRATCH_SIZE);
+    this.random = random;
+    this.tileRandom = new CellRandom(0);
+    for (int i = 0; i < scratchCells.size(); i++) {
+      scratchCells.get(i).attach(scratch, i);
+      scratchCells.get(i).setRandom(tileRandom);
+    }
+    new CellGrid(scratchCells, SCRATCH_SIZE, SCRATCH_SIZE, config.getCellShape(),
+        SimulationEdgeType.NORMAL, config.getNeighborhodSize());
+  }
+
+  /**
+   * Returns the state of a cell.
+   *
+   * @param row    - The world row of the cell.
+   * @param column - The world column of the cell.
+   * @return - The state of that cell.
+   */
+  int get(int row, int column) {
+    int[] tile = tiles.get(key(Math.floorDiv(row, TILE_SIZE), Math.floorDiv(column, TILE_SIZE)));
+    return tile == null ? 0 : tile[offset(row, column)];
+  }
+
+  /**
+   * Sets the state of a cell, allocating its tile if needed.
+   *
+   * @param row    - The world row of the cell.
+   * @param column - The world column of the cell.
+   * @param state  - The state the cell will hold.
+   */
+  void set(int row, int column, int state) {
+    long key = key(Math.floorDiv(row, TILE_SIZE), Math.floorDiv(column, TILE_SIZE));
+    int[] tile = tiles.get(key);
+    if (tile == null) {
+      if (state == 0) {
+        return;
+      }
+      tile = newTile();
+      tiles.put(key, tile);
+    }
+    tile[offset(row, column)] = state;
+  }
+
+  /**
+   * Returns the number of tiles currently allocated.
+   *
+   * @return - The number of tiles holding a cell outside the default state.
+   */
+  int getTileCount() {
+    return tiles.size();
+  }
+
+  /**
+   * Advances every cell of the world by one generation.
+   */
+  void step() {
+    Set<Long> candidates = new HashSet<>();
+    for (long key : tiles.keySet()) {
+      int tileRow = (int) (key >> Integer.SIZE);
+      int tileCol = (int) key;
+      for (int dr = -1; dr <= 1; dr++) {
+        for (int dc = -1; dc <= 1; dc++) {
+          candidates.add(key(tileRow + dr, tileCol + dc));
+        }
+      }
+    }
+    Map<Long, int[]> nextTiles = new HashMap<>();
+    for (long key : candidates) {
+      int[] next = computeTile((int) (key >> Integer.SIZE), (int) key);
+      if (next != null) {
+        nextTiles.put(key, next);
+      }
+    }
+    for (int[] tile : tiles.values()) {
+      spareTiles.push(tile);
+    }
+    tiles.clear();
+    tiles.putAll(nextTiles);
+  }
+
+  /**
+   * Copies a window of the world into a buffer, writing only the cells whose state differs.
+   *
+   * @param states    - The buffer to update; its width and height give the size of the window.
+   * @param originRow - The world row at the top of the window.
+   * @param originCol - The world column at the left of the window.
+   */
+  void store(StateBuffer states, int originRow, int originCol) {
+    int width = states.getWidth();
+    for (int i = 0; i < states.size(); i++) {
+      int state = get(originRow + i / width, originCol + i % width);
+      if (states.get(i) != state) {
+        states.commit(i, state);
+      }
+    }
+  }
+
+  /**
+   * Replaces a window of the world with the current states of a buffer.
+   *
+   * @param states    - The buffer to read states from.
+   * @param originRow - The world row at the top of the window.
+   * @param originCol - The world column at the left of the window.
+   */
+  void load(StateBuffer states, int originRow, int originCol) {
+    int width = states.getWidth();
+    for (int i = 0; i < states.size(); i++) {
+      set(originRow + i / width, originCol + i % width, states.get(i));
+    }
+  }
+
+  /**
+   * Returns every cell of the world outside of the default state.
+   *
+   * @return - Each such cell as a {@code {row, column, state}} array.
+   */
+  List<int[]> getNonDefaultCells() {
+    List<int[]> cells = new ArrayList<>();
+    for (Map.Entry<Long, int[]> entry : tiles.entrySet()) {
+      int tileRow = (int) (entry.getKey() >> Integer.SIZE);
+      int tileCol = (int) (long) entry.getKey();
+      int[] tile = entry.getValue();
+      for (int i = 0; i < tile.length; i++) {
+        if (tile[i] != 0) {
+          cells.add(new int[]{tileRow * TILE_SIZE + i / TILE_SIZE,
+              tileCol * TILE_SIZE + i % TILE_SIZE, tile[i]});
+        }
+      }
+    }
+    return cells;
+  }
+
+  // Computes the next generation of one tile, or returns null if it is entirely in state 0.
+  private int[] computeTile(int tileRow, int tileCol) {
+    if (!loadScratch(tileRow, tileCol)) {
+      return null;
+    }
+    tileRandom.follow(random, key(tileRow, tileCol));
+    int[] next = null;
+    for (int row = 0; row < TILE_SIZE; row++) {
+      for (int col = 0; col < TILE_SIZE; col++) {
+        int index = (row + 1) * SCRATCH_SIZE + col + 1;
+        scratchCells.get(index).computeNextCellState();
+        int state = scratch.getNext(index);
+        if (state != 0) {
+          if (next == null) {
+            next = newTile();
+          }
+          next[row * TILE_SIZE + col] = state;
+        }
+      }
+    }
+    return next;
+  }
+
+  // Copies a tile and its halo into the scratch grid; returns false if every cell is in state 0,
+  // in which case the tile stays in state 0.
+  private boolean loadScratch(int tileRow, int tileCol) {
+    int[][] around = new int[9][];
+    boolean live = false;
+    for (int i = 0; i < around.length; i++) {
+      around[i] = tiles.get(key(tileRow + i / 3 - 1, tileCol + i % 3 - 1));
+      live |= around[i] != null;
+    }
+    if (!live) {
+      return false;
+    }
+    for (int i = 0; i < around.length; i++) {
+      // The rows and columns of the neighboring tile that fall inside the halo
+      int fromRow = i / 3 == 0 ? TILE_SIZE - 1 : 0;
+      int toRow = i / 3 == 2 ? 1 : TILE_SIZE;
+      int fromCol = i % 3 == 0 ? TILE_SIZE - 1 : 0;
+      int toCol = i % 3 == 2 ? 1 : TILE_SIZE;
+      int scratchRow = i / 3 == 0 ? 0 : (i / 3 - 1) * TILE_SIZE + 1;
+      int scratchCol = i % 3 == 0 ? 0 : (i % 3 - 1) * TILE_SIZE + 1;
+      for (int row = fromRow; row < toRow; row++) {
+        for (int col = fromCol; col < toCol; col++) {
+          int state = around[i] == null ? 0 : around[i][row * TILE_SIZE + col];
+          // Rules only write a next state when a cell changes, so both must be reset
+          scratch.commit((scratchRow + row - fromRow) * SCRATCH_SIZE + scratchCol + col - fromCol,
+              state);
+        }
+      }
+    }
+    return true;
+  }
+
+  private int[] newTile() {
+    int[] tile = spareTiles.poll();
+    if (tile == null) {
+      return new int[TILE_SIZE * TILE_SIZE];
+    }
+    Arrays.fill(tile, 0);
+    return tile;
+  }
+
+  private static int offset(int row, int column) {
+    return Math.floorMod(row, TILE_SIZE) * TILE_SIZE + Math.floorMod(column, TILE_SIZE);
+  }
+
+  private static long key(int tileRow, int tileCol) {
+    return ((long) tileRow << Integer.SIZE) | (tileCol & 0xffffffffL);
+  }
+}
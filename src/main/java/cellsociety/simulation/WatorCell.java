@@ -1,13 +1,15 @@
 package cellsociety.simulation;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * This class handles the behavior of Cells in the Wa-Tor World simulation, and thus the state
  * transitions therein.
  *
+ * <p>The energy of each shark and the breeding countdown of each fish are kept as attributes in
+ * the simulation's {@link StateBuffer}, so moving, spawning and eating are copies between
+ * primitive slots and a step allocates nothing.
+ *
  * @author Marc Chmielewski
  */
 public class WatorCell extends Cell {
@@ -17,8 +19,10 @@ public class WatorCell extends Cell {
   public static final int SHARK = 2;
   public static final String ENERGY_LEVEL = "EnergyLevel";
   public static final String ROUNDS_TILL_SPAWN = "RoundsTillSpawn";
-  private double energyLevel;
-  private double roundsTillSpawn;
+  private static final int ENERGY = 0;
+  private static final int ROUNDS = 1;
+  private static final int ATTRIBUTES = 2;
+  private Parameters parameters;
 
   /**
    * Construct this cell with its default state.
@@ -27,8 +31,6 @@ public class WatorCell extends Cell {
    */
   public WatorCell(Map<String, Double> params) {
     super(WATER, params);
-    energyLevel = 0;
-    roundsTillSpawn = 0;
   }
 
   /**
@@ -40,53 +42,55 @@ public class WatorCell extends Cell {
     super(state);
   }
 
+  @Override
+  protected int getAttributeCount() {
+    return ATTRIBUTES;
+  }
+
+  @Override
+  protected void setParameters(ParameterSnapshot snapshot) {
+    super.setParameters(snapshot);
+    parameters = compileParameters(Parameters.class, Parameters::new);
+  }
+
+  @Override
+  protected boolean hasAgents() {
+    return true;
+  }
+
+  @Override
+  protected boolean isAgentState(int state) {
+    return state == FISH || state == SHARK;
+  }
+
   @Override
   public void poke() {
-    super.setCellState(getCellState() + 1);
-    if (getCellState() == FISH) {
-      energyLevel = 0;
-      roundsTillSpawn = getParam("FishBreedingCycle");
-    } else if (getCellState() == SHARK) {
-      energyLevel = getParam("SharkSpawnEnergy") / 2;
-      roundsTillSpawn = 0;
-    }
-    else {
-      super.setCellState(WATER);
-      roundsTillSpawn = 0;
-      energyLevel = 0;
-    }
+    setCellState(getCellState() < SHARK ? getCellState() + 1 : WATER);
   }
 
   @Override
   protected void setCellState(int state) {
     super.setCellState(state);
-    if (state == FISH) {
-      energyLevel = 0;
-      roundsTillSpawn = getParam("FishBreedingCycle");
-    } else if (state == SHARK) {
-      energyLevel = getParam("SharkSpawnEnergy") / 2;
-      roundsTillSpawn = 0;
-    } else {
-      energyLevel = 0;
-      roundsTillSpawn = 0;
-    }
+    setAttribute(ENERGY, state == SHARK ? parameters.sharkSpawnEnergy / 2 : 0);
+    setAttribute(ROUNDS, state == FISH ? parameters.fishBreedingCycle : 0);
   }
 
   @Override
   protected void setNextCellState(int state, Map<String, Double> values) {
-    super.setNextCellState(state);
     if (state == FISH) {
-      energyLevel = 0;
-      roundsTillSpawn = values.getOrDefault(ROUNDS_TILL_SPAWN, getParam("FishBreedingCycle"));
+      setNextAgent(FISH, values.getOrDefault(ROUNDS_TILL_SPAWN, parameters.fishBreedingCycle), 0);
     } else if (state == SHARK) {
-      energyLevel = values.getOrDefault(ENERGY_LEVEL, getParam("SharkSpawnEnergy") / 2);
-      roundsTillSpawn = 0;
+      setNextAgent(SHARK, 0, values.getOrDefault(ENERGY_LEVEL, parameters.sharkSpawnEnergy / 2));
     } else {
-      energyLevel = 0;
-      roundsTillSpawn = 0;
+      setNextAgent(state, 0, 0);
     }
   }
 
+  @Override
+  protected int getStateCount() {
+    return SHARK + 1;
+  }
+
   /**
    * Computes the next state of this Cell by inspecting its neighbors and then determining the
    * transition accordingly.
@@ -99,138 +103,136 @@ public class WatorCell extends Cell {
    * <p>If this cell is a shark, check to see if it can move into a space that has a fish. If so,
    */
   public void computeNextCellState() {
-    Set<Cell> occupiedNeighbors = new HashSet<>();
-    findOccupiedNeighbors(occupiedNeighbors);
-    HashSet<Cell> unoccupiedNeighbors = new HashSet<>(getNeighbors());
-    unoccupiedNeighbors.removeAll(occupiedNeighbors);
-
     switch (getCellState()) {
       case FISH -> {
-        updateFishState(unoccupiedNeighbors);
+        updateFishState();
       }
       case SHARK -> {
-        updateSharkState(occupiedNeighbors, unoccupiedNeighbors);
+        updateSharkState();
       }
     }
   }
 
-  private void updateSharkState(Set<Cell> occupiedNeighbors, HashSet<Cell> unoccupiedNeighbors) {
+  private void updateSharkState() {
 
     // Decrement SHARK energy level
-    energyLevel--;
+    double energyLevel = getAttribute(ENERGY) - 1;
 
     // Check SHARK death
     if (energyLevel <= 0) {
-      killShark(this);
+      vacate();
       return;
     }
 
     // Check SHARK spawn
-    if (energyLevel >= getParam("SharkSpawnEnergy")) {
-      boolean success = spawn(SHARK, energyLevel / 2, unoccupiedNeighbors);
-      if (success) {
-        this.energyLevel /= 2;
-      }
+    if (energyLevel >= parameters.sharkSpawnEnergy && spawn(SHARK, energyLevel / 2)) {
+      energyLevel /= 2;
     }
 
     // Attempt to move SHARK and eat a FISH if possible
-    Cell sharkMove = checkSharkMove(occupiedNeighbors, unoccupiedNeighbors);
-    if (sharkMove != null) {
-      move(sharkMove);
+    int target = findFish();
+    if (target >= 0) {
+      energyLevel += parameters.fishEnergyGain;
+      getNeighbor(target).setCellState(WATER);
+    } else {
+      // If not, settle for water
+      target = findOpenWater();
+    }
+    if (target >= 0) {
+      move(target, SHARK, 0, energyLevel);
+    } else {
+      setNextAttribute(ENERGY, energyLevel);
     }
   }
 
-  private void updateFishState(HashSet<Cell> unoccupiedNeighbors) {
+  private void updateFishState() {
 
     // Check FISH spawn
+    double roundsTillSpawn = getAttribute(ROUNDS);
     if (roundsTillSpawn == 0) {
-      spawn(FISH, 0, unoccupiedNeighbors);
-      roundsTillSpawn = getParam("FishBreedingCycle"); // Reset counter regardless of success
+      spawn(FISH, 0);
+      roundsTillSpawn = parameters.fishBreedingCycle; // Reset counter regardless of success
     } else {
       roundsTillSpawn--;
     }
 
     // Attempt to move FISH
-    Cell fishMove = checkFishMove(unoccupiedNeighbors);
-    if (fishMove != null) {
-      move(fishMove);
+    int water = findOpenWater();
+    if (water >= 0) {
+      move(water, FISH, roundsTillSpawn, 0);
+    } else {
+      setNextAttribute(ROUNDS, roundsTillSpawn);
     }
   }
 
-  private void killFish(Cell cell) {
-    cell.setCellState(WATER);
+  // Leaves this cell empty from now on.
+  private void vacate() {
+    setNextCellState(WATER);
+    setCellState(WATER);
   }
 
-  private void killShark(Cell cell) {
-    Map<String, Double> data = Map.of(ROUNDS_TILL_SPAWN, 0.0, ENERGY_LEVEL, 0.0);
-    cell.setCellState(WATER);
-    cell.setNextCellState(WATER, data);
+  // Moves the agent in this cell, carrying the given values, to one of its neighbors.
+  private void move(int neighbor, int state, double roundsTillSpawn, double energyLevel) {
+    ((WatorCell) getNeighbor(neighbor)).setNextAgent(state, roundsTillSpawn, energyLevel);
+    vacate();
   }
 
-  private void move(Cell newCell) {
-    this.setNextCellState(WATER);
-    if (this.getCellState() == FISH) {
-      Map<String, Double> data = Map.of(ROUNDS_TILL_SPAWN, this.roundsTillSpawn, ENERGY_LEVEL, 0.0);
-      newCell.setNextCellState(FISH, data);
-    } else if (this.getCellState() == SHARK) {
-      Map<String, Double> data = Map.of(ROUNDS_TILL_SPAWN, 0.0, ENERGY_LEVEL, this.energyLevel);
-      newCell.setNextCellState(SHARK, data);
-    }
-    this.setCellState(WATER);
+  // Places an agent in this cell for the next generation.
+  private void setNextAgent(int state, double roundsTillSpawn, double energyLevel) {
+    setNextCellState(state);
+    setNextAttribute(ROUNDS, roundsTillSpawn);
+    setNextAttribute(ENERGY, energyLevel);
   }
 
   public void setEnergyLevel(double energyLevel) {
-    this.energyLevel = energyLevel;
+    setAttribute(ENERGY, energyLevel);
   }
 
-  private Cell checkSharkMove(Set<Cell> occupiedNeighbors, Set<Cell> unoccupiedNeighbors) {
-    // Check for fish and eat it if available
-    for (Cell neighbor : occupiedNeighbors) {
-      if (neighbor.getCellState() == FISH) {
-        setEnergyLevel(energyLevel + getParam("FishEnergyGain"));
-        killFish(neighbor);
-        return neighbor;
+  // Returns the first neighbor holding a fish, or -1 if none does.
+  private int findFish() {
+    for (int i = 0; i < getNeighborCount(); i++) {
+      if (getNeighborState(i) == FISH) {
+        return i;
       }
     }
-    // If not, settle for water
-    for (Cell neighbor : unoccupiedNeighbors) {
-      if (neighbor.getCellState() == WATER && neighbor.getNextCellState() == WATER) {
-        return neighbor;
-      }
-    }
-    return null;
+    return -1;
   }
 
-  private Cell checkFishMove(Set<Cell> unoccupiedNeighbors) {
-    for (Cell neighbor : unoccupiedNeighbors) {
-      if (neighbor.getCellState() == WATER && neighbor.getNextCellState() == WATER) {
-        return neighbor;
+  // Returns the first neighbor that is water both now and next generation, or -1 if none is.
+  private int findOpenWater() {
+    for (int i = 0; i < getNeighborCount(); i++) {
+      if (getNeighborState(i) == WATER && getNeighborNextState(i) == WATER) {
+        return i;
       }
     }
-    return null;
+    return -1;
   }
 
-  private void findOccupiedNeighbors(Set<Cell> occupiedNeighbors) {
-    for (Cell cell : getNeighbors()) {
-      if (cell.getCellState() != WATER || cell.getNextCellState() != WATER) {
-        occupiedNeighbors.add(cell);
-      }
+  private boolean spawn(int cellType, double energyLevel) {
+    int water = findOpenWater();
+    if (water < 0) {
+      return false;
     }
+    WatorCell neighbor = (WatorCell) getNeighbor(water);
+    if (cellType == FISH) {
+      neighbor.setNextAgent(FISH, parameters.fishBreedingCycle, 0);
+    } else if (cellType == SHARK) {
+      neighbor.setNextAgent(SHARK, 0, energyLevel);
+    }
+    return true;
   }
 
-  private boolean spawn(int cellType, double energyLevel, Set<Cell> unoccupiedNeighbors) {
-    for (Cell neighbor : unoccupiedNeighbors) {
-      if (neighbor.getCellState() == WATER && (neighbor.getNextCellState() == WATER)) {
-        if (cellType == FISH) {
-          Map<String, Double> data = Map.of(ROUNDS_TILL_SPAWN, getParam("FishBreedingCycle"));
-          neighbor.setNextCellState(FISH, data);
-        } else if (cellType == SHARK) {
-          Map<String, Double> data = Map.of(ENERGY_LEVEL, energyLevel);
-          neighbor.setNextCellState(SHARK, data);
-        }
-        return true;
-      }
+  // The breeding and energy parameters, compiled once per parameter snapshot
+  private static final class Parameters {
+
+    private final double fishBreedingCycle;
+    private final double sharkSpawnEnergy;
+    private final double fishEnergyGain;
+
+    private Parameters(ParameterSnapshot snapshot) {
+      fishBreedingCycle = snapshot.get("FishBreedingCycle");
+      sharkSpawnEnergy = snapshot.get("SharkSpawnEnergy");
+      fishEnergyGain = snapshot.get("FishEnergyGain");
     }
-    return false;
   }
 }
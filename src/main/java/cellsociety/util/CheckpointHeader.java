@@ -0,0 +1,113 @@
+package cellsociety.util;
+
+import cellsociety.util.SimulationConfiguration.CellNeighborhoodSize;
+import cellsociety.util.SimulationConfiguration.CellShape;
+import cellsociety.util.SimulationConfiguration.SimulationEdgeType;
+import cellsociety.util.SimulationConfiguration.SimulationType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Encodes a {@link SimulationConfiguration} as the binary header of a simulation checkpoint, and
+ * decodes it again.
+ * <p>
+ * The header holds everything about a simulation except its cells: its metadata, seed, geometry,
+ * viewport and every simulation parameter. Parameters are written as the exact bits of their
+ * values, unlike the XML written by {@link SimulationWriter}, so a restored simulation runs with
+ * exactly the same rules. The cells themselves follow the header in the checkpoint.
+ *
+ * @author David Coffman
+ */
+public class CheckpointHeader {
+
+  // Not instantiable; the header is read and written through the static methods only.
+  private CheckpointHeader() {
+  }
+
+  /**
+   * Encodes the given {@link SimulationConfiguration}, leaving out its initial states.
+   *
+   * @param config the {@link SimulationConfiguration} to encode
+   * @return the encoded header
+   * @throws IOException if the configuration cannot be encoded
+   */
+  public static byte[] encode(SimulationConfiguration config) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    writeString(out, config.getSimulationName());
+    out.writeUTF(config.getSimulationType().name());
+    writeString(out, config.getSimulationAuthor());
+    writeString(out, config.getSimulationDescription());
+    out.writeBoolean(config.hasSeed());
+    out.writeLong(config.getSeed());
+    out.writeUTF(config.getCellShape().name());
+    out.writeInt(config.getWidth());
+    out.writeInt(config.getHeight());
+    out.writeUTF(config.getEdgeType().name());
+    out.writeUTF(config.getNeighborhodSize().name());
+    out.writeInt(config.getViewportRow());
+    out.writeInt(config.getViewportColumn());
+    // Sorted so that the same configuration always encodes to the same bytes
+    Map<String, Double> parameters = new TreeMap<>(config.getSimulationParameters());
+    out.writeInt(parameters.size());
+    for (Map.Entry<String, Double> parameter : parameters.entrySet()) {
+      out.writeUTF(parameter.getKey());
+      out.writeDouble(parameter.getValue());
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes a header written by {@link #encode(SimulationConfiguration)} into a new, validated
+   * {@link SimulationConfiguration} without any initial states.
+   *
+   * @param header the encoded header
+   * @return the decoded {@link SimulationConfiguration}
+   * @throws Exception if the header is malformed or describes an invalid configuration
+   */
+  public static SimulationConfiguration decode(byte[] header) throws Exception {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+    SimulationConfiguration config = new SimulationConfiguration();
+    config.setSimulationName(readString(in));
+    config.setSimulationType(SimulationType.valueOf(in.readUTF()));
+    config.setSimulationAuthor(readString(in));
+    config.setSimulationDescription(readString(in));
+    boolean seeded = in.readBoolean();
+    long seed = in.readLong();
+    if (seeded) {
+      config.updateSeed(seed);
+    }
+    config.setCellShape(CellShape.valueOf(in.readUTF()));
+    config.setWidth(in.readInt());
+    config.setHeight(in.readInt());
+    config.setEdgeType(SimulationEdgeType.valueOf(in.readUTF()));
+    config.setNeighborhoodSize(CellNeighborhoodSize.valueOf(in.readUTF()));
+    int viewportRow = in.readInt();
+    config.updateViewportOrigin(viewportRow, in.readInt());
+    int parameterCount = in.readInt();
+    for (int i = 0; i < parameterCount; i++) {
+      config.addSimulationParameter(in.readUTF(), in.readDouble());
+    }
+    config.validateConfiguration();
+    return config;
+  }
+
+  // Writes a string that may be missing from the configuration.
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+  // Reads a string written by writeString.
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
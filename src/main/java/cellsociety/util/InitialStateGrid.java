@@ -0,0 +1,224 @@
+package cellsociety.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Stores the explicitly specified initial states of a {@link SimulationConfiguration} in
+ * primitive arrays rather than as one object per cell.
+ * <p>
+ * On a bounded grid whose size is known, cells are checked against the grid's bounds as they are
+ * added and a bitset of the grid marks the cells seen so far, so a cell given twice is caught at
+ * once. Cells are kept as packed row, column and state triples until that would take more memory
+ * than an array with one state per cell of the grid, at which point they move into such an array;
+ * either way the cells never take more memory than the grid itself. In an unbounded world, or
+ * when the grid's size is only known later, cells are kept as triples and checked by
+ * {@link #validate(int, int, boolean)} instead.
+ * <p>
+ * A cell given twice with the same state is kept once; a cell given two different states is an
+ * error.
+ *
+ * @author David Coffman
+ */
+public class InitialStateGrid {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final int width;
+  private final int height;
+  private final BitSet seen;
+  // Packed {row, column, state} triples, used until the dense array takes no more memory
+  private int[] triples;
+  private int count;
+  // One state per cell of the grid in row-major order, offset by one so that 0 marks no state
+  private int[] dense;
+
+  // Creates an empty store for a bounded grid, checking every cell as it is added.
+  InitialStateGrid(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.seen = new BitSet();
+    this.triples = new int[3 * INITIAL_CAPACITY];
+  }
+
+  // Creates an empty store for an unbounded world, or for a grid whose size is not yet known.
+  InitialStateGrid() {
+    this.width = -1;
+    this.height = -1;
+    this.seen = null;
+    this.triples = new int[3 * INITIAL_CAPACITY];
+  }
+
+  // Adds the initial state of a cell. Throws if the cell lies outside a bounded grid or was
+  // already given a different state.
+  void add(int row, int column, int state) {
+    if (seen == null) {
+      append(row, column, state);
+      return;
+    }
+    checkBounds(row, column, state, width, height);
+    int index = row * width + column;
+    if (dense == null && seen.get(index)) {
+      // Repeats are rare, and the dense array finds the earlier state in constant time
+      densify();
+    }
+    if (dense != null) {
+      if (dense[index] != 0 && dense[index] != state + 1) {
+        throw conflict(row, column, dense[index] - 1, state);
+      }
+      dense[index] = state + 1;
+      return;
+    }
+    seen.set(index);
+    append(row, column, state);
+    if (3L * count > (long) width * height) {
+      densify();
+    }
+  }
+
+  // Checks cells that could not be checked as they were added against the final geometry, and
+  // for cells given two different states. Throws if cells were already checked against a grid
+  // of a different size.
+  void validate(int width, int height, boolean bounded) {
+    if (seen != null) {
+      if (!bounded || width != this.width || height != this.height) {
+        throw new IllegalStateException("The grid's geometry cannot change after its initial "
+            + "states are given.");
+      }
+      return;
+    }
+    long[] keys = new long[count];
+    for (int k = 0; k < count; k++) {
+      int row = triples[3 * k];
+      int column = triples[3 * k + 1];
+      if (bounded) {
+        checkBounds(row, column, triples[3 * k + 2], width, height);
+      }
+      keys[k] = (long) row << 32 | (column & 0xffffffffL);
+    }
+    Arrays.sort(keys);
+    for (int k = 1; k < count; k++) {
+      if (keys[k] == keys[k - 1]) {
+        checkRepeats(keys);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns whether no initial state was given.
+   *
+   * @return true if no cell was given an initial state
+   */
+  public boolean isEmpty() {
+    return count == 0 && dense == null;
+  }
+
+  /**
+   * Hands every cell given an initial state to an action: in row-major order once the cells fill
+   * enough of the grid, and in the order they were added otherwise.
+   *
+   * @param action what to do with each cell
+   */
+  public void forEach(CellStateConsumer action) {
+    if (dense != null) {
+      for (int index = 0; index < dense.length; index++) {
+        if (dense[index] != 0) {
+          action.accept(index / width, index % width, dense[index] - 1);
+        }
+      }
+      return;
+    }
+    for (int k = 0; k < count; k++) {
+      action.accept(triples[3 * k], triples[3 * k + 1], triples[3 * k + 2]);
+    }
+  }
+
+  /**
+   * Returns every cell given an initial state as a <code>{row, column, state}</code> array. Builds
+   * an object per cell, so {@link #forEach(CellStateConsumer)} is preferred for large grids.
+   *
+   * @return the cells given an initial state
+   */
+  public List<int[]> toList() {
+    List<int[]> cells = new ArrayList<>();
+    forEach((row, column, state) -> cells.add(new int[]{row, column, state}));
+    return cells;
+  }
+
+  private void append(int row, int column, int state) {
+    if (3 * count == triples.length) {
+      triples = Arrays.copyOf(triples, 2 * triples.length);
+    }
+    triples[3 * count] = row;
+    triples[3 * count + 1] = column;
+    triples[3 * count + 2] = state;
+    count++;
+  }
+
+  // Moves the triples into the dense array.
+  private void densify() {
+    dense = new int[width * height];
+    for (int k = 0; k < count; k++) {
+      dense[triples[3 * k] * width + triples[3 * k + 1]] = triples[3 * k + 2] + 1;
+    }
+    triples = null;
+    count = 0;
+  }
+
+  // Throws if the triples of any cell give it different states, given the sorted cell keys of
+  // every triple. A key holds both coordinates, so each cell is replaced by its rank among the
+  // distinct keys to leave room for its state; sorting those makes the states of a cell adjacent.
+  private void checkRepeats(long[] keys) {
+    int distinct = 0;
+    for (int k = 0; k < count; k++) {
+      if (distinct == 0 || keys[k] != keys[distinct - 1]) {
+        keys[distinct++] = keys[k];
+      }
+    }
+    long[] states = new long[count];
+    for (int k = 0; k < count; k++) {
+      long key = (long) triples[3 * k] << 32 | (triples[3 * k + 1] & 0xffffffffL);
+      long cell = Arrays.binarySearch(keys, 0, distinct, key);
+      states[k] = cell << 32 | (triples[3 * k + 2] & 0xffffffffL);
+    }
+    Arrays.sort(states);
+    for (int k = 1; k < count; k++) {
+      if (states[k] >> 32 == states[k - 1] >> 32 && states[k] != states[k - 1]) {
+        long key = keys[(int) (states[k] >> 32)];
+        throw conflict((int) (key >> 32), (int) key, (int) states[k - 1], (int) states[k]);
+      }
+    }
+  }
+
+  private static void checkBounds(int row, int column, int state, int width, int height) {
+    if (row < 0 || column < 0 || row >= height || column >= width) {
+      throw new IllegalArgumentException("Invalid cell specified for simulation geometry; cell "
+          + "with row = " + row + ", col = " + column + ", state = " + state + " does not exist "
+          + "in a grid with " + height + " rows and " + width + " columns.");
+    }
+  }
+
+  private static IllegalArgumentException conflict(int row, int column, int first, int second) {
+    return new IllegalArgumentException("Cell at row = " + row + ", col = " + column + " is "
+        + "given two initial states (" + first + " and " + second + ").");
+  }
+
+  /**
+   * Receives the initial state of one cell.
+   */
+  @FunctionalInterface
+  public interface CellStateConsumer {
+
+    /**
+     * Receives the initial state of one cell.
+     *
+     * @param row    the row of the cell
+     * @param column the column of the cell
+     * @param state  the state the cell starts in
+     */
+    void accept(int row, int column, int state);
+  }
+}
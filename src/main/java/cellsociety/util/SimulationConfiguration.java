@@ -1,6 +1,5 @@
 package cellsociety.util;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -21,7 +20,7 @@ public class SimulationConfiguration {
 
   private final Map<String, Double> simulationParameters;
   private final Map<Integer, Double> randomInitialStates;
-  private final List<int[]> initialNonDefaultCellStates;
+  private InitialStateGrid initialNonDefaultCellStates;
   private String simulationName;
   private String simulationAuthor;
   private String simulationDescription;
@@ -32,12 +31,16 @@ public class SimulationConfiguration {
   private CellShape cellShape;
   private int width;
   private int height;
+  private int viewportRow;
+  private int viewportColumn;
+  private boolean seeded;
+  private long seed;
 
   // SimulationConfiguration constructor; protected as it should only be called by the XMLParser.
   protected SimulationConfiguration() {
     this.simulationParameters = new HashMap<>();
     this.randomInitialStates = new HashMap<>();
-    this.initialNonDefaultCellStates = new ArrayList<>();
+    this.initialNonDefaultCellStates = new InitialStateGrid();
     this.cellShape = CellShape.RECTANGLE;
     this.randomGridGenerationType = RandomGridGenerationType.NONE;
     this.edgeType = SimulationEdgeType.NORMAL;
@@ -46,14 +49,23 @@ public class SimulationConfiguration {
     this.height = 5;
   }
 
-  // Validates, then adds, an initial cell state in its compacted integer array format.
-  protected void addInitialCellState(int[] cellState) {
-    assert cellState.length == 3;
-    if (cellState[0] < 0 || cellState[1] < 0 || cellState[2] < 0) {
+  // Prepares to receive initial cell states. Once the geometry is known, the cells of a bounded
+  // grid are checked against its bounds, and for repeats, as they are added; otherwise both are
+  // checked in validateConfiguration().
+  protected void startInitialCellStates(boolean geometryKnown) {
+    if (initialNonDefaultCellStates.isEmpty()) {
+      initialNonDefaultCellStates = geometryKnown && edgeType != SimulationEdgeType.INFINITE
+          ? new InitialStateGrid(width, height) : new InitialStateGrid();
+    }
+  }
+
+  // Validates, then adds, an initial cell state.
+  protected void addInitialCellState(int row, int column, int state) {
+    if (state < 0) {
       throw new IllegalArgumentException("Invalid cell state specified (provided cell at row = " +
-          cellState[0] + ", col = " + cellState[1] + ", state = " + cellState[2] + ")");
+          row + ", col = " + column + ", state = " + state + ")");
     }
-    initialNonDefaultCellStates.add(cellState);
+    initialNonDefaultCellStates.add(row, column, state);
   }
 
   // Validates, then adds, a simulation parameter to the simulation parameters map. Throws an
@@ -138,6 +150,39 @@ public class SimulationConfiguration {
     this.edgeType = type;
   }
 
+  /**
+   * Returns the row of an {@link SimulationEdgeType#INFINITE} world shown in the top row of the
+   * grid.
+   *
+   * @return the world row at the top of the visible grid
+   */
+  public int getViewportRow() {
+    return this.viewportRow;
+  }
+
+  /**
+   * Returns the column of an {@link SimulationEdgeType#INFINITE} world shown in the leftmost column
+   * of the grid.
+   *
+   * @return the world column at the left of the visible grid
+   */
+  public int getViewportColumn() {
+    return this.viewportColumn;
+  }
+
+  /**
+   * Moves the visible grid of an {@link SimulationEdgeType#INFINITE} world so that its top-left
+   * cell shows the given world row and column. Public so that the viewport can be panned
+   * mid-simulation and saved along with it.
+   *
+   * @param row    the world row to show at the top of the grid
+   * @param column the world column to show at the left of the grid
+   */
+  public void updateViewportOrigin(int row, int column) {
+    this.viewportRow = row;
+    this.viewportColumn = column;
+  }
+
   /**
    * Returns the {@link CellNeighborhoodSize} assigned by the {@link XMLParser}.
    *
@@ -197,6 +242,36 @@ public class SimulationConfiguration {
     this.simulationAuthor = author;
   }
 
+  /**
+   * Returns whether the configuration names the seed its random numbers are drawn from.
+   *
+   * @return true if a seed was specified, in which case every run is identical.
+   */
+  public boolean hasSeed() {
+    return this.seeded;
+  }
+
+  /**
+   * Returns the seed random initial states and stochastic rules draw from. Only meaningful when
+   * {@link #hasSeed()} is true.
+   *
+   * @return the seed of the simulation.
+   */
+  public long getSeed() {
+    return this.seed;
+  }
+
+  /**
+   * Sets the seed random initial states and stochastic rules draw from. Public so that a running
+   * simulation can be reseeded and saved with the seed it used.
+   *
+   * @param seed the seed of the simulation.
+   */
+  public void updateSeed(long seed) {
+    this.seed = seed;
+    this.seeded = true;
+  }
+
   /**
    * Returns the {@link SimulationType} of the simulation.
    *
@@ -307,29 +382,35 @@ public class SimulationConfiguration {
   }
 
   /**
-   * Returns an <b>unmodifiable</b> view on the initial non-default states list. This list cannot be
-   * updated through any <code>public</code> method.
+   * Returns an <b>unmodifiable</b> list of the initial non-default states, each as a
+   * <code>{row, column, state}</code> array. The list is built on each call, so {@link
+   * #getInitialStateGrid()} is preferred for large grids.
    *
-   * @return an <b>unmodifiable</b> view on the initial non-default states list
+   * @return an <b>unmodifiable</b> list of the initial non-default states
    */
   public List<int[]> getInitialNonDefaultCellStates() {
+    return Collections.unmodifiableList(getInitialStateGrid().toList());
+  }
+
+  /**
+   * Returns the initial non-default states, stored without an object per cell. The states cannot
+   * be updated through any <code>public</code> method.
+   *
+   * @return the initial non-default states
+   */
+  public InitialStateGrid getInitialStateGrid() {
     if (this.randomGridGenerationType != RandomGridGenerationType.NONE) {
       throw new UnsupportedOperationException("Explicitly specified initial states cannot be "
           + "accessed when the grid is generated randomly.");
     }
-    return Collections.unmodifiableList(initialNonDefaultCellStates);
+    return initialNonDefaultCellStates;
   }
 
   // Validates the entire simulation configuration. Verifies that a type has been set and that
-  // all defined initial non-default states are defined for cells that actually exist.
+  // all defined initial non-default states are defined for cells that actually exist, once each.
+  // Every cell exists in an INFINITE world, including those outside of the visible grid.
   protected void validateConfiguration() throws Exception {
-    for (int[] cellWithState : this.initialNonDefaultCellStates) {
-      if (cellWithState[0] >= this.height || cellWithState[1] >= this.width) {
-        throw new Exception("Invalid cell specified for simulation geometry; cell with "
-            + "x = " + cellWithState[1] + ", y = " + cellWithState[0] + " does not exist in a "
-            + "grid with " + height + " rows and " + width + "columns.");
-      }
-    }
+    initialNonDefaultCellStates.validate(width, height, edgeType != SimulationEdgeType.INFINITE);
     if (this.simulationType == null) {
       throw new Exception("Simulation type must be specified.");
     }
@@ -410,7 +491,10 @@ public class SimulationConfiguration {
    *   reduced-size neighborhoods rather than including other or creating new cells.
    *   </li>
    *   <li>{@link SimulationEdgeType#INFINITE} designates that the grid should expand as edge
-   *   cells become active.
+   *   cells become active. The world is unbounded and the grid is a viewport onto it; initial
+   *   states may lie anywhere, including at negative rows and columns. Conway, Fire, Percolation
+   *   and Rock Paper Scissors on rectangular cells support it; other simulations treat it as
+   *   {@link SimulationEdgeType#NORMAL}.
    *   </li>
    *   <li>{@link SimulationEdgeType#TOROIDAL} designates that the cells on the grid edges
    *   should include cells on the opposite edge as neighbors.
@@ -1,169 +1,203 @@
 package cellsociety.util;
 
 import cellsociety.simulation.Cell;
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
+import java.util.zip.GZIPOutputStream;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * Class responsible for writing a {@link SimulationConfiguration} and set of {@link Cell}s back to
  * disk after they have been (potentially) modified.
  *
+ * <p>The XML is streamed to the file one element at a time through a buffer, so writing a grid of
+ * any size takes constant memory beyond the cells themselves. A file whose name ends in
+ * <code>.gz</code> is written gzip-compressed; {@link XMLParser} reads either form.
+ *
  * @author David Coffman
  */
 public class SimulationWriter {
 
+  private static final int BUFFER_SIZE = 1 << 16;
+  // A line break followed by the indentation of each depth
+  private static final String[] INDENTS = {"\n", "\n  ", "\n    ", "\n      "};
+
   private final SimulationConfiguration config;
   private final List<Cell> cells;
-  private final Document doc;
+  private final Collection<int[]> nonDefaultStates;
+  private XMLStreamWriter writer;
 
   /**
-   * Constructs a DOM tree based on the input {@link SimulationConfiguration} and {@link Cell}s
-   * which can then be written to disk with a call to {@link SimulationWriter#writeToFile(File)}.
+   * Constructs a writer based on the input {@link SimulationConfiguration} and {@link Cell}s which
+   * can then be written to disk with a call to {@link SimulationWriter#writeToFile(File)}. The
+   * cells are read when the file is written.
    *
    * @param config the {@link SimulationConfiguration} to write to disk
    * @param cells  the list of {@link Cell}s to write to disk
-   * @throws Exception if the DOM tree construction fails
    */
-  public SimulationWriter(SimulationConfiguration config, List<Cell> cells) throws Exception {
-    this.config = config;
-    this.cells = cells;
-    this.doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-    buildDocument();
+  public SimulationWriter(SimulationConfiguration config, List<Cell> cells) {
+    this(config, cells, null);
   }
 
-  // Builds the DOM tree
-  private void buildDocument() {
-    Node root = doc.createElement("xml");
-    doc.appendChild(root);
-
-    buildMetadata(root);
-    buildGeometricConfiguration(root);
-    buildSimulationParameters(root);
-    buildInitialStates(root);
+  /**
+   * Constructs a writer based on the input {@link SimulationConfiguration} and an explicit list of
+   * non-default cells. Used for {@link SimulationConfiguration.SimulationEdgeType#INFINITE} worlds,
+   * whose cells reach beyond the visible grid.
+   *
+   * @param config           the {@link SimulationConfiguration} to write to disk
+   * @param nonDefaultStates every non-default cell as a <code>{row, column, state}</code> array
+   * @return a writer ready for {@link SimulationWriter#writeToFile(File)}
+   */
+  public static SimulationWriter forStates(SimulationConfiguration config,
+      Collection<int[]> nonDefaultStates) {
+    return new SimulationWriter(config, null, nonDefaultStates);
   }
 
-  // Builds the <General> tree based on the SimulationConfiguration
-  private void buildMetadata(Node root) {
-    Node generalElement = doc.createElement("General");
-    root.appendChild(generalElement);
-
-    Node nameElement = doc.createElement("Name");
-    nameElement.appendChild(doc.createTextNode(config.getSimulationName()));
-
-    Node typeElement = doc.createElement("Type");
-    typeElement.appendChild(doc.createTextNode(config.getSimulationType().name()));
-
-    Node authorElement = doc.createElement("Author");
-    authorElement.appendChild(doc.createTextNode(config.getSimulationAuthor()));
-
-    Node descriptionElement = doc.createElement("Description");
-    descriptionElement.appendChild(doc.createTextNode(config.getSimulationDescription()));
-
-    Node[] generalElementNodes = new Node[]{nameElement, typeElement, authorElement,
-        descriptionElement};
+  // Keeps the configuration and exactly one of the two sources of non-default cells
+  private SimulationWriter(SimulationConfiguration config, List<Cell> cells,
+      Collection<int[]> nonDefaultStates) {
+    this.config = config;
+    this.cells = cells;
+    this.nonDefaultStates = nonDefaultStates;
+  }
 
-    for (Node n : generalElementNodes) {
-      generalElement.appendChild(n);
+  /**
+   * Streams the configuration and cells to disk, gzip-compressed if the file's name ends in
+   * <code>.gz</code>.
+   *
+   * @param f the {@link File} to which the {@link SimulationConfiguration}'s contents should be
+   *          written
+   * @throws Exception if the write fails
+   */
+  public void writeToFile(File f) throws Exception {
+    try (OutputStream out = openStream(f)) {
+      writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+      try {
+        writeDocument();
+      } finally {
+        writer.close();
+        writer = null;
+      }
     }
   }
 
-  // Builds the <GeometricConfiguration> tree based on the SimulationConfiguration
-  private void buildGeometricConfiguration(Node root) {
-    Node geometricConfigElement = doc.createElement("GeometricConfiguration");
-    root.appendChild(geometricConfigElement);
-
-    Node cellShapeElement = doc.createElement("CellShape");
-    cellShapeElement.appendChild(doc.createTextNode(config.getCellShape().name()));
-
-    Node heightElement = doc.createElement("Height");
-    heightElement.appendChild(doc.createTextNode(String.format("%d", config.getHeight())));
+  // Opens a buffered stream to the file, compressing it if the file's name ends in .gz
+  private static OutputStream openStream(File f) throws Exception {
+    OutputStream out = new FileOutputStream(f);
+    if (f.getName().endsWith(".gz")) {
+      return new BufferedOutputStream(new GZIPOutputStream(out, BUFFER_SIZE), BUFFER_SIZE);
+    }
+    return new BufferedOutputStream(out, BUFFER_SIZE);
+  }
 
-    Node widthElement = doc.createElement("Width");
-    widthElement.appendChild(doc.createTextNode(String.format("%d", config.getWidth())));
+  // Writes the whole document
+  private void writeDocument() throws XMLStreamException {
+    writer.writeStartDocument("UTF-8", "1.0");
+    startElement("xml", 0);
 
-    Node edgeTypeElement = doc.createElement("EdgeType");
-    edgeTypeElement.appendChild(doc.createTextNode(config.getEdgeType().name()));
+    writeMetadata();
+    writeGeometricConfiguration();
+    writeSimulationParameters();
+    writeInitialStates();
 
-    Node neighborhoodSizeElement = doc.createElement("NeighborhoodSize");
-    neighborhoodSizeElement.appendChild(doc.createTextNode(config.getNeighborhodSize().name()));
+    endElement(0);
+    indent(0);
+    writer.writeEndDocument();
+  }
 
-    Node[] geometricConfigurationNodes = new Node[]{cellShapeElement, heightElement,
-        widthElement, edgeTypeElement, neighborhoodSizeElement};
-    for (Node n : geometricConfigurationNodes) {
-      geometricConfigElement.appendChild(n);
+  // Writes the <General> tree based on the SimulationConfiguration
+  private void writeMetadata() throws XMLStreamException {
+    startElement("General", 1);
+    writeLeaf("Name", config.getSimulationName(), 2);
+    writeLeaf("Type", config.getSimulationType().name(), 2);
+    writeLeaf("Author", config.getSimulationAuthor(), 2);
+    writeLeaf("Description", config.getSimulationDescription(), 2);
+    if (config.hasSeed()) {
+      writeLeaf("Seed", Long.toString(config.getSeed()), 2);
     }
+    endElement(1);
   }
 
-  // Builds the <SimulationParameters> tree based on the SimulationConfiguration's parameter map
-  private void buildSimulationParameters(Node root) {
-    Node simulationParamElement = doc.createElement("SimulationParameters");
-    root.appendChild(simulationParamElement);
+  // Writes the <GeometricConfiguration> tree based on the SimulationConfiguration
+  private void writeGeometricConfiguration() throws XMLStreamException {
+    startElement("GeometricConfiguration", 1);
+    writeLeaf("CellShape", config.getCellShape().name(), 2);
+    writeLeaf("Height", Integer.toString(config.getHeight()), 2);
+    writeLeaf("Width", Integer.toString(config.getWidth()), 2);
+    writeLeaf("EdgeType", config.getEdgeType().name(), 2);
+    writeLeaf("NeighborhoodSize", config.getNeighborhodSize().name(), 2);
+    if (config.getEdgeType() == SimulationConfiguration.SimulationEdgeType.INFINITE) {
+      writeLeaf("ViewportRow", Integer.toString(config.getViewportRow()), 2);
+      writeLeaf("ViewportColumn", Integer.toString(config.getViewportColumn()), 2);
+    }
+    endElement(1);
+  }
 
+  // Writes the <SimulationParameters> tree based on the SimulationConfiguration's parameter map
+  private void writeSimulationParameters() throws XMLStreamException {
+    startElement("SimulationParameters", 1);
     for (String key : config.getSimulationParameters().keySet()) {
-      Node paramElement = doc.createElement(key);
-      String value = String.format("%f", config.getSimulationParameters().get(key));
-      paramElement.appendChild(doc.createTextNode(value));
-      simulationParamElement.appendChild(paramElement);
+      writeLeaf(key, String.format("%f", config.getSimulationParameters().get(key)), 2);
     }
+    endElement(1);
   }
 
-  // Builds the <InitialStates> tree based on the list of cells given as a constructor parameter
-  private void buildInitialStates(Node root) {
-    Node initialStateElement = doc.createElement("InitialStates");
-    root.appendChild(initialStateElement);
-
-    for (Cell c : cells) {
-      if (c.getEncoding() == 0) {
-        continue;
+  // Writes the <InitialStates> tree, one cell at a time, from the cells given to the constructor
+  private void writeInitialStates() throws XMLStreamException {
+    startElement("InitialStates", 1);
+    if (cells != null) {
+      for (Cell c : cells) {
+        if (c.getEncoding() != 0) {
+          writeCell(c.getY(), c.getX(), c.getEncoding());
+        }
       }
-      Node cellElement = doc.createElement("Cell");
-
-      Node rowElement = doc.createElement("Row");
-      rowElement.appendChild(doc.createTextNode(String.format("%d", c.getY())));
+    } else {
+      for (int[] c : nonDefaultStates) {
+        writeCell(c[0], c[1], c[2]);
+      }
+    }
+    endElement(1);
+  }
 
-      Node colElement = doc.createElement("Column");
-      colElement.appendChild(doc.createTextNode(String.format("%d", c.getX())));
+  // Writes one <Cell> in the compacted {row, column, state} format
+  private void writeCell(int row, int column, int state) throws XMLStreamException {
+    startElement("Cell", 2);
+    writeLeaf("Row", Integer.toString(row), 3);
+    writeLeaf("Column", Integer.toString(column), 3);
+    writeLeaf("State", Integer.toString(state), 3);
+    endElement(2);
+  }
 
-      Node stateElement = doc.createElement("State");
-      stateElement.appendChild(doc.createTextNode(String.format("%d", c.getEncoding())));
+  // Writes an element holding only a value on its own indented line, or an empty element if the
+  // value is null
+  private void writeLeaf(String name, String value, int depth) throws XMLStreamException {
+    indent(depth);
+    if (value == null) {
+      writer.writeEmptyElement(name);
+      return;
+    }
+    writer.writeStartElement(name);
+    writer.writeCharacters(value);
+    writer.writeEndElement();
+  }
 
-      Node[] cellStateElements = new Node[]{rowElement, colElement, stateElement};
-      for (Node n : cellStateElements) {
-        cellElement.appendChild(n);
-      }
+  private void startElement(String name, int depth) throws XMLStreamException {
+    indent(depth);
+    writer.writeStartElement(name);
+  }
 
-      initialStateElement.appendChild(cellElement);
-    }
+  private void endElement(int depth) throws XMLStreamException {
+    indent(depth);
+    writer.writeEndElement();
   }
 
-  /**
-   * Writes the DOM tree to disk after it is constructed (by the object's constructor).
-   *
-   * @param f the {@link File} to which the {@link SimulationConfiguration}'s contents should be
-   *          written
-   * @throws Exception if the write fails
-   */
-  public void writeToFile(File f) throws Exception {
-    // Adapted from tutorial at https://www.baeldung.com/java-write-xml-document-file.
-    f.createNewFile();
-    BufferedWriter w = new BufferedWriter(new FileWriter(f));
-    TransformerFactory transformerFactory = TransformerFactory.newInstance();
-    Transformer transformer = transformerFactory.newTransformer();
-    transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-    transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-    DOMSource source = new DOMSource(this.doc);
-    FileWriter writer = new FileWriter(f);
-    StreamResult result = new StreamResult(writer);
-    transformer.transform(source, result);
+  private void indent(int depth) throws XMLStreamException {
+    writer.writeCharacters(INDENTS[depth]);
   }
 }
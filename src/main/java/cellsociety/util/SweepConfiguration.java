@@ -0,0 +1,271 @@
+package cellsociety.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * <code>SweepConfiguration</code> describes an ensemble of runs of one simulation: the values to
+ * sweep each parameter over, the seeds to run every combination with, and when to stop each run.
+ * It is loaded from an XML file laid out like a simulation file, e.g.
+ *
+ * <p><code>
+ * &lt;xml&gt; &lt;Parameters&gt; &lt;Flammability&gt;0.2 0.4 0.6&lt;/Flammability&gt;
+ * &lt;CutoffPercentage&gt; &lt;From&gt;0.3&lt;/From&gt; &lt;To&gt;0.7&lt;/To&gt;
+ * &lt;Step&gt;0.1&lt;/Step&gt; &lt;/CutoffPercentage&gt; &lt;/Parameters&gt; &lt;Seeds&gt;
+ * &lt;From&gt;1&lt;/From&gt; &lt;To&gt;20&lt;/To&gt; &lt;/Seeds&gt; &lt;Steps&gt;500&lt;/Steps&gt;
+ * &lt;StopWhen&gt;Steady&lt;/StopWhen&gt; &lt;ExtinctionState&gt;1&lt;/ExtinctionState&gt;
+ * &lt;Threads&gt;4&lt;/Threads&gt; &lt;/xml&gt;
+ * </code>
+ *
+ * <p>Values are either listed, separated by whitespace, or given as a range with a
+ * <code>&lt;From&gt;</code>, a <code>&lt;To&gt;</code> (inclusive) and an optional
+ * <code>&lt;Step&gt;</code> of 1 by default. Every combination of parameter values is run once per
+ * seed; without <code>&lt;Seeds&gt;</code> each combination runs once with the base file's seed.
+ *
+ * @author David Coffman
+ */
+public class SweepConfiguration {
+
+  private final Map<String, List<Double>> parameterValues;
+  private final List<Long> seeds;
+  private int steps;
+  private StopCondition stopCondition;
+  private int extinctionState;
+  private int threads;
+
+  /**
+   * Loads a sweep from an XML file.
+   *
+   * @param f the XML file to parse
+   * @throws Exception thrown if the XML file is malformed
+   */
+  public SweepConfiguration(File f) throws Exception {
+    this.parameterValues = new LinkedHashMap<>();
+    this.seeds = new ArrayList<>();
+    this.steps = 100;
+    this.stopCondition = StopCondition.STEPS;
+    this.extinctionState = -1;
+    this.threads = Runtime.getRuntime().availableProcessors();
+    Document doc;
+    try {
+      DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+      dbf.setIgnoringComments(true);
+      DocumentBuilder db = dbf.newDocumentBuilder();
+      db.setErrorHandler(null);
+      doc = db.parse(f);
+    } catch (Exception e) {
+      throw new Exception("malformed XML file: are you sure the file you selected is an XML file?");
+    }
+    parseSweep(doc.getDocumentElement());
+  }
+
+  // Parses the top-level nodes within the XML root
+  private void parseSweep(Node root) throws Exception {
+    for (int i = 0; i < root.getChildNodes().getLength(); i++) {
+      Node n = root.getChildNodes().item(i);
+      if (n.getNodeType() != Node.ELEMENT_NODE) {
+        continue;
+      }
+      String value = n.getTextContent().trim();
+      try {
+        switch (formattedNodeName(n.getNodeName())) {
+          case "PARAMETERS" -> parseParameters(n);
+          case "SEEDS" -> {
+            for (double seed : parseValues(n)) {
+              seeds.add((long) seed);
+            }
+          }
+          case "STEPS" -> steps = Integer.parseInt(value);
+          case "STOPWHEN" -> stopCondition = StopCondition.fromStringEncoding(value);
+          case "EXTINCTIONSTATE" -> extinctionState = Integer.parseInt(value);
+          case "THREADS" -> threads = Integer.parseInt(value);
+        }
+      } catch (NumberFormatException e) {
+        throw new Exception("malformed XML: field <" + n.getNodeName() + "> is formatted "
+            + "incorrectly.");
+      }
+    }
+    if (steps < 0 || threads < 1) {
+      throw new Exception("A sweep needs a non-negative number of steps and at least one thread.");
+    }
+    if (stopCondition == StopCondition.EXTINCTION && extinctionState < 0) {
+      throw new Exception("A sweep stopping at extinction must name its <ExtinctionState>.");
+    }
+  }
+
+  // Parses the values of every swept parameter
+  private void parseParameters(Node parametersNode) throws Exception {
+    for (int i = 0; i < parametersNode.getChildNodes().getLength(); i++) {
+      Node n = parametersNode.getChildNodes().item(i);
+      if (n.getNodeType() == Node.ELEMENT_NODE) {
+        parameterValues.put(n.getNodeName(), parseValues(n));
+      }
+    }
+  }
+
+  // Parses either a whitespace-separated list of values or a <From>, <To> and <Step> range
+  private List<Double> parseValues(Node n) throws Exception {
+    Double from = null;
+    Double to = null;
+    double step = 1;
+    for (int i = 0; i < n.getChildNodes().getLength(); i++) {
+      Node child = n.getChildNodes().item(i);
+      if (child.getNodeType() != Node.ELEMENT_NODE) {
+        continue;
+      }
+      double value = Double.parseDouble(child.getTextContent().trim());
+      switch (formattedNodeName(child.getNodeName())) {
+        case "FROM" -> from = value;
+        case "TO" -> to = value;
+        case "STEP" -> step = value;
+      }
+    }
+    List<Double> values = new ArrayList<>();
+    if (from == null && to == null) {
+      for (String value : n.getTextContent().trim().split("\\s+")) {
+        if (!value.isEmpty()) {
+          values.add(Double.parseDouble(value));
+        }
+      }
+    } else if (from == null || to == null || step <= 0) {
+      throw new Exception("malformed XML: the range of <" + n.getNodeName() + "> needs a <From>, "
+          + "a <To> and a positive <Step>.");
+    } else {
+      // Counting steps rather than adding them up keeps e.g. 0.1 to 0.9 from drifting past 0.9
+      long count = (long) Math.floor((to - from) / step + 1e-9);
+      for (long k = 0; k <= count; k++) {
+        values.add(from + k * step);
+      }
+    }
+    if (values.isEmpty()) {
+      throw new Exception("malformed XML: <" + n.getNodeName() + "> lists no values.");
+    }
+    return values;
+  }
+
+  // Helper method used to retrieve a non-case-or-whitespace-sensitive version of a Node's name
+  private String formattedNodeName(String s) {
+    return s.trim().toUpperCase();
+  }
+
+  /**
+   * Returns the values each swept parameter takes, in the order the parameters were listed.
+   *
+   * @return an unmodifiable map from parameter name to its values
+   */
+  public Map<String, List<Double>> getParameterValues() {
+    return Collections.unmodifiableMap(parameterValues);
+  }
+
+  /**
+   * Returns every combination of parameter values, each mapping every swept parameter to one of
+   * its values. The last parameter listed varies fastest.
+   *
+   * @return the parameter combinations; a single empty combination if nothing is swept
+   */
+  public List<Map<String, Double>> getParameterCombinations() {
+    List<Map<String, Double>> combinations = new ArrayList<>();
+    combinations.add(new LinkedHashMap<>());
+    for (Map.Entry<String, List<Double>> parameter : parameterValues.entrySet()) {
+      List<Map<String, Double>> extended = new ArrayList<>();
+      for (Map<String, Double> combination : combinations) {
+        for (double value : parameter.getValue()) {
+          Map<String, Double> next = new LinkedHashMap<>(combination);
+          next.put(parameter.getKey(), value);
+          extended.add(next);
+        }
+      }
+      combinations = extended;
+    }
+    return combinations;
+  }
+
+  /**
+   * Returns the seeds every combination of parameter values is run with.
+   *
+   * @return the seeds; empty if every combination runs once with the base file's seed
+   */
+  public List<Long> getSeeds() {
+    return Collections.unmodifiableList(seeds);
+  }
+
+  /**
+   * Returns the most steps any run is stepped for.
+   *
+   * @return the number of steps per run
+   */
+  public int getSteps() {
+    return steps;
+  }
+
+  /**
+   * Returns the condition that ends a run before it reaches {@link #getSteps()}.
+   *
+   * @return the {@link StopCondition} of every run
+   */
+  public StopCondition getStopCondition() {
+    return stopCondition;
+  }
+
+  /**
+   * Returns the state whose extinction is timed, i.e. the first step after which no cell holds
+   * it.
+   *
+   * @return the state to watch, or -1 if no state is watched
+   */
+  public int getExtinctionState() {
+    return extinctionState;
+  }
+
+  /**
+   * Returns the number of runs that may step at the same time.
+   *
+   * @return the number of worker threads
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Enumerates the conditions a run can stop at before stepping its full number of steps.
+   *
+   * <ul>
+   *   <li>{@link StopCondition#STEPS} designates that every run steps its full number of steps.
+   *   </li>
+   *   <li>{@link StopCondition#STEADY} designates that a run stops once its grid stops changing.
+   *   </li>
+   *   <li>{@link StopCondition#CYCLE} designates that a run stops once its grid stops changing or
+   *   starts repeating a cycle of states.
+   *   </li>
+   *   <li>{@link StopCondition#EXTINCTION} designates that a run stops once no cell holds the
+   *   state returned by {@link SweepConfiguration#getExtinctionState()}.
+   *   </li>
+   * </ul>
+   */
+  public enum StopCondition {
+    STEPS, STEADY, CYCLE, EXTINCTION;
+
+    /**
+     * An extension of the conventional {@link Enum#name()} method that allows for excess whitespace
+     * and differences in case, as for the enums of {@link SimulationConfiguration}.
+     *
+     * @param s the <code>String</code>
+     * @return the {@link StopCondition} corresponding to the <code>String</code> parameter
+     */
+    public static StopCondition fromStringEncoding(String s) {
+      try {
+        return StopCondition.valueOf(s.trim().toUpperCase());
+      } catch (Exception e) {
+        throw new IllegalArgumentException(s + " is not a valid stop condition.");
+      }
+    }
+  }
+}
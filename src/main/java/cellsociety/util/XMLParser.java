@@ -4,11 +4,16 @@ import cellsociety.util.SimulationConfiguration.CellNeighborhoodSize;
 import cellsociety.util.SimulationConfiguration.RandomGridGenerationType;
 import cellsociety.util.SimulationConfiguration.SimulationEdgeType;
 import cellsociety.util.SimulationConfiguration.SimulationType;
+import java.io.BufferedInputStream;
 import java.io.File;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
  * The XMLParser class configures a {@link cellsociety.util.SimulationConfiguration} for use by
@@ -17,6 +22,12 @@ import org.w3c.dom.Node;
  * validation and storage. The {@link cellsociety.util.SimulationConfiguration} instance can then be
  * retrieved with {@link XMLParser#getSimulationConfiguration()}.
  *
+ * <p>The file is read as a stream of elements rather than built into a document tree, and each
+ * initial cell state goes straight into an {@link InitialStateGrid} as it is read, so a
+ * configuration listing millions of cells takes little more memory than the grid itself. Files
+ * compressed with gzip, such as the <code>.xml.gz</code> files {@link SimulationWriter} writes,
+ * are decompressed as they are read.
+ *
  * <p>Usage: <code>
  * try { File f = new File("path/to/file.xml"); XMLParser p = new XMLParser(f); // may throw an
  * Exception SimulationConfiguration config = p.getSimulationConfiguration(); } catch (Exception e)
@@ -27,8 +38,11 @@ import org.w3c.dom.Node;
  */
 public class XMLParser {
 
-  private final Document doc;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final XMLStreamReader reader;
   private final SimulationConfiguration simulationConfiguration;
+  private boolean geometryParsed;
 
   /**
    * Constructor for XMLParser. Called with a String parameter indicating the filepath of the file
@@ -38,62 +52,89 @@ public class XMLParser {
    * @throws Exception thrown if the XML file is malformed
    */
   public XMLParser(File f) throws Exception {
-    DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-    dbf.setIgnoringElementContentWhitespace(true);
-    dbf.setCoalescing(true);
-    dbf.setIgnoringComments(true);
-    dbf.setExpandEntityReferences(true);
-    DocumentBuilder db = dbf.newDocumentBuilder();
-    try {
-      db.setErrorHandler(null);
-      this.doc = db.parse(f);
-    } catch (Exception e) {
-      throw new Exception("malformed XML file: are you sure the file you selected is an XML file?");
+    try (InputStream file = new FileInputStream(f); InputStream in = decompressed(file)) {
+      this.simulationConfiguration = new SimulationConfiguration();
+      this.reader = openReader(in);
+      parse();
     }
+  }
+
+  /**
+   * Constructor for XMLParser reading from a stream, such as a resource packaged inside a jar.
+   * The stream may be gzip-compressed, and is not closed.
+   *
+   * @param in the stream of XML to parse
+   * @throws Exception thrown if the XML is malformed
+   */
+  public XMLParser(InputStream in) throws Exception {
     this.simulationConfiguration = new SimulationConfiguration();
-    parseSimulationInformation();
-    simulationConfiguration.validateConfiguration();
+    this.reader = openReader(decompressed(in));
+    parse();
   }
 
-  // Gets the XML root from the top-level document nodes.
-  private Node getXMLRoot() {
-    Node xmlNode = null;
-    for (int i = 0; i < doc.getChildNodes().getLength(); i++) {
-      String name = doc.getChildNodes().item(i).getNodeName();
-      if (name.equals("xml")) {
-        xmlNode = doc.getChildNodes().item(i);
-      }
+  // Returns a buffered stream of the XML, decompressing it if it starts with the gzip magic number.
+  private static InputStream decompressed(InputStream in) throws IOException {
+    InputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+    buffered.mark(2);
+    int magic = buffered.read() | buffered.read() << 8;
+    buffered.reset();
+    return magic == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream(buffered, BUFFER_SIZE)
+        : buffered;
+  }
+
+  // Opens a reader over the stream, refusing to fetch external entities.
+  private static XMLStreamReader openReader(InputStream in) throws Exception {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    try {
+      return factory.createXMLStreamReader(in);
+    } catch (XMLStreamException e) {
+      throw malformedFile();
     }
-    return xmlNode;
+  }
+
+  // Parses the whole stream, then validates the resulting configuration.
+  private void parse() throws Exception {
+    try {
+      parseSimulationInformation();
+    } catch (XMLStreamException e) {
+      throw malformedFile();
+    } finally {
+      reader.close();
+    }
+    simulationConfiguration.validateConfiguration();
   }
 
   // Parses the top-level nodes within the XML root
   private void parseSimulationInformation() throws Exception {
-    Node xmlRoot = getXMLRoot();
-    for (int i = 0; i < xmlRoot.getChildNodes().getLength(); i++) {
-      Node n = xmlRoot.getChildNodes().item(i);
-      String nodeName = n.getNodeName();
-      if (nodeName == null) {
-        continue;
-      }
+    while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+      // Skip the prolog
+    }
+    if (!reader.isStartElement()) {
+      throw malformedFile();
+    }
+    if (!reader.getLocalName().equals("xml")) {
+      throw new Exception("malformed XML: the root element must be <xml>.");
+    }
+    forEachChild(nodeName -> {
       switch (formattedNodeName(nodeName)) {
-        case "GENERAL" -> parseMetadata(n);
-        case "GEOMETRICCONFIGURATION" -> parseGeometricConfiguration(n);
-        case "SIMULATIONPARAMETERS" -> parseSimulationParameters(n);
-        case "INITIALSTATES" -> parseInitialStates(n);
-        case "RANDOMINITIALSTATES" -> parseRandomInitialStates(n);
+        case "GENERAL" -> parseMetadata();
+        case "GEOMETRICCONFIGURATION" -> parseGeometricConfiguration();
+        case "SIMULATIONPARAMETERS" -> parseSimulationParameters();
+        case "INITIALSTATES" -> parseInitialStates();
+        case "RANDOMINITIALSTATES" -> parseRandomInitialStates();
+        default -> skipElement();
       }
-    }
+    });
   }
 
   // Parses the metadata node in the XML root
-  private void parseMetadata(Node gennode) {
-    for (int i = 0; i < gennode.getChildNodes().getLength(); i++) {
-      Node n = gennode.getChildNodes().item(i);
-      String nodeName = n.getNodeName();
-      String childValue = primaryChildNodeValueAsString(n);
-      if (nodeName == null || childValue == null) {
-        continue;
+  private void parseMetadata() throws Exception {
+    forEachChild(nodeName -> {
+      String childValue = elementValueAsString();
+      if (childValue == null) {
+        return;
       }
       switch (formattedNodeName(nodeName)) {
         case "NAME" -> simulationConfiguration.setSimulationName(childValue);
@@ -101,18 +142,17 @@ public class XMLParser {
             SimulationType.fromStringEncoding(childValue));
         case "AUTHOR" -> simulationConfiguration.setSimulationAuthor(childValue);
         case "DESCRIPTION" -> simulationConfiguration.setSimulationDescription(childValue);
+        case "SEED" -> simulationConfiguration.updateSeed(Long.parseLong(childValue));
       }
-    }
+    });
   }
 
   // Parses the geometric configuration node in the XML root
-  private void parseGeometricConfiguration(Node gcnode) throws Exception {
-    for (int i = 0; i < gcnode.getChildNodes().getLength(); i++) {
-      Node n = gcnode.getChildNodes().item(i);
-      String nodeName = n.getNodeName();
-      String childValue = primaryChildNodeValueAsString(n);
-      if (nodeName == null || childValue == null) {
-        continue;
+  private void parseGeometricConfiguration() throws Exception {
+    forEachChild(nodeName -> {
+      String childValue = elementValueAsString();
+      if (childValue == null) {
+        return;
       }
       try {
         switch (formattedNodeName(nodeName)) {
@@ -124,137 +164,173 @@ public class XMLParser {
               SimulationEdgeType.fromStringEncoding(childValue));
           case "NEIGHBORHOODSIZE" -> simulationConfiguration.setNeighborhoodSize(
               CellNeighborhoodSize.fromStringEncoding(childValue));
+          case "VIEWPORTROW" -> simulationConfiguration.updateViewportOrigin(
+              Integer.parseInt(childValue), simulationConfiguration.getViewportColumn());
+          case "VIEWPORTCOLUMN" -> simulationConfiguration.updateViewportOrigin(
+              simulationConfiguration.getViewportRow(), Integer.parseInt(childValue));
         }
       } catch (NumberFormatException e) {
         throw new Exception("malformed XML: field <" + nodeName + "> is formatted incorrectly.");
       }
-    }
+    });
+    geometryParsed = true;
   }
 
-  // Parses the initial grid state node in the XML root
-  private void parseInitialStates(Node initialGridStateNode) throws Exception {
-    for (int i = 0; i < initialGridStateNode.getChildNodes().getLength(); i++) {
-      Node n = initialGridStateNode.getChildNodes().item(i);
-      String nodeName = n.getNodeName();
+  // Parses the initial grid state node in the XML root. Once the geometry has been parsed, each
+  // cell is checked against the grid as it is read.
+  private void parseInitialStates() throws Exception {
+    simulationConfiguration.startInitialCellStates(geometryParsed);
+    forEachChild(nodeName -> {
       if (formattedNodeName(nodeName).equals("CELL")) {
-        simulationConfiguration.addInitialCellState(parseInitialCellState(n));
+        parseInitialCellState();
+      } else {
+        skipElement();
       }
-    }
+    });
   }
 
   // Parses an individual initial cell state node (extract the value from <Row>, <Column>, and
-  // <State>) in the <InitialStates> tree
-  private int[] parseInitialCellState(Node initialCellStateNode) throws Exception {
+  // <State>) in the <InitialStates> tree. Rows and columns may be negative in an infinite world.
+  private void parseInitialCellState() throws Exception {
+    int[] ret = new int[3];
+    boolean[] found = new boolean[3];
     try {
-      int[] ret = new int[]{-1, -1, -1};
-      for (int i = 0; i < initialCellStateNode.getChildNodes().getLength(); i++) {
-        Node n = initialCellStateNode.getChildNodes().item(i);
-        String nodeName = n.getNodeName();
-        String childValue = primaryChildNodeValueAsString(n);
-        if (nodeName == null || childValue == null) {
-          continue;
-        }
-
-        switch (formattedNodeName(nodeName)) {
-          case "ROW" -> ret[0] = Integer.parseInt(childValue);
-          case "COLUMN" -> ret[1] = Integer.parseInt(childValue);
-          case "STATE" -> ret[2] = Integer.parseInt(childValue);
+      forEachChild(nodeName -> {
+        int field = switch (formattedNodeName(nodeName)) {
+          case "ROW" -> 0;
+          case "COLUMN" -> 1;
+          case "STATE" -> 2;
+          default -> -1;
+        };
+        String childValue = elementValueAsString();
+        if (field < 0 || childValue == null) {
+          return;
         }
-      }
-      for (int j : ret) {
-        if (j == -1) {
-          throw new Exception("All row, column, and state parameters must be specified for each "
-              + "declared non-default cell.");
-        }
-      }
-      return ret;
+        ret[field] = Integer.parseInt(childValue);
+        found[field] = true;
+      });
     } catch (NumberFormatException e) {
       throw new Exception("malformed XML: one or more initial cell states is formatted "
           + "incorrectly.");
     }
+    for (boolean j : found) {
+      if (!j) {
+        throw new Exception("All row, column, and state parameters must be specified for each "
+            + "declared non-default cell.");
+      }
+    }
+    simulationConfiguration.addInitialCellState(ret[0], ret[1], ret[2]);
   }
 
   // Parse the <InitialStates> element
-  private void parseRandomInitialStates(Node initialRandomStateNode) throws Exception {
-    for (int i = 0; i < initialRandomStateNode.getChildNodes().getLength(); i++) {
-      Node n = initialRandomStateNode.getChildNodes().item(i);
-      String nodeName = n.getNodeName();
-      String childValue = primaryChildNodeValueAsString(n);
-
+  private void parseRandomInitialStates() throws Exception {
+    forEachChild(nodeName -> {
       switch (formattedNodeName(nodeName)) {
         case "METHOD" -> simulationConfiguration.setRandomGridGenerationType(
-            RandomGridGenerationType.fromStringEncoding(childValue));
-        case "COUNTS" -> parseRandomInitialStateCounts(n);
+            RandomGridGenerationType.fromStringEncoding(elementValueAsString()));
+        case "COUNTS" -> parseRandomInitialStateCounts();
+        default -> skipElement();
       }
-    }
+    });
   }
 
   // Parse the initial random state count (<Frequency>, <Count>, <State>) tags from the
   // a <StateFrequency> or <StateCount> sub-tree
-  private void parseRandomInitialStateCount(Node randomStateCountNode) throws Exception {
+  private void parseRandomInitialStateCount() throws Exception {
+    Integer[] state = new Integer[1];
+    Double[] frequency = new Double[1];
     try {
-      Integer state = null;
-      Double frequency = null;
-      for (int i = 0; i < randomStateCountNode.getChildNodes().getLength(); i++) {
-        Node n = randomStateCountNode.getChildNodes().item(i);
-        String nodeName = n.getNodeName();
-        String childValue = primaryChildNodeValueAsString(n);
-        if (nodeName == null || childValue == null) {
-          continue;
+      forEachChild(nodeName -> {
+        String childValue = elementValueAsString();
+        if (childValue == null) {
+          return;
         }
-
         switch (formattedNodeName(nodeName)) {
-          case "STATE" -> state = Integer.parseInt(childValue);
-          case "FREQUENCY", "COUNT" -> frequency = Double.parseDouble(childValue);
+          case "STATE" -> state[0] = Integer.parseInt(childValue);
+          case "FREQUENCY", "COUNT" -> frequency[0] = Double.parseDouble(childValue);
         }
-      }
-      simulationConfiguration.addInitialStateFrequency(state, frequency);
+      });
     } catch (NumberFormatException e) {
       throw new Exception("malformed XML: one or more initial cell states is formatted "
           + "incorrectly.");
     }
+    simulationConfiguration.addInitialStateFrequency(state[0], frequency[0]);
   }
 
   // Parse the <StateFrequency> or <StateCount> subtrees, if present
-  private void parseRandomInitialStateCounts(Node randomStateCountsNode) throws Exception {
-    for (int i = 0; i < randomStateCountsNode.getChildNodes().getLength(); i++) {
-      Node n = randomStateCountsNode.getChildNodes().item(i);
-      String nodeName = n.getNodeName();
-
+  private void parseRandomInitialStateCounts() throws Exception {
+    forEachChild(nodeName -> {
       switch (formattedNodeName(nodeName)) {
-        case "STATEFREQUENCY", "STATECOUNT" -> parseRandomInitialStateCount(n);
+        case "STATEFREQUENCY", "STATECOUNT" -> parseRandomInitialStateCount();
+        default -> skipElement();
       }
-    }
+    });
   }
 
   // Parses the getSimulation parameters node in the XML root.
-  private void parseSimulationParameters(Node simParamsNode) throws Exception {
-    for (int i = 0; i < simParamsNode.getChildNodes().getLength(); i++) {
+  private void parseSimulationParameters() throws Exception {
+    forEachChild(nodeName -> {
+      String childValue = elementValueAsString();
+      if (childValue == null) {
+        return;
+      }
       try {
-        Node n = simParamsNode.getChildNodes().item(i);
-        String nodeName = n.getNodeName();
-        String childValue = primaryChildNodeValueAsString(n);
-        if (childValue == null) {
-          continue;
-        }
         simulationConfiguration.addSimulationParameter(nodeName, Double.parseDouble(childValue));
       } catch (NumberFormatException e) {
         throw new Exception("malformed XML: one or more simulation parameters is formatted "
             + "incorrectly.");
       }
+    });
+  }
+
+  // With the reader on the start of an element, hands the name of each child element to the
+  // handler, which must read to the end of that child. Leaves the reader on the end of the element.
+  private void forEachChild(ChildHandler handler) throws Exception {
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        handler.handle(reader.getLocalName());
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        return;
+      }
+    }
+  }
+
+  // For an element known to be a terminal node (i.e. a node with a VALUE), extract that VALUE as a
+  // String, but ignore empty or solely whitespace VALUEs. Leaves the reader on the end of the
+  // element, skipping any nested elements.
+  private String elementValueAsString() throws XMLStreamException {
+    String value = null;
+    int depth = 0;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        if (depth-- == 0) {
+          break;
+        }
+      } else if (depth == 0 && value == null && reader.isCharacters()) {
+        String text = reader.getText().trim();
+        if (!text.equals("")) {
+          value = text;
+        }
+      }
     }
+    return value;
   }
 
-  // For a node whose children are known to be terminal nodes (i.e. nodes with a VALUE), extract
-  // that VALUE as a String, but ignore nodes with empty or solely whitespace VALUEs.
-  private String primaryChildNodeValueAsString(Node n) {
-    for (int i = 0; i < n.getChildNodes().getLength(); i++) {
-      String value = n.getChildNodes().item(i).getNodeValue();
-      if (value != null && !(value = value.trim()).equals("")) {
-        return value;
+  // Skips the element the reader is on, leaving the reader on its end.
+  private void skipElement() throws XMLStreamException {
+    int depth = 0;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT && depth-- == 0) {
+        return;
       }
     }
-    return null;
   }
 
   // Helper method used to retrieve a non-case-or-whitespace-sensitive version of a Node's name
@@ -262,6 +338,10 @@ public class XMLParser {
     return s.trim().toUpperCase();
   }
 
+  private static Exception malformedFile() {
+    return new Exception("malformed XML file: are you sure the file you selected is an XML file?");
+  }
+
   /**
    * Primary data retrieval API for the XMLParser. Returns the {@link
    * cellsociety.util.SimulationConfiguration} configured by the parser.
@@ -271,4 +351,11 @@ public class XMLParser {
   public SimulationConfiguration getSimulationConfiguration() {
     return this.simulationConfiguration;
   }
+
+  // Reads one child element, given its name, through to its end
+  @FunctionalInterface
+  private interface ChildHandler {
+
+    void handle(String nodeName) throws Exception;
+  }
 }
@@ -0,0 +1,89 @@
+package cellsociety;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cellsociety.simulation.SimulationFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for running simulations from the command line without a display.
+ *
+ * @author David Coffman
+ */
+class HeadlessMainTests {
+
+  @Test
+  void testStepsAndWritesSnapshots() throws Exception {
+    File snapshotDir = Files.createTempDirectory("snapshots").toFile();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int status = HeadlessMain.run(new String[]{"data/fire/fire_test_1.xml", "--steps", "10",
+            "--snapshot-every", "5", "--snapshot-dir", snapshotDir.getPath()},
+        new PrintStream(out), System.err);
+    assertEquals(0, status);
+    assertTrue(out.toString().contains("10 steps of 2500 cells"));
+    for (int step : new int[]{5, 10}) {
+      File snapshot = new File(snapshotDir, "fire_test_1_" + step + ".xml");
+      assertTrue(snapshot.exists());
+      new SimulationFactory().loadSimulationFile(snapshot);
+      snapshot.delete();
+    }
+    snapshotDir.delete();
+  }
+
+  @Test
+  void testRecordsAndReplays() throws Exception {
+    File recording = Files.createTempFile("recording", ".log").toFile();
+    int status = HeadlessMain.run(new String[]{"data/fire/fire_test_1.xml", "--steps", "10",
+            "--record", recording.getPath(), "--keyframe-every", "4"},
+        new PrintStream(new ByteArrayOutputStream()), System.err);
+    assertEquals(0, status);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    status = HeadlessMain.run(new String[]{recording.getPath()}, new PrintStream(out),
+        System.err);
+    recording.delete();
+    assertEquals(0, status);
+    String[] lines = out.toString().split("\n");
+    assertTrue(lines[0].startsWith("Step,Generation,State0"));
+    // The grid it started from and the ten steps after it
+    assertEquals(12, lines.length);
+    for (int step = 0; step <= 10; step++) {
+      String[] fields = lines[step + 1].split(",");
+      assertEquals(String.valueOf(step), fields[0]);
+      int cells = 0;
+      for (int k = 2; k < fields.length; k++) {
+        cells += Integer.parseInt(fields[k]);
+      }
+      assertEquals(2500, cells);
+    }
+  }
+
+  @Test
+  void testRejectsUnknownOptions() {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    int status = HeadlessMain.run(new String[]{"data/fire/fire_test_1.xml", "--stepz", "10"},
+        System.out, new PrintStream(err));
+    assertEquals(1, status);
+    assertTrue(err.toString().startsWith("Unknown option --stepz"));
+  }
+
+  @Test
+  void testRejectsCycleDetectionForInexactRules() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    int status = HeadlessMain.run(new String[]{"data/ant/ant_test_5.xml", "--steps", "100",
+        "--detect-cycles", "16"}, new PrintStream(out), new PrintStream(err));
+    assertEquals(1, status);
+    assertEquals("", out.toString());
+    assertTrue(err.toString().contains("detect cycles"));
+
+    status = HeadlessMain.run(new String[]{"data/conways/conways_test_3.xml", "--steps", "100",
+        "--detect-cycles", "16"}, new PrintStream(out), new PrintStream(err));
+    assertEquals(0, status);
+    assertTrue(out.toString().contains("Fixed point at step 3"));
+  }
+}
@@ -0,0 +1,63 @@
+package cellsociety.simulation;
+
+import java.io.File;
+import java.io.FileWriter;
+
+/**
+ * Reports how fast large SugarScape, Foraging Ants and Wa-Tor worlds step, from sparse
+ * populations to an ocean full of fish, where visiting agents in a random order is most likely to
+ * cost the locality of a sweep over the grid. Not part of the test suite; run its main method
+ * directly.
+ *
+ * @author Marc Chmielewski
+ */
+public class AgentStepBenchmark {
+
+  private static final int SIZE = 1000;
+  private static final int WARMUP_STEPS = 100;
+  private static final int STEPS = 100;
+
+  public static void main(String[] args) throws Exception {
+    run("SugarScape, 2000 agents", "SUGAR", "<MaxSugarCapacity>5</MaxSugarCapacity>",
+        stateCount(1, 2000));
+    run("SugarScape, 20000 agents", "SUGAR", "<MaxSugarCapacity>5</MaxSugarCapacity>",
+        stateCount(1, 20000));
+    run("Ants, 2000 ants", "ANT", "", stateCount(1, 2000) + stateCount(2, 500)
+        + stateCount(3, 100));
+    run("Ants, 20000 ants", "ANT", "", stateCount(1, 20000) + stateCount(2, 5000)
+        + stateCount(3, 1000));
+    // Without sharks the fish breed until they fill the ocean
+    run("Wa-Tor, ocean full of fish", "WATOR", "", stateCount(1, SIZE * SIZE / 2));
+  }
+
+  private static String stateCount(int state, int count) {
+    return "<StateCount><State>" + state + "</State><Count>" + count + "</Count></StateCount>";
+  }
+
+  private static void run(String name, String type, String parameters, String counts)
+      throws Exception {
+    File file = File.createTempFile("agent_benchmark", ".xml");
+    file.deleteOnExit();
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("<xml><General><Type>" + type + "</Type><Seed>1</Seed></General>"
+          + "<GeometricConfiguration><Height>" + SIZE + "</Height><Width>" + SIZE + "</Width>"
+          + "<EdgeType>TOROIDAL</EdgeType><NeighborhoodSize>MEDIUM</NeighborhoodSize>"
+          + "</GeometricConfiguration><SimulationParameters>" + parameters
+          + "</SimulationParameters><RandomInitialStates><Method>Count</Method><Counts>"
+          + counts + "</Counts></RandomInitialStates></xml>");
+    }
+
+    SimulationFactory factory = new SimulationFactory();
+    factory.loadSimulationFile(file);
+    Simulation simulation = factory.getSimulation();
+    for (int i = 0; i < WARMUP_STEPS; i++) {
+      simulation.step();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < STEPS; i++) {
+      simulation.step();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%-28s %8.1f steps/s%n", name, STEPS / seconds);
+  }
+}
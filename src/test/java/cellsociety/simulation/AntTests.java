@@ -0,0 +1,120 @@
+package cellsociety.simulation;
+
+import static cellsociety.simulation.AntCell.FOOD_PHEROMONE;
+import static cellsociety.simulation.AntCell.HOME_PHEROMONE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A suite of tests for the Foraging Ants Simulation.
+ *
+ * @author Marc Chmielewski
+ */
+public class AntTests {
+
+  /**
+   * Pheromones spread to the neighbors of a cell and evaporate from empty cells in one pass.
+   */
+  @Test
+  public void testPheromoneDiffusesAndEvaporates() {
+    Simulation simulation = createSimulation("data/ant/pheromone_diffusion_test.xml");
+    List<Cell> cells = simulation.getCells();
+    Cell center = cells.get(2 * 5 + 2);
+    center.setLayer(HOME_PHEROMONE, 100);
+
+    simulation.step();
+    // Half of the center's pheromone stays, then one unit evaporates
+    assertEquals(49, center.getLayer(HOME_PHEROMONE), 1e-9);
+    // Each neighbor takes half of the average of its eight neighbors, 100 / 8 / 2
+    assertEquals(5.25, cells.get(1 * 5 + 1).getLayer(HOME_PHEROMONE), 1e-9);
+    assertEquals(0, cells.get(0).getLayer(HOME_PHEROMONE), 1e-9);
+    assertEquals(0, center.getLayer(FOOD_PHEROMONE), 1e-9);
+  }
+
+  /**
+   * An ant's memory keeps exactly its most recent visits, however long it wanders.
+   */
+  @Test
+  public void testTabuMemoryKeepsRecentVisits() {
+    TabuMemory memory = new TabuMemory(8);
+    Deque<Integer> expected = new ArrayDeque<>();
+    SplittableRandom random = new SplittableRandom(42);
+    for (int i = 0; i < 10000; i++) {
+      // A small range of cells forces repeated visits and colliding probe sequences
+      int cell = random.nextInt(40);
+      memory.add(cell);
+      expected.addLast(cell);
+      if (expected.size() > 8) {
+        expected.removeFirst();
+      }
+      assertEquals(expected.size(), memory.size());
+      for (int other = 0; other < 40; other++) {
+        assertEquals(expected.contains(other), memory.contains(other));
+      }
+    }
+    memory.clear();
+    assertEquals(0, memory.size());
+    assertFalse(memory.contains(expected.getLast()));
+  }
+
+  /**
+   * Only the cells holding an ant are computed, ants are never lost or duplicated, and a seeded
+   * run visits them in the same random order whatever the number of threads.
+   */
+  @Test
+  public void testAgentIndexFollowsAnts() {
+    Simulation sequential = createSimulation("data/ant/toroidal_ant_test_1.xml");
+    Simulation parallel = createSimulation("data/ant/toroidal_ant_test_1.xml");
+    sequential.setSeed(11);
+    parallel.setSeed(11);
+    parallel.setParallelism(4);
+
+    int ants = countAnts(sequential);
+    for (int i = 0; i < 100; i++) {
+      sequential.step();
+      parallel.step();
+      assertEquals(ants, sequential.getActiveCellCount());
+      assertEquals(ants, countAnts(sequential));
+      assertEquals(getStates(sequential), getStates(parallel));
+    }
+    parallel.setParallelism(1);
+  }
+
+  private int countAnts(Simulation simulation) {
+    int ants = 0;
+    for (Cell cell : simulation.getCells()) {
+      if (cell.getCellState() == AntCell.ANT) {
+        ants++;
+      }
+    }
+    return ants;
+  }
+
+  private List<Integer> getStates(Simulation simulation) {
+    List<Integer> states = new ArrayList<>();
+    for (Cell cell : simulation.getCells()) {
+      states.add(cell.getCellState());
+    }
+    return states;
+  }
+
+  private Simulation createSimulation(String filepath) {
+    File file = new File(filepath);
+    SimulationFactory simulationFactory = new SimulationFactory();
+
+    try {
+      simulationFactory.loadSimulationFile(file);
+    } catch (Exception e) {
+      System.out.println(e.getMessage());
+    }
+    return simulationFactory.getSimulation();
+  }
+}
@@ -0,0 +1,86 @@
+package cellsociety.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A suite of tests for saving simulations to binary checkpoints and resuming them.
+ *
+ * @author Joshua Petitma
+ */
+public class CheckpointTests {
+
+  /**
+   * A restored run steps exactly like the run it was saved from, down to the energy of every
+   * shark, the food and memory of every ant, the sugar of every agent and the order agents move in.
+   */
+  @Test
+  public void testRestoredRunsResumeExactly() throws Exception {
+    String[] files = {"data/wator/toroidal_wator_test_1.xml", "data/ant/toroidal_ant_test_1.xml",
+        "data/sugar/random_sugar_test_1.xml", "data/fire/random_fire_test.xml"};
+    for (String file : files) {
+      for (boolean compress : new boolean[]{false, true}) {
+        SimulationFactory factory = new SimulationFactory();
+        factory.loadSimulationFile(new File(file));
+        Simulation saved = factory.getSimulation();
+        saved.setSeed(5);
+        for (int i = 0; i < 10; i++) {
+          saved.step();
+        }
+        Simulation restored = roundTrip(saved, compress);
+        for (int i = 0; i < 30; i++) {
+          assertSameCells(saved, restored);
+          saved.step();
+          restored.step();
+        }
+        assertSameCells(saved, restored);
+      }
+    }
+  }
+
+  @Test
+  public void testRejectsOtherFiles() {
+    SimulationFactory factory = new SimulationFactory();
+    assertThrows(IOException.class,
+        () -> factory.loadCheckpoint(new File("data/fire/fire_test_1.xml")));
+  }
+
+  // Saves a simulation to a temporary checkpoint and loads it back.
+  private Simulation roundTrip(Simulation simulation, boolean compress) throws Exception {
+    File checkpoint = Files.createTempFile("checkpoint", ".bin").toFile();
+    try {
+      simulation.writeCheckpoint(checkpoint, compress);
+      SimulationFactory factory = new SimulationFactory();
+      factory.loadCheckpoint(checkpoint);
+      return factory.getSimulation();
+    } finally {
+      checkpoint.delete();
+    }
+  }
+
+  private void assertSameCells(Simulation expected, Simulation actual) {
+    StateBuffer expectedStates = expected.getStateBuffer();
+    StateBuffer actualStates = actual.getStateBuffer();
+    for (int i = 0; i < expectedStates.size(); i++) {
+      assertEquals(expectedStates.get(i), actualStates.get(i));
+      for (int a = 0; a < expectedStates.getAttributeCount(); a++) {
+        assertEquals(expectedStates.getAttribute(a, i), actualStates.getAttribute(a, i));
+      }
+      for (int l = 0; l < expectedStates.getLayerCount(); l++) {
+        assertEquals(expectedStates.getLayerValue(l, i), actualStates.getLayerValue(l, i));
+      }
+      Cell expectedCell = expected.getCells().get(i);
+      Cell actualCell = actual.getCells().get(i);
+      for (int v = 0; v < expectedCell.getHiddenValueCount(); v++) {
+        assertEquals(expectedCell.getHiddenValue(v), actualCell.getHiddenValue(v));
+      }
+      assertArrayEquals(expectedCell.getHiddenSequence(), actualCell.getHiddenSequence());
+    }
+  }
+}
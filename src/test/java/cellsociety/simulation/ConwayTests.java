@@ -2,7 +2,9 @@ package cellsociety.simulation;
 
 import static cellsociety.simulation.ConwayCell.ALIVE;
 import static cellsociety.simulation.ConwayCell.DEAD;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -72,6 +74,128 @@ public class ConwayTests {
     }
   }
 
+  /**
+   * Stepping in parallel must give exactly the same grid as stepping on one thread.
+   */
+  @Test
+  public void testParallelMatchesSequential() {
+    Simulation sequential = createSimulation("data/conways/conways_test_5.xml");
+    Simulation parallel = createSimulation("data/conways/conways_test_5.xml");
+    parallel.setParallelism(4);
+
+    for (int i = 0; i < 50; i++) {
+      sequential.step();
+      parallel.step();
+      assertArrayEquals(getStates(sequential), getStates(parallel));
+    }
+    parallel.setParallelism(1);
+  }
+
+  /**
+   * A glider on a toroidal grid spanning several words of the bit board must wrap across word and
+   * grid edges and return to where it started after crossing the whole grid.
+   */
+  @Test
+  public void testWideToroidalGliderReturns() {
+    Simulation glider = createSimulation("data/conways/toroidal_wide_glider_test.xml");
+    int[] initial = getStates(glider);
+
+    // A glider moves one cell diagonally every four generations: 130 columns takes 520.
+    for (int i = 0; i < 519; i++) {
+      glider.step();
+      assertEquals(5, glider.getCells().stream().filter(cell -> cell.getCellState() == ALIVE)
+          .count());
+    }
+    glider.step();
+    assertArrayEquals(initial, getStates(glider));
+  }
+
+  /**
+   * Fast-forwarding an infinite Conway grid must land on exactly the grid that stepping one
+   * generation at a time gives.
+   */
+  @Test
+  public void testAdvanceMatchesStep() {
+    Simulation stepped = createSimulation("data/conways/infinite_glider_test.xml");
+    Simulation advanced = createSimulation("data/conways/infinite_glider_test.xml");
+
+    for (int i = 0; i < 36; i++) {
+      stepped.step();
+    }
+    advanced.advance(36);
+    assertArrayEquals(getStates(stepped), getStates(advanced));
+
+    // The glider has moved nine cells down and to the right
+    assertEquals(ALIVE, advanced.getStateBuffer().get(9 * 25 + 10));
+    assertEquals(ALIVE, advanced.getStateBuffer().get(11 * 25 + 9));
+  }
+
+  /**
+   * HashLife must carry a glider a million generations across the plane, even with a node cache
+   * small enough to be evicted after every jump.
+   */
+  @Test
+  public void testHashLifeMillionGenerations() {
+    HashLife plane = new HashLife(false, 64);
+    plane.setRule(2, 3, 3, 3);
+    int[][] glider = {{0, 1}, {1, 2}, {2, 0}, {2, 1}, {2, 2}};
+    for (int[] cell : glider) {
+      plane.setCell(cell[1], cell[0], true);
+    }
+
+    plane.advance(1_000_000);
+    assertEquals(5, plane.getPopulation());
+    for (int[] cell : glider) {
+      assertEquals(true, plane.getCell(cell[1] + 250_000, cell[0] + 250_000));
+    }
+  }
+
+  /**
+   * Parameter changes are held back until the next step starts, then apply to the whole step.
+   */
+  @Test
+  public void testParameterChangeAppliesAtNextStep() {
+    Simulation pulsar = createSimulation("data/conways/conways_test_5.xml");
+    int[] before = getStates(pulsar);
+
+    pulsar.setParameter("SpawnNumberMin", 9);
+    pulsar.setParameter("SpawnNumberMax", 9);
+    assertEquals(3.0, pulsar.getSimulationParameters().get("SpawnNumberMin"));
+
+    pulsar.step();
+    assertEquals(9.0, pulsar.getSimulationParameters().get("SpawnNumberMin"));
+    int[] after = getStates(pulsar);
+    for (int i = 0; i < after.length; i++) {
+      assertTrue(after[i] == DEAD || before[i] == ALIVE);
+    }
+  }
+
+  @Test
+  public void testCycleDetectionFindsPulsarPeriod() {
+    Simulation pulsar = createSimulation("data/conways/conways_test_5.xml");
+    pulsar.setCycleDetection(8);
+    pulsar.step();
+    pulsar.step();
+    assertEquals(0, pulsar.getCyclePeriod());
+    pulsar.step();
+    assertEquals(3, pulsar.getCyclePeriod());
+    assertEquals(0, pulsar.getCycleStart());
+
+    // A lone poked cell knocks the grid off its cycle until it dies out again
+    pulsar.pokeCell(0, 0);
+    pulsar.step();
+    assertEquals(0, pulsar.getCyclePeriod());
+    for (int i = 0; i < 3; i++) {
+      pulsar.step();
+    }
+    assertEquals(3, pulsar.getCyclePeriod());
+    assertEquals(4, pulsar.getCycleStart());
+  }
+
+  private int[] getStates(Simulation simulation) {
+    return simulation.getCells().stream().mapToInt(Cell::getCellState).toArray();
+  }
+
   private Simulation createSimulation(String filepath) {
     File file = new File(filepath);
     SimulationFactory simulationFactory = new SimulationFactory();
@@ -0,0 +1,148 @@
+package cellsociety.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A suite of tests for recording the trajectories of simulations and replaying them.
+ *
+ * @author Joshua Petitma
+ */
+public class DeltaLogTests {
+
+  /**
+   * Seeking to any step, in order or not, rebuilds the grid exactly as it was after that step,
+   * including cells poked between steps.
+   */
+  @Test
+  public void testSeeksRebuildEveryStep() throws Exception {
+    String[] files = {"data/wator/toroidal_wator_test_1.xml", "data/fire/random_fire_test.xml",
+        "data/conways/conways_test_5.xml", "data/ant/toroidal_ant_test_1.xml"};
+    File recording = Files.createTempFile("recording", ".log").toFile();
+    try {
+      for (String file : files) {
+        SimulationFactory factory = new SimulationFactory();
+        factory.loadSimulationFile(new File(file));
+        Simulation simulation = factory.getSimulation();
+        simulation.setSeed(5);
+        simulation.startRecording(recording, 4);
+        List<int[]> grids = new ArrayList<>();
+        grids.add(copyStates(simulation));
+        for (int i = 0; i < 20; i++) {
+          if (i % 6 == 5) {
+            simulation.pokeCell(1, 2);
+          }
+          simulation.step();
+          grids.add(copyStates(simulation));
+        }
+        simulation.stopRecording();
+        try (DeltaLog.Reader reader = new DeltaLog.Reader(recording)) {
+          assertEquals(grids.size(), reader.getStepCount());
+          for (int step = 0; step < grids.size(); step++) {
+            assertArrayEquals(grids.get(step), reader.seek(step));
+          }
+          Random random = new Random(1);
+          for (int k = 0; k < 50; k++) {
+            int step = random.nextInt(grids.size());
+            assertArrayEquals(grids.get(step), reader.seek(step));
+          }
+        }
+      }
+    } finally {
+      recording.delete();
+    }
+  }
+
+  /**
+   * A record cut short, as when the recording simulation stopped mid-write, ends the recording
+   * without hiding the steps before it.
+   */
+  @Test
+  public void testIgnoresRecordCutShort() throws Exception {
+    File recording = Files.createTempFile("recording", ".log").toFile();
+    try {
+      SimulationFactory factory = new SimulationFactory();
+      factory.loadSimulationFile(new File("data/fire/random_fire_test.xml"));
+      Simulation simulation = factory.getSimulation();
+      simulation.startRecording(recording, 3);
+      int[] lastComplete = null;
+      for (int i = 0; i < 5; i++) {
+        simulation.step();
+        lastComplete = i == 3 ? copyStates(simulation) : lastComplete;
+      }
+      simulation.stopRecording();
+      try (RandomAccessFile file = new RandomAccessFile(recording, "rw")) {
+        file.setLength(file.length() - 1);
+      }
+      try (DeltaLog.Reader reader = new DeltaLog.Reader(recording)) {
+        assertEquals(5, reader.getStepCount());
+        assertArrayEquals(lastComplete, reader.seek(4));
+      }
+    } finally {
+      recording.delete();
+    }
+  }
+
+  /**
+   * Agents stepped in many bands at once keep the hash and the recorded changes exact, although
+   * the bands write current states at the same time.
+   */
+  @Test
+  public void testTracksEveryChangeOnManyThreads() throws Exception {
+    File recording = Files.createTempFile("recording", ".log").toFile();
+    try {
+      SimulationFactory factory = new SimulationFactory();
+      factory.loadSimulationFile(new File("data/wator/random_wator_test_3.xml"));
+      Simulation simulation = factory.getSimulation();
+      simulation.setSeed(9);
+      simulation.setParallelism(4);
+      simulation.setCycleDetection(16);
+      simulation.startRecording(recording, 8);
+      StateBuffer states = simulation.getStateBuffer();
+      List<int[]> grids = new ArrayList<>();
+      grids.add(copyStates(simulation));
+      for (int i = 0; i < 100; i++) {
+        simulation.step();
+        grids.add(copyStates(simulation));
+        long hash = states.getHash();
+        states.setHashing(false);
+        states.setHashing(true);
+        assertEquals(states.getHash(), hash);
+      }
+      simulation.stopRecording();
+      simulation.setParallelism(1);
+      try (DeltaLog.Reader reader = new DeltaLog.Reader(recording)) {
+        for (int step = 0; step < grids.size(); step++) {
+          assertArrayEquals(grids.get(step), reader.seek(step));
+        }
+      }
+    } finally {
+      recording.delete();
+    }
+  }
+
+  @Test
+  public void testRejectsOtherFiles() {
+    assertThrows(IOException.class,
+        () -> new DeltaLog.Reader(new File("data/fire/fire_test_1.xml")));
+  }
+
+  private int[] copyStates(Simulation simulation) {
+    StateBuffer states = simulation.getStateBuffer();
+    int[] copy = new int[states.size()];
+    for (int i = 0; i < copy.length; i++) {
+      copy[i] = states.get(i);
+    }
+    return copy;
+  }
+}
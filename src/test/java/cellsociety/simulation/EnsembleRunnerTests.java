@@ -0,0 +1,95 @@
+package cellsociety.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cellsociety.util.SweepConfiguration;
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A suite of tests for running ensembles of simulations.
+ *
+ * @author Joshua Petitma
+ */
+public class EnsembleRunnerTests {
+
+  @Test
+  public void testFireSweepRunsEveryCombination() throws Exception {
+    List<String> rows = runSweep();
+    // A header, then three Flammability values times three seeds
+    assertEquals(10, rows.size());
+    assertEquals("Run,Seed,Flammability,Steps,SteadyStep,CycleStart,Period,ExtinctionStep,"
+        + "State0,State1,State2", rows.get(0));
+    for (String row : rows.subList(1, rows.size())) {
+      String[] columns = row.split(",");
+      int steps = Integer.parseInt(columns[3]);
+      // Each run stops as soon as no tree is burning
+      assertEquals(steps, Integer.parseInt(columns[7]));
+      assertEquals(0, Integer.parseInt(columns[9]));
+      assertTrue(steps < 1000);
+      assertEquals(100 * 100, Integer.parseInt(columns[8]) + Integer.parseInt(columns[10]));
+    }
+    // Seeded runs give the same rows however the threads happen to finish them
+    assertEquals(rows, runSweep());
+  }
+
+  /**
+   * Runs stop once steady or cycling only for rules whose repeated grids are certain to keep
+   * repeating; for other rules such sweeps are refused and no steady step or period is reported.
+   */
+  @Test
+  public void testStopsOnlyAtExactCycles() throws Exception {
+    String[] steady = runOnce("data/conways/conways_test_3.xml", "Steady").split(",");
+    assertEquals(4, Integer.parseInt(steady[2]));
+    assertEquals(3, Integer.parseInt(steady[3]));
+    assertEquals(1, Integer.parseInt(steady[5]));
+    String[] cycling = runOnce("data/conways/conways_test_5.xml", "Cycle").split(",");
+    assertEquals(3, Integer.parseInt(cycling[2]));
+    assertEquals(3, Integer.parseInt(cycling[5]));
+
+    // Ants and Wa-Tor repeat their grids while their pheromones and energies keep changing
+    assertThrows(IllegalArgumentException.class,
+        () -> runOnce("data/ant/ant_test_5.xml", "Steady"));
+    assertThrows(IllegalArgumentException.class,
+        () -> runOnce("data/wator/wator_edge_test_1.xml", "Cycle"));
+    String[] ants = runOnce("data/ant/ant_test_5.xml", "Steps").split(",");
+    assertEquals(100, Integer.parseInt(ants[2]));
+    assertEquals(-1, Integer.parseInt(ants[3]));
+    assertEquals(-1, Integer.parseInt(ants[4]));
+    assertEquals(0, Integer.parseInt(ants[5]));
+  }
+
+  // Runs a single run of a simulation for up to 100 steps and returns its row.
+  private String runOnce(String file, String stopWhen) throws Exception {
+    File sweepFile = Files.createTempFile("sweep", ".xml").toFile();
+    try {
+      Files.writeString(sweepFile.toPath(), "<xml><Steps>100</Steps><StopWhen>" + stopWhen
+          + "</StopWhen></xml>");
+      EnsembleRunner runner = new EnsembleRunner(new File(file),
+          new SweepConfiguration(sweepFile));
+      StringWriter out = new StringWriter();
+      runner.run(out);
+      return out.toString().split("\n")[1];
+    } finally {
+      sweepFile.delete();
+    }
+  }
+
+  // Runs the Fire sweep and returns the header followed by the rows in run order.
+  private List<String> runSweep() throws Exception {
+    EnsembleRunner runner = new EnsembleRunner(new File("data/fire/random_fire_test.xml"),
+        new SweepConfiguration(new File("data/sweeps/fire_flammability_sweep.xml")));
+    StringWriter out = new StringWriter();
+    runner.run(out);
+    List<String> lines = Arrays.asList(out.toString().split("\n"));
+    List<String> rows = lines.subList(1, lines.size());
+    rows.sort((a, b) -> Integer.parseInt(a.split(",")[0]) - Integer.parseInt(b.split(",")[0]));
+    return lines;
+  }
+}
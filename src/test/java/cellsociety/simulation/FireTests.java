@@ -4,6 +4,8 @@ package cellsociety.simulation;
 import static cellsociety.simulation.FireCell.BURNING;
 import static cellsociety.simulation.FireCell.BURNT;
 import static cellsociety.simulation.FireCell.UNBURNT;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
@@ -47,6 +49,49 @@ public class FireTests {
     }
   }
 
+  /**
+   * Two runs with the same seed must burn identically, no matter how many threads step them.
+   */
+  @Test
+  public void testSeededParallelFire() {
+    Simulation sequential = createSimulation("data/fire/david_fire_test.xml");
+    Simulation parallel = createSimulation("data/fire/david_fire_test.xml");
+    sequential.setSeed(308);
+    parallel.setSeed(308);
+    parallel.setParallelism(4);
+
+    for (int i = 0; i < 50; i++) {
+      sequential.step();
+      parallel.step();
+      assertArrayEquals(getStates(sequential), getStates(parallel));
+    }
+    parallel.setParallelism(1);
+  }
+
+  /**
+   * Only cells near the fire front are evaluated, and none once the fire has burnt out.
+   */
+  @Test
+  public void testActiveCellsFollowFireFront() {
+    Simulation fire = createSimulation("data/fire/fire_test_1.xml");
+    fire.setSeed(308);
+
+    fire.step();
+    assertEquals((int) fire.getNumCells(), fire.getActiveCellCount());
+    fire.step();
+    assertTrue(fire.getActiveCellCount() < fire.getNumCells());
+
+    for (int i = 0; i < 500; i++) {
+      fire.step();
+    }
+    assertEquals(0, getCellStates(fire.getCells()).get(BURNING));
+    assertEquals(0, fire.getActiveCellCount());
+  }
+
+  private int[] getStates(Simulation simulation) {
+    return simulation.getCells().stream().mapToInt(Cell::getCellState).toArray();
+  }
+
   private Simulation createSimulation(String filepath) {
     File file = new File(filepath);
     SimulationFactory simulationFactory = new SimulationFactory();
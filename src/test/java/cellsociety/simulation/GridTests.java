@@ -1,11 +1,21 @@
 // The package for the corresponding class you're testing
 package cellsociety.simulation;
 
+import static cellsociety.simulation.ConwayCell.ALIVE;
 import static cellsociety.simulation.FireCell.BURNING;
+import static cellsociety.simulation.PercolationCell.EMPTY;
+import static cellsociety.simulation.PercolationCell.FULL;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import cellsociety.util.SimulationConfiguration;
+import cellsociety.util.SimulationConfiguration.CellNeighborhoodSize;
+import cellsociety.util.SimulationConfiguration.CellShape;
+import cellsociety.util.SimulationConfiguration.SimulationEdgeType;
+import cellsociety.util.XMLParser;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -50,4 +60,74 @@ class TestGrids {
     long onFire = cells.stream().filter(c -> c.getCellState() == BURNING).count();
     assertEquals(4, onFire);
   }
+
+  @DisplayName("Toroidal triangle neighborhoods wrap two columns over the edge correctly")
+  @Test
+  void testToroidalTriangleWrap() {
+    List<Cell> cells = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      cells.add(new ConwayCell(0));
+    }
+    CellGrid grid = new CellGrid(cells, 5, 5, CellShape.TRIANGLE, SimulationEdgeType.TOROIDAL,
+        CellNeighborhoodSize.LARGE);
+    int[] offsets = grid.getNeighborOffsets();
+    int[] neighbors = grid.getNeighborIndices();
+
+    // Every cell on a toroidal grid has a full neighborhood
+    for (int i = 0; i < cells.size(); i++) {
+      assertEquals(12, offsets[i + 1] - offsets[i]);
+    }
+    // (0, 4) + 2 columns wraps around to (0, 1), not (0, 0)
+    int[] lastInRow = Arrays.copyOfRange(neighbors, offsets[4], offsets[5]);
+    assertTrue(Arrays.stream(lastInRow).anyMatch(n -> n == 1));
+    assertTrue(Arrays.stream(lastInRow).anyMatch(n -> n == 2));
+  }
+
+  @DisplayName("An infinite world keeps growing past the visible grid, which can be panned")
+  @Test
+  void testInfinitePercolation() throws Exception {
+    SimulationFactory fac = new SimulationFactory();
+    fac.loadSimulationFile(new File("data/percolation/infinite_percolation_test.xml"));
+    Simulation sim = fac.getSimulation();
+    assertTrue(sim.isInfinite());
+    assertEquals(0, sim.getStateBuffer().get(0));
+
+    for (int i = 0; i < 40; i++) {
+      sim.step();
+    }
+    // Water started at (-3, -3) and has spread 40 cells in every direction
+    assertTrue(sim.getCells().stream().allMatch(c -> c.getCellState() == FULL));
+    sim.moveViewport(30, 30);
+    assertEquals(FULL, sim.getStateBuffer().get(0));
+    assertEquals(FULL, sim.getStateBuffer().get(7 * 10 + 7));
+    assertEquals(EMPTY, sim.getStateBuffer().get(8 * 10 + 8));
+  }
+
+  @DisplayName("A glider on a tiled world only ever holds the tiles around it")
+  @Test
+  void testTiledWorldFreesTiles() throws Exception {
+    XMLParser parser = new XMLParser(new File("data/conways/infinite_glider_test.xml"));
+    SimulationConfiguration config = parser.getSimulationConfiguration();
+    ParameterSnapshot parameters = new ParameterSnapshot(config.getSimulationParameters());
+    List<Cell> scratch = new ArrayList<>();
+    for (int i = 0; i < TiledWorld.SCRATCH_SIZE * TiledWorld.SCRATCH_SIZE; i++) {
+      Cell cell = new ConwayCell(config.getSimulationParameters());
+      cell.setParameters(parameters);
+      scratch.add(cell);
+    }
+    TiledWorld world = new TiledWorld(scratch, config, new CellRandom(0));
+    int[][] glider = {{0, 1}, {1, 2}, {2, 0}, {2, 1}, {2, 2}};
+    for (int[] cell : glider) {
+      world.set(cell[0], cell[1], ALIVE);
+    }
+
+    for (int i = 0; i < 400; i++) {
+      world.step();
+      assertTrue(world.getTileCount() <= 4);
+    }
+    assertEquals(5, world.getNonDefaultCells().size());
+    for (int[] cell : glider) {
+      assertEquals(ALIVE, world.get(cell[0] + 100, cell[1] + 100));
+    }
+  }
 }
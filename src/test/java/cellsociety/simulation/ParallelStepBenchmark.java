@@ -0,0 +1,51 @@
+package cellsociety.simulation;
+
+import java.io.File;
+import java.io.FileWriter;
+
+/**
+ * Reports how stepping a large Conway soup speeds up as more threads are used. Not part of the
+ * test suite; run its main method directly.
+ *
+ * @author Joshua Petitma
+ */
+public class ParallelStepBenchmark {
+
+  private static final int SIZE = 1000;
+  private static final int WARMUP_STEPS = 20;
+  private static final int STEPS = 50;
+
+  public static void main(String[] args) throws Exception {
+    File file = File.createTempFile("conway_benchmark", ".xml");
+    file.deleteOnExit();
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("<xml><General><Type>Conway</Type></General><GeometricConfiguration>"
+          + "<Height>" + SIZE + "</Height><Width>" + SIZE + "</Width>"
+          + "<EdgeType>TOROIDAL</EdgeType></GeometricConfiguration>"
+          + "<RandomInitialStates><Method>Count</Method><Counts><StateCount><State>1</State>"
+          + "<Count>" + SIZE * SIZE / 3 + "</Count></StateCount></Counts></RandomInitialStates>"
+          + "</xml>");
+    }
+
+    double baseline = 0;
+    int cores = Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; threads <= cores; threads *= 2) {
+      SimulationFactory factory = new SimulationFactory();
+      factory.loadSimulationFile(file);
+      Simulation simulation = factory.getSimulation();
+      simulation.setParallelism(threads);
+      for (int i = 0; i < WARMUP_STEPS; i++) {
+        simulation.step();
+      }
+      long start = System.nanoTime();
+      for (int i = 0; i < STEPS; i++) {
+        simulation.step();
+      }
+      double stepsPerSecond = STEPS / ((System.nanoTime() - start) / 1e9);
+      baseline = threads == 1 ? stepsPerSecond : baseline;
+      System.out.printf("%2d threads: %8.1f steps/s, speedup %.2fx%n", threads, stepsPerSecond,
+          stepsPerSecond / baseline);
+      simulation.setParallelism(1);
+    }
+  }
+}
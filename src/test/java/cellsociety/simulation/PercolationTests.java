@@ -5,6 +5,7 @@ import static cellsociety.simulation.PercolationCell.BLOCKED;
 import static cellsociety.simulation.PercolationCell.EMPTY;
 import static cellsociety.simulation.PercolationCell.FULL;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
@@ -49,6 +50,37 @@ public class PercolationTests {
     }
   }
 
+  @Test
+  public void testSolverMatchesStepping() {
+    String[] files = {"percolation_test_4", "percolation_test_5", "percolation_edge_test_2",
+        "percolation_edge_test_3", "percolation_edge_test_4", "toroidal_percolation_test_1"};
+    for (String file : files) {
+      String filepath = "data/percolation/" + file + ".xml";
+      Simulation stepped = createSimulation(filepath);
+      stepped.setCycleDetection(2);
+      int spanningTime = stepped.getSpanningTime();
+      assertEquals(spanningTime >= 0, stepped.percolates());
+      int steps = 0;
+      while (!stepped.isSettled()) {
+        assertFalse(steps > stepped.getNumCells());
+        assertEquals(spanningTime < 0 ? -1 : Math.max(0, spanningTime - steps),
+            stepped.getSpanningTime());
+        stepped.step();
+        steps++;
+        Simulation jumped = createSimulation(filepath);
+        jumped.advance(steps);
+        assertEquals(getStates(stepped), getStates(jumped), file + " after " + steps);
+      }
+      // The last step changed nothing, so the grid reached a fixed point the step before
+      assertEquals(1, stepped.getCyclePeriod());
+      assertEquals(steps - 1, stepped.getCycleStart());
+      stepped.advance(1000);
+      Simulation jumped = createSimulation(filepath);
+      jumped.advance(1000 + steps);
+      assertEquals(getStates(stepped), getStates(jumped), file);
+    }
+  }
+
   private Simulation createSimulation(String filepath) {
     File file = new File(filepath);
     SimulationFactory simulationFactory = new SimulationFactory();
@@ -61,6 +93,14 @@ public class PercolationTests {
     return simulationFactory.getSimulation();
   }
 
+  private List<Integer> getStates(Simulation simulation) {
+    List<Integer> states = new ArrayList<>();
+    for (Cell cell : simulation.getCells()) {
+      states.add(cell.getCellState());
+    }
+    return states;
+  }
+
   private List<Integer> getCellStates(List<Cell> cells) {
     ArrayList<Integer> cellStates = new ArrayList<>();
     cellStates.add(EMPTY, 0);
@@ -4,6 +4,7 @@ import static cellsociety.simulation.SegregationCell.EMPTY;
 import static cellsociety.simulation.SegregationCell.TYPE_A;
 import static cellsociety.simulation.SegregationCell.TYPE_B;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -47,6 +48,75 @@ public class SegregationTests {
     }
   }
 
+  /**
+   * Agents moving in parallel must never collide: every agent that moves still exists afterwards.
+   */
+  @Test
+  public void testParallelSegregationConservesAgents() {
+    Simulation simulation = createSimulation("data/segregation/random_segregation_test_1.xml");
+    simulation.setParallelism(4);
+
+    List<Integer> initial = getCellStates(simulation.getCells());
+    for (int i = 0; i < 200; i++) {
+      simulation.step();
+      assertEquals(initial, getCellStates(simulation.getCells()));
+    }
+    simulation.setParallelism(1);
+  }
+
+  /**
+   * A seeded simulation places its random initial states and moves its agents identically on every
+   * run, whatever the number of threads.
+   */
+  @Test
+  public void testSeededSegregationRepeats() {
+    Simulation sequential = createSimulation("data/segregation/seeded_segregation_test_1.xml");
+    Simulation parallel = createSimulation("data/segregation/seeded_segregation_test_1.xml");
+    parallel.setParallelism(4);
+
+    assertEquals(getStates(sequential), getStates(parallel));
+    for (int i = 0; i < 50; i++) {
+      sequential.step();
+      parallel.step();
+      assertEquals(getStates(sequential), getStates(parallel));
+    }
+    parallel.setParallelism(1);
+  }
+
+  /**
+   * With global relocation every unhappy agent moves to a random empty cell until none is left,
+   * and no agent is lost or duplicated along the way.
+   */
+  @Test
+  public void testGlobalRelocationSettles() {
+    Simulation simulation = createSimulation("data/segregation/seeded_segregation_test_1.xml");
+    simulation.setParameter("GlobalRelocation", 1);
+    double cutoff = simulation.getSimulationParameters().get("CutoffPercentage");
+
+    List<Integer> initial = getCellStates(simulation.getCells());
+    int steps = 0;
+    do {
+      simulation.step();
+      assertEquals(initial, getCellStates(simulation.getCells()));
+    } while (simulation.getActiveCellCount() > 0 && ++steps < 500);
+
+    assertEquals(0, simulation.getActiveCellCount());
+    for (Cell cell : simulation.getCells()) {
+      if (cell.getCellState() != EMPTY) {
+        double like = cell.countNeighborsInState(cell.getCellState());
+        assertTrue(like / cell.getNeighborCount() >= cutoff);
+      }
+    }
+  }
+
+  private List<Integer> getStates(Simulation simulation) {
+    List<Integer> states = new ArrayList<>();
+    for (Cell cell : simulation.getCells()) {
+      states.add(cell.getCellState());
+    }
+    return states;
+  }
+
   private Simulation createSimulation(String filepath) {
     File file = new File(filepath);
     SimulationFactory simulationFactory = new SimulationFactory();
@@ -0,0 +1,172 @@
+package cellsociety.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A suite of tests for stepping simulations back through their history.
+ *
+ * @author Joshua Petitma
+ */
+public class StepHistoryTests {
+
+  private static final String[] FILES = {"data/wator/toroidal_wator_test_1.xml",
+      "data/fire/random_fire_test.xml", "data/conways/conways_test_5.xml",
+      "data/ant/toroidal_ant_test_1.xml"};
+
+  /**
+   * Stepping back, stepping forward and seeking show every step as it was, including cells poked
+   * between steps.
+   */
+  @Test
+  public void testShowsEveryStep() throws Exception {
+    for (String file : FILES) {
+      Simulation simulation = load(file);
+      StepHistory history = simulation.startHistory(Long.MAX_VALUE, 4);
+      List<int[]> grids = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        if (i % 6 == 5) {
+          simulation.pokeCell(1, 2);
+        }
+        grids.add(copyStates(simulation));
+        simulation.step();
+      }
+      grids.add(copyStates(simulation));
+      for (int step = grids.size() - 2; step >= 0; step--) {
+        assertTrue(history.stepBack());
+        assertArrayEquals(grids.get(step), copyStates(simulation));
+      }
+      assertFalse(history.stepBack());
+      assertTrue(history.stepForward());
+      assertArrayEquals(grids.get(1), copyStates(simulation));
+      Random random = new Random(1);
+      for (int k = 0; k < 30; k++) {
+        int step = random.nextInt(grids.size());
+        history.seek(step);
+        assertArrayEquals(grids.get(step), copyStates(simulation));
+      }
+    }
+  }
+
+  /**
+   * Continuing from a rewound step drops the steps after it and steps exactly as the run did from
+   * there the first time, down to the energy of every shark and the memory of every ant.
+   */
+  @Test
+  public void testContinuesLikeTheFirstRun() throws Exception {
+    String[] files = {"data/wator/toroidal_wator_test_1.xml", "data/fire/fire_test_1.xml",
+        "data/ant/toroidal_ant_test_1.xml", "data/segregation/seeded_segregation_test_1.xml"};
+    for (String file : files) {
+      Simulation rewound = load(file);
+      Simulation original = load(file);
+      StepHistory history = rewound.startHistory(Long.MAX_VALUE, 4);
+      for (int i = 0; i < 15; i++) {
+        rewound.step();
+      }
+      history.seek(6);
+      for (int i = 0; i < 6; i++) {
+        original.step();
+      }
+      for (int i = 0; i < 10; i++) {
+        rewound.step();
+        original.step();
+        assertSameCells(original, rewound);
+      }
+      assertEquals(16, history.getLastStep());
+      assertFalse(history.isRewound());
+    }
+  }
+
+  /**
+   * A history over its budget drops its oldest steps, but can still be continued from the oldest
+   * step it keeps.
+   */
+  @Test
+  public void testDropsOldestStepsOverBudget() throws Exception {
+    Simulation simulation = load("data/fire/random_fire_test.xml");
+    StepHistory history = simulation.startHistory(20_000, 5);
+    for (int i = 0; i < 40; i++) {
+      simulation.step();
+    }
+    assertTrue(history.getFirstStep() > 0);
+    assertEquals(40, history.getLastStep());
+    history.seek(history.getFirstStep());
+    assertFalse(history.stepBack());
+    int[] oldest = copyStates(simulation);
+    history.seek(history.getLastStep());
+    history.seek(history.getFirstStep());
+    assertArrayEquals(oldest, copyStates(simulation));
+    simulation.step();
+    assertEquals(history.getFirstStep() + 1, history.getLastStep());
+  }
+
+  /**
+   * Advancing a simulation that keeps a history records one step for each generation, including
+   * on the paths that would otherwise solve Percolation in one pass or skip a settled grid.
+   */
+  @Test
+  public void testAdvanceRecordsEveryGeneration() throws Exception {
+    String[] files = {"data/percolation/percolation_test_4.xml", "data/fire/fire_test_1.xml"};
+    for (String file : files) {
+      Simulation advanced = load(file);
+      Simulation stepped = load(file);
+      StepHistory history = advanced.startHistory(Long.MAX_VALUE, 4);
+      List<int[]> grids = new ArrayList<>();
+      grids.add(copyStates(stepped));
+      for (int i = 0; i < 80; i++) {
+        stepped.step();
+        grids.add(copyStates(stepped));
+      }
+      advanced.step();
+      advanced.advance(79);
+      assertEquals(80, history.getLastStep());
+      assertArrayEquals(grids.get(80), copyStates(advanced));
+      for (int step = 0; step <= 80; step++) {
+        history.seek(step);
+        assertArrayEquals(grids.get(step), copyStates(advanced));
+      }
+    }
+  }
+
+  private Simulation load(String file) throws Exception {
+    SimulationFactory factory = new SimulationFactory();
+    factory.loadSimulationFile(new File(file));
+    Simulation simulation = factory.getSimulation();
+    simulation.setSeed(5);
+    return simulation;
+  }
+
+  private int[] copyStates(Simulation simulation) {
+    StateBuffer states = simulation.getStateBuffer();
+    int[] copy = new int[states.size()];
+    for (int i = 0; i < copy.length; i++) {
+      copy[i] = states.get(i);
+    }
+    return copy;
+  }
+
+  private void assertSameCells(Simulation expected, Simulation actual) {
+    StateBuffer expectedStates = expected.getStateBuffer();
+    StateBuffer actualStates = actual.getStateBuffer();
+    for (int i = 0; i < expectedStates.size(); i++) {
+      assertEquals(expectedStates.get(i), actualStates.get(i));
+      for (int a = 0; a < expectedStates.getAttributeCount(); a++) {
+        assertEquals(expectedStates.getAttribute(a, i), actualStates.getAttribute(a, i));
+      }
+      Cell expectedCell = expected.getCells().get(i);
+      Cell actualCell = actual.getCells().get(i);
+      for (int v = 0; v < expectedCell.getHiddenValueCount(); v++) {
+        assertEquals(expectedCell.getHiddenValue(v), actualCell.getHiddenValue(v));
+      }
+      assertArrayEquals(expectedCell.getHiddenSequence(), actualCell.getHiddenSequence());
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package cellsociety.simulation;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reports how many bytes stepping a large Wa-Tor world allocates, which should be none. Not part
+ * of the test suite; run its main method directly.
+ *
+ * @author Marc Chmielewski
+ */
+public class WatorAllocationBenchmark {
+
+  private static final int SIZE = 500;
+  private static final int WARMUP_STEPS = 200;
+  private static final int STEPS = 200;
+
+  public static void main(String[] args) throws Exception {
+    File file = File.createTempFile("wator_benchmark", ".xml");
+    file.deleteOnExit();
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("<xml><General><Type>Wator</Type><Seed>1</Seed></General>"
+          + "<GeometricConfiguration><Height>" + SIZE + "</Height><Width>" + SIZE + "</Width>"
+          + "<EdgeType>TOROIDAL</EdgeType></GeometricConfiguration>"
+          + "<RandomInitialStates><Method>Count</Method><Counts>"
+          + "<StateCount><State>1</State><Count>" + SIZE * SIZE / 4 + "</Count></StateCount>"
+          + "<StateCount><State>2</State><Count>" + SIZE * SIZE / 20 + "</Count></StateCount>"
+          + "</Counts></RandomInitialStates></xml>");
+    }
+
+    SimulationFactory factory = new SimulationFactory();
+    factory.loadSimulationFile(file);
+    Simulation simulation = factory.getSimulation();
+    for (int i = 0; i < WARMUP_STEPS; i++) {
+      simulation.step();
+    }
+
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    long allocated = threads.getThreadAllocatedBytes(thread);
+    long start = System.nanoTime();
+    for (int i = 0; i < STEPS; i++) {
+      simulation.step();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+    System.out.printf("%8.1f steps/s, %d bytes allocated per step%n", STEPS / seconds,
+        allocated / STEPS);
+  }
+}
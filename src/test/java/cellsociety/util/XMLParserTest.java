@@ -1,11 +1,17 @@
 package cellsociety.util;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import cellsociety.util.SimulationConfiguration.SimulationType;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 
@@ -37,4 +43,55 @@ class TestXMLParsing {
       e.printStackTrace();
     }
   }
+
+  @Test
+  public void testInitialStatesCheckedWhileStreaming() throws Exception {
+    String repeated = cell(1, 2, 1) + cell(0, 0, 1) + cell(1, 2, 1);
+    List<int[]> cells = parse("normal", repeated).getInitialNonDefaultCellStates();
+    assertEquals(2, cells.size());
+    assertThrows(IllegalArgumentException.class,
+        () -> parse("normal", cell(1, 2, 1) + cell(1, 2, 0)));
+    assertThrows(IllegalArgumentException.class, () -> parse("normal", cell(3, 0, 1)));
+    assertThrows(IllegalArgumentException.class,
+        () -> parse("infinite", cell(-4, 7, 1) + cell(-4, 7, 0)));
+    assertEquals(1, parse("infinite", cell(-4, 7, 1)).getInitialNonDefaultCellStates().size());
+    String interleaved = cell(-4, 7, 1) + cell(0, -1, 1) + cell(-4, 7, 1) + cell(0, -1, 1);
+    assertNotNull(parse("infinite", interleaved));
+    assertThrows(IllegalArgumentException.class,
+        () -> parse("infinite", interleaved + cell(5, 5, 1) + cell(0, -1, 0)));
+  }
+
+  @Test
+  public void testGzipRoundTrip() throws Exception {
+    SimulationConfiguration c = new XMLParser(new File("data/wator/toroidal_wator_test_1.xml"))
+        .getSimulationConfiguration();
+    File file = Files.createTempFile("roundtrip", ".xml.gz").toFile();
+    try {
+      SimulationWriter.forStates(c, c.getInitialNonDefaultCellStates()).writeToFile(file);
+      SimulationConfiguration read = new XMLParser(file).getSimulationConfiguration();
+      assertEquals(c.getSimulationParameters(), read.getSimulationParameters());
+      List<int[]> expected = c.getInitialNonDefaultCellStates();
+      List<int[]> actual = read.getInitialNonDefaultCellStates();
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertArrayEquals(expected.get(i), actual.get(i));
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  // Parses a 3x3 Game of Life with the given edge type and <Cell> elements.
+  private SimulationConfiguration parse(String edgeType, String cells) throws Exception {
+    String xml = "<xml><General><Type>conway</Type></General><GeometricConfiguration>"
+        + "<Width>3</Width><Height>3</Height><EdgeType>" + edgeType + "</EdgeType>"
+        + "</GeometricConfiguration><InitialStates>" + cells + "</InitialStates></xml>";
+    return new XMLParser(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))
+        .getSimulationConfiguration();
+  }
+
+  private String cell(int row, int column, int state) {
+    return "<Cell><Row>" + row + "</Row><Column>" + column + "</Column><State>" + state
+        + "</State></Cell>";
+  }
 }